@@ -0,0 +1,341 @@
+/*
+ * AsyncLookup.java -- Lookups on a LinearHashIndex that return right away
+ * with a CompletableFuture. The requests go on a queue and one dispatcher
+ * thread serves them in batches: it waits a short window for more requests
+ * to arrive, drops repeated keys, sorts the keys by bucket and reads each
+ * bucket once for all the keys in it. Under load many callers share each
+ * bucket read without having to batch their own lookups.
+ *
+ * The futures are completed on the dispatcher thread, so callers with slow
+ * follow up work should use the ...Async methods of CompletableFuture.
+ *
+ * Usage: java AsyncLookup <index file> <file of IDs> [threads]
+ * looks up every ID in the file from the given number of threads and
+ * prints how the lookups were batched.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncLookup {
+    /*+----------------------------------------------------------------------
+    ||  Class AsyncLookup
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Serves lookups from many threads in batches with one
+    ||                  bucket read per bucket per batch.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: MAX_BATCH: most requests served in one batch
+    ||                  DEFAULT_WINDOW_MICROS: time a batch waits to fill
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: AsyncLookup(LinearHashIndex index, long windowMicros)
+    ||
+    ||   Class Methods: None
+    ||
+    ||   Inst. Methods: CompletableFuture<Integer> get(int key)
+    ||                  long getRequests()
+    ||                  long getBatches()
+    ||                  long getBucketReads()
+    ||                  String getStats()
+    ||                  void close()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int MAX_BATCH = 4096;
+    public static final long DEFAULT_WINDOW_MICROS = 200;
+
+    /* One waiting lookup */
+    private static class Request {
+        final int key;
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+        int bucket;                 // Set when the batch is served
+
+        Request(int key) {
+            this.key = key;
+        }
+    }
+
+    private LinearHashIndex index;      // Only used by the dispatcher
+    private long windowNanos;           // Time a batch waits to fill
+    private LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private Thread dispatcher;
+    private volatile boolean closed;
+
+    // written by the dispatcher only
+    private volatile long requests;
+    private volatile long batches;
+    private volatile long bucketReads;
+
+    /* Getter methods */
+    public long getRequests() { return requests; }
+    public long getBatches() { return batches; }
+    public long getBucketReads() { return bucketReads; }
+
+    /*---------------------------------------------------------------------
+    |  Constructor AsyncLookup(LinearHashIndex index, long windowMicros)
+    |
+    |  Purpose:  Starts the dispatcher thread for an open index.
+    |
+    |  Pre-condition:  Nothing else uses the index until close()
+    |
+    |  Post-condition: get() can be called from any thread
+    |
+    |  Parameters:
+    |        index -- The open index
+    |  windowMicros -- How long a batch waits for more requests after the
+    |                 first one, 0 to take only those already waiting
+    *-------------------------------------------------------------------*/
+    public AsyncLookup(LinearHashIndex index, long windowMicros) {
+        this.index = index;
+        windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        dispatcher = new Thread(this::dispatch, "async-lookup");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    } // AsyncLookup()
+
+    /*---------------------------------------------------------------------
+    |  Method get(int key)
+    |
+    |  Purpose:  Queues a lookup of key and returns without waiting for it.
+    |
+    |  Pre-condition:  close() has not been called
+    |
+    |  Post-condition: The lookup will be served in the next batch
+    |
+    |  Parameters:
+    |          key -- The EIA ID
+    |
+    |  Returns: A future holding the pointer into the .bin file, or -1 if
+    |           the key is not in the index
+    *-------------------------------------------------------------------*/
+    public CompletableFuture<Integer> get(int key) {
+        if (key < 0) { // negative keys are never stored
+            return CompletableFuture.completedFuture(-1);
+        }
+        if (closed) {
+            return CompletableFuture.failedFuture(
+                    new IOException("AsyncLookup is closed"));
+        }
+        Request r = new Request(key);
+        queue.add(r);
+        // close() may have come in between and the dispatcher may be gone
+        if (closed && queue.remove(r)) {
+            r.result.completeExceptionally(
+                    new IOException("AsyncLookup is closed"));
+        }
+        return r.result;
+    } // get()
+
+    /* Body of the dispatcher thread */
+    private void dispatch() {
+        ArrayList<Request> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Request first = queue.poll(10, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < MAX_BATCH) {
+                    queue.drainTo(batch, MAX_BATCH - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= MAX_BATCH || wait <= 0) {
+                        break;
+                    }
+                    Request next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                serve(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // close() gave up waiting
+        }
+        // the batch is only left if interrupted, the queue may have
+        // requests added after the loop saw it empty
+        queue.drainTo(batch);
+        for (Request r : batch) {
+            r.result.completeExceptionally(new IOException("AsyncLookup is closed"));
+        }
+    } // dispatch()
+
+    /*---------------------------------------------------------------------
+    |  Method serve(List<Request> batch)
+    |
+    |  Purpose:  Sorts the batch by bucket and then key, so requests for
+    |            the same key sit together, looks up each key once with
+    |            LinearHashIndex.lookupMany() and completes every request
+    |            for it. If the index can not be read every request in the
+    |            batch fails with the error.
+    |
+    |  Pre-condition:  Called on the dispatcher thread
+    |
+    |  Post-condition: Every request in the batch is complete
+    |
+    |  Parameters:
+    |        batch -- The requests to serve
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private void serve(List<Request> batch) {
+        for (Request r : batch) {
+            r.bucket = index.getHashCode(r.key);
+        }
+        batch.sort(Comparator.comparingInt((Request r) -> r.bucket)
+                .thenComparingInt(r -> r.key));
+
+        int[] keys = new int[batch.size()];
+        int unique = 0;
+        long reads = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Request r = batch.get(i);
+            if (i == 0 || r.key != keys[unique - 1]) {
+                if (i == 0 || r.bucket != batch.get(i - 1).bucket) {
+                    reads++;
+                }
+                keys[unique++] = r.key;
+            }
+        }
+
+        int[] pointers = new int[unique];
+        try {
+            index.lookupMany(keys, pointers, unique);
+        } catch (IOException | RuntimeException e) {
+            for (Request r : batch) {
+                r.result.completeExceptionally(e);
+            }
+            return;
+        }
+
+        int u = 0;
+        for (Request r : batch) {
+            if (r.key != keys[u]) {
+                u++;
+            }
+            r.result.complete(pointers[u]);
+        }
+        requests += batch.size();
+        batches++;
+        bucketReads += reads;
+    } // serve()
+
+    /* Batches, requests and bucket reads as one line */
+    public String getStats() {
+        return "Async lookups: " + requests + " requests in " + batches
+                + " batches, " + bucketReads + " bucket reads";
+    } // getStats()
+
+    /*---------------------------------------------------------------------
+    |  Method close()
+    |
+    |  Purpose:  Serves the requests already queued and stops the
+    |            dispatcher. The index is left open.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: get() returns failed futures
+    |
+    |  Parameters: None
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void close() throws InterruptedException {
+        closed = true;
+        dispatcher.join();
+    } // close()
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Looks up every ID in a file from several threads at once,
+    |            one get() at a time per thread, and prints the time taken
+    |            and how the lookups were batched.
+    |
+    |  Pre-condition:  args holds the index file, the file of IDs and
+    |                  optionally the number of threads
+    |
+    |  Post-condition: The index is closed
+    |
+    |  Parameters:
+    |         args -- The command line arguments
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        if (args.length < 2) {
+            System.out.println("Usage: java AsyncLookup <index file>"
+                    + " <file of IDs> [threads]");
+            System.exit(-1);
+        }
+        try {
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+            int[] ids = Files.lines(Paths.get(args[1])).map(String::trim)
+                    .filter(s -> !s.isEmpty()).mapToInt(Integer::parseInt)
+                    .toArray();
+            LinearHashIndex index = LinearHashIndex.open(args[0], false);
+            AsyncLookup async = new AsyncLookup(index, DEFAULT_WINDOW_MICROS);
+
+            long[] found = new long[threads];
+            Thread[] workers = new Thread[threads];
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                final int me = t;
+                workers[t] = new Thread(() -> {
+                    for (int i = me; i < ids.length; i += threads) {
+                        if (async.get(ids[i]).join() != -1) {
+                            found[me]++;
+                        }
+                    }
+                });
+                workers[t].start();
+            }
+            long total = 0;
+            for (int t = 0; t < threads; t++) {
+                workers[t].join();
+                total += found[t];
+            }
+            long micros = (System.nanoTime() - start) / 1000;
+
+            async.close();
+            index.close();
+            System.out.println(total + " of " + ids.length + " found in "
+                    + micros + " us");
+            System.out.println(async.getStats());
+        } catch (NumberFormatException e) {
+            System.out.println("Error: The IDs and the number of threads must"
+                    + " be integers: " + e.getMessage());
+            System.exit(-1);
+        } catch (IOException e) {
+            System.out.println("Error: Could not read " + args[0] + " or "
+                    + args[1]);
+            System.exit(-1);
+        } catch (InterruptedException e) {
+            System.out.println("Error: Interrupted");
+            System.exit(-1);
+        }
+    } // main()
+} // class AsyncLookup
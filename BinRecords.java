@@ -0,0 +1,297 @@
+/*
+ * BinRecords.java -- Streams over the records of a .bin file. Every
+ * record has the same length, so a range of records is just a range of
+ * bytes: the Spliterator behind the stream holds a range of record
+ * numbers, splits it in half for parallel streams and maps its own range
+ * of the file into memory as it goes. No thread waits on another for a
+ * seek or a read, so a parallel stream can keep every core busy on a full
+ * scan.
+ *
+ * views() hands out a flyweight View that is moved from record to record
+ * (one per split), so a scan makes no object per record. entries() makes
+ * a SolarEntries for every record instead. Deleted records (negative EIA
+ * ID) are skipped by both. Close the stream when done, e.g. with
+ * try-with-resources, to close the file.
+ *
+ * Usage: java BinRecords <bin file>
+ *   sums the Solar Cap AC of every record with a sequential and a
+ *   parallel stream and prints both times.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.DoubleSummaryStatistics;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.*;
+
+public class BinRecords {
+    /*+----------------------------------------------------------------------
+    ||  Class BinRecords
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Makes sequential or parallel streams of the records
+    ||                  of a .bin file.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: WINDOW: about how many bytes a split maps at once
+    ||                  MIN_SPLIT: fewest records a split is cut down to
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||                  Stream<View> views(String binFileName,
+    ||                                     boolean parallel)
+    ||                  Stream<SolarEntries> entries(String binFileName,
+    ||                                               boolean parallel)
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int WINDOW = 64 << 20;
+    public static final int MIN_SPLIT = 4096;
+
+    /*+----------------------------------------------------------------------
+    ||  Class View
+    ||
+    ||         Purpose: The record a stream is at. Only valid inside the
+    ||                  call it was passed to; use toEntries() to keep it.
+    ||
+    ++-----------------------------------------------------------------------*/
+    public static final class View {
+        private final RecordCodec codec;
+        private ByteBuffer buf;     // Mapped window holding the record
+        private int at;             // Where the record starts in buf
+        private long pointer;       // Where the record starts in the file
+
+        private View(RecordCodec codec) {
+            this.codec = codec;
+        }
+
+        /* Getter methods */
+        public RecordCodec getCodec() { return codec; }
+        public long getPointer() { return pointer; }
+        public int getEIAID() { return buf.getInt(at); }
+
+        /* The field of an accessor from getCodec() */
+        public int getInt(RecordCodec.Accessor field) {
+            return field.getInt(buf, at);
+        }
+
+        public long getLong(RecordCodec.Accessor field) {
+            return field.getLong(buf, at);
+        }
+
+        public double getDouble(RecordCodec.Accessor field) {
+            return field.getDouble(buf, at);
+        }
+
+        public String getString(RecordCodec.Accessor field) {
+            return field.getString(buf, at);
+        }
+
+        /* A SolarEntries holding this record */
+        public SolarEntries toEntries() {
+            return codec.decode(buf, at);
+        }
+    } // class View
+
+    /* Hands out the records numbered first to end - 1 */
+    private static final class RecordSpliterator implements Spliterator<View> {
+        private final FileChannel channel;
+        private final RecordCodec codec;
+        private final int recordLength;
+        private long next;          // Next record to hand out
+        private long end;           // One past the last record
+        private View view;          // Made on the first advance
+        private long windowFirst;   // First record of the mapped window
+        private long windowEnd;     // One past its last record
+
+        RecordSpliterator(FileChannel channel, RecordCodec codec,
+                long first, long end) {
+            this.channel = channel;
+            this.codec = codec;
+            this.recordLength = codec.getSchema().getRecordLength();
+            this.next = first;
+            this.end = end;
+        }
+
+        /* Gives the lower half of the range to a new spliterator */
+        public Spliterator<View> trySplit() {
+            long half = (end - next) / 2;
+            if (view != null || half < MIN_SPLIT) {
+                return null;
+            }
+            RecordSpliterator lower = new RecordSpliterator(channel, codec,
+                    next, next + half);
+            next += half;
+            return lower;
+        }
+
+        public boolean tryAdvance(Consumer<? super View> action) {
+            while (next < end) {
+                if (!moveTo(next++)) {
+                    continue;
+                }
+                action.accept(view);
+                return true;
+            }
+            return false;
+        }
+
+        public void forEachRemaining(Consumer<? super View> action) {
+            while (next < end) {
+                if (moveTo(next++)) {
+                    action.accept(view);
+                }
+            }
+        }
+
+        /* Points the view at record r, mapping the next window first if
+           needed. Returns false if the record is deleted */
+        private boolean moveTo(long r) {
+            if (view == null) {
+                view = new View(codec);
+            }
+            if (r >= windowEnd) {
+                long perWindow = Math.max(1, WINDOW / recordLength);
+                windowFirst = r;
+                windowEnd = Math.min(end, r + perWindow);
+                try {
+                    view.buf = channel.map(FileChannel.MapMode.READ_ONLY,
+                            BinScanner.HEADER_SIZE + r * recordLength,
+                            (windowEnd - r) * recordLength);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            view.at = (int) (r - windowFirst) * recordLength;
+            view.pointer = BinScanner.HEADER_SIZE + r * recordLength;
+            return view.buf.getInt(view.at) >= 0;
+        }
+
+        /* Deleted records make this an estimate, so the size is not exact */
+        public long estimateSize() {
+            return end - next;
+        }
+
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    } // class RecordSpliterator
+
+    /*---------------------------------------------------------------------
+    |  Method views(String binFileName, boolean parallel)
+    |
+    |  Purpose:  Opens the .bin file and makes a stream of a View on each
+    |            live record, in file order. The fields are read through
+    |            the file's schema.
+    |
+    |  Pre-condition:  The file was made by Prog1A
+    |
+    |  Post-condition: Closing the stream closes the file
+    |
+    |  Parameters:
+    |  binFileName -- Name of the .bin file
+    |     parallel -- Make a parallel stream
+    |
+    |  Returns: The stream
+    *-------------------------------------------------------------------*/
+    public static Stream<View> views(String binFileName, boolean parallel)
+            throws IOException {
+        RecordCodec codec = new RecordCodec(RecordSchema.forBin(binFileName));
+        FileChannel channel = FileChannel.open(Paths.get(binFileName),
+                StandardOpenOption.READ);
+        long numRecords;
+        try {
+            ByteBuffer count = ByteBuffer.allocate(4);
+            while (count.hasRemaining()) {
+                if (channel.read(count, count.position()) < 0) {
+                    throw new EOFException(binFileName + " has no header");
+                }
+            }
+            numRecords = count.getInt(0);
+            long length = codec.getSchema().getRecordLength();
+            if (channel.size() < BinScanner.HEADER_SIZE + numRecords * length) {
+                throw new EOFException(binFileName + " is shorter than its"
+                        + " record count");
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return StreamSupport.stream(new RecordSpliterator(channel, codec, 0,
+                numRecords), parallel).onClose(() -> {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    } // views()
+
+    /* The same as views(), with a SolarEntries made for each record */
+    public static Stream<SolarEntries> entries(String binFileName,
+            boolean parallel) throws IOException {
+        return views(binFileName, parallel).map(View::toEntries);
+    } // entries()
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Sums the Solar Cap AC of a .bin file with a sequential
+    |            and then a parallel stream of views and prints the totals
+    |            and times
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |         args -- args[0] is the .bin file
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        if (args.length < 1) {
+            System.out.println("Usage: java BinRecords <bin file>");
+            System.exit(-1);
+        }
+        try {
+            RecordCodec.Accessor capAC = new RecordCodec(
+                    RecordSchema.forBin(args[0])).accessor(
+                    RecordSchema.CAPACITY_AC, RecordSchema.Type.DOUBLE);
+            for (boolean parallel : new boolean[] {false, true}) {
+                long start = System.nanoTime();
+                DoubleSummaryStatistics stats;
+                try (Stream<View> s = views(args[0], parallel)) {
+                    stats = s.mapToDouble(v -> v.getDouble(capAC))
+                            .summaryStatistics();
+                }
+                long millis = (System.nanoTime() - start) / 1000000;
+                System.out.printf("%s: %d records, total Solar Cap AC %.1f MW,"
+                        + " %d ms%n", parallel ? "parallel" : "sequential",
+                        stats.getCount(), stats.getSum(), millis);
+            }
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        }
+    } // main()
+} // class BinRecords
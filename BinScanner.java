@@ -0,0 +1,279 @@
+/*
+ * BinScanner.java -- Reads the EIA IDs of the records in a .bin file from
+ * start to end. Instead of a seek and a readInt for every record, the file
+ * is read in large blocks of whole records through a FileChannel and the
+ * EIA ID of record i in a block is picked out at i * recordLength (each
+ * record starts with its EIA ID). The blocks can be read on a separate
+ * thread so reading the next block overlaps with whatever is done with
+ * the current one.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.ArrayBlockingQueue;
+
+public class BinScanner {
+    /*+----------------------------------------------------------------------
+    ||  Class BinScanner
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Hands out the EIA ID and pointer of every record in a
+    ||                  .bin file, in file order, a block at a time.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: HEADER_SIZE: bytes before the first record
+    ||                  BLOCK_SIZE: about how many bytes are read at once
+    ||                  PREFETCH: blocks the reading thread can get ahead
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: BinScanner(String fileName)
+    ||
+    ||   Class Methods: long modifiedTime(String fileName)
+    ||
+    ||   Inst. Methods: int getNumRecords()
+    ||                  int getProjectNameLen()
+    ||                  int getSolarCODLen()
+    ||                  int getStateLen()
+    ||                  int getRecordLength()
+    ||                  RecordSchema getSchema()
+    ||                  int getBatchSize()
+    ||                  void start(int firstRecord, boolean background)
+    ||                  int next(int[] ids, int[] pointers)
+    ||                  void close()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int HEADER_SIZE = 4 * 4;
+    public static final int BLOCK_SIZE = 1 << 20;
+    public static final int PREFETCH = 4;
+
+    private FileChannel channel;    // The open .bin file
+    private int numRecords;         // Records in the file
+    private int projectNameLen;     // Padded length of the string fields
+    private int solarCODLen;
+    private int stateLen;
+    private int recordLength;       // Bytes in one record
+    private RecordSchema schema;    // Layout of the records
+    private int batchSize;          // Records read per block
+
+    private ByteBuffer block;       // Block read when not in background
+    private int nextRecord;         // Next record to read
+    private Thread reader;          // Background reader, null if none
+    private boolean done;           // The reader has sent the last block
+    private ArrayBlockingQueue<int[]> full;  // Blocks waiting to be used
+    private ArrayBlockingQueue<int[]> free;  // Used arrays to refill
+    private volatile IOException readError;  // Error in the reader thread
+
+    /* Getter methods */
+    public int getNumRecords() { return numRecords; }
+    public int getProjectNameLen() { return projectNameLen; }
+    public int getSolarCODLen() { return solarCODLen; }
+    public int getStateLen() { return stateLen; }
+    public int getRecordLength() { return recordLength; }
+    public RecordSchema getSchema() { return schema; }
+    public int getBatchSize() { return batchSize; }
+
+    /*---------------------------------------------------------------------
+    |  Constructor BinScanner(String fileName)
+    |
+    |  Purpose:  Opens the .bin file and reads the number of records and
+    |            the string lengths from the top of it, and the record
+    |            layout from its schema.
+    |
+    |  Pre-condition:  The file was made by Prog1A
+    |
+    |  Post-condition: The file is open, call start() to begin reading
+    |
+    |  Parameters:
+    |     fileName -- Name of the .bin file
+    *-------------------------------------------------------------------*/
+    public BinScanner(String fileName) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        numRecords = header.getInt(0);
+        projectNameLen = header.getInt(4);
+        solarCODLen = header.getInt(8);
+        stateLen = header.getInt(12);
+        schema = RecordSchema.forBin(fileName);
+        recordLength = schema.getRecordLength();
+        batchSize = Math.max(1, BLOCK_SIZE / recordLength);
+    } // BinScanner()
+
+    /* The modified time of a .bin file in milliseconds. Indexes built
+       from the file keep it to notice a later append or update */
+    public static long modifiedTime(String fileName) throws IOException {
+        return Files.getLastModifiedTime(Paths.get(fileName)).toMillis();
+    } // modifiedTime()
+
+    /*---------------------------------------------------------------------
+    |  Method start(int firstRecord, boolean background)
+    |
+    |  Purpose:  Sets where reading starts and, if background is true,
+    |            starts a thread that reads blocks ahead of next().
+    |
+    |  Pre-condition:  start() has not been called before
+    |
+    |  Post-condition: next() returns records from firstRecord on
+    |
+    |  Parameters:
+    |  firstRecord -- First record to return
+    |   background -- Read blocks on a separate thread
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void start(int firstRecord, boolean background) {
+        nextRecord = firstRecord;
+        if (!background) {
+            block = ByteBuffer.allocateDirect(batchSize * recordLength);
+            return;
+        }
+        full = new ArrayBlockingQueue<>(PREFETCH);
+        free = new ArrayBlockingQueue<>(PREFETCH + 1);
+        for (int i = 0; i < PREFETCH + 1; i++) {
+            free.add(new int[batchSize + 2]);
+        }
+        reader = new Thread(this::readAhead, "bin-scanner");
+        reader.setDaemon(true);
+        reader.start();
+    } // start()
+
+    /*---------------------------------------------------------------------
+    |  Method next(int[] ids, int[] pointers)
+    |
+    |  Purpose:  Fills ids and pointers with the next block of records.
+    |            pointers[i] is where record ids[i] starts in the file.
+    |
+    |  Pre-condition:  start() was called, both arrays have room for
+    |                  getBatchSize() values
+    |
+    |  Post-condition: The records returned will not be returned again
+    |
+    |  Parameters:
+    |          ids -- Filled with the EIA IDs
+    |     pointers -- Filled with the record locations
+    |
+    |  Returns: How many records were filled in, 0 at the end of the file
+    *-------------------------------------------------------------------*/
+    public int next(int[] ids, int[] pointers) throws IOException {
+        if (reader == null) {
+            int first = nextRecord;
+            int count = readBlock(ids, 0);
+            fillPointers(pointers, first, count);
+            return count;
+        }
+        if (done) {
+            return 0;
+        }
+
+        int[] batch;
+        try {
+            batch = full.take();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted reading .bin file");
+        }
+        if (readError != null) {
+            throw readError;
+        }
+        // a batch is its first record number, its count, then the ids
+        int first = batch[0];
+        int count = batch[1];
+        System.arraycopy(batch, 2, ids, 0, count);
+        fillPointers(pointers, first, count);
+        free.add(batch);
+        done = count == 0;
+        return count;
+    } // next()
+
+    /*---------------------------------------------------------------------
+    |  Method readBlock(int[] ids, int off)
+    |
+    |  Purpose:  Reads the next block of whole records with as few reads
+    |            as possible and takes the EIA ID from the start of each.
+    |
+    |  Pre-condition:  ids has room for batchSize values after off
+    |
+    |  Post-condition: nextRecord is moved past the block
+    |
+    |  Parameters:
+    |          ids -- Filled with the EIA IDs
+    |          off -- Where in ids to put the first one
+    |
+    |  Returns: How many records were read, 0 at the end of the file
+    *-------------------------------------------------------------------*/
+    private int readBlock(int[] ids, int off) throws IOException {
+        int count = Math.min(batchSize, numRecords - nextRecord);
+        if (count <= 0) {
+            return 0;
+        }
+        block.clear();
+        block.limit(count * recordLength);
+        readFully(block, HEADER_SIZE + (long) nextRecord * recordLength);
+        for (int i = 0; i < count; i++) {
+            ids[off + i] = block.getInt(i * recordLength);
+        }
+        nextRecord += count;
+        return count;
+    } // readBlock()
+
+    /* Body of the background reader thread */
+    private void readAhead() {
+        block = ByteBuffer.allocateDirect(batchSize * recordLength);
+        try {
+            int count;
+            do {
+                int[] batch = free.take();
+                batch[0] = nextRecord;
+                count = readBlock(batch, 2);
+                batch[1] = count;
+                full.put(batch);
+            } while (count > 0);
+        } catch (IOException e) {
+            readError = e;
+            full.offer(new int[2]);
+        } catch (InterruptedException e) {
+            // close() stops the reader
+        }
+    } // readAhead()
+
+    /* Pointer of each record: the header plus its place times the length */
+    private void fillPointers(int[] pointers, int first, int count) {
+        for (int i = 0; i < count; i++) {
+            pointers[i] = HEADER_SIZE + (first + i) * recordLength;
+        }
+    } // fillPointers()
+
+    /* Reads until buf is full */
+    private void readFully(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, pos);
+            if (n < 0) {
+                throw new EOFException("The .bin file is shorter than its"
+                        + " record count");
+            }
+            pos += n;
+        }
+    } // readFully()
+
+    /* Stops the reader thread if there is one and closes the file */
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.interrupt();
+        }
+        channel.close();
+    } // close()
+} // class BinScanner
@@ -0,0 +1,247 @@
+/*
+ * BlockCompressor.java -- A small LZ4-style block compressor written in
+ * plain Java. A block is turned into a run of sequences where every
+ * sequence is some literal bytes followed by a copy of bytes seen earlier
+ * in the same block (a match). The layout of a sequence is the same one
+ * LZ4 uses:
+ *
+ *  token (1 byte)   -> high 4 bits literal length, low 4 bits match length
+ *  extra lengths    -> 255 bytes added up while the nibble is 15
+ *  literals         -> the literal bytes
+ *  offset (2 bytes) -> little endian distance back to the match
+ *  extra lengths    -> same as above for the match length
+ *
+ * The last sequence only has literals. Blocks are compressed on their own
+ * so any block can be decompressed without reading the ones before it.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class BlockCompressor {
+    /*+----------------------------------------------------------------------
+    ||  Class BlockCompressor
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Compress and decompress single blocks of bytes using
+    ||                  a greedy LZ77 match finder and the LZ4 sequence
+    ||                  format. Nothing is kept between calls.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: MIN_MATCH: shortest match worth encoding
+    ||                  HASH_BITS: size of the match finder hash table
+    ||                  MAX_OFFSET: furthest a match can reach back
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None.
+    ||
+    ||   Class Methods: byte[] compress(byte[] src, int len)
+    ||                  byte[] decompress(byte[] src, int srcLen, int rawLen)
+    ||
+    ||   Inst. Methods: None.
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static final int MIN_MATCH = 4;
+    private static final int HASH_BITS = 12;
+    private static final int MAX_OFFSET = 65535;
+
+    private BlockCompressor() { }
+
+    /*---------------------------------------------------------------------
+    |  Method compress(byte[] src, int len)
+    |
+    |  Purpose:  Compresses the first len bytes of src. A hash table of the
+    |            last position each 4 byte sequence was seen at is used to
+    |            find matches, the first match found is taken.
+    |
+    |  Pre-condition:  len <= src.length
+    |
+    |  Post-condition: src is not changed
+    |
+    |  Parameters:
+    |          src -- The bytes to compress
+    |          len -- How many bytes of src to use
+    |
+    |  Returns: The compressed bytes, trimmed to size
+    *-------------------------------------------------------------------*/
+    public static byte[] compress(byte[] src, int len) {
+        // worst case is every byte being a literal plus the length bytes
+        byte[] dst = new byte[len + (len / 255) + 16];
+        int[] table = new int[1 << HASH_BITS];
+        Arrays.fill(table, -1);
+
+        int out = 0;
+        int anchor = 0; // start of the literals not yet written
+        int i = 0;
+        while (i + MIN_MATCH <= len) {
+            int h = hash(src, i);
+            int ref = table[h];
+            table[h] = i;
+            if (ref >= 0 && i - ref <= MAX_OFFSET && sameFour(src, ref, i)) {
+                int matchLen = MIN_MATCH;
+                while (i + matchLen < len
+                        && src[ref + matchLen] == src[i + matchLen]) {
+                    matchLen++;
+                }
+                out = writeSequence(dst, out, src, anchor, i - anchor,
+                        i - ref, matchLen);
+                i += matchLen;
+                anchor = i;
+            } else {
+                i++;
+            }
+        }
+        // last sequence is only literals
+        out = writeSequence(dst, out, src, anchor, len - anchor, 0, 0);
+        return Arrays.copyOf(dst, out);
+    } // compress()
+
+    /*---------------------------------------------------------------------
+    |  Method decompress(byte[] src, int srcLen, int rawLen)
+    |
+    |  Purpose:  Reverses compress(). Reads sequences until srcLen bytes
+    |            have been used and copies literals and matches into the
+    |            output.
+    |
+    |  Pre-condition:  src holds a block made by compress() and rawLen is
+    |                  the size the block had before compressing
+    |
+    |  Post-condition: src is not changed
+    |
+    |  Parameters:
+    |          src -- The compressed bytes
+    |       srcLen -- How many bytes of src belong to the block
+    |       rawLen -- The size of the block once decompressed
+    |
+    |  Returns: The decompressed bytes
+    *-------------------------------------------------------------------*/
+    public static byte[] decompress(byte[] src, int srcLen, int rawLen)
+            throws IOException {
+        byte[] dst = new byte[rawLen];
+        int in = 0;
+        int out = 0;
+        try {
+            while (in < srcLen) {
+                int token = src[in++] & 0xFF;
+
+                int litLen = token >>> 4;
+                if (litLen == 15) {
+                    int b;
+                    do {
+                        b = src[in++] & 0xFF;
+                        litLen += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, in, dst, out, litLen);
+                in += litLen;
+                out += litLen;
+                if (in >= srcLen) { // last sequence has no match
+                    break;
+                }
+
+                int offset = (src[in] & 0xFF) | ((src[in + 1] & 0xFF) << 8);
+                in += 2;
+                int matchLen = (token & 0x0F);
+                if (matchLen == 15) {
+                    int b;
+                    do {
+                        b = src[in++] & 0xFF;
+                        matchLen += b;
+                    } while (b == 255);
+                }
+                matchLen += MIN_MATCH;
+                // byte by byte since the match may overlap the output
+                int from = out - offset;
+                for (int j = 0; j < matchLen; j++) {
+                    dst[out++] = dst[from + j];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt compressed block");
+        }
+        if (out != rawLen) {
+            throw new IOException("Corrupt compressed block");
+        }
+        return dst;
+    } // decompress()
+
+    /*---------------------------------------------------------------------
+    |  Method writeSequence(...)
+    |
+    |  Purpose:  Writes one token, the literals and (if matchLen is not 0)
+    |            the offset and match length to dst.
+    |
+    |  Pre-condition:  dst is large enough
+    |
+    |  Post-condition: The sequence is in dst
+    |
+    |  Parameters:
+    |          dst -- Output buffer
+    |          out -- Where to start writing in dst
+    |          src -- Input buffer holding the literals
+    |       litPos -- Start of the literals in src
+    |       litLen -- Number of literals
+    |       offset -- Distance back to the match
+    |     matchLen -- Length of the match, 0 for the last sequence
+    |
+    |  Returns: The new write position in dst
+    *-------------------------------------------------------------------*/
+    private static int writeSequence(byte[] dst, int out, byte[] src,
+            int litPos, int litLen, int offset, int matchLen) {
+        int tokenPos = out++;
+        int token = Math.min(litLen, 15) << 4;
+        if (litLen >= 15) {
+            out = writeLength(dst, out, litLen - 15);
+        }
+        System.arraycopy(src, litPos, dst, out, litLen);
+        out += litLen;
+
+        if (matchLen > 0) {
+            dst[out++] = (byte) offset;
+            dst[out++] = (byte) (offset >>> 8);
+            int m = matchLen - MIN_MATCH;
+            token |= Math.min(m, 15);
+            if (m >= 15) {
+                out = writeLength(dst, out, m - 15);
+            }
+        }
+        dst[tokenPos] = (byte) token;
+        return out;
+    } // writeSequence()
+
+    /* Writes the extra length bytes (runs of 255 then the remainder) */
+    private static int writeLength(byte[] dst, int out, int len) {
+        while (len >= 255) {
+            dst[out++] = (byte) 255;
+            len -= 255;
+        }
+        dst[out++] = (byte) len;
+        return out;
+    } // writeLength()
+
+    /* Hashes the 4 bytes starting at pos into the match table */
+    private static int hash(byte[] b, int pos) {
+        int v = (b[pos] & 0xFF) | ((b[pos + 1] & 0xFF) << 8)
+                | ((b[pos + 2] & 0xFF) << 16) | ((b[pos + 3] & 0xFF) << 24);
+        return (v * -1640531535) >>> (32 - HASH_BITS);
+    } // hash()
+
+    /* True if the 4 bytes at a and b are the same */
+    private static boolean sameFour(byte[] s, int a, int b) {
+        return s[a] == s[b] && s[a + 1] == s[b + 1]
+                && s[a + 2] == s[b + 2] && s[a + 3] == s[b + 3];
+    } // sameFour()
+} // class BlockCompressor
@@ -0,0 +1,321 @@
+/*
+ * BucketPageCache.java -- A fixed number of bucket pages of an index file
+ * kept in memory. When a bucket that is not in the cache is needed, a page
+ * is picked to be reused with the CLOCK algorithm: a hand goes around the
+ * pages, a page that was used since the hand last passed it gets a second
+ * chance, and the first page that was not is reused. Pages that are pinned
+ * (in use by a lookup or an insert) are never reused.
+ *
+ * The lock is only held to pick and reserve a page. The bucket is read
+ * into the reserved page after the lock is let go, so lookups of other
+ * buckets do not wait for the disk; a thread that wants a bucket that is
+ * still being read waits for that read instead of reading it again. When
+ * every page is pinned, pin() waits for one to be unpinned.
+ *
+ * Writes go to the index file first and then to the cached page, so the
+ * cache never holds a change the file does not have and pages can be
+ * dropped at any time.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+
+public class BucketPageCache {
+    /*+----------------------------------------------------------------------
+    ||  Class BucketPageCache
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Keeps the most used buckets of an index in memory so
+    ||                  lookups do not go to the file, with a fixed cap on
+    ||                  the memory used. Safe to use from many threads.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: BucketPageCache(int pages, int pageSize,
+    ||                                  PageLoader loader)
+    ||
+    ||   Class Methods: None
+    ||
+    ||   Inst. Methods: ByteBuffer pin(int bucket)
+    ||                  void unpin(int bucket)
+    ||                  void writeThrough(int bucket, int offset, int key,
+    ||                                    int pointer)
+    ||                  void clear()
+    ||                  long getHits()
+    ||                  long getMisses()
+    ||                  long getEvictions()
+    ||                  int getCapacity()
+    ||                  String getStats()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    /* Reads a bucket from the index file into a page */
+    public interface PageLoader {
+        void load(int bucket, ByteBuffer page) throws IOException;
+    }
+
+    private PageLoader loader;      // Where missing pages come from
+    private int pageSize;           // Bytes in a page
+    private ByteBuffer memory;      // All the pages, one after another
+    private int[] pageBucket;       // Bucket held in each page, -1 if none
+    private int[] pinCount;         // Pins held on each page
+    private boolean[] loading;      // Page is still being read in
+    private boolean[] referenced;   // Used since the hand last passed
+    private OffHeapLinearHashMap pageOf; // Bucket to page
+    private int hand;               // CLOCK hand
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /* Getter methods */
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public int getCapacity() { return pageBucket.length; }
+
+    /*---------------------------------------------------------------------
+    |  Constructor BucketPageCache(int pages, int pageSize,
+    |                              PageLoader loader)
+    |
+    |  Purpose:  Sets aside room for 'pages' pages, all empty.
+    |
+    |  Pre-condition:  pages > 0
+    |
+    |  Post-condition: The cache is empty
+    |
+    |  Parameters:
+    |        pages -- Most pages held at once
+    |     pageSize -- Bytes in a page (the bucket size)
+    |       loader -- Reads a bucket when it is not in the cache
+    *-------------------------------------------------------------------*/
+    public BucketPageCache(int pages, int pageSize, PageLoader loader) {
+        this.loader = loader;
+        this.pageSize = pageSize;
+        memory = ByteBuffer.allocateDirect(pages * pageSize);
+        pageBucket = new int[pages];
+        pinCount = new int[pages];
+        loading = new boolean[pages];
+        referenced = new boolean[pages];
+        clear();
+    } // BucketPageCache()
+
+    /*---------------------------------------------------------------------
+    |  Method pin(int bucket)
+    |
+    |  Purpose:  Returns the page holding the bucket, reading it in first
+    |            if it is not in the cache. The page can not be reused
+    |            until unpin() is called for the bucket. The read is done
+    |            without holding the lock; waits while another thread is
+    |            reading the same bucket, or while every page is pinned.
+    |
+    |  Pre-condition:  The thread holds no other pin, so a thread that
+    |                  waits for a page never holds one itself
+    |
+    |  Post-condition: The bucket's page is pinned once more and loaded
+    |
+    |  Parameters:
+    |       bucket -- The bucket number
+    |
+    |  Returns: A view of the page, positioned at its first byte
+    *-------------------------------------------------------------------*/
+    public ByteBuffer pin(int bucket) throws IOException {
+        int page;
+        synchronized (this) {
+            while (true) {
+                page = pageOf.get(bucket);
+                if (page != -1) {
+                    pinCount[page]++;
+                    referenced[page] = true;
+                    try {
+                        while (loading[page]) {
+                            await();
+                        }
+                    } catch (IOException e) {
+                        release(page);
+                        throw e;
+                    }
+                    if (pageBucket[page] == bucket) {
+                        hits++;
+                        return view(page);
+                    }
+                    // the read failed and the page was given up, try again
+                    release(page);
+                    continue;
+                }
+                page = victim();
+                if (page == -1) {
+                    await();
+                    continue;
+                }
+                misses++;
+                if (pageBucket[page] != -1) {
+                    pageOf.remove(pageBucket[page]);
+                    evictions++;
+                }
+                // reserved: no other thread reuses or reads this page now
+                pageBucket[page] = bucket;
+                pageOf.put(bucket, page);
+                pinCount[page] = 1;
+                referenced[page] = true;
+                loading[page] = true;
+                break;
+            }
+        }
+        boolean loaded = false;
+        try {
+            loader.load(bucket, view(page));
+            loaded = true;
+        } finally {
+            synchronized (this) {
+                loading[page] = false;
+                if (!loaded) {
+                    pageOf.remove(bucket);
+                    pageBucket[page] = -1;
+                    pinCount[page]--;
+                }
+                notifyAll();
+            }
+        }
+        return view(page);
+    } // pin()
+
+    /* Lets the bucket's page be reused again once every pin is released */
+    public synchronized void unpin(int bucket) {
+        int page = pageOf.get(bucket);
+        if (page != -1 && pinCount[page] > 0) {
+            release(page);
+        }
+    } // unpin()
+
+    /* Drops one pin of a page, waking a pin() that waits for a free page */
+    private void release(int page) {
+        pinCount[page]--;
+        if (pinCount[page] == 0) {
+            notifyAll();
+        }
+    } // release()
+
+    /*---------------------------------------------------------------------
+    |  Method writeThrough(int bucket, int offset, int key, int pointer)
+    |
+    |  Purpose:  Copies a slot that was just written to the index file into
+    |            the cached page, if the bucket is cached. If the page is
+    |            still being read it waits for the read, which may have
+    |            started before the slot was written.
+    |
+    |  Pre-condition:  The slot has already been written to the file
+    |
+    |  Post-condition: The cached page matches the file
+    |
+    |  Parameters:
+    |       bucket -- The bucket number
+    |       offset -- Byte offset of the slot in the bucket
+    |          key -- The key written
+    |      pointer -- The pointer written
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public synchronized void writeThrough(int bucket, int offset, int key,
+            int pointer) throws IOException {
+        int page = pageOf.get(bucket);
+        while (page != -1 && loading[page]) {
+            await();
+            page = pageOf.get(bucket);
+        }
+        if (page != -1) {
+            memory.putInt(page * pageSize + offset + 4, pointer);
+            memory.putInt(page * pageSize + offset, key);
+        }
+    } // writeThrough()
+
+    /* Empties the cache, needed when the buckets are renumbered */
+    public synchronized void clear() {
+        for (int i = 0; i < pageBucket.length; i++) {
+            if (pinCount[i] > 0) {
+                throw new IllegalStateException("Clearing a pinned page");
+            }
+            pageBucket[i] = -1;
+            referenced[i] = false;
+        }
+        pageOf = new OffHeapLinearHashMap();
+        hand = 0;
+    } // clear()
+
+    /* Hits, misses and evictions as one line */
+    public synchronized String getStats() {
+        long total = hits + misses;
+        return "Page cache: " + hits + " hits, " + misses + " misses, "
+                + evictions + " evictions, hit rate "
+                + (total == 0 ? 0 : (100 * hits / total)) + "%";
+    } // getStats()
+
+    /*---------------------------------------------------------------------
+    |  Method victim()
+    |
+    |  Purpose:  Moves the CLOCK hand until it finds a page that is not
+    |            pinned and either empty or not referenced, clearing the
+    |            referenced flag of the pages it passes.
+    |
+    |  Pre-condition:  Called holding the lock
+    |
+    |  Post-condition: The hand is past the chosen page
+    |
+    |  Parameters: None
+    |
+    |  Returns: The page to reuse, -1 if every page is pinned
+    *-------------------------------------------------------------------*/
+    private int victim() {
+        // two full turns clear every flag, a third means all are pinned
+        for (int step = 0; step < 3 * pageBucket.length; step++) {
+            int page = hand;
+            hand = (hand + 1) % pageBucket.length;
+            if (pinCount[page] > 0) {
+                continue;    // also a page given up by a failed read
+            }
+            if (pageBucket[page] == -1) {
+                return page;
+            }
+            if (referenced[page]) {
+                referenced[page] = false;
+            } else {
+                return page;
+            }
+        }
+        return -1;
+    } // victim()
+
+    /* Waits, holding the lock, until a page is loaded or unpinned */
+    private void await() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a"
+                    + " page of the bucket cache");
+        }
+    } // await()
+
+    /* A view of one page */
+    private ByteBuffer view(int page) {
+        ByteBuffer v = memory.duplicate();
+        v.position(page * pageSize);
+        v.limit(page * pageSize + pageSize);
+        return v.slice();
+    } // view()
+} // class BucketPageCache
@@ -0,0 +1,232 @@
+/*
+ * BucketPageCacheTest.java -- Checks the bucket cache from many threads:
+ * buckets that are not cached are read at the same time rather than one
+ * after another, a bucket wanted by several threads at once is read only
+ * once, a pin() with every page pinned waits for an unpin() instead of
+ * failing, a failed read leaves the page free, and a slot written while
+ * its bucket is being read is not lost. Exits with 1 if anything is wrong.
+ *
+ * Usage: java BucketPageCacheTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BucketPageCacheTest {
+    /*+----------------------------------------------------------------------
+    ||  Class BucketPageCacheTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Pins buckets of a cache whose loader is slow, from
+    ||                  several threads at once.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: PAGE_SIZE: bytes in a page
+    ||                  READ_MILLIS: how long the loader takes
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static final int PAGE_SIZE = 64;
+    private static final int READ_MILLIS = 100;
+
+    private static int failures;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Runs each check on a new cache
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            readsAtOnce(pool);
+            oneReadPerBucket(pool);
+            waitsForAFreePage(pool);
+            failedRead();
+            writeWhileReading(pool);
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.println(failures == 0 ? "OK: bucket cache reads outside"
+                + " its lock" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* Eight threads pin eight different buckets: the reads overlap */
+    private static void readsAtOnce(ExecutorService pool) throws Exception {
+        AtomicInteger reading = new AtomicInteger();
+        AtomicInteger mostAtOnce = new AtomicInteger();
+        BucketPageCache cache = new BucketPageCache(8, PAGE_SIZE,
+                (b, page) -> {
+            mostAtOnce.accumulateAndGet(reading.incrementAndGet(), Math::max);
+            fill(b, page);
+            reading.decrementAndGet();
+        });
+        List<Future<Integer>> firstKeys = new ArrayList<>();
+        for (int b = 0; b < 8; b++) {
+            int bucket = b;
+            firstKeys.add(pool.submit(() -> pinAndRead(cache, bucket)));
+        }
+        for (int b = 0; b < 8; b++) {
+            expect(firstKeys.get(b).get() == b, "bucket " + b + " is read"
+                    + " into its page");
+        }
+        expect(mostAtOnce.get() > 1, "reads of different buckets overlap"
+                + " (at most " + mostAtOnce.get() + " at once)");
+        expect(cache.getMisses() == 8 && cache.getHits() == 0, "every"
+                + " bucket is a miss");
+    } // readsAtOnce()
+
+    /* Six threads pin the same bucket: it is read once, the rest wait */
+    private static void oneReadPerBucket(ExecutorService pool)
+            throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        BucketPageCache cache = new BucketPageCache(4, PAGE_SIZE,
+                (b, page) -> {
+            reads.incrementAndGet();
+            fill(b, page);
+        });
+        List<Future<Integer>> firstKeys = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            firstKeys.add(pool.submit(() -> pinAndRead(cache, 5)));
+        }
+        for (Future<Integer> f : firstKeys) {
+            expect(f.get() == 5, "every thread sees bucket 5 loaded");
+        }
+        expect(reads.get() == 1, "bucket 5 is read once (read "
+                + reads.get() + " times)");
+        expect(cache.getMisses() == 1 && cache.getHits() == 5, "one miss"
+                + " and five hits");
+    } // oneReadPerBucket()
+
+    /* One page and two threads on different buckets: the second waits */
+    private static void waitsForAFreePage(ExecutorService pool)
+            throws Exception {
+        BucketPageCache cache = new BucketPageCache(1, PAGE_SIZE,
+                BucketPageCacheTest::fill);
+        List<Future<Integer>> firstKeys = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int bucket = i % 2;
+            firstKeys.add(pool.submit(() -> pinAndRead(cache, bucket)));
+        }
+        for (int i = 0; i < 6; i++) {
+            try {
+                expect(firstKeys.get(i).get(10, TimeUnit.SECONDS) == i % 2,
+                        "bucket " + (i % 2) + " is read into the one page");
+            } catch (ExecutionException e) {
+                expect(false, "pin() waits when every page is pinned ("
+                        + e.getCause() + ")");
+            }
+        }
+    } // waitsForAFreePage()
+
+    /* A read that fails gives its page back and can be tried again */
+    private static void failedRead() throws IOException {
+        AtomicInteger tries = new AtomicInteger();
+        BucketPageCache cache = new BucketPageCache(1, PAGE_SIZE,
+                (b, page) -> {
+            if (b == 9 && tries.incrementAndGet() == 1) {
+                throw new IOException("disk error");
+            }
+            fill(b, page);
+        });
+        try {
+            cache.pin(9);
+            expect(false, "pin() passes on the loader's exception");
+        } catch (IOException e) {
+            expect(e.getMessage().equals("disk error"), "pin() throws the"
+                    + " loader's exception");
+        }
+        ByteBuffer page = cache.pin(3);
+        expect(page.getInt(0) == 3, "the page of the failed read is reused");
+        cache.unpin(3);
+        page = cache.pin(9);
+        expect(page.getInt(0) == 9, "bucket 9 is read on the second try");
+        cache.unpin(9);
+        cache.clear();     // throws if a pin was left behind
+    } // failedRead()
+
+    /* A slot written to the file while the bucket is still being read from
+       it ends up in the page, whichever copy the read saw */
+    private static void writeWhileReading(ExecutorService pool)
+            throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        BucketPageCache cache = new BucketPageCache(2, PAGE_SIZE,
+                (b, page) -> {
+            reading.countDown();
+            fill(b, page);    // the copy from before the write
+        });
+        Future<Integer> firstKey = pool.submit(() -> pinAndRead(cache, 3));
+        reading.await();
+        cache.writeThrough(3, 0, 77, 88);
+        expect(firstKey.get() == 77, "the slot written during the read is"
+                + " in the page");
+        ByteBuffer page = cache.pin(3);
+        expect(page.getInt(0) == 77 && page.getInt(4) == 88, "the page"
+                + " keeps the written slot");
+        cache.unpin(3);
+    } // writeWhileReading()
+
+    /* Pins the bucket, holds it a while and returns its first key */
+    private static int pinAndRead(BucketPageCache cache, int bucket)
+            throws Exception {
+        ByteBuffer page = cache.pin(bucket);
+        try {
+            Thread.sleep(READ_MILLIS / 4);
+            return page.getInt(0);
+        } finally {
+            cache.unpin(bucket);
+        }
+    } // pinAndRead()
+
+    /* A slow read that fills every int of the page with the bucket number */
+    private static void fill(int bucket, ByteBuffer page) throws IOException {
+        try {
+            Thread.sleep(READ_MILLIS);
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted");
+        }
+        for (int i = 0; i < PAGE_SIZE; i += 4) {
+            page.putInt(i, bucket);
+        }
+    } // fill()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class BucketPageCacheTest
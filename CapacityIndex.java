@@ -0,0 +1,612 @@
+/*
+ * CapacityIndex.java -- Answers "the N largest plants by Solar Capacity"
+ * without reading every record. The index holds every live record twice,
+ * once sorted by its AC capacity and once by its DC capacity, largest
+ * first, as (capacity, pointer, state) entries. The top N is then the
+ * first N entries of one section, and the top N of one state is the first
+ * N entries with that state, so both come straight from the index; only
+ * the records printed are read from the .bin file.
+ *
+ * Questions the index can not answer (any other filter) use topByScan(),
+ * a parallel scan of the .bin file that keeps the N largest records seen
+ * in a bounded heap.
+ *
+ * "Prog21 <file>.bin -capacity" writes the index as lhl.cap next to
+ * lhl.idx. The index keeps the record count and the modified time the
+ * .bin file had when it was built, and open() refuses it once either has
+ * changed (after Prog1A -append or UpdateRecords), so build it again.
+ *
+ * Usage: java CapacityIndex build <bin file> [index file]
+ *        java CapacityIndex top <index file> <bin file> <n> [ac|dc] [state]
+ *        java CapacityIndex scan <bin file> <n> [ac|dc] [state]
+ *
+ * Index file layout:
+ *   AC section: entries * (double capacity, int pointer, state bytes)
+ *   DC section: the same, sorted by DC capacity
+ *   int fields[T_FIELDS], int T_FIELDS, int MAGIC
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+public class CapacityIndex {
+    /*+----------------------------------------------------------------------
+    ||  Class CapacityIndex
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Writes and reads the sorted capacity index and finds
+    ||                  the largest plants with it or with a scan.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: MAGIC: last int of the file ("LHT1")
+    ||                  READ_ENTRIES: entries read at once while streaming
+    ||                  T_ENTRIES, T_RECORDS, T_STATE_LEN, T_BIN_TIME_HI,
+    ||                  T_BIN_TIME_LO: header fields; T_FIELDS: their count
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None, use open()
+    ||
+    ||   Class Methods: void main(String args[])
+    ||                  void build(String binFileName, String fileName)
+    ||                  CapacityIndex open(String fileName,
+    ||                                     String binFileName)
+    ||                  int[] topByScan(String binFileName, Capacity which,
+    ||                                  int n, Predicate<BinRecords.View> filter)
+    ||
+    ||   Inst. Methods: int getNumEntries()
+    ||                  int getNumRecords()
+    ||                  int[] top(Capacity which, int n, String state)
+    ||                  void visit(Capacity which, String state,
+    ||                             EntryVisitor visitor)
+    ||                  void close()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int MAGIC = 0x4C485431; // "LHT1"
+    public static final int READ_ENTRIES = 4096;
+
+    public static final int T_ENTRIES = 0;
+    public static final int T_RECORDS = 1;
+    public static final int T_STATE_LEN = 2;
+    public static final int T_BIN_TIME_HI = 3;
+    public static final int T_BIN_TIME_LO = 4;
+    public static final int T_FIELDS = 5;
+
+    /* The capacity to sort by, with the schema field holding it */
+    public enum Capacity {
+        AC(RecordSchema.CAPACITY_AC), DC(RecordSchema.CAPACITY_DC);
+
+        private final String field;
+
+        Capacity(String field) {
+            this.field = field;
+        }
+
+        /* The schema field name */
+        public String getField() { return field; }
+    } // enum Capacity
+
+    /* Gets the entries of visit() largest first. Return false to stop */
+    public interface EntryVisitor {
+        boolean visit(double capacity, int pointer);
+    }
+
+    private FileChannel channel;    // The open index file
+    private int numEntries;         // Entries in each section
+    private int numRecords;         // Records in the .bin file when built
+    private int stateLen;           // Bytes of the state in an entry
+    private int entrySize;          // 8 + 4 + stateLen
+
+    /* Getter methods */
+    public int getNumEntries() { return numEntries; }
+    public int getNumRecords() { return numRecords; }
+
+    private CapacityIndex() {
+    }
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Runs the build, top or scan command
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |         args -- The command and its arguments
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        if (args.length < 2 || (args[0].equals("top") && args.length < 4)
+                || (args[0].equals("scan") && args.length < 3)) {
+            System.out.println("Usage: java CapacityIndex build <bin file>"
+                    + " [index file]");
+            System.out.println("       java CapacityIndex top <index file>"
+                    + " <bin file> <n> [ac|dc] [state]");
+            System.out.println("       java CapacityIndex scan <bin file> <n>"
+                    + " [ac|dc] [state]");
+            System.exit(-1);
+        }
+        try {
+            if (args[0].equals("build")) {
+                String fileName = args.length > 2 ? args[2] : "lhl.cap";
+                build(args[1], fileName);
+                System.out.println("Successfuly wrote " + fileName);
+                return;
+            }
+            boolean top = args[0].equals("top");
+            if (!top && !args[0].equals("scan")) {
+                System.out.println("Unknown command " + args[0]);
+                System.exit(-1);
+            }
+            String binFileName = top ? args[2] : args[1];
+            int rest = top ? 3 : 2;
+            int n = Integer.parseInt(args[rest]);
+            Capacity which = Capacity.AC;
+            String state = null;
+            for (int i = rest + 1; i < args.length; i++) {
+                if (args[i].equalsIgnoreCase("ac")) {
+                    which = Capacity.AC;
+                } else if (args[i].equalsIgnoreCase("dc")) {
+                    which = Capacity.DC;
+                } else {
+                    state = args[i];
+                }
+            }
+
+            long start = System.nanoTime();
+            int[] ptrs;
+            if (top) {
+                CapacityIndex index = open(args[1], binFileName);
+                try {
+                    ptrs = index.top(which, n, state);
+                } finally {
+                    index.close();
+                }
+            } else {
+                String s = state;
+                RecordCodec.Accessor stateField = new RecordCodec(
+                        RecordSchema.forBin(binFileName)).accessor(
+                        RecordSchema.STATE, RecordSchema.Type.STRING);
+                ptrs = topByScan(binFileName, which, n, s == null ? null
+                        : v -> v.getString(stateField).trim().equals(s));
+            }
+            long micros = (System.nanoTime() - start) / 1000;
+            printRecords(binFileName, ptrs, which);
+            System.out.println(ptrs.length + " plants in " + micros + " us");
+        } catch (NumberFormatException e) {
+            System.out.println("Please give n as an integer.");
+            System.exit(-1);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        }
+    } // main()
+
+    /* Prints the EIA ID, name, state and capacity of each record */
+    private static void printRecords(String binFileName, int[] ptrs,
+            Capacity which) throws IOException {
+        RecordCodec codec = new RecordCodec(RecordSchema.forBin(binFileName));
+        RecordCodec.Accessor name = codec.accessor(RecordSchema.NAME,
+                RecordSchema.Type.STRING);
+        RecordCodec.Accessor state = codec.accessor(RecordSchema.STATE,
+                RecordSchema.Type.STRING);
+        RecordCodec.Accessor cap = codec.accessor(which.getField(),
+                RecordSchema.Type.DOUBLE);
+        byte[] record = codec.newRecord();
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        try (FileChannel bin = FileChannel.open(Paths.get(binFileName),
+                StandardOpenOption.READ)) {
+            for (int ptr : ptrs) {
+                buf.clear();
+                while (buf.hasRemaining()) {
+                    if (bin.read(buf, (long) ptr + buf.position()) < 0) {
+                        throw new EOFException("Record at " + ptr
+                                + " is past the end of " + binFileName);
+                    }
+                }
+                System.out.println("[" + buf.getInt(0) + "] ["
+                        + name.getString(record) + "] ["
+                        + state.getString(record) + "] ["
+                        + cap.getDouble(record) + "]");
+            }
+        }
+    } // printRecords()
+
+    /*---------------------------------------------------------------------
+    |  Method build(String binFileName, String fileName)
+    |
+    |  Purpose:  Reads the capacities and state of every live record of a
+    |            .bin file, sorts them largest first (ties in file order)
+    |            and writes both sections to <fileName>.tmp, which is then
+    |            renamed over fileName
+    |
+    |  Pre-condition:  The .bin file was made by Prog1A
+    |
+    |  Post-condition: fileName holds the index
+    |
+    |  Parameters:
+    |  binFileName -- The .bin file
+    |     fileName -- The index file to write
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void build(String binFileName, String fileName)
+            throws IOException {
+        // taken before reading, so a change during the build shows
+        long binTime = BinScanner.modifiedTime(binFileName);
+        BinScanner scanner = new BinScanner(binFileName);
+        int numRecords = scanner.getNumRecords();
+        scanner.close();
+        RecordCodec codec = new RecordCodec(RecordSchema.forBin(binFileName));
+        RecordCodec.Accessor ac = codec.accessor(RecordSchema.CAPACITY_AC,
+                RecordSchema.Type.DOUBLE);
+        RecordCodec.Accessor dc = codec.accessor(RecordSchema.CAPACITY_DC,
+                RecordSchema.Type.DOUBLE);
+        RecordCodec.Accessor state = codec.accessor(RecordSchema.STATE,
+                RecordSchema.Type.STRING);
+        int stateLen = state.getWidth();
+
+        double[] acs = new double[numRecords];
+        double[] dcs = new double[numRecords];
+        int[] ptrs = new int[numRecords];
+        byte[] states = new byte[numRecords * stateLen];
+        int n = 0;
+        try (Stream<BinRecords.View> records = BinRecords.views(binFileName,
+                false)) {
+            for (BinRecords.View v : (Iterable<BinRecords.View>)
+                    records::iterator) {
+                acs[n] = v.getDouble(ac);
+                dcs[n] = v.getDouble(dc);
+                ptrs[n] = (int) v.getPointer();
+                byte[] s = v.getString(state).getBytes("ISO-8859-1");
+                System.arraycopy(s, 0, states, n * stateLen,
+                        Math.min(s.length, stateLen));
+                n++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        int entrySize = 12 + stateLen;
+        ByteBuffer buf = ByteBuffer.allocate(2 * n * entrySize
+                + 4 * (T_FIELDS + 2));
+        for (double[] caps : new double[][] {acs, dcs}) {
+            for (int i : sortedLargestFirst(caps, n)) {
+                buf.putDouble(caps[i]);
+                buf.putInt(ptrs[i]);
+                buf.put(states, i * stateLen, stateLen);
+            }
+        }
+        int[] fields = new int[T_FIELDS];
+        fields[T_ENTRIES] = n;
+        fields[T_RECORDS] = numRecords;
+        fields[T_STATE_LEN] = stateLen;
+        fields[T_BIN_TIME_HI] = (int) (binTime >>> 32);
+        fields[T_BIN_TIME_LO] = (int) binTime;
+        for (int f : fields) {
+            buf.putInt(f);
+        }
+        buf.putInt(T_FIELDS);
+        buf.putInt(MAGIC);
+        buf.flip();
+
+        String tmpName = fileName + ".tmp";
+        try (FileChannel ch = FileChannel.open(Paths.get(tmpName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf, buf.position());
+            }
+            ch.force(true);
+        }
+        LinearHashIndex.publish(tmpName, fileName);
+    } // build()
+
+    /* The numbers 0 to n - 1 ordered by caps[i], largest first, then by i */
+    private static int[] sortedLargestFirst(double[] caps, int n) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> caps[a] != caps[b]
+                ? Double.compare(caps[b], caps[a]) : Integer.compare(a, b));
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    } // sortedLargestFirst()
+
+    /*---------------------------------------------------------------------
+    |  Method open(String fileName, String binFileName)
+    |
+    |  Purpose:  Opens an index file, reads its header and checks it was
+    |            built from the .bin file as it is now: the same number of
+    |            records and the same modified time. A record appended,
+    |            deleted or updated since the build would make the top N
+    |            wrong, so a stale index is refused.
+    |
+    |  Pre-condition:  The file was written by build()
+    |
+    |  Post-condition: The file stays open until close()
+    |
+    |  Parameters:
+    |     fileName -- The index file
+    |  binFileName -- The .bin file it was built from
+    |
+    |  Returns: The open index
+    *-------------------------------------------------------------------*/
+    public static CapacityIndex open(String fileName, String binFileName)
+            throws IOException {
+        CapacityIndex index = new CapacityIndex();
+        index.channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ);
+        try {
+            long len = index.channel.size();
+            ByteBuffer tail = ByteBuffer.allocate(4 * (T_FIELDS + 2));
+            if (len < tail.capacity()) {
+                throw new IOException(fileName + " is not a capacity index");
+            }
+            index.readFully(tail, len - tail.capacity());
+            if (tail.getInt(4 * (T_FIELDS + 1)) != MAGIC
+                    || tail.getInt(4 * T_FIELDS) != T_FIELDS) {
+                throw new IOException(fileName + " is not a capacity index");
+            }
+            index.numEntries = tail.getInt(4 * T_ENTRIES);
+            index.numRecords = tail.getInt(4 * T_RECORDS);
+            index.stateLen = tail.getInt(4 * T_STATE_LEN);
+            index.entrySize = 12 + index.stateLen;
+            if (index.numEntries < 0 || index.stateLen < 0
+                    || len != 2L * index.numEntries * index.entrySize
+                    + tail.capacity()) {
+                throw new IOException(fileName + " size does not match its"
+                        + " header");
+            }
+            BinScanner scanner = new BinScanner(binFileName);
+            int binRecords = scanner.getNumRecords();
+            scanner.close();
+            long builtTime = ((long) tail.getInt(4 * T_BIN_TIME_HI) << 32)
+                    | (tail.getInt(4 * T_BIN_TIME_LO) & 0xFFFFFFFFL);
+            if (binRecords != index.numRecords) {
+                throw new IOException(fileName + " was built from "
+                        + index.numRecords + " records but " + binFileName
+                        + " has " + binRecords + ", build it again");
+            }
+            if (BinScanner.modifiedTime(binFileName) != builtTime) {
+                throw new IOException(binFileName + " was changed after "
+                        + fileName + " was built, build it again");
+            }
+        } catch (IOException e) {
+            index.channel.close();
+            throw e;
+        }
+        return index;
+    } // open()
+
+    /*---------------------------------------------------------------------
+    |  Method visit(Capacity which, String state, EntryVisitor visitor)
+    |
+    |  Purpose:  Reads one section from the largest capacity down,
+    |            READ_ENTRIES entries at a time, and gives the visitor
+    |            each entry of the state (or every entry if state is null)
+    |            until it returns false or the section ends.
+    |
+    |  Pre-condition:  The index is open
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |        which -- The section, AC or DC
+    |        state -- The state to keep, or null for all
+    |      visitor -- Gets each entry
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void visit(Capacity which, String state, EntryVisitor visitor)
+            throws IOException {
+        byte[] want = null;
+        if (state != null) {
+            want = new byte[stateLen];      // padded like the .bin
+            byte[] s = state.getBytes("ISO-8859-1");
+            if (s.length > stateLen) {
+                return;
+            }
+            System.arraycopy(s, 0, want, 0, s.length);
+        }
+        long section = which == Capacity.AC ? 0
+                : (long) numEntries * entrySize;
+        ByteBuffer buf = ByteBuffer.allocate(READ_ENTRIES * entrySize);
+        for (int first = 0; first < numEntries; first += READ_ENTRIES) {
+            int count = Math.min(READ_ENTRIES, numEntries - first);
+            buf.clear();
+            buf.limit(count * entrySize);
+            readFully(buf, section + (long) first * entrySize);
+            for (int i = 0; i < count; i++) {
+                int at = i * entrySize;
+                if (want != null && !sameState(buf, at + 12, want)) {
+                    continue;
+                }
+                if (!visitor.visit(buf.getDouble(at), buf.getInt(at + 8))) {
+                    return;
+                }
+            }
+        }
+    } // visit()
+
+    /* The pointers to the n largest records of a section, of the state
+       if state is not null */
+    public int[] top(Capacity which, int n, String state) throws IOException {
+        int[] ptrs = new int[Math.max(0, Math.min(n, numEntries))];
+        int[] found = {0};
+        if (ptrs.length > 0) {
+            visit(which, state, (capacity, pointer) -> {
+                ptrs[found[0]++] = pointer;
+                return found[0] < ptrs.length;
+            });
+        }
+        return Arrays.copyOf(ptrs, found[0]);
+    } // top()
+
+    /* True if the state bytes at buf[at] are want */
+    private boolean sameState(ByteBuffer buf, int at, byte[] want) {
+        for (int i = 0; i < want.length; i++) {
+            if (buf.get(at + i) != want[i]) {
+                return false;
+            }
+        }
+        return true;
+    } // sameState()
+
+    /*---------------------------------------------------------------------
+    |  Method topByScan(String binFileName, Capacity which, int n,
+    |                   Predicate<BinRecords.View> filter)
+    |
+    |  Purpose:  Finds the n largest records that pass the filter without
+    |            an index: a parallel stream over the .bin file where each
+    |            thread keeps its n largest in a bounded heap, and the heaps
+    |            are merged at the end
+    |
+    |  Pre-condition:  The .bin file was made by Prog1A
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |  binFileName -- The .bin file
+    |        which -- Capacity to sort by
+    |            n -- Number of records wanted
+    |       filter -- Records to consider, or null for all
+    |
+    |  Returns: Pointers to the records, largest first
+    *-------------------------------------------------------------------*/
+    public static int[] topByScan(String binFileName, Capacity which, int n,
+            Predicate<BinRecords.View> filter) throws IOException {
+        RecordCodec.Accessor cap = new RecordCodec(RecordSchema.forBin(
+                binFileName)).accessor(which.getField(),
+                RecordSchema.Type.DOUBLE);
+        try (Stream<BinRecords.View> records = BinRecords.views(binFileName,
+                true)) {
+            Stream<BinRecords.View> kept = filter == null ? records
+                    : records.filter(filter);
+            return kept.collect(() -> new TopHeap(n),
+                    (heap, v) -> heap.offer(v.getDouble(cap),
+                            (int) v.getPointer()),
+                    TopHeap::merge).sorted();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    } // topByScan()
+
+    /* The n largest (capacity, pointer) pairs offered, in a min-heap of
+       parallel arrays so the smallest kept is at the root */
+    private static final class TopHeap {
+        private final double[] caps;
+        private final int[] ptrs;
+        private int size;
+
+        TopHeap(int n) {
+            caps = new double[Math.max(0, n)];
+            ptrs = new int[Math.max(0, n)];
+        }
+
+        /* Keeps the pair if the heap is not full or it beats the root */
+        void offer(double cap, int ptr) {
+            if (size < caps.length) {
+                caps[size] = cap;
+                ptrs[size] = ptr;
+                int i = size++;
+                while (i > 0 && less(i, (i - 1) / 2)) {
+                    swap(i, (i - 1) / 2);
+                    i = (i - 1) / 2;
+                }
+            } else if (size > 0 && (cap > caps[0]
+                    || (cap == caps[0] && ptr < ptrs[0]))) {
+                caps[0] = cap;
+                ptrs[0] = ptr;
+                int i = 0;
+                while (true) {
+                    int c = 2 * i + 1;
+                    if (c >= size) {
+                        break;
+                    }
+                    if (c + 1 < size && less(c + 1, c)) {
+                        c++;
+                    }
+                    if (!less(c, i)) {
+                        break;
+                    }
+                    swap(i, c);
+                    i = c;
+                }
+            }
+        }
+
+        /* Adds the pairs of another heap */
+        void merge(TopHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.caps[i], other.ptrs[i]);
+            }
+        }
+
+        /* The pointers, largest capacity first and ties in file order */
+        int[] sorted() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> less(b, a) ? -1 : less(a, b) ? 1 : 0);
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = ptrs[order[i]];
+            }
+            return result;
+        }
+
+        /* True if pair a ranks below pair b (smaller, or equal and later) */
+        private boolean less(int a, int b) {
+            return caps[a] != caps[b] ? caps[a] < caps[b] : ptrs[a] > ptrs[b];
+        }
+
+        private void swap(int a, int b) {
+            double c = caps[a];
+            caps[a] = caps[b];
+            caps[b] = c;
+            int p = ptrs[a];
+            ptrs[a] = ptrs[b];
+            ptrs[b] = p;
+        }
+    } // class TopHeap
+
+    /* Fills buf from the index file starting at pos */
+    private void readFully(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                throw new EOFException("Capacity index is too short");
+            }
+        }
+    } // readFully()
+
+    /* Closes the index file */
+    public void close() throws IOException {
+        channel.close();
+    } // close()
+} // class CapacityIndex
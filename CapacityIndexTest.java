@@ -0,0 +1,265 @@
+/*
+ * CapacityIndexTest.java -- Checks the capacity index against the records
+ * it should list: the top N by AC and by DC capacity, of every record and
+ * of one state, for N from 1 past the number of records, over more than
+ * one READ_ENTRIES batch, with deleted records left out, and the same as
+ * topByScan(). Then it checks that open() refuses the index once the .bin
+ * file has a record more, and once UpdateRecords has changed a capacity,
+ * and takes it again after it is built again. Exits with 1 if anything is
+ * wrong.
+ *
+ * Usage: java CapacityIndexTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+public class CapacityIndexTest {
+    /*+----------------------------------------------------------------------
+    ||  Class CapacityIndexTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Compares CapacityIndex.top() with the records it
+    ||                  should find, before and after the .bin file changes.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: RECORDS: records written, more than one read batch
+    ||                  STATES: states the records are spread over
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static final int RECORDS = CapacityIndex.READ_ENTRIES + 900;
+    private static final String[] STATES = {"CA", "NV", "TX", "A"};
+
+    private static int failures;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Writes the records, checks the top N lists, changes the
+    |            .bin file two ways and checks the index is refused
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The temporary folder is removed
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws Exception {
+        Path dir = Files.createTempDirectory("capacityindex");
+        String binFileName = dir.resolve("t.bin").toString();
+        String idxFileName = dir.resolve("t.idx").toString();
+        String capFileName = dir.resolve("t.cap").toString();
+        PrintStream stdout = System.out;
+        InputStream stdin = System.in;
+        try {
+            RecordSchema schema = RecordSchema.solar(20, 10, 2);
+            RecordCodec codec = new RecordCodec(schema);
+            RecordCodec.Accessor acField = codec.accessor(
+                    RecordSchema.CAPACITY_AC, RecordSchema.Type.DOUBLE);
+            RecordCodec.Accessor dcField = codec.accessor(
+                    RecordSchema.CAPACITY_DC, RecordSchema.Type.DOUBLE);
+            RecordCodec.Accessor stateField = codec.accessor(
+                    RecordSchema.STATE, RecordSchema.Type.STRING);
+            // every capacity differs, so the order has no ties
+            double[] ac = new double[RECORDS];
+            double[] dc = new double[RECORDS];
+            boolean[] deleted = new boolean[RECORDS];
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(
+                    binFileName)))) {
+                out.writeInt(RECORDS);
+                out.writeInt(20);
+                out.writeInt(10);
+                out.writeInt(2);
+                byte[] record = codec.newRecord();
+                for (int i = 0; i < RECORDS; i++) {
+                    ac[i] = (long) i * 7919 % RECORDS + 0.25;
+                    dc[i] = (long) i * 104729 % RECORDS * 1.5;
+                    deleted[i] = i % 97 == 3;
+                    SolarEntries s = new SolarEntries();
+                    s.setEIAID(deleted[i] ? LinearHashIndex.TOMBSTONE : i + 1);
+                    s.setProjectName("Plant " + i);
+                    s.setSolarCOD("1/1/2000");
+                    s.setState(STATES[i % STATES.length]);
+                    codec.encode(s, record);
+                    acField.putDouble(record, ac[i]);
+                    dcField.putDouble(record, dc[i]);
+                    out.write(record);
+                }
+            }
+            CapacityIndex.build(binFileName, capFileName);
+
+            CapacityIndex index = CapacityIndex.open(capFileName, binFileName);
+            int live = 0;
+            for (boolean d : deleted) {
+                live += d ? 0 : 1;
+            }
+            expect(index.getNumRecords() == RECORDS, "the index counts every"
+                    + " record");
+            expect(index.getNumEntries() == live, "deleted records are left"
+                    + " out");
+            int recordLength = schema.getRecordLength();
+            for (CapacityIndex.Capacity which : CapacityIndex.Capacity
+                    .values()) {
+                double[] caps = which == CapacityIndex.Capacity.AC ? ac : dc;
+                for (String state : new String[] {null, "CA", "A", "NV",
+                        "ZZ", "TOO LONG"}) {
+                    for (int n : new int[] {0, 1, 10, live / 4 + 1,
+                            live + 5}) {
+                        int[] want = expected(caps, deleted, state, n,
+                                recordLength);
+                        String what = which + " top " + n + " of "
+                                + (state == null ? "every state" : state);
+                        expect(Arrays.equals(index.top(which, n, state),
+                                want), what + " finds " + want.length
+                                + " records");
+                        if (state == null || state.length() <= 2) {
+                            String st = state;
+                            expect(Arrays.equals(CapacityIndex.topByScan(
+                                    binFileName, which, n, st == null ? null
+                                    : v -> v.getString(stateField).trim()
+                                    .equals(st)), want), "topByScan " + what
+                                    + " matches the index");
+                        }
+                    }
+                }
+            }
+            index.close();
+
+            // a record more, as after Prog1A -append, with the old time
+            FileTime built = Files.getLastModifiedTime(Paths.get(binFileName));
+            try (RandomAccessFile bin = new RandomAccessFile(binFileName,
+                    "rw")) {
+                bin.writeInt(RECORDS + 1);
+                bin.seek(bin.length());
+                SolarEntries s = new SolarEntries();
+                s.setEIAID(RECORDS + 1);
+                s.setProjectName("Plant new");
+                s.setSolarCOD("1/1/2000");
+                s.setState("CA");
+                byte[] record = codec.newRecord();
+                codec.encode(s, record);
+                acField.putDouble(record, 1e9);
+                bin.write(record);
+            }
+            Files.setLastModifiedTime(Paths.get(binFileName), built);
+            expectStale(capFileName, binFileName, "was built from " + RECORDS
+                    + " records", "a record more");
+            CapacityIndex.build(binFileName, capFileName);
+            index = CapacityIndex.open(capFileName, binFileName);
+            expect(Arrays.equals(index.top(CapacityIndex.Capacity.AC, 1,
+                    "CA"), new int[] {BinScanner.HEADER_SIZE + RECORDS
+                    * recordLength}), "the rebuilt index finds the new"
+                    + " record first");
+            index.close();
+
+            // the file's time is in milliseconds, so let it move on
+            Thread.sleep(20);
+            ParallelIndexBuilder.build(binFileName, idxFileName, 1,
+                    HashFunction.MODULO);
+            run("update 1 capac 99999.5\n-1\n", () -> UpdateRecords.main(
+                    new String[] {idxFileName, binFileName}));
+            expectStale(capFileName, binFileName, "was changed after",
+                    "UpdateRecords changed a capacity");
+            CapacityIndex.build(binFileName, capFileName);
+            index = CapacityIndex.open(capFileName, binFileName);
+            expect(index.top(CapacityIndex.Capacity.AC, 2, null)[1]
+                    == BinScanner.HEADER_SIZE, "the rebuilt index has"
+                    + " record 1 second at its new capacity");
+            index.close();
+        } finally {
+            System.setOut(stdout);
+            System.setIn(stdin);
+            for (String f : new String[] {binFileName, idxFileName,
+                    capFileName, idxFileName + ".wal"}) {
+                Files.deleteIfExists(Paths.get(f));
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "OK: capacity index matches the"
+                + " records" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* open() must refuse the index with a message holding reason */
+    private static void expectStale(String capFileName, String binFileName,
+            String reason, String what) {
+        try {
+            CapacityIndex.open(capFileName, binFileName).close();
+            expect(false, "open() refuses the index after " + what);
+        } catch (IOException e) {
+            expect(e.getMessage().contains(reason) && e.getMessage()
+                    .endsWith("build it again"), "open() says to build the"
+                    + " index again after " + what + " (got "
+                    + e.getMessage() + ")");
+        }
+    } // expectStale()
+
+    /* The pointers to the n live records of the state (or of every state)
+       with the largest capacities, largest first */
+    private static int[] expected(double[] caps, boolean[] deleted,
+            String state, int n, int recordLength) {
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < caps.length; i++) {
+            if (!deleted[i] && (state == null
+                    || STATES[i % STATES.length].equals(state))) {
+                kept.add(i);
+            }
+        }
+        kept.sort((a, b) -> Double.compare(caps[b], caps[a]));
+        return kept.stream().limit(n).mapToInt(i -> BinScanner.HEADER_SIZE
+                + i * recordLength).toArray();
+    } // expected()
+
+    /* A program run with its own input and output */
+    private interface Run {
+        void run() throws IOException;
+    }
+
+    /* Runs a program with input on System.in and returns what it printed */
+    private static String run(String input, Run program) throws IOException {
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        System.setOut(new PrintStream(printed, true));
+        try {
+            program.run();
+        } finally {
+            System.setOut(stdout);
+        }
+        return printed.toString();
+    } // run()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class CapacityIndexTest
@@ -0,0 +1,472 @@
+/*
+ * CodIndex.java -- A secondary index on the Solar COD of a .bin file for
+ * date range queries ("plants online between 2015 and 2018"). Prog1A
+ * turns each COD into an epoch day (SolarEntries.codToEpochDay()) and
+ * writes the (day, pointer) pairs of all records sorted by day to
+ * <file>.bin.cod. The pairs are grouped in blocks of BLOCK_ENTRIES, and
+ * the first day of every block (its fence) is kept at the end of the file
+ * and read into memory when the index is opened. A range query finds its
+ * first and last block among the fences and reads just those blocks
+ * with one read, instead of scanning and parsing every record.
+ *
+ * Records without a COD are not in the index. The header keeps the record
+ * count and modified time of the .bin file the index was built from, and
+ * an index that does not match the .bin file any more is refused. Prog1A
+ * -append and UpdateRecords build it again after changing the .bin file;
+ * after any other change run "java CodIndex build" again.
+ *
+ * Usage: java CodIndex build <bin file> [index file]
+ *        java CodIndex range <index file> <bin file> <from> <to>
+ *   from and to are M/D/YYYY dates or years (from 1/1, to 12/31), and
+ *   both ends are included.
+ *
+ * Index file layout:
+ *   (int day, int pointer) * entries, sorted by day and then pointer
+ *   int fences[ceil(entries / BLOCK_ENTRIES)]
+ *   int fields[D_FIELDS], int D_FIELDS, int MAGIC
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+public class CodIndex {
+    /*+----------------------------------------------------------------------
+    ||  Class CodIndex
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Writes and reads the sorted COD index of a .bin file
+    ||                  and answers date range queries with it. An open
+    ||                  index can be queried from many threads.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: MAGIC: last int of the file ("LHD1")
+    ||                  SUFFIX: added to the .bin file name
+    ||                  BLOCK_ENTRIES: pairs in one 4 KB block
+    ||                  D_ENTRIES, D_RECORDS, D_BLOCK, D_BIN_TIME_HI,
+    ||                  D_BIN_TIME_LO: header fields; D_FIELDS: their count
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None, use open()
+    ||
+    ||   Class Methods: void main(String args[])
+    ||                  void write(String fileName, int[] days, int[] ptrs,
+    ||                             int count, int numRecords, long binTime)
+    ||                  void build(String binFileName, String fileName)
+    ||                  CodIndex open(String fileName, String binFileName)
+    ||                  int parseDay(String text, boolean end)
+    ||
+    ||   Inst. Methods: int getNumEntries()
+    ||                  int getNumRecords()
+    ||                  int[] range(int fromDay, int toDay)
+    ||                  void close()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int MAGIC = 0x4C484431; // "LHD1"
+    public static final String SUFFIX = ".cod";
+    public static final int BLOCK_ENTRIES = 512;
+
+    public static final int D_ENTRIES = 0;
+    public static final int D_RECORDS = 1;
+    public static final int D_BLOCK = 2;
+    public static final int D_BIN_TIME_HI = 3;
+    public static final int D_BIN_TIME_LO = 4;
+    public static final int D_FIELDS = 5;
+
+    private FileChannel channel;    // The open index file
+    private int numEntries;         // (day, pointer) pairs
+    private int numRecords;         // Records in the .bin file when built
+    private int blockEntries;       // Pairs per block
+    private int[] fences;           // First day of each block
+
+    /* Getter methods */
+    public int getNumEntries() { return numEntries; }
+    public int getNumRecords() { return numRecords; }
+
+    private CodIndex() {
+    }
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Runs the build or range command
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |         args -- The command and its arguments
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        if (args.length < 2 || (args[0].equals("range") && args.length < 5)) {
+            System.out.println("Usage: java CodIndex build <bin file>"
+                    + " [index file]");
+            System.out.println("       java CodIndex range <index file>"
+                    + " <bin file> <from> <to>");
+            System.exit(-1);
+        }
+        try {
+            if (args[0].equals("build")) {
+                String fileName = args.length > 2 ? args[2] : args[1] + SUFFIX;
+                build(args[1], fileName);
+                System.out.println("Successfuly wrote " + fileName);
+            } else if (args[0].equals("range")) {
+                int from = parseDay(args[3], false);
+                int to = parseDay(args[4], true);
+                if (from == SolarEntries.NO_DATE || to == SolarEntries.NO_DATE) {
+                    System.out.println("Please give the dates as M/D/YYYY"
+                            + " or YYYY.");
+                    System.exit(-1);
+                }
+                runRange(args[1], args[2], from, to);
+            } else {
+                System.out.println("Unknown command " + args[0]);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        }
+    } // main()
+
+    /* The epoch day of an M/D/YYYY date or a year, where a year means its
+       first day, or its last day if end is true. NO_DATE if neither */
+    public static int parseDay(String text, boolean end) {
+        if (text.matches("\\d{4}")) {
+            return SolarEntries.codToEpochDay((end ? "12/31/" : "1/1/") + text);
+        }
+        return SolarEntries.codToEpochDay(text);
+    } // parseDay()
+
+    /* Prints the EIA ID, name and COD of each record with a COD in the
+       range. open() refuses an index the .bin file has changed since, so
+       the index holds every such record and only those */
+    private static void runRange(String fileName, String binFileName,
+            int from, int to) throws IOException {
+        RecordCodec codec = new RecordCodec(RecordSchema.forBin(binFileName));
+        RecordCodec.Accessor name = codec.accessor(RecordSchema.NAME,
+                RecordSchema.Type.STRING);
+        RecordCodec.Accessor cod = codec.accessor(RecordSchema.COD,
+                RecordSchema.Type.STRING);
+        CodIndex index = open(fileName, binFileName);
+        try (FileChannel bin = FileChannel.open(Paths.get(binFileName),
+                StandardOpenOption.READ)) {
+            long start = System.nanoTime();
+            int[] ptrs = index.range(from, to);
+            long micros = (System.nanoTime() - start) / 1000;
+            byte[] record = codec.newRecord();
+            ByteBuffer buf = ByteBuffer.wrap(record);
+            for (int ptr : ptrs) {
+                buf.clear();
+                while (buf.hasRemaining()) {
+                    if (bin.read(buf, (long) ptr + buf.position()) < 0) {
+                        throw new EOFException("Record at " + ptr
+                                + " is past the end of " + binFileName);
+                    }
+                }
+                System.out.println("[" + buf.getInt(0) + "] ["
+                        + name.getString(record) + "] ["
+                        + cod.getString(record).trim() + "]");
+            }
+            System.out.println(ptrs.length + " plants, index lookup took "
+                    + micros + " us");
+        } finally {
+            index.close();
+        }
+    } // runRange()
+
+    /*---------------------------------------------------------------------
+    |  Method write(String fileName, int[] days, int[] ptrs, int count,
+    |               int numRecords, long binTime)
+    |
+    |  Purpose:  Sorts the (day, pointer) pairs and writes them with their
+    |            fences and header to <fileName>.tmp, then renames it over
+    |            fileName. Pairs whose day is NO_DATE are left out.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: fileName holds the index
+    |
+    |  Parameters:
+    |     fileName -- The index file to write
+    |         days -- Epoch day of each record
+    |         ptrs -- Pointer to each record in the .bin file
+    |        count -- Number of records in days and ptrs
+    |   numRecords -- Records in the .bin file, kept to notice changes
+    |      binTime -- Modified time of the .bin file, kept the same way
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void write(String fileName, int[] days, int[] ptrs,
+            int count, int numRecords, long binTime) throws IOException {
+        // day in the high half (signed, so days before 1970 sort first),
+        // pointer in the low half
+        long[] pairs = new long[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (days[i] != SolarEntries.NO_DATE) {
+                pairs[n++] = (long) days[i] << 32 | (ptrs[i] & 0xffffffffL);
+            }
+        }
+        Arrays.sort(pairs, 0, n);
+
+        int numBlocks = (n + BLOCK_ENTRIES - 1) / BLOCK_ENTRIES;
+        ByteBuffer buf = ByteBuffer.allocate(8 * n + 4 * numBlocks
+                + 4 * (D_FIELDS + 2));
+        for (int i = 0; i < n; i++) {
+            buf.putLong(pairs[i]);
+        }
+        for (int b = 0; b < numBlocks; b++) {
+            buf.putInt((int) (pairs[b * BLOCK_ENTRIES] >> 32));
+        }
+        int[] fields = new int[D_FIELDS];
+        fields[D_ENTRIES] = n;
+        fields[D_RECORDS] = numRecords;
+        fields[D_BLOCK] = BLOCK_ENTRIES;
+        fields[D_BIN_TIME_HI] = (int) (binTime >>> 32);
+        fields[D_BIN_TIME_LO] = (int) binTime;
+        for (int f : fields) {
+            buf.putInt(f);
+        }
+        buf.putInt(D_FIELDS);
+        buf.putInt(MAGIC);
+        buf.flip();
+
+        String tmpName = fileName + ".tmp";
+        try (FileChannel ch = FileChannel.open(Paths.get(tmpName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf, buf.position());
+            }
+            ch.force(true);
+        }
+        LinearHashIndex.publish(tmpName, fileName);
+    } // write()
+
+    /*---------------------------------------------------------------------
+    |  Method build(String binFileName, String fileName)
+    |
+    |  Purpose:  Reads the COD of every live record of a .bin file through
+    |            its schema and writes the index
+    |
+    |  Pre-condition:  The .bin file was made by Prog1A
+    |
+    |  Post-condition: fileName holds the index
+    |
+    |  Parameters:
+    |  binFileName -- The .bin file
+    |     fileName -- The index file to write
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void build(String binFileName, String fileName)
+            throws IOException {
+        // taken before reading, so a change during the build shows
+        long binTime = BinScanner.modifiedTime(binFileName);
+        int numRecords;
+        try (FileChannel ch = FileChannel.open(Paths.get(binFileName),
+                StandardOpenOption.READ)) {
+            ByteBuffer count = ByteBuffer.allocate(4);
+            while (count.hasRemaining()) {
+                if (ch.read(count, count.position()) < 0) {
+                    throw new EOFException(binFileName + " has no header");
+                }
+            }
+            numRecords = count.getInt(0);
+        }
+        int[] days = new int[numRecords];
+        int[] ptrs = new int[numRecords];
+        int n = 0;
+        try (Stream<BinRecords.View> records = BinRecords.views(binFileName,
+                false)) {
+            RecordCodec.Accessor cod = new RecordCodec(RecordSchema.forBin(
+                    binFileName)).accessor(RecordSchema.COD,
+                    RecordSchema.Type.STRING);
+            for (BinRecords.View v : (Iterable<BinRecords.View>)
+                    records::iterator) {
+                days[n] = SolarEntries.codToEpochDay(v.getString(cod));
+                ptrs[n] = (int) v.getPointer();
+                n++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        write(fileName, days, ptrs, n, numRecords, binTime);
+    } // build()
+
+    /*---------------------------------------------------------------------
+    |  Method open(String fileName, String binFileName)
+    |
+    |  Purpose:  Opens an index file, reads its header and fences into
+    |            memory and checks it was built from the .bin file as it
+    |            is now: the same number of records and the same modified
+    |            time. A COD changed, a record deleted or appended since
+    |            the build would give a wrong answer, so a stale index is
+    |            refused.
+    |
+    |  Pre-condition:  The file was written by write()
+    |
+    |  Post-condition: The file stays open until close()
+    |
+    |  Parameters:
+    |     fileName -- The index file
+    |  binFileName -- The .bin file it was built from
+    |
+    |  Returns: The open index
+    *-------------------------------------------------------------------*/
+    public static CodIndex open(String fileName, String binFileName)
+            throws IOException {
+        CodIndex index = new CodIndex();
+        index.channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ);
+        try {
+            long len = index.channel.size();
+            ByteBuffer tail = ByteBuffer.allocate(4 * (D_FIELDS + 2));
+            if (len < tail.capacity()) {
+                throw new IOException(fileName + " is not a COD index");
+            }
+            readFully(index.channel, tail, len - tail.capacity());
+            if (tail.getInt(4 * (D_FIELDS + 1)) != MAGIC) {
+                throw new IOException(fileName + " is not a COD index");
+            }
+            if (tail.getInt(4 * D_FIELDS) != D_FIELDS) {
+                throw new IOException(fileName + " was written by an older"
+                        + " version, build it again");
+            }
+            index.numEntries = tail.getInt(4 * D_ENTRIES);
+            index.numRecords = tail.getInt(4 * D_RECORDS);
+            index.blockEntries = tail.getInt(4 * D_BLOCK);
+            if (index.numEntries < 0 || index.blockEntries < 1) {
+                throw new IOException(fileName + " has a bad header");
+            }
+            int numBlocks = (int) (((long) index.numEntries
+                    + index.blockEntries - 1) / index.blockEntries);
+            if (len != 8L * index.numEntries + 4L * numBlocks
+                    + tail.capacity()) {
+                throw new IOException(fileName + " size does not match its"
+                        + " header");
+            }
+            ByteBuffer fences = ByteBuffer.allocate(4 * numBlocks);
+            readFully(index.channel, fences, 8L * index.numEntries);
+            index.fences = new int[numBlocks];
+            fences.flip().asIntBuffer().get(index.fences);
+
+            BinScanner scanner = new BinScanner(binFileName);
+            int binRecords = scanner.getNumRecords();
+            scanner.close();
+            long builtTime = ((long) tail.getInt(4 * D_BIN_TIME_HI) << 32)
+                    | (tail.getInt(4 * D_BIN_TIME_LO) & 0xFFFFFFFFL);
+            if (binRecords != index.numRecords) {
+                throw new IOException(fileName + " was built from "
+                        + index.numRecords + " records but " + binFileName
+                        + " has " + binRecords + ", build it again");
+            }
+            if (BinScanner.modifiedTime(binFileName) != builtTime) {
+                throw new IOException(binFileName + " was changed after "
+                        + fileName + " was built, build it again");
+            }
+        } catch (IOException e) {
+            index.channel.close();
+            throw e;
+        }
+        return index;
+    } // open()
+
+    /*---------------------------------------------------------------------
+    |  Method range(int fromDay, int toDay)
+    |
+    |  Purpose:  Finds the records with a COD from fromDay to toDay. The
+    |            fences give the blocks that can hold such days: from the
+    |            block before the first fence at or after fromDay (the
+    |            days before that fence may end with fromDay) up to the
+    |            last block whose fence is at most toDay. Those blocks are
+    |            read with one read and their pairs in the range kept.
+    |
+    |  Pre-condition:  The index is open
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |      fromDay -- First epoch day, included
+    |        toDay -- Last epoch day, included
+    |
+    |  Returns: Pointers to the records, in order of COD
+    *-------------------------------------------------------------------*/
+    public int[] range(int fromDay, int toDay) throws IOException {
+        if (fromDay > toDay || fences.length == 0) {
+            return new int[0];
+        }
+        int first = Math.max(0, firstFenceAtLeast(fromDay) - 1);
+        int last = toDay == Integer.MAX_VALUE ? fences.length
+                : firstFenceAtLeast(toDay + 1);     // first block past toDay
+        if (last <= first) {
+            return new int[0];
+        }
+        int firstEntry = first * blockEntries;
+        int entries = Math.min(numEntries, last * blockEntries) - firstEntry;
+        ByteBuffer buf = ByteBuffer.allocate(8 * entries);
+        readFully(channel, buf, 8L * firstEntry);
+
+        int[] ptrs = new int[entries];
+        int n = 0;
+        for (int i = 0; i < entries; i++) {
+            int day = buf.getInt(8 * i);
+            if (day >= fromDay && day <= toDay) {
+                ptrs[n++] = buf.getInt(8 * i + 4);
+            }
+        }
+        return Arrays.copyOf(ptrs, n);
+    } // range()
+
+    /* Number of the first block whose fence is at least day, or the
+       number of blocks if there is none */
+    private int firstFenceAtLeast(int day) {
+        int lo = 0;
+        int hi = fences.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (fences[mid] < day) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    } // firstFenceAtLeast()
+
+    /* Fills buf from the file starting at pos */
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos)
+            throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) {
+                throw new EOFException("COD index is too short");
+            }
+        }
+    } // readFully()
+
+    /* Closes the index file */
+    public void close() throws IOException {
+        channel.close();
+    } // close()
+} // class CodIndex
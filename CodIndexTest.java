@@ -0,0 +1,265 @@
+/*
+ * CodIndexTest.java -- Checks the COD index against a plain scan: date
+ * ranges that start or end on a fence, just before or after one, inside a
+ * run of equal days that spans several blocks, before 1970 and past the
+ * last day. Then it checks that UpdateRecords builds the index again, so
+ * a record whose COD moves into a range is found and a deleted one is
+ * not, and that an index the .bin file has changed since is refused.
+ * Exits with 1 if anything is wrong.
+ *
+ * Usage: java CodIndexTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+
+public class CodIndexTest {
+    /*+----------------------------------------------------------------------
+    ||  Class CodIndexTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Compares CodIndex.range() with the records it should
+    ||                  find, before and after the .bin file is changed.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: RECORDS: records written, a few blocks' worth
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static final int RECORDS = 4 * CodIndex.BLOCK_ENTRIES + 100;
+
+    private static int failures;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Writes the records, checks the ranges, changes the .bin
+    |            file with UpdateRecords and checks again
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The temporary folder is removed
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws Exception {
+        Path dir = Files.createTempDirectory("codindex");
+        String binFileName = dir.resolve("t.bin").toString();
+        String idxFileName = dir.resolve("t.idx").toString();
+        String codFileName = binFileName + CodIndex.SUFFIX;
+        PrintStream stdout = System.out;
+        InputStream stdin = System.in;
+        try {
+            RecordSchema schema = RecordSchema.solar(20, 10, 2);
+            RecordCodec codec = new RecordCodec(schema);
+            int[] days = new int[RECORDS];
+            Random random = new Random(7);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(
+                    binFileName)))) {
+                out.writeInt(RECORDS);
+                out.writeInt(20);
+                out.writeInt(10);
+                out.writeInt(2);
+                byte[] record = codec.newRecord();
+                for (int i = 0; i < RECORDS; i++) {
+                    // a third of the records share one day, so that day
+                    // fills more than a block; some have no COD at all
+                    days[i] = i % 40 == 0 ? SolarEntries.NO_DATE
+                            : random.nextInt(3) == 0 ? 500
+                            : random.nextInt(1500) - 400;
+                    SolarEntries s = new SolarEntries();
+                    s.setEIAID(i + 1);
+                    s.setProjectName("Plant " + i);
+                    s.setSolarCOD(days[i] == SolarEntries.NO_DATE ? ""
+                            : cod(days[i]));
+                    s.setState("OR");
+                    codec.encode(s, record);
+                    out.write(record);
+                }
+            }
+            ParallelIndexBuilder.build(binFileName, idxFileName, 1,
+                    HashFunction.MODULO);
+            CodIndex.build(binFileName, codFileName);
+
+            CodIndex index = CodIndex.open(codFileName, binFileName);
+            expect(index.getNumRecords() == RECORDS, "the index counts every"
+                    + " record");
+            long[] pairs = sortedPairs(days, schema.getRecordLength());
+            expect(index.getNumEntries() == pairs.length, "records without"
+                    + " a COD are left out");
+            List<int[]> queries = new ArrayList<>();
+            for (int b = 0; b * CodIndex.BLOCK_ENTRIES < pairs.length; b++) {
+                int fence = (int) (pairs[b * CodIndex.BLOCK_ENTRIES] >> 32);
+                queries.add(new int[] {fence, fence});
+                queries.add(new int[] {fence - 1, fence});
+                queries.add(new int[] {fence, fence + 1});
+                queries.add(new int[] {fence + 1, fence + 100});
+                queries.add(new int[] {fence - 100, fence - 1});
+            }
+            int min = (int) (pairs[0] >> 32);
+            int max = (int) (pairs[pairs.length - 1] >> 32);
+            queries.add(new int[] {min - 1, min - 1});
+            queries.add(new int[] {max, max});
+            queries.add(new int[] {max + 1, max + 1000});
+            queries.add(new int[] {min, max});
+            queries.add(new int[] {-1000, -1});
+            queries.add(new int[] {499, 501});
+            queries.add(new int[] {10, 5});
+            queries.add(new int[] {-400, Integer.MAX_VALUE});
+            for (int[] q : queries) {
+                int[] got = index.range(q[0], q[1]);
+                int[] want = expected(pairs, q[0], q[1]);
+                expect(Arrays.equals(got, want), "range " + q[0] + " to "
+                        + q[1] + " finds " + want.length + " records (got "
+                        + got.length + ")");
+            }
+            index.close();
+
+            // the file's time is in milliseconds, so let it move on
+            Thread.sleep(20);
+            int moved = 17;
+            int deleted = firstWithDay(days, 500) + 1;
+            run("update " + moved + " cod 6/15/2031\ndelete " + deleted
+                    + "\n-1\n", () -> UpdateRecords.main(new String[] {
+                    idxFileName, binFileName}));
+            int ptrMoved = BinScanner.HEADER_SIZE
+                    + (moved - 1) * schema.getRecordLength();
+            int ptrDeleted = BinScanner.HEADER_SIZE
+                    + (deleted - 1) * schema.getRecordLength();
+            try {
+                index = CodIndex.open(codFileName, binFileName);
+                int[] in2031 = index.range(CodIndex.parseDay("2031", false),
+                        CodIndex.parseDay("2031", true));
+                expect(Arrays.equals(in2031, new int[] {ptrMoved}), "the"
+                        + " record whose COD moved into 2031 is found");
+                expect(Arrays.stream(index.range(500, 500)).noneMatch(
+                        p -> p == ptrDeleted), "the deleted record is not"
+                        + " found");
+                expect(Arrays.stream(index.range(min, max)).noneMatch(
+                        p -> p == ptrMoved), "the moved record is not found"
+                        + " at its old COD");
+                index.close();
+            } catch (IOException e) {
+                expect(false, "UpdateRecords builds the COD index again ("
+                        + e.getMessage() + ")");
+            }
+
+            Thread.sleep(20);
+            try (RandomAccessFile bin = new RandomAccessFile(binFileName,
+                    "rw")) {
+                bin.seek(ptrMoved + codec.accessor(RecordSchema.COD,
+                        RecordSchema.Type.STRING).getOffset());
+                bin.writeBytes("1/1/1999");
+            }
+            try {
+                CodIndex.open(codFileName, binFileName).close();
+                expect(false, "open() refuses an index the .bin file has"
+                        + " changed since");
+            } catch (IOException e) {
+                expect(e.getMessage().contains("build it again"), "open()"
+                        + " says to build the index again");
+            }
+        } finally {
+            System.setOut(stdout);
+            System.setIn(stdin);
+            for (String f : new String[] {binFileName, idxFileName,
+                    codFileName, idxFileName + ".wal"}) {
+                Files.deleteIfExists(Paths.get(f));
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "OK: COD ranges match a scan"
+                : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* The epoch day as an M/D/YYYY COD */
+    private static String cod(int day) {
+        LocalDate date = LocalDate.ofEpochDay(day);
+        return date.getMonthValue() + "/" + date.getDayOfMonth() + "/"
+                + date.getYear();
+    } // cod()
+
+    /* The (day, pointer) pairs of the records with a COD, sorted the way
+       the index keeps them */
+    private static long[] sortedPairs(int[] days, int recordLength) {
+        long[] pairs = new long[days.length];
+        int n = 0;
+        for (int i = 0; i < days.length; i++) {
+            if (days[i] != SolarEntries.NO_DATE) {
+                pairs[n++] = (long) days[i] << 32
+                        | (BinScanner.HEADER_SIZE + i * recordLength);
+            }
+        }
+        pairs = Arrays.copyOf(pairs, n);
+        Arrays.sort(pairs);
+        return pairs;
+    } // sortedPairs()
+
+    /* The pointers a scan finds from fromDay to toDay, in index order */
+    private static int[] expected(long[] pairs, int fromDay, int toDay) {
+        return Arrays.stream(pairs).filter(p -> (p >> 32) >= fromDay
+                && (p >> 32) <= toDay).mapToInt(p -> (int) p).toArray();
+    } // expected()
+
+    /* The first record with this day */
+    private static int firstWithDay(int[] days, int day) {
+        int i = 0;
+        while (days[i] != day) {
+            i++;
+        }
+        return i;
+    } // firstWithDay()
+
+    /* A program run with its own input and output */
+    private interface Run {
+        void run() throws IOException;
+    }
+
+    /* Runs a program with input on System.in and returns what it printed */
+    private static String run(String input, Run program) throws IOException {
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        System.setOut(new PrintStream(printed, true));
+        try {
+            program.run();
+        } finally {
+            System.setOut(stdout);
+        }
+        return printed.toString();
+    } // run()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class CodIndexTest
@@ -0,0 +1,535 @@
+/*
+ * CompactSolarFile.java -- An optional compact version of the binary file
+ * made by Prog1A. In the regular .bin file every string is padded to the
+ * longest value for that field, so one long project name makes every
+ * record longer. The compact file (.cbin) stores the records like this:
+ *
+ *  EIA ID       -> int
+ *  Project Name -> length prefixed bytes (no padding)
+ *  Solar COD    -> index into a dictionary of strings
+ *  State        -> index into the same dictionary
+ *  5 doubles    -> ints scaled by 100 when that loses nothing, otherwise
+ *                  plain doubles
+ *
+ * Records are grouped into blocks of RECORDS_PER_BLOCK records and each
+ * block is compressed with BlockCompressor. A table of block offsets is
+ * kept at the top of the file and every block starts with a table of
+ * record offsets, so record n is found without reading anything but its
+ * own block.
+ *
+ * An index can point into a .cbin file instead of a .bin file:
+ * "Prog21 <file>.cbin" writes lhl.idx with the record number of each
+ * EIA ID as its pointer (see buildIndex()). Record n is in block
+ * n / recordsPerBlock, at place n % recordsPerBlock of that block's
+ * offset table, so Prog22 given the .cbin file reads and decompresses one
+ * block per lookup, and the file it reads is a fraction of the .bin
+ * file's size, so more of it stays in the page cache. The string widths
+ * of the .bin file are kept in the header, and the records read back are
+ * padded to them, so Prog22 prints them exactly as from the .bin file.
+ *
+ * The .cbin file is written whole, from the CSV by Prog1A -compact or
+ * from a .bin file by "CompactSolarFile write". Prog1A -append -compact
+ * writes it again from the appended .bin file; UpdateRecords only
+ * changes the .bin file, so write the .cbin file and its index again
+ * after it.
+ *
+ * Usage: java CompactSolarFile <cbin file> [record numbers]
+ *        java CompactSolarFile write <bin file> <cbin file>
+ *
+ * File layout:
+ *  int magic, int numRecords, int recordsPerBlock, int flags,
+ *  int nameLen, int codLen, int stateLen (widths in the .bin file),
+ *  int numBlocks, int dictSize, dictSize * (short len, bytes),
+ *  (numBlocks + 1) * long blockOffset, then each block as
+ *  int rawLen followed by the compressed bytes
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Stream;
+
+public class CompactSolarFile {
+    /*+----------------------------------------------------------------------
+    ||  Class CompactSolarFile
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Writes a list of SolarEntries as a compact .cbin file
+    ||                  and reads single records back from one by record
+    ||                  number. The last decompressed block is kept so
+    ||                  reading records in order only decompresses each
+    ||                  block once.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: MAGIC: first int of every .cbin file ("SCB2")
+    ||                  RECORDS_PER_BLOCK: records compressed together
+    ||                  FLAG_SCALED: doubles are stored as int * 100
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: CompactSolarFile(String fileName)
+    ||
+    ||   Class Methods: void write(String fileName,
+    ||                             ArrayList<SolarEntries> se, int nameLen,
+    ||                             int codLen, int stateLen)
+    ||                  void writeFromBin(String binFileName,
+    ||                                    String fileName)
+    ||                  boolean isCompact(String fileName)
+    ||                  void buildIndex(String fileName, String idxFileName,
+    ||                                  HashFunction hash)
+    ||                  void main(String[] args)
+    ||
+    ||   Inst. Methods: int getNumRecords()
+    ||                  RecordSchema getSchema()
+    ||                  SolarEntries fetchRecord(int recordNum)
+    ||                  void close()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int MAGIC = 0x53434232; // "SCB2"
+    public static final int RECORDS_PER_BLOCK = 64;
+    public static final int FLAG_SCALED = 1;
+
+    private RandomAccessFile file;  // The open .cbin file
+    private int numRecords;         // Total records in the file
+    private int recordsPerBlock;    // Records in each block
+    private int flags;              // FLAG_ values
+    private int nameLen;            // String widths in the .bin file
+    private int codLen;
+    private int stateLen;
+    private String[] dictionary;    // Shared dictionary for COD and state
+    private long[] blockOffsets;    // Where each block starts in the file
+
+    private int cachedBlock = -1;   // Block number held in blockData
+    private ByteBuffer blockData;   // The last decompressed block
+
+    /* Getter methods */
+    public int getNumRecords() { return numRecords; }
+
+    /* The layout of the .bin file the records came from */
+    public RecordSchema getSchema() {
+        return RecordSchema.solar(nameLen, codLen, stateLen);
+    } // getSchema()
+
+    /*---------------------------------------------------------------------
+    |  Constructor CompactSolarFile(String fileName)
+    |
+    |  Purpose:  Opens a .cbin file and reads the header, dictionary and
+    |            block offset table into memory.
+    |
+    |  Pre-condition:  The file was made by write()
+    |
+    |  Post-condition: The file is open until close() is called
+    |
+    |  Parameters:
+    |     fileName -- The name of the .cbin file
+    *-------------------------------------------------------------------*/
+    public CompactSolarFile(String fileName) throws IOException {
+        file = new RandomAccessFile(fileName, "r");
+        if (file.readInt() != MAGIC) {
+            file.close();
+            throw new IOException(fileName + " is not a compact solar file");
+        }
+        numRecords = file.readInt();
+        recordsPerBlock = file.readInt();
+        flags = file.readInt();
+        nameLen = file.readInt();
+        codLen = file.readInt();
+        stateLen = file.readInt();
+        int numBlocks = file.readInt();
+        if (numRecords < 0 || recordsPerBlock < 1 || numBlocks
+                != (numRecords + recordsPerBlock - 1) / recordsPerBlock) {
+            file.close();
+            throw new IOException(fileName + " has a damaged header");
+        }
+
+        dictionary = new String[file.readInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] b = new byte[file.readUnsignedShort()];
+            file.readFully(b);
+            dictionary[i] = new String(b, StandardCharsets.ISO_8859_1);
+        }
+
+        blockOffsets = new long[numBlocks + 1];
+        for (int i = 0; i <= numBlocks; i++) {
+            blockOffsets[i] = file.readLong();
+        }
+    } // CompactSolarFile()
+
+    /*---------------------------------------------------------------------
+    |  Method write(String fileName, ArrayList<SolarEntries> se,
+    |               int nameLen, int codLen, int stateLen)
+    |
+    |  Purpose:  Writes the entries to fileName in the compact format.
+    |            The doubles are stored scaled by 100 only if every double
+    |            in the file comes back exactly the same after scaling.
+    |
+    |  Pre-condition:  se is in the order the records should be stored
+    |
+    |  Post-condition: The file is written and closed
+    |
+    |  Parameters:
+    |     fileName -- The name of the .cbin file to create
+    |           se -- The entries to store
+    |      nameLen -- Width of the project names in the .bin file
+    |       codLen -- Width of the Solar CODs in the .bin file
+    |     stateLen -- Width of the states in the .bin file
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void write(String fileName, ArrayList<SolarEntries> se,
+            int nameLen, int codLen, int stateLen) throws IOException {
+        // build the dictionary, check if every double can be scaled and
+        // that every string fits its unsigned short length
+        HashMap<String, Integer> dictIndex = new HashMap<>();
+        ArrayList<String> dict = new ArrayList<>();
+        boolean scaled = true;
+        for (SolarEntries s : se) {
+            if (s.getProjectName().length() > 0xFFFF
+                    || s.getSolarCOD().length() > 0xFFFF
+                    || s.getState().length() > 0xFFFF) {
+                throw new IOException("A string of " + s.getEIAID()
+                        + " is longer than 65535 bytes");
+            }
+            for (String str : new String[] { s.getSolarCOD(), s.getState() }) {
+                if (!dictIndex.containsKey(str)) {
+                    dictIndex.put(str, dict.size());
+                    dict.add(str);
+                }
+            }
+            for (double d : doubles(s)) {
+                scaled = scaled && canScale(d);
+            }
+        }
+        if (dict.size() > 0xFFFF) {
+            throw new IOException("Too many distinct COD/state values");
+        }
+
+        int numBlocks = (se.size() + RECORDS_PER_BLOCK - 1) / RECORDS_PER_BLOCK;
+
+        File fileRef = new File(fileName);
+        if (fileRef.exists()) {
+            fileRef.delete();
+        }
+        try (RandomAccessFile out = new RandomAccessFile(fileRef, "rw")) {
+            out.writeInt(MAGIC);
+            out.writeInt(se.size());
+            out.writeInt(RECORDS_PER_BLOCK);
+            out.writeInt(scaled ? FLAG_SCALED : 0);
+            out.writeInt(nameLen);
+            out.writeInt(codLen);
+            out.writeInt(stateLen);
+            out.writeInt(numBlocks);
+            out.writeInt(dict.size());
+            for (String str : dict) {
+                byte[] b = str.getBytes(StandardCharsets.ISO_8859_1);
+                out.writeShort(b.length);
+                out.write(b);
+            }
+
+            // leave room for the block offsets, filled in at the end
+            long tablePos = out.getFilePointer();
+            long[] offsets = new long[numBlocks + 1];
+            out.seek(tablePos + 8L * (numBlocks + 1));
+
+            for (int b = 0; b < numBlocks; b++) {
+                offsets[b] = out.getFilePointer();
+                int first = b * RECORDS_PER_BLOCK;
+                int last = Math.min(first + RECORDS_PER_BLOCK, se.size());
+                byte[] raw = encodeBlock(se, first, last, dictIndex, scaled);
+                out.writeInt(raw.length);
+                out.write(BlockCompressor.compress(raw, raw.length));
+            }
+            offsets[numBlocks] = out.getFilePointer();
+
+            out.seek(tablePos);
+            for (long off : offsets) {
+                out.writeLong(off);
+            }
+        }
+    } // write()
+
+    /*---------------------------------------------------------------------
+    |  Method writeFromBin(String binFileName, String fileName)
+    |
+    |  Purpose:  Writes the live records of a .bin file, in file order, as
+    |            a .cbin file with the .bin file's string widths. The
+    |            nulls padding the strings are not stored.
+    |
+    |  Pre-condition:  The .bin file has the Solar fields
+    |
+    |  Post-condition: The file is written and closed
+    |
+    |  Parameters:
+    |  binFileName -- The .bin file to read
+    |     fileName -- The name of the .cbin file to create
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void writeFromBin(String binFileName, String fileName)
+            throws IOException {
+        BinScanner scanner = new BinScanner(binFileName);
+        int nameLen = scanner.getProjectNameLen();
+        int codLen = scanner.getSolarCODLen();
+        int stateLen = scanner.getStateLen();
+        scanner.close();
+        ArrayList<SolarEntries> se = new ArrayList<>();
+        try (Stream<SolarEntries> records = BinRecords.entries(binFileName,
+                false)) {
+            records.forEach(s -> {
+                s.setProjectName(unpad(s.getProjectName()));
+                s.setSolarCOD(unpad(s.getSolarCOD()));
+                s.setState(unpad(s.getState()));
+                se.add(s);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        write(fileName, se, nameLen, codLen, stateLen);
+    } // writeFromBin()
+
+    /* A string without the nulls padding it in the .bin file */
+    private static String unpad(String s) {
+        int len = s.length();
+        while (len > 0 && s.charAt(len - 1) == '\0') {
+            len--;
+        }
+        return s.substring(0, len);
+    } // unpad()
+
+    /* True if fileName starts with MAGIC. A .bin file starts with its
+       record count, which is never that large */
+    public static boolean isCompact(String fileName) {
+        try (DataInputStream in = new DataInputStream(
+                new FileInputStream(fileName))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    } // isCompact()
+
+    /*---------------------------------------------------------------------
+    |  Method buildIndex(String fileName, String idxFileName,
+    |                   HashFunction hash)
+    |
+    |  Purpose:  Writes a linear hash index of a .cbin file whose pointers
+    |            are record numbers, which fetchRecord() reads. The blocks
+    |            are read in order, so each one is decompressed once.
+    |
+    |  Pre-condition:  The file was made by write()
+    |
+    |  Post-condition: idxFileName holds the index
+    |
+    |  Parameters:
+    |     fileName -- The .cbin file
+    |  idxFileName -- The index file to write
+    |         hash -- The hash function of the new index
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void buildIndex(String fileName, String idxFileName,
+            HashFunction hash) throws IOException {
+        CompactSolarFile csf = new CompactSolarFile(fileName);
+        try {
+            LinearHashIndex index = LinearHashIndex.create(idxFileName, hash);
+            index.setGroupCommit(1024);
+            for (int n = 0; n < csf.getNumRecords(); n++) {
+                index.insert(new Entry(csf.fetchRecord(n).getEIAID(), n));
+            }
+            index.setNumIndexed(csf.getNumRecords());
+            index.close();
+        } finally {
+            csf.close();
+        }
+    } // buildIndex()
+
+    /*---------------------------------------------------------------------
+    |  Method encodeBlock(...)
+    |
+    |  Purpose:  Encodes the records [first, last) as one uncompressed
+    |            block. The block starts with RECORDS_PER_BLOCK int offsets
+    |            (relative to the block) to each record.
+    |
+    |  Pre-condition:  Every COD and state is in dictIndex
+    |
+    |  Post-condition: se is not changed
+    |
+    |  Parameters:
+    |           se -- All entries
+    |        first -- First record in the block
+    |         last -- One past the last record in the block
+    |    dictIndex -- String to dictionary index
+    |       scaled -- Store the doubles as int * 100
+    |
+    |  Returns: The uncompressed block
+    *-------------------------------------------------------------------*/
+    private static byte[] encodeBlock(ArrayList<SolarEntries> se, int first,
+            int last, HashMap<String, Integer> dictIndex, boolean scaled)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(bytes);
+        int[] recordOffsets = new int[RECORDS_PER_BLOCK];
+        int tableLen = 4 * RECORDS_PER_BLOCK;
+
+        for (int i = first; i < last; i++) {
+            SolarEntries s = se.get(i);
+            recordOffsets[i - first] = tableLen + records.size();
+            records.writeInt(s.getEIAID());
+            byte[] name = s.getProjectName().getBytes(StandardCharsets.ISO_8859_1);
+            records.writeShort(name.length);
+            records.write(name);
+            records.writeChar(dictIndex.get(s.getSolarCOD()));
+            records.writeChar(dictIndex.get(s.getState()));
+            for (double d : doubles(s)) {
+                if (scaled) {
+                    records.writeInt((int) Math.round(d * 100));
+                } else {
+                    records.writeDouble(d);
+                }
+            }
+        }
+
+        ByteBuffer block = ByteBuffer.allocate(tableLen + records.size());
+        for (int off : recordOffsets) {
+            block.putInt(off);
+        }
+        block.put(bytes.toByteArray());
+        return block.array();
+    } // encodeBlock()
+
+    /*---------------------------------------------------------------------
+    |  Method fetchRecord(int recordNum)
+    |
+    |  Purpose:  Reads record number recordNum (0 based, same order the
+    |            records were written in), which is also the pointer an
+    |            index of the file holds. Only the block holding the
+    |            record is read and decompressed.
+    |
+    |  Pre-condition:  0 <= recordNum < getNumRecords()
+    |
+    |  Post-condition: The file remains open
+    |
+    |  Parameters:
+    |    recordNum -- The record to read
+    |
+    |  Returns: The record as a SolarEntries object, strings not padded
+    *-------------------------------------------------------------------*/
+    public synchronized SolarEntries fetchRecord(int recordNum)
+            throws IOException {
+        if (recordNum < 0 || recordNum >= numRecords) {
+            throw new IOException("No record " + recordNum);
+        }
+        int block = recordNum / recordsPerBlock;
+        if (block != cachedBlock) {
+            file.seek(blockOffsets[block]);
+            int rawLen = file.readInt();
+            byte[] comp = new byte[(int) (blockOffsets[block + 1]
+                    - blockOffsets[block] - 4)];
+            file.readFully(comp);
+            blockData = ByteBuffer.wrap(
+                    BlockCompressor.decompress(comp, comp.length, rawLen));
+            cachedBlock = block;
+        }
+
+        ByteBuffer buf = blockData.duplicate();
+        buf.position(buf.getInt(4 * (recordNum % recordsPerBlock)));
+
+        SolarEntries s = new SolarEntries();
+        s.setEIAID(buf.getInt());
+        byte[] name = new byte[buf.getShort() & 0xFFFF];
+        buf.get(name);
+        s.setProjectName(new String(name, StandardCharsets.ISO_8859_1));
+        s.setSolarCOD(dictionary[buf.getChar()]);
+        s.setState(dictionary[buf.getChar()]);
+
+        double[] d = new double[5];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = (flags & FLAG_SCALED) != 0 ? buf.getInt() / 100.0
+                    : buf.getDouble();
+        }
+        s.setLatitude(d[0]);
+        s.setLongitude(d[1]);
+        s.setAvgGHI(d[2]);
+        s.setSolarCapacityDC(d[3]);
+        s.setSolarCapacityAC(d[4]);
+        return s;
+    } // fetchRecord()
+
+    /* Closes the .cbin file */
+    public void close() throws IOException {
+        file.close();
+    } // close()
+
+    /* The five doubles of an entry in the order they are stored */
+    private static double[] doubles(SolarEntries s) {
+        return new double[] { s.getLatitude(), s.getLongitude(),
+                s.getAvgGHI(), s.getSolarCapacityDC(),
+                s.getSolarCapacityAC() };
+    } // doubles()
+
+    /* True if d survives being stored as an int scaled by 100 */
+    private static boolean canScale(double d) {
+        double s = d * 100;
+        return Math.abs(s) < Integer.MAX_VALUE
+                && Math.round(s) / 100.0 == d;
+    } // canScale()
+
+    /*---------------------------------------------------------------------
+    |  Method main(String[] args)
+    |
+    |  Purpose:  Prints the number of records in a .cbin file and then the
+    |            records asked for on the command line, or with "write"
+    |            writes a .cbin file from a .bin file
+    |
+    |  Pre-condition:  args[0] is a .cbin file, the rest are record numbers
+    |
+    |  Post-condition: The file is closed
+    |
+    |  Parameters:
+    |          args -- The command line arguments
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String[] args) {
+        if (args.length < 1 || (args[0].equals("write") && args.length < 3)) {
+            System.out.println("Usage: java CompactSolarFile <cbin file>"
+                    + " [record numbers]");
+            System.out.println("       java CompactSolarFile write <bin file>"
+                    + " <cbin file>");
+            System.exit(-1);
+        }
+        try {
+            if (args[0].equals("write")) {
+                writeFromBin(args[1], args[2]);
+                System.out.println("Successfuly wrote " + args[2]);
+                return;
+            }
+            CompactSolarFile csf = new CompactSolarFile(args[0]);
+            System.out.println(csf.getNumRecords() + " records found.");
+            for (int i = 1; i < args.length; i++) {
+                SolarEntries s = csf.fetchRecord(Integer.parseInt(args[i]));
+                System.out.println("[" + s.getEIAID() + "] ["
+                        + s.getProjectName() + "] [" + s.getSolarCOD()
+                        + "] [" + s.getState() + "]");
+            }
+            csf.close();
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        } catch (NumberFormatException e) {
+            System.out.println("Please enter record numbers as integers.");
+        }
+    } // main()
+} // class CompactSolarFile
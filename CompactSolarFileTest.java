@@ -0,0 +1,193 @@
+/*
+ * CompactSolarFileTest.java -- Checks the .cbin round trip: every record
+ * of a .bin file written as a .cbin file reads back to the same bytes,
+ * over several blocks, with doubles that can and can not be scaled and a
+ * name longer than 255 bytes. Then it indexes both files and checks that
+ * Prog22 prints the same lines from the .cbin file as from the .bin file.
+ * Exits with 1 if anything is wrong.
+ *
+ * Usage: java CompactSolarFileTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class CompactSolarFileTest {
+    /*+----------------------------------------------------------------------
+    ||  Class CompactSolarFileTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Writes a .cbin file from a .bin file and reads every
+    ||                  record back, directly and through an index.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: RECORDS: records written, a few blocks' worth
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static final int RECORDS = 3 * CompactSolarFile.RECORDS_PER_BLOCK
+            + 5;
+
+    private static int failures;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Runs the round trip twice, once with doubles that scale
+    |            by 100 and once with ones that do not
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The temporary folder is removed
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws IOException {
+        Path dir = Files.createTempDirectory("compactsolar");
+        PrintStream stdout = System.out;
+        InputStream stdin = System.in;
+        try {
+            roundTrip(dir, 0.25);
+            roundTrip(dir, 1.0 / 3);
+        } finally {
+            System.setOut(stdout);
+            System.setIn(stdin);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path f : files) {
+                    Files.delete(f);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "OK: .cbin records read back"
+                + " unchanged" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* Writes a .bin file whose doubles are multiples of step, turns it
+       into a .cbin file and checks both ways of reading it */
+    private static void roundTrip(Path dir, double step) throws IOException {
+        String binFileName = dir.resolve("t.bin").toString();
+        String cbinFileName = dir.resolve("t.cbin").toString();
+        String idxFileName = dir.resolve("t.idx").toString();
+        String cidxFileName = dir.resolve("c.idx").toString();
+        int nameLen = 300;
+        RecordSchema schema = RecordSchema.solar(nameLen, 10, 2);
+        RecordCodec codec = new RecordCodec(schema);
+        byte[][] records = new byte[RECORDS][];
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(binFileName)))) {
+            out.writeInt(RECORDS);
+            out.writeInt(nameLen);
+            out.writeInt(10);
+            out.writeInt(2);
+            for (int i = 0; i < RECORDS; i++) {
+                SolarEntries s = new SolarEntries();
+                s.setEIAID(50000 - 7 * i);
+                s.setProjectName(i == 70 ? "L".repeat(nameLen)
+                        : "Plant " + i);
+                s.setSolarCOD((1 + i % 12) + "/1/20" + (10 + i % 5));
+                s.setState(i % 2 == 0 ? "CA" : "NV");
+                s.setLatitude(30 + i * step);
+                s.setLongitude(-100 - i * step);
+                s.setAvgGHI(i * step);
+                s.setSolarCapacityDC(i * step * 2);
+                s.setSolarCapacityAC(i * step * 3);
+                records[i] = codec.newRecord();
+                codec.encode(s, records[i]);
+                out.write(records[i]);
+            }
+        }
+        CompactSolarFile.writeFromBin(binFileName, cbinFileName);
+        expect(CompactSolarFile.isCompact(cbinFileName)
+                && !CompactSolarFile.isCompact(binFileName), "isCompact()"
+                + " tells the files apart");
+        expect(new File(cbinFileName).length() < new File(binFileName)
+                .length() / 2, "the .cbin file is less than half the size");
+
+        CompactSolarFile csf = new CompactSolarFile(cbinFileName);
+        expect(csf.getNumRecords() == RECORDS, "the .cbin file holds every"
+                + " record");
+        RecordCodec cbinCodec = new RecordCodec(csf.getSchema());
+        byte[] record = cbinCodec.newRecord();
+        int wrong = 0;
+        for (int i = RECORDS - 1; i >= 0; i--) { // a new block each time
+            cbinCodec.encode(csf.fetchRecord(i), record);
+            if (!Arrays.equals(record, records[i])) {
+                wrong++;
+            }
+        }
+        csf.close();
+        expect(wrong == 0, wrong + " records read back different (step "
+                + step + ")");
+
+        ParallelIndexBuilder.build(binFileName, idxFileName, 1,
+                HashFunction.MODULO);
+        CompactSolarFile.buildIndex(cbinFileName, cidxFileName,
+                HashFunction.MODULO);
+        StringBuilder ids = new StringBuilder();
+        for (int i = 0; i < RECORDS; i += 9) {
+            ids.append(50000 - 7 * i).append('\n');
+        }
+        ids.append("50000\n12\n49510\n-1\n");
+        String fromBin = run(ids.toString(), () -> Prog22.main(
+                new String[] {idxFileName, binFileName}));
+        String fromCbin = run(ids.toString(), () -> Prog22.main(
+                new String[] {cidxFileName, cbinFileName}));
+        expect(fromBin.contains("[50000] [Plant 0"), "Prog22 finds 50000");
+        expect(fromBin.contains("The target value 12 was not found."),
+                "Prog22 does not find 12");
+        expect(fromBin.equals(fromCbin), "Prog22 prints the same from the"
+                + " .cbin file as from the .bin file (step " + step + ")");
+    } // roundTrip()
+
+    /* A program run with its own input and output */
+    private interface Run {
+        void run() throws IOException;
+    }
+
+    /* Runs a program with input on System.in and returns what it printed */
+    private static String run(String input, Run program) throws IOException {
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        System.setOut(new PrintStream(printed, true));
+        try {
+            program.run();
+        } finally {
+            System.setOut(stdout);
+        }
+        return printed.toString();
+    } // run()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class CompactSolarFileTest
@@ -0,0 +1,537 @@
+/*
+ * CoveringIndex.java -- A read only copy of an index file whose slots also
+ * carry some of the record's columns next to the key and pointer, so a
+ * lookup that only needs those columns is answered from the bucket and
+ * never reads the .bin file. Prog22 prints the EIA ID, name and Solar Cap
+ * AC, so a covering index with the name and capacity_ac columns answers
+ * every Prog22 query with one bucket read instead of two random reads.
+ *
+ * Usage: java CoveringIndex <index file> <bin file> <covering file> [columns]
+ * where columns is a comma separated list of name, cod, state, latitude,
+ * longitude, avg_ghi, capacity_ac and capacity_dc (name,capacity_ac if not
+ * given).
+ *
+ * The covering file has the same H value, hash function and buckets as
+ * the index it was built from, with each key in the same bucket and slot.
+ * Only the slots are wider:
+ *  int key, int pointer, then the bytes of each column as in the record
+ * and the slot size is kept in the header at the bottom of the file:
+ *  int fields[C_COLUMNS + number of columns], int count, int MAGIC,
+ *  int hVal
+ * Where each column sits in a record comes from the .bin file's schema
+ * (see RecordSchema), and the header holds the record count and modified
+ * time the .bin file had when it was built.
+ *
+ * The copy is not changed when the index or the .bin file is, so it has
+ * to be built again after Prog21 -append or UpdateRecords; open() refuses
+ * it once the .bin file's record count or modified time has changed. It
+ * is written to <covering file>.tmp and renamed over the old one when
+ * finished.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+public class CoveringIndex {
+    /*+----------------------------------------------------------------------
+    ||  Class CoveringIndex
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Builds and reads index files whose slots hold chosen
+    ||                  columns of each record as well as its pointer.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: MAGIC: marks a covering index file ("LHC2")
+    ||                  C_ENTRIES: header field holding the number of keys
+    ||                  C_HASH: header field holding the HashFunction code
+    ||                  C_SLOT_SIZE: header field holding bytes per slot
+    ||                  C_RECORDS, C_BIN_TIME_HI, C_BIN_TIME_LO: header
+    ||                             fields holding the record count and
+    ||                             modified time of the .bin when built
+    ||                  C_COLUMNS: header field holding the number of
+    ||                             columns, whose codes follow it
+    ||                  READ_SIZE: about how many bytes of buckets are
+    ||                             copied at once while building
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None, use open() or build()
+    ||
+    ||   Class Methods: void main(String args[])
+    ||                  void build(String idxFileName, String binFileName,
+    ||                             String fileName, Column[] columns)
+    ||                  CoveringIndex open(String fileName,
+    ||                                     String binFileName)
+    ||                  Column[] parseColumns(String list)
+    ||
+    ||   Inst. Methods: int lookup(int key, byte[] record)
+    ||                  boolean covers(Column column)
+    ||                  int getNumEntries()
+    ||                  int getSlotSize()
+    ||                  void close()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int MAGIC = 0x4C484332; // "LHC2"
+    public static final int C_ENTRIES = 0;
+    public static final int C_HASH = 1;
+    public static final int C_SLOT_SIZE = 2;
+    public static final int C_RECORDS = 3;
+    public static final int C_BIN_TIME_HI = 4;
+    public static final int C_BIN_TIME_LO = 5;
+    public static final int C_COLUMNS = 6;
+    public static final int READ_SIZE = 4 << 20;
+
+    private static final int SLOTS = LinearHashIndex.BLOCKING_FACTOR;
+
+    /* The record columns a slot can carry, each with the schema field it
+       is copied from. The file keeps their ordinals, so new ones go last */
+    public enum Column {
+        NAME(RecordSchema.NAME, RecordSchema.Type.STRING),
+        COD(RecordSchema.COD, RecordSchema.Type.STRING),
+        STATE(RecordSchema.STATE, RecordSchema.Type.STRING),
+        LATITUDE(RecordSchema.LATITUDE, RecordSchema.Type.DOUBLE),
+        LONGITUDE(RecordSchema.LONGITUDE, RecordSchema.Type.DOUBLE),
+        AVG_GHI(RecordSchema.AVG_GHI, RecordSchema.Type.DOUBLE),
+        CAPACITY_AC(RecordSchema.CAPACITY_AC, RecordSchema.Type.DOUBLE),
+        CAPACITY_DC(RecordSchema.CAPACITY_DC, RecordSchema.Type.DOUBLE);
+
+        private final String field;
+        private final RecordSchema.Type type;
+
+        Column(String field, RecordSchema.Type type) {
+            this.field = field;
+            this.type = type;
+        }
+
+        /* Where the column is in a record of the codec's schema. Throws
+           IllegalArgumentException if the schema has no such field */
+        public RecordCodec.Accessor accessor(RecordCodec codec) {
+            return codec.accessor(field, type);
+        } // accessor()
+    }
+
+    private String fileName;
+    private FileChannel channel;
+    private int hVal;
+    private int numBuckets;
+    private int numEntries;
+    private int numRecords;         // Records in the .bin file when built
+    private long binTime;           // Its modified time then
+    private HashFunction hashFunction;
+    private int slotSize;
+    private int bucketSize;
+    private Column[] columns;
+    private RecordCodec.Accessor idField;   // Where the key goes in a record
+    private int[] recordOffsets;    // Where each column goes in a record
+    private int[] slotOffsets;      // Where each column is in a slot
+    private int[] widths;           // Bytes of each column
+
+    /* Getter methods */
+    public int getNumEntries() { return numEntries; }
+    public int getSlotSize() { return slotSize; }
+
+    private CoveringIndex() {
+    }
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Builds a covering index from an index and its .bin file
+    |
+    |  Pre-condition:  The index was built from the .bin file
+    |
+    |  Post-condition: The covering file has been written
+    |
+    |  Parameters:
+    |         args -- The index, .bin and covering file names and
+    |                 optionally the columns
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        if (args.length < 3) {
+            System.out.println("Usage: java CoveringIndex <index file> <bin file>"
+                    + " <covering file> [columns]");
+            System.exit(-1);
+        }
+        Column[] columns = null;
+        try {
+            columns = parseColumns(args.length > 3 ? args[3]
+                    : "name,capacity_ac");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+
+        try {
+            build(args[0], args[1], args[2], columns);
+            CoveringIndex cover = open(args[2], args[1]);
+            System.out.println("Successfuly wrote " + args[2] + " ("
+                    + cover.getNumEntries() + " keys, "
+                    + cover.getSlotSize() + " byte slots)");
+            cover.close();
+        } catch (IOException e) {
+            System.out.println("Error: Could not build " + args[2] + ": "
+                    + e.getMessage());
+            System.exit(-1);
+        }
+    } // main()
+
+    /*---------------------------------------------------------------------
+    |  Method parseColumns(String list)
+    |
+    |  Purpose:  Turns a comma separated list of column names into columns
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |         list -- Column names, in any case
+    |
+    |  Returns: The columns, in the order given
+    *-------------------------------------------------------------------*/
+    public static Column[] parseColumns(String list) {
+        String[] names = list.split(",");
+        Column[] columns = new Column[names.length];
+        for (int i = 0; i < names.length; i++) {
+            try {
+                columns[i] = Column.valueOf(names[i].trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                StringBuilder known = new StringBuilder();
+                for (Column c : Column.values()) {
+                    known.append(known.length() == 0 ? "" : ", ")
+                            .append(c.name().toLowerCase());
+                }
+                throw new IllegalArgumentException("Unknown column "
+                        + names[i].trim() + ", use one of: " + known);
+            }
+        }
+        return columns;
+    } // parseColumns()
+
+    /*---------------------------------------------------------------------
+    |  Method build(String idxFileName, String binFileName,
+    |               String fileName, Column[] columns)
+    |
+    |  Purpose:  Copies every bucket of the index, READ_SIZE bytes at a
+    |            time, into wider slots that also hold the columns of the
+    |            record each key points at, found through the .bin file's
+    |            schema. The .bin file is mapped so the columns are copied
+    |            straight out of it.
+    |
+    |  Pre-condition:  The index was built from the .bin file
+    |
+    |  Post-condition: fileName holds the covering index
+    |
+    |  Parameters:
+    |  idxFileName -- The index to copy
+    |  binFileName -- The .bin file it points into
+    |     fileName -- The covering file to write
+    |      columns -- The columns each slot carries
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void build(String idxFileName, String binFileName,
+            String fileName, Column[] columns) throws IOException {
+        LinearHashIndex idx = LinearHashIndex.open(idxFileName, false);
+        int hVal = idx.getHVal();
+        int numBuckets = idx.getNumBuckets();
+        int[] fields = new int[C_COLUMNS + 1 + columns.length];
+        fields[C_ENTRIES] = idx.getNumEntries();
+        fields[C_HASH] = idx.getHashFunction().getCode();
+        idx.close();
+
+        // taken before reading, so a change during the build shows
+        long binTime = BinScanner.modifiedTime(binFileName);
+        BinScanner scanner = new BinScanner(binFileName);
+        fields[C_RECORDS] = scanner.getNumRecords();
+        fields[C_BIN_TIME_HI] = (int) (binTime >>> 32);
+        fields[C_BIN_TIME_LO] = (int) binTime;
+        RecordCodec codec = new RecordCodec(scanner.getSchema());
+        scanner.close();
+
+        RecordCodec.Accessor[] fieldsOf = new RecordCodec.Accessor[
+                columns.length];
+        int slotSize = 4 + 4;
+        for (int i = 0; i < columns.length; i++) {
+            fieldsOf[i] = columns[i].accessor(codec);
+            slotSize += fieldsOf[i].getWidth();
+        }
+        fields[C_SLOT_SIZE] = slotSize;
+        fields[C_COLUMNS] = columns.length;
+        for (int i = 0; i < columns.length; i++) {
+            fields[C_COLUMNS + 1 + i] = columns[i].ordinal();
+        }
+
+        int bucketSize = SLOTS * slotSize;
+        int perRead = Math.max(1, READ_SIZE / LinearHashIndex.BUCKET_SIZE);
+        ByteBuffer in = ByteBuffer.allocateDirect(perRead
+                * LinearHashIndex.BUCKET_SIZE);
+        ByteBuffer out = ByteBuffer.allocateDirect(perRead * bucketSize);
+        File tmp = new File(fileName + ".tmp");
+        tmp.delete();
+        try (FileChannel idxCh = FileChannel.open(Paths.get(idxFileName),
+                    StandardOpenOption.READ);
+                FileChannel binCh = FileChannel.open(Paths.get(binFileName),
+                    StandardOpenOption.READ);
+                FileChannel ch = FileChannel.open(tmp.toPath(),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            MappedByteBuffer bin = binCh.map(FileChannel.MapMode.READ_ONLY, 0,
+                    binCh.size());
+            long outPos = 0;
+            for (int b = 0; b < numBuckets; b += perRead) {
+                int count = Math.min(perRead, numBuckets - b);
+                in.clear();
+                in.limit(count * LinearHashIndex.BUCKET_SIZE);
+                long pos = (long) b * LinearHashIndex.BUCKET_SIZE;
+                while (in.hasRemaining()) {
+                    int n = idxCh.read(in, pos);
+                    if (n < 0) {
+                        throw new EOFException("Index file ends inside bucket "
+                                + b);
+                    }
+                    pos += n;
+                }
+
+                out.clear();
+                for (int s = 0; s < count * SLOTS; s++) {
+                    int key = in.getInt(s * LinearHashIndex.SLOT_SIZE);
+                    int ptr = in.getInt(s * LinearHashIndex.SLOT_SIZE + 4);
+                    out.putInt(key);
+                    out.putInt(ptr);
+                    for (RecordCodec.Accessor f : fieldsOf) {
+                        if (key >= 0) {
+                            bin.limit(ptr + f.getOffset() + f.getWidth());
+                            bin.position(ptr + f.getOffset());
+                            out.put(bin);
+                            bin.clear();
+                        } else { // EMPTY and TOMBSTONE carry zeros
+                            for (int z = 0; z < f.getWidth(); z++) {
+                                out.put((byte) 0);
+                            }
+                        }
+                    }
+                }
+                out.flip();
+                while (out.hasRemaining()) {
+                    outPos += ch.write(out, outPos);
+                }
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(4 * (fields.length + 3));
+            for (int f : fields) {
+                header.putInt(f);
+            }
+            header.putInt(fields.length);
+            header.putInt(MAGIC);
+            header.putInt(hVal);
+            header.flip();
+            while (header.hasRemaining()) {
+                outPos += ch.write(header, outPos);
+            }
+            ch.force(true);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            tmp.delete();
+            throw new IOException("Index points outside " + binFileName);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        LinearHashIndex.publish(tmp.getPath(), fileName);
+    } // build()
+
+    /*---------------------------------------------------------------------
+    |  Method open(String fileName, String binFileName)
+    |
+    |  Purpose:  Opens a covering index, reads its header and checks it was
+    |            built from the .bin file as it is now: the same number of
+    |            records and the same modified time. The columns of a
+    |            record appended, deleted or updated since the build would
+    |            be missing or old, so a stale copy is refused. Where each
+    |            column goes in a record comes from the .bin file's schema.
+    |
+    |  Pre-condition:  The file was written by build()
+    |
+    |  Post-condition: The file is open for lookups
+    |
+    |  Parameters:
+    |     fileName -- Name of the covering file
+    |  binFileName -- The .bin file it was built from
+    |
+    |  Returns: The open covering index
+    *-------------------------------------------------------------------*/
+    public static CoveringIndex open(String fileName, String binFileName)
+            throws IOException {
+        CoveringIndex cover = new CoveringIndex();
+        cover.fileName = fileName;
+        cover.channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ);
+        try {
+            BinScanner scanner = new BinScanner(binFileName);
+            int binRecords = scanner.getNumRecords();
+            RecordCodec codec = new RecordCodec(scanner.getSchema());
+            scanner.close();
+            cover.readHeader(codec);
+            if (binRecords != cover.numRecords) {
+                throw new IOException(fileName + " was built from "
+                        + cover.numRecords + " records but " + binFileName
+                        + " has " + binRecords + ", build it again");
+            }
+            if (BinScanner.modifiedTime(binFileName) != cover.binTime) {
+                throw new IOException(binFileName + " was changed after "
+                        + fileName + " was built, build it again");
+            }
+        } catch (IOException e) {
+            cover.channel.close();
+            throw e;
+        }
+        return cover;
+    } // open()
+
+    /* Reads the header at the bottom of the file and works out where the
+       columns are in a slot and, through codec, in a record */
+    private void readHeader(RecordCodec codec) throws IOException {
+        long len = channel.size();
+        ByteBuffer tail = ByteBuffer.allocate(12);
+        if (len < 12 || channel.read(tail, len - 12) != 12) {
+            throw new IOException(fileName + " is too short");
+        }
+        int count = tail.getInt(0);
+        hVal = tail.getInt(8);
+        if (tail.getInt(4) != MAGIC || count <= C_COLUMNS || hVal < 0
+                || hVal > LinearHashIndex.MAX_H) {
+            throw new IOException(fileName + " is not a covering index,"
+                    + " build it again");
+        }
+        ByteBuffer header = ByteBuffer.allocate(4 * count);
+        channel.read(header, len - 12 - 4L * count);
+        int[] fields = new int[count];
+        for (int i = 0; i < count; i++) {
+            fields[i] = header.getInt(4 * i);
+        }
+
+        numBuckets = 1 << (hVal + 1);
+        numEntries = fields[C_ENTRIES];
+        numRecords = fields[C_RECORDS];
+        binTime = ((long) fields[C_BIN_TIME_HI] << 32)
+                | (fields[C_BIN_TIME_LO] & 0xFFFFFFFFL);
+        hashFunction = HashFunction.fromCode(fields[C_HASH]);
+        slotSize = fields[C_SLOT_SIZE];
+        if (hashFunction == null) {
+            throw new IOException(fileName + " uses an unknown hash function");
+        }
+        if (count != C_COLUMNS + 1 + fields[C_COLUMNS]) {
+            throw new IOException(fileName + " has a damaged header");
+        }
+        columns = new Column[fields[C_COLUMNS]];
+        idField = codec.accessor(RecordSchema.ID, RecordSchema.Type.INT);
+        recordOffsets = new int[columns.length];
+        slotOffsets = new int[columns.length];
+        widths = new int[columns.length];
+        int at = 4 + 4;
+        for (int i = 0; i < columns.length; i++) {
+            int code = fields[C_COLUMNS + 1 + i];
+            if (code < 0 || code >= Column.values().length) {
+                throw new IOException(fileName + " holds an unknown column");
+            }
+            columns[i] = Column.values()[code];
+            RecordCodec.Accessor f;
+            try {
+                f = columns[i].accessor(codec);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(fileName + " does not match the .bin"
+                        + " file: " + e.getMessage());
+            }
+            recordOffsets[i] = f.getOffset();
+            slotOffsets[i] = at;
+            widths[i] = f.getWidth();
+            at += widths[i];
+        }
+        bucketSize = SLOTS * slotSize;
+        if (len != (long) numBuckets * bucketSize + 4L * (count + 3)) {
+            throw new IOException(fileName + " size does not match its header");
+        }
+        if (at != slotSize) {
+            throw new IOException(fileName + " does not match the columns of"
+                    + " the .bin file, build it again");
+        }
+    } // readHeader()
+
+    /* True if every slot carries column */
+    public boolean covers(Column column) {
+        for (Column c : columns) {
+            if (c == column) {
+                return true;
+            }
+        }
+        return false;
+    } // covers()
+
+    /*---------------------------------------------------------------------
+    |  Method lookup(int key, byte[] record)
+    |
+    |  Purpose:  Reads the bucket of key in one read and, if the key is
+    |            there, copies the key and every covered column into
+    |            record at the place they have in a .bin record. The other
+    |            bytes of record are left as they were.
+    |
+    |  Pre-condition:  key is not negative, record is as long as a record
+    |                  of the .bin file
+    |
+    |  Post-condition: The file is not changed
+    |
+    |  Parameters:
+    |          key -- The EIA ID to look for
+    |       record -- Where the columns are copied to
+    |
+    |  Returns: The pointer into the .bin file, or -1 if not found
+    *-------------------------------------------------------------------*/
+    public int lookup(int key, byte[] record) throws IOException {
+        int b = hashFunction.bucket(key, numBuckets);
+        ByteBuffer bucket = ByteBuffer.allocate(bucketSize);
+        long pos = (long) b * bucketSize;
+        while (bucket.hasRemaining()) {
+            if (channel.read(bucket, pos + bucket.position()) < 0) {
+                throw new IOException("Unexpected end of " + fileName);
+            }
+        }
+
+        for (int i = 0; i < SLOTS; i++) {
+            int base = i * slotSize;
+            int id = bucket.getInt(base);
+            if (id == LinearHashIndex.EMPTY) {
+                return -1;
+            }
+            if (id == key) {
+                idField.putInt(record, key);
+                for (int c = 0; c < columns.length; c++) {
+                    bucket.position(base + slotOffsets[c]);
+                    bucket.get(record, recordOffsets[c], widths[c]);
+                }
+                return bucket.getInt(base + 4);
+            }
+        }
+        return -1;
+    } // lookup()
+
+    /* Closes the file */
+    public void close() throws IOException {
+        channel.close();
+    } // close()
+} // class CoveringIndex
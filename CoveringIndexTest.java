@@ -0,0 +1,187 @@
+/*
+ * CoveringIndexTest.java -- Checks that a covering index answers Prog22
+ * queries with the columns of the .bin file it was built from, and that
+ * once a record is updated Prog22 -covering refuses the old copy instead
+ * of printing the old Solar Cap AC. It makes a small .bin file, index and
+ * covering file in a temporary folder, runs Prog22 in its own JVM (it
+ * exits when it refuses a file) and exits with 1 if anything is wrong.
+ *
+ * Usage: java CoveringIndexTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class CoveringIndexTest {
+    /*+----------------------------------------------------------------------
+    ||  Class CoveringIndexTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Queries a covering index before and after the .bin
+    ||                  file it copies is changed.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static int failures;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Builds a covering index, queries it, updates the Solar
+    |            Cap AC of a record, checks the covering index is refused
+    |            and that a rebuilt one prints the new value
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The temporary folder is removed
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws Exception {
+        Path dir = Files.createTempDirectory("coveringindex");
+        String binFileName = dir.resolve("t.bin").toString();
+        String idxFileName = dir.resolve("t.idx").toString();
+        String covFileName = dir.resolve("t.cov").toString();
+        try {
+            RecordSchema schema = RecordSchema.solar(20, 10, 2);
+            RecordCodec codec = new RecordCodec(schema);
+            try (DataOutputStream out = new DataOutputStream(
+                    new FileOutputStream(binFileName))) {
+                out.writeInt(3);
+                out.writeInt(20);
+                out.writeInt(10);
+                out.writeInt(2);
+                byte[] record = codec.newRecord();
+                for (int id = 1; id <= 3; id++) {
+                    SolarEntries s = new SolarEntries();
+                    s.setEIAID(id * 1000);
+                    s.setProjectName("Plant " + id);
+                    s.setSolarCOD("1/1/2000");
+                    s.setState("TX");
+                    s.setSolarCapacityDC(100.0 + id);   // the MW-AC column
+                    s.setSolarCapacityAC(200.0 + id);   // the MW-DC column
+                    codec.encode(s, record);
+                    out.write(record);
+                }
+            }
+            schema.write(binFileName);
+            ParallelIndexBuilder.build(binFileName, idxFileName, 1,
+                    HashFunction.MODULO);
+            CoveringIndex.build(idxFileName, binFileName, covFileName,
+                    CoveringIndex.parseColumns("name,capacity_ac"));
+
+            String[] query = {"Prog22", idxFileName, binFileName,
+                    "-covering", covFileName};
+            Result before = java("2000\n5\n-1\n", query);
+            expect(before.status == 0, "Prog22 -covering runs");
+            expect(before.out.contains("[2000] [Plant 2") && before.out
+                    .contains("] [102.0]"), "the covering index prints 2000");
+            expect(before.out.contains("The target value 5 was not found"),
+                    "a missing ID is not found");
+
+            // the file's time is in milliseconds, so let it move on
+            Thread.sleep(20);
+            Result update = java("update 2000 capac 1.25\n-1\n",
+                    "UpdateRecords", idxFileName, binFileName);
+            expect(update.status == 0, "UpdateRecords runs");
+
+            Result stale = java("2000\n-1\n", query);
+            expect(stale.status != 0, "Prog22 refuses the old covering index");
+            expect(!stale.out.contains("[102.0]"), "the old capacity is not"
+                    + " printed");
+            expect(stale.out.contains("build it again"), "Prog22 says to"
+                    + " build the covering index again");
+            try {
+                CoveringIndex.open(covFileName, binFileName).close();
+                expect(false, "open() refuses the old covering index");
+            } catch (IOException e) {
+                // refused as it should be
+            }
+
+            Result plain = java("2000\n-1\n", "Prog22", idxFileName,
+                    binFileName);
+            expect(plain.out.contains("] [1.25]"), "Prog22 prints the new"
+                    + " capacity from the .bin file");
+
+            CoveringIndex.build(idxFileName, binFileName, covFileName,
+                    CoveringIndex.parseColumns("name,capacity_ac"));
+            Result after = java("2000\n3000\n-1\n", query);
+            expect(after.status == 0, "Prog22 takes the rebuilt covering"
+                    + " index");
+            expect(after.out.contains("[2000] [Plant 2") && after.out
+                    .contains("] [1.25]"), "the rebuilt covering index"
+                    + " prints the new capacity");
+            expect(after.out.contains("[3000] [Plant 3") && after.out
+                    .contains("] [103.0]"), "the other records are kept");
+        } finally {
+            for (String f : new String[] {binFileName, idxFileName,
+                    covFileName, idxFileName + ".wal",
+                    binFileName + RecordSchema.SUFFIX}) {
+                Files.deleteIfExists(Paths.get(f));
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "OK: covering index follows the"
+                + " .bin file" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* What a program run in its own JVM printed and its exit status */
+    private static class Result {
+        int status;
+        String out;
+    }
+
+    /* Runs a class of this folder in a new JVM with input on System.in */
+    private static Result java(String input, String... command)
+            throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java")
+                .toString());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.addAll(Arrays.asList(command));
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        try (OutputStream in = p.getOutputStream()) {
+            in.write(input.getBytes());
+        }
+        Result r = new Result();
+        r.out = new String(p.getInputStream().readAllBytes());
+        r.status = p.waitFor();
+        return r;
+    } // java()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class CoveringIndexTest
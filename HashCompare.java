@@ -0,0 +1,186 @@
+/*
+ * HashCompare.java -- Builds a table with every HashFunction from the same
+ * keys and prints how each one spread them: how many times the table had
+ * to double, the final load factor, the fullest bucket and the average
+ * number of slots a lookup scans.
+ *
+ * Usage: java HashCompare <bin file>
+ *        java HashCompare -synthetic <number of keys>
+ * The first uses the EIA IDs of a .bin file. The second makes three sets
+ * of IDs that are hard on the modulo hash: sequential IDs, IDs handed out
+ * in clustered blocks, and IDs that are all multiples of 256.
+ *
+ * The tables are OffHeapLinearHashMaps, which split exactly like the
+ * index file does, so the numbers match what Prog21 would build.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class HashCompare {
+    /*+----------------------------------------------------------------------
+    ||  Class HashCompare
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Compares the hash functions on real or made up keys.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: CLUSTER: IDs in a block of the clustered set
+    ||                  CLUSTER_GAP: distance between two blocks
+    ||                  STRIDE: step between IDs of the strided set
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int CLUSTER = 50;
+    public static final int CLUSTER_GAP = 1000;
+    public static final int STRIDE = 256;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Gets the key sets to compare on and prints one table of
+    |            results per set.
+    |
+    |  Pre-condition:  args is a .bin file, or -synthetic and a count
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |         args -- The command line arguments
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        if (args.length < 1) {
+            System.out.println("Usage: java HashCompare <bin file>");
+            System.out.println("       java HashCompare -synthetic <number of keys>");
+            System.exit(-1);
+        }
+
+        if (args[0].equals("-synthetic")) {
+            int n = 0;
+            try {
+                n = Integer.parseInt(args[1]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                System.out.println("Please give the number of keys as an integer.");
+                System.exit(-1);
+            }
+            int[] sequential = new int[n];
+            int[] clustered = new int[n];
+            int[] strided = new int[n];
+            for (int i = 0; i < n; i++) {
+                sequential[i] = i + 1;
+                clustered[i] = (i / CLUSTER) * CLUSTER_GAP + i % CLUSTER;
+                strided[i] = (int) ((long) i * STRIDE % Integer.MAX_VALUE);
+            }
+            compare("sequential IDs", sequential);
+            compare("clustered IDs (" + CLUSTER + " every " + CLUSTER_GAP + ")",
+                    clustered);
+            compare("IDs in steps of " + STRIDE, strided);
+            return;
+        }
+
+        try {
+            BinScanner scanner = new BinScanner(args[0]);
+            int[] keys = new int[scanner.getNumRecords()];
+            int[] ids = new int[scanner.getBatchSize()];
+            int[] pointers = new int[scanner.getBatchSize()];
+            int n = 0;
+            scanner.start(0, false);
+            for (int count = scanner.next(ids, pointers); count > 0;
+                    count = scanner.next(ids, pointers)) {
+                for (int i = 0; i < count; i++) {
+                    if (ids[i] >= 0) {
+                        keys[n++] = ids[i];
+                    }
+                }
+            }
+            scanner.close();
+            compare("EIA IDs of " + args[0], Arrays.copyOf(keys, n));
+        } catch (IOException e) {
+            System.out.println("Error: Could not read " + args[0]);
+            System.exit(-1);
+        }
+    } // main()
+
+    /*---------------------------------------------------------------------
+    |  Method compare(String title, int[] keys)
+    |
+    |  Purpose:  Inserts the keys, in order, into a new table for every
+    |            hash function and prints a line of results for each.
+    |
+    |  Pre-condition:  The keys are unique and not negative
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |        title -- What the keys are
+    |         keys -- The keys
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private static void compare(String title, int[] keys) {
+        System.out.println(title + ", " + keys.length + " keys");
+        System.out.printf("  %-8s %7s %9s %6s %8s %8s %8s %9s%n", "hash",
+                "splits", "buckets", "load", "max/bkt", "std dev",
+                "probes", "build ms");
+        for (HashFunction f : HashFunction.values()) {
+            long start = System.nanoTime();
+            OffHeapLinearHashMap map = new OffHeapLinearHashMap(f);
+            try {
+                for (int k : keys) {
+                    map.put(k, k);
+                }
+            } catch (IllegalStateException | OutOfMemoryError e) {
+                // the strided set can need 2^MAX_H buckets under modulo
+                System.out.printf("  %-8s gave up at H = %d: table too large%n",
+                        f.name().toLowerCase(), map.getHVal());
+                continue;
+            }
+            long millis = (System.nanoTime() - start) / 1000000;
+
+            int[] occupancy = map.getOccupancy();
+            long buckets = 0;
+            long probes = 0;    // slots scanned to find every key once
+            int max = 0;
+            for (int n = 0; n < occupancy.length; n++) {
+                buckets += occupancy[n];
+                probes += (long) occupancy[n] * n * (n + 1) / 2;
+                if (occupancy[n] > 0) {
+                    max = n;
+                }
+            }
+            double mean = (double) keys.length / buckets;
+            double variance = 0;
+            for (int n = 0; n < occupancy.length; n++) {
+                variance += occupancy[n] * (n - mean) * (n - mean);
+            }
+            // each split doubles the table, which starts with H = 0
+            System.out.printf("  %-8s %7d %9d %6.3f %8d %8.2f %8.2f %9d%n",
+                    f.name().toLowerCase(), map.getHVal(), buckets,
+                    mean / LinearHashIndex.BLOCKING_FACTOR, max,
+                    Math.sqrt(variance / buckets),
+                    keys.length == 0 ? 0 : (double) probes / keys.length,
+                    millis);
+        }
+    } // compare()
+} // class HashCompare
@@ -0,0 +1,118 @@
+/*
+ * HashFunction.java -- The ways an EIA ID can be turned into a bucket
+ * number. MODULO is what the index has always used, k % 2^(H + 1), which
+ * only looks at the low bits of the ID, so IDs handed out in sequential
+ * or clustered blocks can fill some buckets long before others. MURMUR3
+ * first mixes every bit of the ID into every other bit with the finalizer
+ * of MurmurHash3 and then takes the modulo.
+ *
+ * Both keep the property linear hashing needs: when the number of buckets
+ * doubles, a key in bucket b either stays in b or moves to b + the old
+ * number of buckets, since the mixed value does not depend on the table
+ * size.
+ *
+ * The code of the function used is stored in the index header.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+public enum HashFunction {
+    /*+----------------------------------------------------------------------
+    ||  Enum HashFunction
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Picks the bucket of a key for a table size.
+    ||
+    ||   Inherits from: Enum.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: MODULO: the key itself, modulo the table size
+    ||                  MURMUR3: the key mixed by the Murmur3 finalizer
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||   Class Methods: HashFunction fromCode(int code)
+    ||                  HashFunction fromName(String name)
+    ||
+    ||   Inst. Methods: int bucket(int k, int numBuckets)
+    ||                  int getCode()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    MODULO(0) {
+        int mix(int k) {
+            return k;
+        }
+    },
+
+    MURMUR3(1) {
+        int mix(int k) {
+            int h = k;
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h & 0x7fffffff; // keep the modulo positive
+        }
+    };
+
+    private final int code;     // Stored in the index header
+
+    HashFunction(int code) {
+        this.code = code;
+    }
+
+    /* Getter method */
+    public int getCode() { return code; }
+
+    /* The key with its bits mixed, never negative for a key >= 0 */
+    abstract int mix(int k);
+
+    /*---------------------------------------------------------------------
+    |  Method bucket(int k, int numBuckets)
+    |
+    |  Purpose:  Computes the bucket of key k in a table of numBuckets
+    |            buckets
+    |
+    |  Pre-condition:  k is not negative, numBuckets is a power of 2
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |            k -- The EIA ID
+    |   numBuckets -- Number of buckets in the table
+    |
+    |  Returns: A bucket number from 0 to numBuckets - 1
+    *-------------------------------------------------------------------*/
+    public int bucket(int k, int numBuckets) {
+        return mix(k) % numBuckets;
+    } // bucket()
+
+    /* The function stored as code in a header, null if there is none */
+    public static HashFunction fromCode(int code) {
+        for (HashFunction f : values()) {
+            if (f.code == code) {
+                return f;
+            }
+        }
+        return null;
+    } // fromCode()
+
+    /* The function with a name given on the command line, null if none */
+    public static HashFunction fromName(String name) {
+        for (HashFunction f : values()) {
+            if (f.name().equalsIgnoreCase(name)) {
+                return f;
+            }
+        }
+        return null;
+    } // fromName()
+} // enum HashFunction
@@ -0,0 +1,274 @@
+/*
+ * IndexMetrics.java -- Counters and latency histograms for a
+ * LinearHashIndex: lookups and how many slots each one scanned, inserts,
+ * deletes, splits and contractions, and how full the buckets are. All the
+ * counters are LongAdders or atomic arrays so recording never locks. The
+ * numbers can be read through JMX, printed every few seconds, or printed
+ * once with dump().
+ *
+ * There are no overflow chains to measure: a full bucket always splits
+ * the table, so the probe length of a lookup is at most BLOCKING_FACTOR
+ * and the bucket occupancy histogram shows how close buckets are to that.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class IndexMetrics implements IndexMetricsMBean {
+    /*+----------------------------------------------------------------------
+    ||  Class IndexMetrics
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Collects what a LinearHashIndex does, for tuning the
+    ||                  blocking factor and load thresholds.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: IndexMetricsMBean
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: IndexMetrics()
+    ||
+    ||   Class Methods: None
+    ||
+    ||   Inst. Methods: void recordLookup(long nanos, boolean hit, int probes)
+    ||                  void recordProbe(boolean hit, int probes)
+    ||                  void recordInsert(long nanos)
+    ||                  void recordDelete()
+    ||                  void recordSplit(long nanos)
+    ||                  void recordContraction()
+    ||                  void attach(LinearHashIndex index)
+    ||                  void register(String name)
+    ||                  void startDump(long seconds, PrintStream out)
+    ||                  void stopDump()
+    ||                  plus the getters of IndexMetricsMBean
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private LongAdder lookups = new LongAdder();
+    private LongAdder hits = new LongAdder();
+    private LongAdder probes = new LongAdder();
+    private LongAdder inserts = new LongAdder();
+    private LongAdder deletes = new LongAdder();
+    private LongAdder splits = new LongAdder();
+    private LongAdder contractions = new LongAdder();
+
+    // lookups by number of slots scanned, 1 to BLOCKING_FACTOR
+    private AtomicLongArray probeLengths =
+            new AtomicLongArray(LinearHashIndex.BLOCKING_FACTOR + 1);
+
+    private LatencyHistogram lookupLatency = new LatencyHistogram();
+    private LatencyHistogram insertLatency = new LatencyHistogram();
+    private LatencyHistogram splitLatency = new LatencyHistogram();
+
+    private volatile LinearHashIndex index; // For the occupancy histogram
+    private ScheduledExecutorService dumper;
+
+    /* Recording methods, called by LinearHashIndex */
+    public void recordLookup(long nanos, boolean hit, int probes) {
+        recordProbe(hit, probes);
+        lookupLatency.record(nanos);
+    } // recordLookup()
+
+    public void recordProbe(boolean hit, int probes) {
+        lookups.increment();
+        if (hit) {
+            hits.increment();
+        }
+        this.probes.add(probes);
+        probeLengths.incrementAndGet(probes);
+    } // recordProbe()
+
+    public void recordInsert(long nanos) {
+        inserts.increment();
+        insertLatency.record(nanos);
+    } // recordInsert()
+
+    public void recordDelete() {
+        deletes.increment();
+    } // recordDelete()
+
+    public void recordSplit(long nanos) {
+        splits.increment();
+        splitLatency.record(nanos);
+    } // recordSplit()
+
+    public void recordContraction() {
+        contractions.increment();
+    } // recordContraction()
+
+    /* Getter methods */
+    public long getLookups() { return lookups.sum(); }
+    public long getLookupHits() { return hits.sum(); }
+    public long getInserts() { return inserts.sum(); }
+    public long getDeletes() { return deletes.sum(); }
+    public long getSplits() { return splits.sum(); }
+    public long getContractions() { return contractions.sum(); }
+    public long getLookupP99Nanos() { return lookupLatency.getPercentile(99); }
+    public long getInsertP99Nanos() { return insertLatency.getPercentile(99); }
+    public long getSplitP99Nanos() { return splitLatency.getPercentile(99); }
+
+    /* Average number of slots a lookup scanned */
+    public double getMeanProbeLength() {
+        long n = lookups.sum();
+        return n == 0 ? 0 : (double) probes.sum() / n;
+    } // getMeanProbeLength()
+
+    /* Lookups by slots scanned, as "slots:count" pairs */
+    public String getProbeLengths() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i < probeLengths.length(); i++) {
+            long n = probeLengths.get(i);
+            if (n > 0) {
+                sb.append(sb.length() == 0 ? "" : " ").append(i).append(':')
+                        .append(n);
+            }
+        }
+        return sb.toString();
+    } // getProbeLengths()
+
+    /*---------------------------------------------------------------------
+    |  Method getBucketOccupancy()
+    |
+    |  Purpose:  Counts the buckets of the attached index by how many live
+    |            keys they hold. This reads every bucket, so it is only
+    |            done when asked for.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters: None
+    |
+    |  Returns: Element n is the number of buckets holding n keys, empty if
+    |           no index is attached or it could not be read
+    *-------------------------------------------------------------------*/
+    public int[] getBucketOccupancy() {
+        LinearHashIndex idx = index;
+        if (idx == null) {
+            return new int[0];
+        }
+        try {
+            return idx.getOccupancy();
+        } catch (IOException e) {
+            return new int[0];
+        }
+    } // getBucketOccupancy()
+
+    /* Sets the index whose buckets getBucketOccupancy() counts */
+    public void attach(LinearHashIndex index) {
+        this.index = index;
+    } // attach()
+
+    /*---------------------------------------------------------------------
+    |  Method dump()
+    |
+    |  Purpose:  Puts every number into a few lines of text
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters: None
+    |
+    |  Returns: The text, ending in a newline
+    *-------------------------------------------------------------------*/
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        long n = lookups.sum();
+        sb.append(String.format("lookups: %d (%d hits), mean probe length"
+                + " %.2f slots%n", n, hits.sum(), getMeanProbeLength()));
+        sb.append("  probe lengths: ").append(getProbeLengths())
+                .append(System.lineSeparator());
+        sb.append("  latency: ").append(lookupLatency.summary())
+                .append(System.lineSeparator());
+        sb.append("inserts: ").append(insertLatency.summary())
+                .append(System.lineSeparator());
+        sb.append("deletes: ").append(deletes.sum())
+                .append(", contractions: ").append(contractions.sum())
+                .append(System.lineSeparator());
+        sb.append("splits: ").append(splitLatency.summary())
+                .append(System.lineSeparator());
+
+        int[] occupancy = getBucketOccupancy();
+        if (occupancy.length > 0) {
+            long buckets = 0;
+            long keys = 0;
+            StringBuilder hist = new StringBuilder();
+            for (int k = 0; k < occupancy.length; k++) {
+                buckets += occupancy[k];
+                keys += (long) k * occupancy[k];
+                if (occupancy[k] > 0) {
+                    hist.append(' ').append(k).append(':').append(occupancy[k]);
+                }
+            }
+            sb.append(String.format("buckets: %d, load %.2f, full %d%n",
+                    buckets, (double) keys
+                            / (buckets * LinearHashIndex.BLOCKING_FACTOR),
+                    occupancy[occupancy.length - 1]));
+            sb.append("  keys per bucket:").append(hist)
+                    .append(System.lineSeparator());
+        }
+        return sb.toString();
+    } // dump()
+
+    /*---------------------------------------------------------------------
+    |  Method register(String name)
+    |
+    |  Purpose:  Makes the metrics visible through JMX as
+    |            LinearHashing:type=IndexMetrics,name=<name>
+    |
+    |  Pre-condition:  No other metrics are registered with the same name
+    |
+    |  Post-condition: The MBean is registered with the platform server
+    |
+    |  Parameters:
+    |         name -- Name to register under, for example the program name
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void register(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                new ObjectName("LinearHashing:type=IndexMetrics,name="
+                        + ObjectName.quote(name)));
+    } // register()
+
+    /* Prints dump() to out every 'seconds' seconds on a daemon thread */
+    public synchronized void startDump(long seconds, PrintStream out) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "index-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> out.print(dump()), seconds, seconds,
+                TimeUnit.SECONDS);
+    } // startDump()
+
+    /* Stops the printing started by startDump() */
+    public synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    } // stopDump()
+} // class IndexMetrics
@@ -0,0 +1,26 @@
+/*
+ * IndexMetricsMBean.java -- What IndexMetrics shows through JMX (for
+ * example in jconsole under LinearHashing). A standard MBean interface
+ * has to be named after the class with MBean on the end.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+public interface IndexMetricsMBean {
+    long getLookups();
+    long getLookupHits();
+    double getMeanProbeLength();
+    long getInserts();
+    long getDeletes();
+    long getSplits();
+    long getContractions();
+    long getLookupP99Nanos();
+    long getInsertP99Nanos();
+    long getSplitP99Nanos();
+    int[] getBucketOccupancy();
+    String getProbeLengths();
+    String dump();
+} // interface IndexMetricsMBean
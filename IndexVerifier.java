@@ -0,0 +1,341 @@
+/*
+ * IndexVerifier.java -- Checks an index file against its .bin file and
+ * reports how well the keys are spread over the buckets.
+ *
+ * Usage: java IndexVerifier <index file> <bin file>
+ *
+ * Errors looked for:
+ *  - a key in a bucket other than the one getHashCode() gives it
+ *  - a key after the first EMPTY slot of its bucket (lookups never see it)
+ *  - a pointer that is not 16 + k * record length for a record k of the
+ *    .bin file, or whose record has a different EIA ID
+ *  - the same key twice, or two keys pointing at the same record
+ *  - a record of the .bin file that the index should hold but does not
+ *  - a key count in the header that does not match the buckets
+ * The program exits with 0 if there are none and 1 otherwise.
+ *
+ * Both files are read from start to end in large blocks, never record by
+ * record: the EIA IDs of the .bin file are read first with BinScanner
+ * (4 bytes per record kept in memory) and then the buckets are read
+ * READ_SIZE bytes at a time.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.BitSet;
+
+public class IndexVerifier {
+    /*+----------------------------------------------------------------------
+    ||  Class IndexVerifier
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Finds anything in an index that would make a lookup
+    ||                  wrong and measures load, skew and probe cost.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: READ_SIZE: about how many bytes of buckets are read
+    ||                  at once
+    ||                  MAX_SHOWN: errors printed in full, the rest are
+    ||                  only counted
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int READ_SIZE = 4 << 20;
+    public static final int MAX_SHOWN = 10;
+
+    private static final int SLOTS = LinearHashIndex.BLOCKING_FACTOR;
+    private static final int SLOT_SIZE = LinearHashIndex.SLOT_SIZE;
+    private static final int BUCKET_SIZE = LinearHashIndex.BUCKET_SIZE;
+
+    private static int[] binIds;        // EIA ID of every .bin record
+    private static int recordLength;
+    private static long errors;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Reads the .bin file's EIA IDs, walks every bucket of the
+    |            index checking each slot, then checks every record that
+    |            should be indexed was found and prints the report.
+    |
+    |  Pre-condition:  args holds the index file and the .bin file
+    |
+    |  Post-condition: Both files are closed, the exit code is 1 if an
+    |                  error was found
+    |
+    |  Parameters:
+    |         args -- The command line arguments
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        if (args.length < 2) {
+            System.out.println("Usage: java IndexVerifier <index file> <bin file>");
+            System.exit(-1);
+        }
+
+        int hVal = 0;
+        int numBuckets = 0;
+        int headerEntries = 0;
+        int numIndexed = -1;
+        HashFunction hash = HashFunction.MODULO;
+        try {
+            LinearHashIndex idx = LinearHashIndex.open(args[0], false);
+            hVal = idx.getHVal();
+            numBuckets = idx.getNumBuckets();
+            headerEntries = idx.getNumEntries();
+            numIndexed = idx.getNumIndexed();
+            hash = idx.getHashFunction();
+            idx.close();
+        } catch (IOException e) {
+            System.out.println("Error: Could not open " + args[0] + ": "
+                    + e.getMessage());
+            System.exit(-1);
+        }
+
+        try {
+            readBinIds(args[1]);
+        } catch (IOException e) {
+            System.out.println("Error: Could not read " + args[1] + ": "
+                    + e.getMessage());
+            System.exit(-1);
+        }
+
+        // what the walk over the buckets finds
+        long[] fill = new long[SLOTS + 1];  // buckets by live keys
+        long keys = 0;
+        long tombstones = 0;
+        long hitProbes = 0;                 // slots scanned to find each key
+        long missProbes = 0;                // slots scanned to miss, per bucket
+        BitSet pointedAt = new BitSet(binIds.length);
+
+        ByteBuffer block = ByteBuffer.allocateDirect(
+                Math.max(1, READ_SIZE / BUCKET_SIZE) * BUCKET_SIZE);
+        try (FileChannel ch = FileChannel.open(Paths.get(args[0]),
+                StandardOpenOption.READ)) {
+            int b = 0;
+            while (b < numBuckets) {
+                int count = Math.min(block.capacity() / BUCKET_SIZE,
+                        numBuckets - b);
+                block.clear();
+                block.limit(count * BUCKET_SIZE);
+                long pos = (long) b * BUCKET_SIZE;
+                while (block.hasRemaining()) {
+                    int n = ch.read(block, pos);
+                    if (n < 0) {
+                        throw new EOFException("Index file ends inside bucket "
+                                + b);
+                    }
+                    pos += n;
+                }
+
+                for (int i = 0; i < count; i++, b++) {
+                    int base = i * BUCKET_SIZE;
+                    int live = 0;
+                    int firstEmpty = -1;
+                    for (int s = 0; s < SLOTS; s++) {
+                        int key = block.getInt(base + s * SLOT_SIZE);
+                        int ptr = block.getInt(base + s * SLOT_SIZE + 4);
+                        if (key == LinearHashIndex.EMPTY) {
+                            if (firstEmpty == -1) {
+                                firstEmpty = s;
+                            }
+                            continue;
+                        }
+                        if (key == LinearHashIndex.TOMBSTONE) {
+                            tombstones++;
+                            continue;
+                        }
+                        if (key < 0) {
+                            error("bucket " + b + " slot " + s
+                                    + " holds the invalid key " + key);
+                            continue;
+                        }
+                        live++;
+                        hitProbes += s + 1;
+                        if (firstEmpty != -1) {
+                            error("key " + key + " in bucket " + b + " slot "
+                                    + s + " is after an EMPTY slot");
+                        }
+                        if (hash.bucket(key, numBuckets) != b) {
+                            error("key " + key + " is in bucket " + b
+                                    + " but hashes to "
+                                    + hash.bucket(key, numBuckets));
+                        }
+                        for (int t = 0; t < s; t++) {
+                            if (block.getInt(base + t * SLOT_SIZE) == key) {
+                                error("key " + key + " is in bucket " + b
+                                        + " twice");
+                            }
+                        }
+                        checkPointer(key, ptr, pointedAt);
+                    }
+                    fill[live]++;
+                    keys += live;
+                    missProbes += firstEmpty == -1 ? SLOTS : firstEmpty + 1;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error: Could not read " + args[0] + ": "
+                    + e.getMessage());
+            System.exit(-1);
+        }
+
+        // every live record the index claims to cover must be in it
+        int covered = numIndexed < 0 ? binIds.length
+                : Math.min(numIndexed, binIds.length);
+        for (int k = 0; k < covered; k++) {
+            if (binIds[k] >= 0 && !pointedAt.get(k)) {
+                error("record " + k + " (EIA ID " + binIds[k]
+                        + ") is not in the index");
+            }
+        }
+        if (headerEntries != keys) {
+            error("header says " + headerEntries + " keys, buckets hold "
+                    + keys);
+        }
+
+        System.out.println("hash function: " + hash);
+        report(hVal, numBuckets, keys, tombstones, fill, hitProbes,
+                missProbes);
+        System.exit(errors == 0 ? 0 : 1);
+    } // main()
+
+    /* Reads the EIA ID of every record of the .bin file into binIds */
+    private static void readBinIds(String binFileName) throws IOException {
+        BinScanner scanner = new BinScanner(binFileName);
+        binIds = new int[scanner.getNumRecords()];
+        recordLength = scanner.getRecordLength();
+        int[] ids = new int[scanner.getBatchSize()];
+        int[] pointers = new int[scanner.getBatchSize()];
+        scanner.start(0, true);
+        int next = 0;
+        int count;
+        while ((count = scanner.next(ids, pointers)) > 0) {
+            System.arraycopy(ids, 0, binIds, next, count);
+            next += count;
+        }
+        scanner.close();
+    } // readBinIds()
+
+    /* Checks that ptr is the start of a record holding key, and that no
+       other key points there too */
+    private static void checkPointer(int key, int ptr, BitSet pointedAt) {
+        long offset = (long) ptr - BinScanner.HEADER_SIZE;
+        if (offset < 0 || offset % recordLength != 0
+                || offset / recordLength >= binIds.length) {
+            error("key " + key + " points at " + ptr
+                    + ", which is not the start of a record");
+            return;
+        }
+        int k = (int) (offset / recordLength);
+        if (binIds[k] != key) {
+            error("key " + key + " points at record " + k + " which holds "
+                    + binIds[k]);
+        }
+        if (pointedAt.get(k)) {
+            error("key " + key + " points at record " + k
+                    + " which another key also points at");
+        }
+        pointedAt.set(k);
+    } // checkPointer()
+
+    /* Counts an error and prints the first MAX_SHOWN of them */
+    private static void error(String message) {
+        errors++;
+        if (errors <= MAX_SHOWN) {
+            System.out.println("ERROR: " + message);
+        } else if (errors == MAX_SHOWN + 1) {
+            System.out.println("ERROR: ... (only the first " + MAX_SHOWN
+                    + " errors are shown)");
+        }
+    } // error()
+
+    /*---------------------------------------------------------------------
+    |  Method report(int hVal, int numBuckets, long keys, long tombstones,
+    |                long[] fill, long hitProbes, long missProbes)
+    |
+    |  Purpose:  Prints the load factor, how evenly the keys are spread,
+    |            how much of the file is unused slots and what a lookup
+    |            costs on average.
+    |
+    |  Pre-condition:  Every bucket has been walked
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |         hVal -- The H value of the index
+    |   numBuckets -- Number of buckets
+    |         keys -- Live keys found
+    |   tombstones -- Deleted slots found
+    |         fill -- Buckets by number of live keys
+    |    hitProbes -- Slots scanned to find every key once
+    |   missProbes -- Slots scanned by a miss in every bucket once
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private static void report(int hVal, int numBuckets, long keys,
+            long tombstones, long[] fill, long hitProbes, long missProbes) {
+        long slots = (long) numBuckets * SLOTS;
+        double mean = (double) keys / numBuckets;
+        double variance = 0;
+        int max = 0;
+        int min = SLOTS;
+        for (int n = 0; n <= SLOTS; n++) {
+            if (fill[n] > 0) {
+                max = Math.max(max, n);
+                min = Math.min(min, n);
+                variance += fill[n] * (n - mean) * (n - mean);
+            }
+        }
+        double stddev = Math.sqrt(variance / numBuckets);
+
+        System.out.println("H value " + hVal + ", " + numBuckets
+                + " buckets of " + SLOTS + " slots, " + binIds.length
+                + " records in the .bin file");
+        System.out.printf("keys: %d, load factor %.3f, tombstones %d%n",
+                keys, (double) keys / slots, tombstones);
+        System.out.printf("keys per bucket: min %d, max %d, mean %.2f,"
+                + " std dev %.2f, max/mean %.2f%n", min, max, mean, stddev,
+                mean == 0 ? 0 : max / mean);
+        System.out.printf("empty buckets: %d, full buckets: %d%n", fill[0],
+                fill[SLOTS]);
+        System.out.printf("unused slots: %d (%.1f%% of %d bucket bytes)%n",
+                slots - keys, 100.0 * (slots - keys) / slots,
+                slots * SLOT_SIZE);
+        System.out.printf("expected probe cost: %.2f slots for a hit, %.2f"
+                + " slots for a miss, one bucket read each%n",
+                keys == 0 ? 0 : (double) hitProbes / keys,
+                (double) missProbes / numBuckets);
+        StringBuilder hist = new StringBuilder("fill histogram (keys:buckets):");
+        for (int n = 0; n <= SLOTS; n++) {
+            if (fill[n] > 0) {
+                hist.append(' ').append(n).append(':').append(fill[n]);
+            }
+        }
+        System.out.println(hist);
+        System.out.println(errors == 0 ? "OK: no errors found"
+                : "FAILED: " + errors + " errors");
+    } // report()
+} // class IndexVerifier
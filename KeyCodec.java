@@ -0,0 +1,292 @@
+/*
+ * KeyCodec.java -- The key types KeyedHashIndex can store. A codec knows
+ * how many bytes a key takes in a slot, how to write a key of its type
+ * into those bytes and how to hash the bytes. Keys are always handled as
+ * bytes in a ByteBuffer the caller reuses (see newKey()), so there is no
+ * boxing and no object per key on a lookup.
+ *
+ *   int          4 bytes, any int including negative ones
+ *   long         8 bytes, any long
+ *   bytes:<n>    n bytes, e.g. a padded name, or a plant code followed
+ *                by a generator ID; shorter keys are padded with zeros
+ *   fingerprint  8 bytes: a 64-bit hash of a key of any length. Two
+ *                different keys can get the same fingerprint (about one
+ *                chance in 2^64 per pair), so a hit has to be checked
+ *                against the record it points to.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public abstract class KeyCodec {
+    /*+----------------------------------------------------------------------
+    ||  Class KeyCodec
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Describes one fixed-width key type of a
+    ||                  KeyedHashIndex. The code and width are stored in the
+    ||                  index file's header.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: INT, LONG, FINGERPRINT: the codecs without a width
+    ||                  INT_CODE, LONG_CODE, BYTES_CODE, FINGERPRINT_CODE:
+    ||                      the codes stored in the header
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None, use the constants or bytes()
+    ||
+    ||   Class Methods: KeyCodec bytes(int width)
+    ||                  KeyCodec fromCode(int code, int width)
+    ||                  KeyCodec fromName(String name)
+    ||
+    ||   Inst. Methods: int getCode()
+    ||                  int getWidth()
+    ||                  String getName()
+    ||                  ByteBuffer newKey()
+    ||                  ByteBuffer putInt(ByteBuffer key, int k)
+    ||                  ByteBuffer putLong(ByteBuffer key, long k)
+    ||                  ByteBuffer putBytes(ByteBuffer key, byte[] b,
+    ||                                      int off, int len)
+    ||                  ByteBuffer putBytes(ByteBuffer key, ByteBuffer src,
+    ||                                      int at, int len)
+    ||                  ByteBuffer putString(ByteBuffer key, String s)
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int INT_CODE = 0;
+    public static final int LONG_CODE = 1;
+    public static final int BYTES_CODE = 2;
+    public static final int FINGERPRINT_CODE = 3;
+
+    public static final KeyCodec INT = new IntCodec();
+    public static final KeyCodec LONG = new LongCodec();
+    public static final KeyCodec FINGERPRINT = new FingerprintCodec();
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    /* Getter methods */
+    public abstract int getCode();
+    public abstract int getWidth();
+    public abstract String getName();
+
+    /* A buffer for one key of this type, to be reused between lookups */
+    public ByteBuffer newKey() {
+        return ByteBuffer.allocate(getWidth());
+    } // newKey()
+
+    /*---------------------------------------------------------------------
+    |  Method hash(ByteBuffer buf, int at)
+    |
+    |  Purpose:  Hashes the key stored at buf[at]. The same bytes always
+    |            give the same hash, whether they are a key being looked
+    |            up or a key in a slot. The result goes through the index's
+    |            HashFunction, so the int codec returns the key itself and
+    |            a modulo index of int keys puts them in the same buckets
+    |            as lhl.idx.
+    |
+    |  Pre-condition:  buf holds getWidth() bytes at 'at'
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |          buf -- Buffer holding the key
+    |           at -- Where the key starts
+    |
+    |  Returns: A hash from 0 to 2^31 - 1
+    *-------------------------------------------------------------------*/
+    abstract int hash(ByteBuffer buf, int at);
+
+    /* Writes an int key into key. Only the int and long codecs have one */
+    public ByteBuffer putInt(ByteBuffer key, int k) {
+        throw new UnsupportedOperationException(getName()
+                + " keys are not ints");
+    } // putInt()
+
+    /* Writes a long key into key. Only the long codec has one */
+    public ByteBuffer putLong(ByteBuffer key, long k) {
+        throw new UnsupportedOperationException(getName()
+                + " keys are not longs");
+    } // putLong()
+
+    /* Writes len bytes of b as the key */
+    public ByteBuffer putBytes(ByteBuffer key, byte[] b, int off, int len) {
+        return putBytes(key, ByteBuffer.wrap(b), off, len);
+    } // putBytes()
+
+    /* Writes len bytes of src from 'at' as the key, e.g. straight out of a
+       record. Only the bytes and fingerprint codecs have one */
+    public ByteBuffer putBytes(ByteBuffer key, ByteBuffer src, int at,
+            int len) {
+        throw new UnsupportedOperationException(getName()
+                + " keys are not bytes");
+    } // putBytes()
+
+    /* Writes s as the key, one byte per char like the .bin strings */
+    public ByteBuffer putString(ByteBuffer key, String s) {
+        byte[] b = s.getBytes(StandardCharsets.ISO_8859_1);
+        return putBytes(key, b, 0, b.length);
+    } // putString()
+
+    /* The codec of a bytes:<width> key */
+    public static KeyCodec bytes(int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("A key has at least one byte");
+        }
+        return new BytesCodec(width);
+    } // bytes()
+
+    /* The codec stored as code and width in a header, or null if unknown */
+    public static KeyCodec fromCode(int code, int width) {
+        switch (code) {
+            case INT_CODE:
+                return INT;
+            case LONG_CODE:
+                return LONG;
+            case BYTES_CODE:
+                return width < 1 ? null : new BytesCodec(width);
+            case FINGERPRINT_CODE:
+                return FINGERPRINT;
+            default:
+                return null;
+        }
+    } // fromCode()
+
+    /* The codec named int, long, fingerprint or bytes:<n>, or null */
+    public static KeyCodec fromName(String name) {
+        String n = name.toLowerCase();
+        if (n.startsWith("bytes:")) {
+            try {
+                int width = Integer.parseInt(n.substring(6));
+                return width < 1 ? null : new BytesCodec(width);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        for (KeyCodec codec : new KeyCodec[] {INT, LONG, FINGERPRINT}) {
+            if (codec.getName().equals(n)) {
+                return codec;
+            }
+        }
+        return null;
+    } // fromName()
+
+    /* The MurmurHash3 64-bit finalizer */
+    static long mix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    } // mix64()
+
+    /* A 64-bit hash of len bytes of buf from 'at', 8 bytes at a time */
+    static long hashBytes(ByteBuffer buf, int at, int len) {
+        long h = len * GOLDEN;
+        int i = 0;
+        for (; i + 8 <= len; i += 8) {
+            h = mix64(h ^ buf.getLong(at + i)) + GOLDEN;
+        }
+        long tail = 0;
+        for (; i < len; i++) {
+            tail = tail << 8 | (buf.get(at + i) & 0xff);
+        }
+        return mix64(h ^ tail);
+    } // hashBytes()
+
+    /* int keys: the key is its own hash */
+    private static final class IntCodec extends KeyCodec {
+        public int getCode() { return INT_CODE; }
+        public int getWidth() { return 4; }
+        public String getName() { return "int"; }
+
+        int hash(ByteBuffer buf, int at) {
+            return buf.getInt(at) & 0x7fffffff;
+        }
+
+        public ByteBuffer putInt(ByteBuffer key, int k) {
+            key.putInt(0, k);
+            return key;
+        }
+    } // class IntCodec
+
+    /* long keys: the two halves folded together */
+    private static final class LongCodec extends KeyCodec {
+        public int getCode() { return LONG_CODE; }
+        public int getWidth() { return 8; }
+        public String getName() { return "long"; }
+
+        int hash(ByteBuffer buf, int at) {
+            long k = buf.getLong(at);
+            return (int) (k ^ (k >>> 32)) & 0x7fffffff;
+        }
+
+        public ByteBuffer putInt(ByteBuffer key, int k) {
+            return putLong(key, k);
+        }
+
+        public ByteBuffer putLong(ByteBuffer key, long k) {
+            key.putLong(0, k);
+            return key;
+        }
+    } // class LongCodec
+
+    /* Fixed-length byte keys, padded with zeros */
+    private static final class BytesCodec extends KeyCodec {
+        private final int width;
+
+        BytesCodec(int width) {
+            this.width = width;
+        }
+
+        public int getCode() { return BYTES_CODE; }
+        public int getWidth() { return width; }
+        public String getName() { return "bytes:" + width; }
+
+        int hash(ByteBuffer buf, int at) {
+            return (int) hashBytes(buf, at, width) & 0x7fffffff;
+        }
+
+        public ByteBuffer putBytes(ByteBuffer key, ByteBuffer src, int at,
+                int len) {
+            if (len > width) {
+                throw new IllegalArgumentException("Key is longer than "
+                        + width + " bytes");
+            }
+            key.put(0, src, at, len);
+            for (int i = len; i < width; i++) {
+                key.put(i, (byte) 0);
+            }
+            return key;
+        }
+    } // class BytesCodec
+
+    /* Keys of any length, stored as a 64-bit hash of their bytes */
+    private static final class FingerprintCodec extends KeyCodec {
+        public int getCode() { return FINGERPRINT_CODE; }
+        public int getWidth() { return 8; }
+        public String getName() { return "fingerprint"; }
+
+        int hash(ByteBuffer buf, int at) {
+            return (int) buf.getLong(at) & 0x7fffffff;
+        }
+
+        public ByteBuffer putBytes(ByteBuffer key, ByteBuffer src, int at,
+                int len) {
+            key.putLong(0, hashBytes(src, at, len));
+            return key;
+        }
+    } // class FingerprintCodec
+} // class KeyCodec
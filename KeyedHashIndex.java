@@ -0,0 +1,630 @@
+/*
+ * KeyedHashIndex.java -- A linear hash index whose keys and values are
+ * not tied to the int EIA ID and int pointer of lhl.idx. The key type is
+ * a KeyCodec (int, long, fixed-length bytes or a 64-bit fingerprint) and
+ * the value is any fixed number of bytes, so the same engine can index
+ * other EIA data sets, e.g. one keyed by plant code plus generator ID.
+ *
+ * Like OffHeapLinearHashMap the buckets live in one direct ByteBuffer
+ * (or a mapped index file) and keys are compared in place, so a lookup
+ * makes no objects. Each slot starts with a state byte (EMPTY, FULL or
+ * TOMBSTONE) instead of using key -1 as a marker, so every key value,
+ * negative ones included, can be stored.
+ *
+ * Usage: java KeyedHashIndex build <bin file> <index file>
+ *                                  [name|fingerprint] [-hash f]
+ *        java KeyedHashIndex get <index file> <bin file>
+ *   build indexes the .bin file by project name, get reads project names
+ *   from stdin and prints their records like Prog22.
+ *
+ * Index file layout:
+ *   2^(H + 1) buckets of BLOCKING_FACTOR slots of
+ *     byte state, key (key width bytes), value (value width bytes)
+ *   int fields[K_FIELDS], int K_FIELDS, int MAGIC
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+public class KeyedHashIndex {
+    /*+----------------------------------------------------------------------
+    ||  Class KeyedHashIndex
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: A linear hash table of fixed-width keys and values
+    ||                  in off-heap memory that can be written to and read
+    ||                  from an index file. Lookups can run on many threads
+    ||                  as long as nothing changes the table.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: MAGIC: last int of a keyed index file ("LHK1")
+    ||                  EMPTY, FULL, TOMBSTONE: slot states
+    ||                  K_ENTRIES, K_H, K_HASH, K_KEY_CODE, K_KEY_WIDTH,
+    ||                  K_VALUE_WIDTH: header fields; K_FIELDS: their count
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: KeyedHashIndex(KeyCodec codec, int valueWidth,
+    ||                                 HashFunction hashFunction)
+    ||
+    ||   Class Methods: void main(String args[])
+    ||                  KeyedHashIndex load(String fileName)
+    ||                  KeyedHashIndex map(String fileName)
+    ||
+    ||   Inst. Methods: int size()
+    ||                  int getHVal()
+    ||                  KeyCodec getKeyCodec()
+    ||                  int getValueWidth()
+    ||                  HashFunction getHashFunction()
+    ||                  int find(ByteBuffer key)
+    ||                  int valueInt(int slot)
+    ||                  long valueLong(int slot)
+    ||                  void value(int slot, ByteBuffer dst)
+    ||                  void putInt(ByteBuffer key, int value)
+    ||                  void putLong(ByteBuffer key, long value)
+    ||                  void put(ByteBuffer key, ByteBuffer value)
+    ||                  boolean remove(ByteBuffer key)
+    ||                  void dump(String fileName)
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int MAGIC = 0x4C484B31; // "LHK1"
+
+    public static final byte EMPTY = 0;
+    public static final byte FULL = 1;
+    public static final byte TOMBSTONE = 2;
+
+    public static final int K_ENTRIES = 0;
+    public static final int K_H = 1;
+    public static final int K_HASH = 2;
+    public static final int K_KEY_CODE = 3;
+    public static final int K_KEY_WIDTH = 4;
+    public static final int K_VALUE_WIDTH = 5;
+    public static final int K_FIELDS = 6;
+
+    private static final int SLOTS = LinearHashIndex.BLOCKING_FACTOR;
+
+    private final KeyCodec codec;
+    private final int keyWidth;
+    private final int valueWidth;
+    private final int slotSize;     // 1 + keyWidth + valueWidth
+    private final int bucketSize;   // SLOTS * slotSize
+    private final HashFunction hashFunction;
+
+    private ByteBuffer slots;       // The buckets, off the heap or mapped
+    private int hVal;               // Current H value
+    private int numBuckets;         // 2^(H + 1)
+    private int size;               // Live keys
+
+    /* Getter methods */
+    public int size() { return size; }
+    public int getHVal() { return hVal; }
+    public KeyCodec getKeyCodec() { return codec; }
+    public int getValueWidth() { return valueWidth; }
+    public HashFunction getHashFunction() { return hashFunction; }
+
+    /* Constructor: an empty index with H = 0 and two buckets */
+    public KeyedHashIndex(KeyCodec codec, int valueWidth,
+            HashFunction hashFunction) {
+        if (valueWidth < 0) {
+            throw new IllegalArgumentException("Value width is negative");
+        }
+        this.codec = codec;
+        this.keyWidth = codec.getWidth();
+        this.valueWidth = valueWidth;
+        this.hashFunction = hashFunction;
+        slotSize = 1 + keyWidth + valueWidth;
+        bucketSize = SLOTS * slotSize;
+        hVal = 0;
+        numBuckets = 2;
+        slots = ByteBuffer.allocateDirect(numBuckets * bucketSize); // EMPTY
+    } // KeyedHashIndex()
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Runs the build or get command
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |         args -- The command and its arguments
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        if (args.length < 3) {
+            System.out.println("Usage: java KeyedHashIndex build <bin file>"
+                    + " <index file> [name|fingerprint] [-hash modulo|murmur3]");
+            System.out.println("       java KeyedHashIndex get <index file>"
+                    + " <bin file>");
+            System.exit(-1);
+        }
+        try {
+            if (args[0].equals("build")) {
+                boolean fingerprint = false;
+                HashFunction hash = HashFunction.MODULO;
+                for (int i = 3; i < args.length; i++) {
+                    if (args[i].equals("fingerprint")) {
+                        fingerprint = true;
+                    } else if (args[i].equals("-hash") && i + 1 < args.length) {
+                        hash = HashFunction.fromName(args[++i]);
+                        if (hash == null) {
+                            System.out.println("Please give -hash one of"
+                                    + " modulo or murmur3.");
+                            System.exit(-1);
+                        }
+                    }
+                }
+                KeyedHashIndex index = buildByName(args[1], fingerprint, hash);
+                index.dump(args[2]);
+                System.out.println("Successfuly wrote " + args[2] + " with "
+                        + index.size() + " project names");
+            } else if (args[0].equals("get")) {
+                runGet(args[1], args[2]);
+            } else {
+                System.out.println("Unknown command " + args[0]);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        }
+    } // main()
+
+    /* Indexes every live record of a .bin file by its project name, the
+       name's padded bytes as a bytes key or its fingerprint */
+    private static KeyedHashIndex buildByName(String binFileName,
+            boolean fingerprint, HashFunction hash) throws IOException {
+        BinScanner scanner = new BinScanner(binFileName);
+        int numRecords = scanner.getNumRecords();
+        int recordLength = scanner.getRecordLength();
+        RecordCodec codec = new RecordCodec(scanner.getSchema());
+        scanner.close();
+        RecordCodec.Accessor idField = codec.accessor(RecordSchema.ID,
+                RecordSchema.Type.INT);
+        RecordCodec.Accessor nameField = codec.accessor(RecordSchema.NAME,
+                RecordSchema.Type.STRING);
+        int nameAt = nameField.getOffset();
+        int nameLen = nameField.getWidth();
+
+        KeyedHashIndex index = new KeyedHashIndex(fingerprint
+                ? KeyCodec.FINGERPRINT : KeyCodec.bytes(nameLen), 4, hash);
+        ByteBuffer key = index.codec.newKey();
+        try (FileChannel ch = FileChannel.open(Paths.get(binFileName),
+                StandardOpenOption.READ)) {
+            ByteBuffer all = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                    BinScanner.HEADER_SIZE + (long) numRecords * recordLength);
+            for (int r = 0; r < numRecords; r++) {
+                int at = BinScanner.HEADER_SIZE + r * recordLength;
+                if (idField.getInt(all, at) < 0) { // deleted record
+                    continue;
+                }
+                if (fingerprint) {
+                    index.codec.putBytes(key, all, at + nameAt,
+                            nameLength(all, at + nameAt, nameLen));
+                } else {
+                    index.codec.putBytes(key, all, at + nameAt, nameLen);
+                }
+                index.putInt(key, at);
+            }
+        }
+        return index;
+    } // buildByName()
+
+    /* The length of a name of at most max bytes at buf[at], without the
+       nulls padding it */
+    private static int nameLength(ByteBuffer buf, int at, int max) {
+        int len = max;
+        while (len > 0 && buf.get(at + len - 1) == 0) {
+            len--;
+        }
+        return len;
+    } // nameLength()
+
+    /* Reads project names from stdin and prints each one's EIA ID, name
+       and Solar Cap AC like Prog22 */
+    private static void runGet(String idxFileName, String binFileName)
+            throws IOException {
+        KeyedHashIndex index = map(idxFileName);
+        RecordCodec codec = new RecordCodec(RecordSchema.forBin(binFileName));
+        RecordCodec.Accessor idField = codec.accessor(RecordSchema.ID,
+                RecordSchema.Type.INT);
+        RecordCodec.Accessor nameField = codec.accessor(RecordSchema.NAME,
+                RecordSchema.Type.STRING);
+        RecordCodec.Accessor capACField = codec.accessor(
+                RecordSchema.CAPACITY_AC, RecordSchema.Type.DOUBLE);
+        int nameAt = nameField.getOffset();
+        int nameLen = nameField.getWidth();
+        int recordLength = codec.getSchema().getRecordLength();
+        if (index.valueWidth != 4) {
+            throw new IOException(idxFileName + " does not hold pointers");
+        }
+
+        ByteBuffer key = index.codec.newKey();
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        try (FileChannel bin = FileChannel.open(Paths.get(binFileName),
+                StandardOpenOption.READ)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int slot;
+                try {
+                    slot = index.find(index.codec.putString(key, line));
+                } catch (IllegalArgumentException e) { // longer than a name
+                    slot = -1;
+                }
+                boolean found = slot != -1;
+                if (found) {
+                    record.clear();
+                    long pos = index.valueInt(slot);
+                    while (record.hasRemaining()) {
+                        if (bin.read(record, pos + record.position()) < 0) {
+                            throw new EOFException("Record is past the end"
+                                    + " of " + binFileName);
+                        }
+                    }
+                    // a fingerprint can match another name, so check it
+                    String name = new String(record.array(), nameAt,
+                            nameLength(record, nameAt, nameLen), "ISO-8859-1");
+                    found = name.equals(line);
+                }
+                if (found) {
+                    System.out.println("[" + idField.getInt(record, 0) + "] ["
+                            + nameField.getString(record, 0) + "] ["
+                            + capACField.getDouble(record, 0) + "]");
+                } else {
+                    System.out.println("The project " + line
+                            + " was not found.");
+                }
+            }
+        }
+    } // runGet()
+
+    /*---------------------------------------------------------------------
+    |  Method load(String fileName)
+    |
+    |  Purpose:  Reads a keyed index file into a new direct buffer that
+    |            can be changed and dumped again.
+    |
+    |  Pre-condition:  The file was written by dump()
+    |
+    |  Post-condition: The file is closed
+    |
+    |  Parameters:
+    |     fileName -- Name of the index file
+    |
+    |  Returns: The index
+    *-------------------------------------------------------------------*/
+    public static KeyedHashIndex load(String fileName) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+            KeyedHashIndex index = readHeader(ch, fileName);
+            ByteBuffer buf = ByteBuffer.allocateDirect(
+                    index.numBuckets * index.bucketSize);
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, buf.position()) < 0) {
+                    throw new EOFException(fileName + " is too short");
+                }
+            }
+            index.slots = buf.clear();
+            return index;
+        }
+    } // load()
+
+    /*---------------------------------------------------------------------
+    |  Method map(String fileName)
+    |
+    |  Purpose:  Makes a read only index over the buckets of a keyed index
+    |            file mapped into memory, so nothing is copied
+    |
+    |  Pre-condition:  The file was written by dump()
+    |
+    |  Post-condition: put() and remove() throw ReadOnlyBufferException
+    |
+    |  Parameters:
+    |     fileName -- Name of the index file
+    |
+    |  Returns: The index
+    *-------------------------------------------------------------------*/
+    public static KeyedHashIndex map(String fileName) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+            KeyedHashIndex index = readHeader(ch, fileName);
+            index.slots = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                    (long) index.numBuckets * index.bucketSize);
+            return index;
+        }
+    } // map()
+
+    /* Reads the header of a keyed index file into an index with no
+       buckets yet */
+    private static KeyedHashIndex readHeader(FileChannel ch, String fileName)
+            throws IOException {
+        long len = ch.size();
+        ByteBuffer tail = ByteBuffer.allocate(4 * (K_FIELDS + 2));
+        if (len < tail.capacity()) {
+            throw new IOException(fileName + " is not a keyed index");
+        }
+        while (tail.hasRemaining()) {
+            ch.read(tail, len - tail.capacity() + tail.position());
+        }
+        if (tail.getInt(4 * (K_FIELDS + 1)) != MAGIC) {
+            throw new IOException(fileName + " is not a keyed index");
+        }
+        int count = tail.getInt(4 * K_FIELDS);
+        if (count < K_FIELDS) {
+            throw new IOException(fileName + " has too few header fields");
+        }
+        ByteBuffer fields = ByteBuffer.allocate(4 * count);
+        while (fields.hasRemaining()) {
+            ch.read(fields, len - 4 * (count + 2) + fields.position());
+        }
+
+        KeyCodec codec = KeyCodec.fromCode(fields.getInt(4 * K_KEY_CODE),
+                fields.getInt(4 * K_KEY_WIDTH));
+        HashFunction hash = HashFunction.fromCode(fields.getInt(4 * K_HASH));
+        int h = fields.getInt(4 * K_H);
+        int valueWidth = fields.getInt(4 * K_VALUE_WIDTH);
+        if (codec == null || codec.getWidth() != fields.getInt(4 * K_KEY_WIDTH)
+                || hash == null || valueWidth < 0 || h < 0
+                || h > LinearHashIndex.MAX_H) {
+            throw new IOException(fileName + " has a bad header");
+        }
+        KeyedHashIndex index = new KeyedHashIndex(codec, valueWidth, hash);
+        if ((long) index.bucketSize << (h + 1) != len - 4 * (count + 2)) {
+            throw new IOException(fileName + " size does not match its H value");
+        }
+        if ((long) index.bucketSize << (h + 1) > Integer.MAX_VALUE) {
+            throw new IOException(fileName + " is too large to hold in memory");
+        }
+        index.hVal = h;
+        index.numBuckets = 1 << (h + 1);
+        index.size = fields.getInt(4 * K_ENTRIES);
+        return index;
+    } // readHeader()
+
+    /*---------------------------------------------------------------------
+    |  Method dump(String fileName)
+    |
+    |  Purpose:  Writes the index to <fileName>.tmp with one bulk write of
+    |            the buckets, adds the header and renames it over fileName
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: fileName holds the keys and values of the index
+    |
+    |  Parameters:
+    |     fileName -- Name of the index file
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void dump(String fileName) throws IOException {
+        String tmpName = fileName + ".tmp";
+        try (FileChannel ch = FileChannel.open(Paths.get(tmpName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer all = slots.duplicate();
+            all.clear();
+            ByteBuffer header = ByteBuffer.allocate(4 * (K_FIELDS + 2));
+            header.putInt(4 * K_ENTRIES, size);
+            header.putInt(4 * K_H, hVal);
+            header.putInt(4 * K_HASH, hashFunction.getCode());
+            header.putInt(4 * K_KEY_CODE, codec.getCode());
+            header.putInt(4 * K_KEY_WIDTH, keyWidth);
+            header.putInt(4 * K_VALUE_WIDTH, valueWidth);
+            header.putInt(4 * K_FIELDS, K_FIELDS);
+            header.putInt(4 * (K_FIELDS + 1), MAGIC);
+            long pos = 0;
+            while (all.hasRemaining()) {
+                pos += ch.write(all, pos);
+            }
+            while (header.hasRemaining()) {
+                pos += ch.write(header, pos);
+            }
+            ch.force(true);
+        }
+        LinearHashIndex.publish(tmpName, fileName);
+    } // dump()
+
+    /*---------------------------------------------------------------------
+    |  Method find(ByteBuffer key)
+    |
+    |  Purpose:  Looks through the key's bucket, comparing the key bytes
+    |            in place and stopping at the first EMPTY slot
+    |
+    |  Pre-condition:  key holds a key written by this index's codec
+    |
+    |  Post-condition: The index is not changed
+    |
+    |  Parameters:
+    |          key -- The key, from byte 0
+    |
+    |  Returns: The slot of the key for valueInt(), valueLong() or value(),
+    |           or -1 if it is not in the index. A slot stays valid until
+    |           the index is next changed.
+    *-------------------------------------------------------------------*/
+    public int find(ByteBuffer key) {
+        int base = hashFunction.bucket(codec.hash(key, 0), numBuckets)
+                * bucketSize;
+        for (int i = 0; i < SLOTS; i++) {
+            int at = base + i * slotSize;
+            byte state = slots.get(at);
+            if (state == FULL && sameKey(at + 1, key)) {
+                return at;
+            }
+            if (state == EMPTY) {
+                return -1;
+            }
+        }
+        return -1;
+    } // find()
+
+    /* The value of a slot found by find(), as an int, a long or bytes */
+    public int valueInt(int slot) {
+        return slots.getInt(slot + 1 + keyWidth);
+    } // valueInt()
+
+    public long valueLong(int slot) {
+        return slots.getLong(slot + 1 + keyWidth);
+    } // valueLong()
+
+    public void value(int slot, ByteBuffer dst) {
+        dst.put(0, slots, slot + 1 + keyWidth, valueWidth);
+    } // value()
+
+    /* Stores an int, long or bytes value for key, replacing any value it
+       had. The value width must match */
+    public void putInt(ByteBuffer key, int value) {
+        checkWidth(4);
+        int slot = insert(key); // may replace slots
+        slots.putInt(slot + 1 + keyWidth, value);
+    } // putInt()
+
+    public void putLong(ByteBuffer key, long value) {
+        checkWidth(8);
+        int slot = insert(key);
+        slots.putLong(slot + 1 + keyWidth, value);
+    } // putLong()
+
+    public void put(ByteBuffer key, ByteBuffer value) {
+        checkWidth(value.capacity());
+        int slot = insert(key);
+        slots.put(slot + 1 + keyWidth, value, 0, valueWidth);
+    } // put()
+
+    /*---------------------------------------------------------------------
+    |  Method remove(ByteBuffer key)
+    |
+    |  Purpose:  Marks the key's slot as a TOMBSTONE
+    |
+    |  Pre-condition:  key holds a key written by this index's codec
+    |
+    |  Post-condition: find(key) returns -1
+    |
+    |  Parameters:
+    |          key -- The key, from byte 0
+    |
+    |  Returns: True if the key was in the index
+    *-------------------------------------------------------------------*/
+    public boolean remove(ByteBuffer key) {
+        int slot = find(key);
+        if (slot == -1) {
+            return false;
+        }
+        slots.put(slot, TOMBSTONE);
+        size--;
+        return true;
+    } // remove()
+
+    /* Throws if values are not 'width' bytes wide */
+    private void checkWidth(int width) {
+        if (width != valueWidth) {
+            throw new IllegalArgumentException("Values are " + valueWidth
+                    + " bytes, not " + width);
+        }
+    } // checkWidth()
+
+    /* True if the key bytes at slots[at] are those of key */
+    private boolean sameKey(int at, ByteBuffer key) {
+        int i = 0;
+        for (; i + 8 <= keyWidth; i += 8) {
+            if (slots.getLong(at + i) != key.getLong(i)) {
+                return false;
+            }
+        }
+        for (; i < keyWidth; i++) {
+            if (slots.get(at + i) != key.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    } // sameKey()
+
+    /* The slot holding key, after putting the key in the first free slot
+       of its bucket (and doubling the table first if there is none) if it
+       was not there */
+    private int insert(ByteBuffer key) {
+        int slot = find(key);
+        if (slot != -1) {
+            return slot;
+        }
+        while (true) {
+            int base = hashFunction.bucket(codec.hash(key, 0), numBuckets)
+                    * bucketSize;
+            for (int i = 0; i < SLOTS; i++) {
+                int at = base + i * slotSize;
+                if (slots.get(at) != FULL) { // EMPTY or TOMBSTONE
+                    slots.put(at + 1, key, 0, keyWidth);
+                    slots.put(at, FULL);
+                    size++;
+                    return at;
+                }
+            }
+            resize();
+        }
+    } // insert()
+
+    /*---------------------------------------------------------------------
+    |  Method resize()
+    |
+    |  Purpose:  Doubles the table into a new buffer. Bucket b splits into
+    |            b and b + (old number of buckets), dropping tombstones, as
+    |            in OffHeapLinearHashMap.
+    |
+    |  Pre-condition:  A bucket is full
+    |
+    |  Post-condition: The old buffer is left for the garbage collector
+    |
+    |  Parameters: None
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private void resize() {
+        if ((long) numBuckets * 2 * bucketSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Index is too large to hold in"
+                    + " memory");
+        }
+        int oldBuckets = numBuckets;
+        ByteBuffer old = slots;
+        hVal++;
+        numBuckets *= 2;
+        slots = ByteBuffer.allocateDirect(numBuckets * bucketSize);
+        for (int b = 0; b < oldBuckets; b++) {
+            int low = b * bucketSize;
+            int high = (b + oldBuckets) * bucketSize;
+            for (int i = 0; i < SLOTS; i++) {
+                int at = b * bucketSize + i * slotSize;
+                if (old.get(at) == FULL) {
+                    int to;
+                    if (hashFunction.bucket(codec.hash(old, at + 1),
+                            numBuckets) == b) {
+                        to = low;
+                        low += slotSize;
+                    } else {
+                        to = high;
+                        high += slotSize;
+                    }
+                    slots.put(to, old, at, slotSize);
+                }
+            }
+        }
+    } // resize()
+} // class KeyedHashIndex
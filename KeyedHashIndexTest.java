@@ -0,0 +1,300 @@
+/*
+ * KeyedHashIndexTest.java -- Checks the keyed index round trip for every
+ * key codec: int keys (negative ones too), long keys, padded bytes keys
+ * and fingerprints of names of any length. Each index is filled until it
+ * has split several times, has some keys removed, is dumped and is read
+ * back with load() and with map(), and every key must be found with its
+ * value while the removed and missing ones are not. Then it indexes a
+ * .bin file by fingerprint, makes the fingerprint of one name point at
+ * another name's record as a collision would, and checks that get does
+ * not print the wrong record. Exits with 1 if anything is wrong.
+ *
+ * Usage: java KeyedHashIndexTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.*;
+
+public class KeyedHashIndexTest {
+    /*+----------------------------------------------------------------------
+    ||  Class KeyedHashIndexTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Writes and reads keyed indexes of each key type.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: KEYS: keys put in each index
+    ||                  MISSING: keys looked up that were never put
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static final int KEYS = 3000;
+    private static final int MISSING = 500;
+
+    private static int failures;
+
+    /* Writes the i-th key of a round trip into key */
+    private interface Keys {
+        ByteBuffer key(ByteBuffer key, int i);
+    }
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Runs a round trip for each codec, then the fingerprint
+    |            collision through the command line
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The temporary folder is removed
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws IOException {
+        Path dir = Files.createTempDirectory("keyedhash");
+        String idxFileName = dir.resolve("k.kidx").toString();
+        PrintStream stdout = System.out;
+        InputStream stdin = System.in;
+        try {
+            roundTrip(idxFileName, KeyCodec.INT, 4, HashFunction.MODULO,
+                    (key, i) -> KeyCodec.INT.putInt(key, i * 0x9E3779B1));
+            roundTrip(idxFileName, KeyCodec.LONG, 8, HashFunction.MURMUR3,
+                    (key, i) -> KeyCodec.LONG.putLong(key,
+                    i * 0x9E3779B97F4A7C15L));
+            KeyCodec bytes = KeyCodec.bytes(12);
+            roundTrip(idxFileName, bytes, 12, HashFunction.MURMUR3,
+                    (key, i) -> bytes.putString(key, "G" + i + "-" + i % 7));
+            roundTrip(idxFileName, KeyCodec.FINGERPRINT, 4,
+                    HashFunction.MURMUR3, (key, i) -> KeyCodec.FINGERPRINT
+                    .putString(key, ("Project " + i + " ").repeat(1
+                    + i % 40)));
+
+            ByteBuffer a = bytes.putString(bytes.newKey(), "ab");
+            ByteBuffer b = bytes.putBytes(bytes.newKey(), new byte[] {'a',
+                    'b', 0}, 0, 3);
+            expect(a.equals(b), "a bytes key is padded with zeros");
+            try {
+                bytes.putString(bytes.newKey(), "thirteen char");
+                expect(false, "a key longer than the width is refused");
+            } catch (IllegalArgumentException e) {
+                // refused as it should be
+            }
+
+            fingerprintCollision(dir);
+        } finally {
+            System.setOut(stdout);
+            System.setIn(stdin);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path f : files) {
+                    Files.delete(f);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "OK: keyed indexes read back for"
+                + " every key type" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* Fills an index with KEYS keys, removes every tenth, dumps it and
+       checks the copies load() and map() read back */
+    private static void roundTrip(String idxFileName, KeyCodec codec,
+            int valueWidth, HashFunction hash, Keys keys) throws IOException {
+        String what = " (" + codec.getName() + " keys)";
+        KeyedHashIndex index = new KeyedHashIndex(codec, valueWidth, hash);
+        ByteBuffer key = codec.newKey();
+        for (int i = 0; i < KEYS; i++) {
+            put(index, keys.key(key, i), i);
+        }
+        put(index, keys.key(key, 5), 5);    // a second put replaces
+        for (int i = 0; i < KEYS; i += 10) {
+            expect(index.remove(keys.key(key, i)), "key " + i + " is"
+                    + " removed" + what);
+        }
+        expect(!index.remove(keys.key(key, 0)), "a removed key is not"
+                + " removed twice" + what);
+        int live = KEYS - KEYS / 10;
+        expect(index.size() == live, "the index counts " + live + " keys"
+                + what);
+        expect(index.getHVal() > 2, "the index split several times" + what);
+        check(index, keys, "before the dump" + what);
+        index.dump(idxFileName);
+        expect(!Files.exists(Paths.get(idxFileName + ".tmp")), "dump()"
+                + " leaves no .tmp file" + what);
+
+        KeyedHashIndex loaded = KeyedHashIndex.load(idxFileName);
+        KeyedHashIndex mapped = KeyedHashIndex.map(idxFileName);
+        for (KeyedHashIndex read : new KeyedHashIndex[] {loaded, mapped}) {
+            String how = (read == loaded ? "loaded" : "mapped") + what;
+            expect(read.getKeyCodec().getCode() == codec.getCode()
+                    && read.getKeyCodec().getWidth() == codec.getWidth()
+                    && read.getValueWidth() == valueWidth
+                    && read.getHashFunction() == hash
+                    && read.getHVal() == index.getHVal()
+                    && read.size() == live, "the header reads back, "
+                    + how);
+            check(read, keys, how);
+        }
+        put(loaded, keys.key(key, 0), 0);
+        expect(loaded.find(keys.key(key, 0)) != -1, "a loaded index can be"
+                + " changed" + what);
+        try {
+            put(mapped, keys.key(key, 0), 0);
+            expect(false, "a mapped index can not be changed" + what);
+        } catch (ReadOnlyBufferException e) {
+            // refused as it should be
+        }
+    } // roundTrip()
+
+    /* Every key but the removed ones is found with its value, and none
+       of the missing keys is found */
+    private static void check(KeyedHashIndex index, Keys keys, String how) {
+        ByteBuffer key = index.getKeyCodec().newKey();
+        int wrong = 0;
+        for (int i = 0; i < KEYS; i++) {
+            int slot = index.find(keys.key(key, i));
+            if (i % 10 == 0 ? slot != -1 : slot == -1
+                    || !hasValue(index, slot, i)) {
+                wrong++;
+            }
+        }
+        expect(wrong == 0, wrong + " of " + KEYS + " keys are wrong, "
+                + how);
+        int found = 0;
+        for (int i = KEYS; i < KEYS + MISSING; i++) {
+            if (index.find(keys.key(key, i)) != -1) {
+                found++;
+            }
+        }
+        expect(found == 0, found + " keys that were never put are found, "
+                + how);
+    } // check()
+
+    /* Puts value i for key, as an int, a long or bytes by the width */
+    private static void put(KeyedHashIndex index, ByteBuffer key, int i) {
+        if (index.getValueWidth() == 4) {
+            index.putInt(key, i * 3 + 1);
+        } else if (index.getValueWidth() == 8) {
+            index.putLong(key, (long) i << 33 | i);
+        } else {
+            ByteBuffer value = ByteBuffer.allocate(index.getValueWidth());
+            for (int j = 0; j < value.capacity(); j++) {
+                value.put(j, (byte) (i + j));
+            }
+            index.put(key, value);
+        }
+    } // put()
+
+    /* True if the slot holds the value put() put for i */
+    private static boolean hasValue(KeyedHashIndex index, int slot, int i) {
+        if (index.getValueWidth() == 4) {
+            return index.valueInt(slot) == i * 3 + 1;
+        } else if (index.getValueWidth() == 8) {
+            return index.valueLong(slot) == ((long) i << 33 | i);
+        }
+        ByteBuffer value = ByteBuffer.allocate(index.getValueWidth());
+        index.value(slot, value);
+        for (int j = 0; j < value.capacity(); j++) {
+            if (value.get(j) != (byte) (i + j)) {
+                return false;
+            }
+        }
+        return true;
+    } // hasValue()
+
+    /* Indexes five plants by fingerprint, points the fingerprint of
+       "Plant 9" at the record of "Plant 3" and asks get for both */
+    private static void fingerprintCollision(Path dir) throws IOException {
+        String binFileName = dir.resolve("t.bin").toString();
+        String keyFileName = dir.resolve("t.kidx").toString();
+        RecordCodec codec = new RecordCodec(RecordSchema.solar(20, 10, 2));
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(binFileName))) {
+            out.writeInt(5);
+            out.writeInt(20);
+            out.writeInt(10);
+            out.writeInt(2);
+            byte[] record = codec.newRecord();
+            for (int i = 1; i <= 5; i++) {
+                SolarEntries s = new SolarEntries();
+                s.setEIAID(i * 11);
+                s.setProjectName("Plant " + i);
+                s.setSolarCOD("1/1/2000");
+                s.setState("ID");
+                s.setSolarCapacityDC(i * 2.5);    // the MW-AC column
+                codec.encode(s, record);
+                out.write(record);
+            }
+        }
+        run("", () -> KeyedHashIndex.main(new String[] {"build", binFileName,
+                keyFileName, "fingerprint"}));
+        KeyedHashIndex index = KeyedHashIndex.load(keyFileName);
+        expect(index.getKeyCodec() == KeyCodec.FINGERPRINT && index.size()
+                == 5, "build indexes every name by fingerprint");
+        ByteBuffer key = KeyCodec.FINGERPRINT.newKey();
+        int plant3 = index.valueInt(index.find(KeyCodec.FINGERPRINT
+                .putString(key, "Plant 3")));
+        index.putInt(KeyCodec.FINGERPRINT.putString(key, "Plant 9"), plant3);
+        index.dump(keyFileName);
+
+        String printed = run("Plant 9\nPlant 3\n", () -> KeyedHashIndex.main(
+                new String[] {"get", keyFileName, binFileName}));
+        expect(printed.contains("The project Plant 9 was not found."), "a"
+                + " fingerprint that matches another name's record is not"
+                + " a hit (got " + printed + ")");
+        expect(printed.contains("[33] [Plant 3") && printed.contains(
+                "] [7.5]"), "the record the fingerprint points at is still"
+                + " found by its own name");
+    } // fingerprintCollision()
+
+    /* A program run with its own input and output */
+    private interface Run {
+        void run() throws IOException;
+    }
+
+    /* Runs a program with input on System.in and returns what it printed */
+    private static String run(String input, Run program) throws IOException {
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        System.setOut(new PrintStream(printed, true));
+        try {
+            program.run();
+        } finally {
+            System.setOut(stdout);
+        }
+        return printed.toString();
+    } // run()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class KeyedHashIndexTest
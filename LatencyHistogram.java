@@ -0,0 +1,155 @@
+/*
+ * LatencyHistogram.java -- Counts how long operations take in nanoseconds
+ * the way an HDR histogram does: every power of two is split into
+ * SUB_BUCKETS equal ranges, so any value is kept to within about 3% no
+ * matter how large it is, in a fixed array of counters. Recording is one
+ * atomic add and never locks, so it can be done on every lookup from many
+ * threads.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+    /*+----------------------------------------------------------------------
+    ||  Class LatencyHistogram
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: A lock free log-linear histogram of latencies with
+    ||                  percentiles.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: SUB_BITS: log2 of the ranges per power of two
+    ||                  SUB_BUCKETS: ranges per power of two
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: LatencyHistogram()
+    ||
+    ||   Class Methods: None
+    ||
+    ||   Inst. Methods: void record(long nanos)
+    ||                  long getCount()
+    ||                  long getMax()
+    ||                  double getMean()
+    ||                  long getPercentile(double percent)
+    ||                  String summary()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int SUB_BITS = 5;
+    public static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    // values below SUB_BUCKETS get a counter each, then SUB_BUCKETS
+    // counters for every power of two up to 2^63
+    private AtomicLongArray counts =
+            new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+    private LongAdder total = new LongAdder();
+    private LongAdder sum = new LongAdder();
+    private AtomicLong max = new AtomicLong();
+
+    /* Getter methods */
+    public long getCount() { return total.sum(); }
+    public long getMax() { return max.get(); }
+
+    /* Mean of the recorded values, 0 if there are none */
+    public double getMean() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    } // getMean()
+
+    /*---------------------------------------------------------------------
+    |  Method record(long nanos)
+    |
+    |  Purpose:  Adds one value to the histogram
+    |
+    |  Pre-condition:  None, negative values are counted as 0
+    |
+    |  Post-condition: The value is counted
+    |
+    |  Parameters:
+    |        nanos -- The time taken
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(v));
+        total.increment();
+        sum.add(v);
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+    } // record()
+
+    /*---------------------------------------------------------------------
+    |  Method getPercentile(double percent)
+    |
+    |  Purpose:  Finds the value that 'percent' percent of the recorded
+    |            values are at or below.
+    |
+    |  Pre-condition:  0 <= percent <= 100
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |      percent -- The percentile, for example 99.9
+    |
+    |  Returns: The highest value of the range holding the percentile, 0
+    |           if nothing was recorded
+    *-------------------------------------------------------------------*/
+    public long getPercentile(double percent) {
+        long n = total.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percent / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestOf(i), max.get());
+            }
+        }
+        return max.get();
+    } // getPercentile()
+
+    /* Count, mean and percentiles in microseconds as one line */
+    public String summary() {
+        return String.format("n=%d mean=%.1fus p50=%.1fus p99=%.1fus"
+                + " p99.9=%.1fus max=%.1fus", getCount(), getMean() / 1000,
+                getPercentile(50) / 1000.0, getPercentile(99) / 1000.0,
+                getPercentile(99.9) / 1000.0, max.get() / 1000.0);
+    } // summary()
+
+    /* Counter of value v */
+    private static int indexOf(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((v >>> shift) - SUB_BUCKETS);
+    } // indexOf()
+
+    /* Highest value counted by counter i */
+    private static long highestOf(int i) {
+        if (i < SUB_BUCKETS) {
+            return i;
+        }
+        int shift = i / SUB_BUCKETS - 1;
+        long low = (long) (i % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return low + (1L << shift) - 1;
+    } // highestOf()
+} // class LatencyHistogram
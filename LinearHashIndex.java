@@ -0,0 +1,1296 @@
+/*
+ * LinearHashIndex.java -- The index file used by Prog21 and Prog22 as an
+ * object that can be kept open and changed. The file is laid out the same
+ * way Prog21 always wrote it: numBuckets buckets of BLOCKING_FACTOR slots,
+ * each slot being the EIA ID and the pointer into the .bin file (4 bytes
+ * each), with the H value as the last int of the file.
+ *
+ * Slots are filled from the top of the bucket down, so a lookup can stop
+ * at the first EMPTY slot. Deleting a key leaves a TOMBSTONE in its slot
+ * instead of EMPTY so lookups keep going past it, and inserts reuse
+ * tombstones before empty slots.
+ *
+ * The bucket of a key is picked by a HashFunction: the plain modulo of
+ * the original format, or a mixing hash. The function is recorded in the
+ * header, and files without that field use the modulo.
+ *
+ * Between the buckets and the H value there is a short header:
+ *  int fields[HEADER_FIELDS], int HEADER_FIELDS, int MAGIC, int hVal
+ * Index files written before the header existed only have the H value at
+ * the bottom; they are still read and get the header the next time they
+ * are closed after being changed.
+ *
+ * Crash safety: the index file is never rewritten in place as a whole.
+ * A new index, a split (resize) and a contraction are written to
+ * <name>.tmp, forced to disk and then renamed over <name>, so the file is
+ * always either the old table or the new one. Single slot changes are
+ * made in place and recorded in a WriteAheadLog (<name>.wal) which is
+ * replayed when the index is next opened for writing.
+ *
+ * setCache() puts a BucketPageCache in front of the file for lookups and
+ * single slot changes. Slot writes go to the file and then to the cache;
+ * a split or contraction renumbers the buckets and starts a new cache.
+ *
+ * Readers and the writer: lookups never lock. The table they probe (its H
+ * value, open file and cache) is a Snapshot, published through an
+ * AtomicReference with an epoch number that goes up with every split or
+ * contraction. A lookup takes the snapshot once and uses that H value and
+ * that file for the whole lookup, so it can never compute a bucket with
+ * one H value and read it from a table with another. Since an opened
+ * index splits into a new file, the old snapshot's file still holds the
+ * whole old table, and it is only closed once its last reader is done.
+ * Changes are made by one thread at a time (the methods that change the
+ * index are synchronized). A new index is split in place and is not
+ * meant to be read by other threads until close() publishes it.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LinearHashIndex {
+    /*+----------------------------------------------------------------------
+    ||  Class LinearHashIndex
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Holds an open index file and allows lookups, inserts,
+    ||                  deletes and pointer updates on it. Buckets are read
+    ||                  and written whole, one bucket per read. When a bucket
+    ||                  is full the table doubles (H goes up by 1) and when
+    ||                  the load factor drops below CONTRACT_LOAD the table is
+    ||                  halved again if every pair of buckets fits in one.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: BLOCKING_FACTOR: the number of slots in each bucket
+    ||                  SLOT_SIZE: bytes in a slot (key and pointer)
+    ||                  BUCKET_SIZE: bytes in a bucket
+    ||                  EMPTY: key of a slot that was never used
+    ||                  TOMBSTONE: key of a slot whose entry was deleted
+    ||                  CONTRACT_LOAD: load factor that starts a contraction
+    ||                  CHECKPOINT_BYTES: log size that forces a checkpoint
+    ||                  MAX_H: the largest H value, so 2^(H + 1) buckets
+    ||                         still fit in an int
+    ||                  MAGIC: marks an index file that has the header
+    ||                  H_ENTRIES: header field holding the number of keys
+    ||                  H_INDEXED: header field holding how many .bin
+    ||                             records have been indexed
+    ||                  H_HASH: header field holding the HashFunction code
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None, use create() or open()
+    ||
+    ||   Class Methods: LinearHashIndex create(String fileName)
+    ||                  LinearHashIndex create(String fileName,
+    ||                                         HashFunction hashFunction)
+    ||                  LinearHashIndex open(String fileName, boolean writable)
+    ||                  void writeHeader(FileChannel ch, int hVal,
+    ||                                   int[] fields)
+    ||                  void publish(String from, String to)
+    ||
+    ||   Inst. Methods: int getHVal()
+    ||                  int getNumBuckets()
+    ||                  long getEpoch()
+    ||                  int getNumEntries()
+    ||                  int getNumIndexed()
+    ||                  HashFunction getHashFunction()
+    ||                  void setNumIndexed(int records)
+    ||                  int getHashCode(int k)
+    ||                  int lookup(int key)
+    ||                  void lookupMany(int[] keys, int[] pointers, int count)
+    ||                  void insert(Entry se)
+    ||                  boolean delete(int key)
+    ||                  boolean update(int key, int pointer)
+    ||                  void setGroupCommit(int records)
+    ||                  void setCache(int pages)
+    ||                  BucketPageCache getCache()
+    ||                  void setMetrics(IndexMetrics metrics)
+    ||                  IndexMetrics getMetrics()
+    ||                  int[] getOccupancy()
+    ||                  void commit()
+    ||                  void close()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int BLOCKING_FACTOR = 20;
+    public static final int SLOT_SIZE = 4 + 4;
+    public static final int BUCKET_SIZE = BLOCKING_FACTOR * SLOT_SIZE;
+    public static final int EMPTY = -1;
+    public static final int TOMBSTONE = -2;
+    public static final double CONTRACT_LOAD = 0.25;
+    public static final long CHECKPOINT_BYTES = 16L << 20;
+    public static final int MAX_H = 29;
+
+    public static final int MAGIC = 0x4C484931; // "LHI1"
+    public static final int H_ENTRIES = 0;
+    public static final int H_INDEXED = 1;
+    public static final int H_HASH = 2;
+    public static final int HEADER_FIELDS = 3;
+
+    private String fileName;        // Name of the index file
+    private boolean writable;       // Opened for writing
+    private boolean building;       // New index still in <name>.tmp
+    private boolean recovering;     // Replaying the log, keep it until done
+    private boolean changed;        // Header needs writing on close
+    private WriteAheadLog wal;      // Log of changes, null if not writable
+    private int cachePages;         // Buckets cached per table, 0 for none
+    private IndexMetrics metrics;   // Counters to update, null if none
+
+    // The table lookups use. Only the writer replaces it
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+
+    private int numEntries;         // Live keys in the index
+    private int numIndexed;         // .bin records indexed, -1 if unknown
+    private HashFunction hashFunction = HashFunction.MODULO;
+    private int contractBlockedAt;  // numEntries when contraction last failed
+
+    /* One published table: its H value, the file holding it (the index
+       file, or .tmp while building) and its cache. The buckets only
+       change by single slot writes, never by a split */
+    private static final class Snapshot {
+        final long epoch;
+        final int hVal;
+        final int numBuckets;
+        final FileChannel channel;
+        final BucketPageCache cache;        // null if none
+        final AtomicInteger readers = new AtomicInteger();
+        final AtomicBoolean closed = new AtomicBoolean();
+        volatile boolean retired;           // A newer table is published
+
+        Snapshot(long epoch, int hVal, FileChannel channel,
+                BucketPageCache cache) {
+            this.epoch = epoch;
+            this.hVal = hVal;
+            this.numBuckets = 1 << (hVal + 1);
+            this.channel = channel;
+            this.cache = cache;
+        }
+
+        /* Closes the file once, when it is retired and has no readers */
+        void closeChannel() {
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // nothing is written through a retired table
+                }
+            }
+        }
+    }
+
+    /* Getter methods */
+    public int getHVal() { return current.get().hVal; }
+    public int getNumBuckets() { return current.get().numBuckets; }
+    public long getEpoch() { return current.get().epoch; }
+    public int getNumEntries() { return numEntries; }
+    public int getNumIndexed() { return numIndexed; }
+    public HashFunction getHashFunction() { return hashFunction; }
+    public BucketPageCache getCache() { return current.get().cache; }
+    public IndexMetrics getMetrics() { return metrics; }
+
+    private LinearHashIndex(String name, boolean canWrite) {
+        fileName = name;
+        writable = canWrite;
+        contractBlockedAt = Integer.MAX_VALUE;
+    }
+
+    /* Creates a new index that uses HashFunction.MODULO */
+    public static LinearHashIndex create(String fileName) throws IOException {
+        return create(fileName, HashFunction.MODULO);
+    } // create()
+
+    /*---------------------------------------------------------------------
+    |  Method create(String fileName, HashFunction hashFunction)
+    |
+    |  Purpose:  Creates a new index with H = 0 and two empty buckets. The
+    |            index is built in <fileName>.tmp and only replaces
+    |            fileName when close() is called, so an old index file is
+    |            left alone if the build does not finish.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The new index is open for writing
+    |
+    |  Parameters:
+    |     fileName -- Name of the index file
+    | hashFunction -- How keys are given their buckets
+    |
+    |  Returns: The open index
+    *-------------------------------------------------------------------*/
+    public static LinearHashIndex create(String fileName,
+            HashFunction hashFunction) throws IOException {
+        File tmp = new File(fileName + ".tmp");
+        if (tmp.exists()) {
+            tmp.delete();
+        }
+        LinearHashIndex idx = new LinearHashIndex(fileName, true);
+        FileChannel ch = new RandomAccessFile(tmp, "rw").getChannel();
+        idx.building = true;
+        idx.hashFunction = hashFunction;
+        idx.numIndexed = 0;
+        idx.current.set(new Snapshot(0, 0, ch, null));
+        for (int b = 0; b < 2; b++) {
+            writeBucket(ch, b, emptyBucket());
+        }
+        idx.changed = true;
+        return idx;
+    } // create()
+
+    /*---------------------------------------------------------------------
+    |  Method open(String fileName, boolean writable)
+    |
+    |  Purpose:  Opens an existing index file and reads the H value and
+    |            header from the bottom of the file. Old index files with
+    |            no header have their keys counted. When opened for writing
+    |            a left over .tmp file is removed and the changes in the log
+    |            are redone.
+    |
+    |  Pre-condition:  The file was written by Prog21 or this class
+    |
+    |  Post-condition: The file is open
+    |
+    |  Parameters:
+    |     fileName -- Name of the index file
+    |     writable -- True to allow changes to the index
+    |
+    |  Returns: The open index
+    *-------------------------------------------------------------------*/
+    public static LinearHashIndex open(String fileName, boolean writable)
+            throws IOException {
+        if (writable) { // a split that never finished
+            new File(fileName + ".tmp").delete();
+        }
+        LinearHashIndex idx = new LinearHashIndex(fileName, writable);
+        RandomAccessFile raf = new RandomAccessFile(fileName,
+                writable ? "rw" : "r");
+        try {
+            idx.readHeader(raf);
+            if (writable) {
+                idx.wal = new WriteAheadLog(fileName + ".wal");
+                idx.recover();
+            }
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        return idx;
+    } // open()
+
+    /*---------------------------------------------------------------------
+    |  Method recover()
+    |
+    |  Purpose:  Redoes every change in the log. Each change is redone
+    |            only if the index does not already show it, so changes
+    |            that reached the index file before the crash are not done
+    |            twice. The keys are counted again and a checkpoint empties
+    |            the log.
+    |
+    |  Pre-condition:  The header has been read and the log is open
+    |
+    |  Post-condition: The index holds every committed change
+    |
+    |  Parameters: None
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private void recover() throws IOException {
+        if (wal.getLength() == 0) {
+            return;
+        }
+        ArrayList<int[]> records = wal.readRecords();
+        recovering = true;
+        for (int[] r : records) {
+            int ptr = lookup(r[1]);
+            if (r[0] == WriteAheadLog.INDEXED) {
+                numIndexed = r[1];
+                continue;
+            }
+            if (r[0] == WriteAheadLog.INSERT && ptr == -1) {
+                applyInsert(new Entry(r[1], r[2]), false);
+            } else if (r[0] == WriteAheadLog.DELETE && ptr != -1) {
+                applyDelete(r[1], false);
+            } else if (r[0] != WriteAheadLog.DELETE && ptr != -1
+                    && ptr != r[2]) {
+                applyUpdate(r[1], r[2], false);
+            }
+        }
+        recovering = false;
+        numEntries = countEntries();
+        changed = true;
+        checkpoint();
+    } // recover()
+
+    /*---------------------------------------------------------------------
+    |  Method readHeader()
+    |
+    |  Purpose:  Reads the H value from the last int of the file and the
+    |            header fields above it if the file has them.
+    |
+    |  Pre-condition:  The file is open
+    |
+    |  Post-condition: The first snapshot is published and numEntries is
+    |                  set
+    |
+    |  Parameters:
+    |         file -- The open index file
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private void readHeader(RandomAccessFile file) throws IOException {
+        long len = file.length();
+        if (len < 4) {
+            throw new IOException("Index file is too short");
+        }
+        file.seek(len - 4);
+        int hVal = file.readInt();
+        if (hVal == PerfectHashIndex.MAGIC) {
+            throw new IOException(fileName + " is a perfect hash index,"
+                    + " not a linear hash index");
+        }
+        if (hVal == KeyedHashIndex.MAGIC) {
+            throw new IOException(fileName + " is a keyed index, not an"
+                    + " EIA ID index");
+        }
+        if (hVal < 0 || hVal > MAX_H) {
+            throw new IOException("Index file has an invalid H value");
+        }
+        long bucketBytes = (1L << (hVal + 1)) * BUCKET_SIZE;
+
+        int[] fields = null;
+        if (len >= 12) {
+            file.seek(len - 12);
+            int count = file.readInt();
+            int magic = file.readInt();
+            if (magic == MAGIC && count >= 0
+                    && len == bucketBytes + 4L * (count + 3)) {
+                fields = new int[count];
+                file.seek(bucketBytes);
+                for (int i = 0; i < count; i++) {
+                    fields[i] = file.readInt();
+                }
+            }
+        }
+        if (fields == null && len != bucketBytes + 4) {
+            throw new IOException("Index file size does not match H value");
+        }
+        current.set(new Snapshot(0, hVal, file.getChannel(), null));
+
+        if (fields != null && fields.length > H_ENTRIES) {
+            numEntries = fields[H_ENTRIES];
+        } else { // old file, count the keys once
+            numEntries = countEntries();
+        }
+        numIndexed = -1;
+        if (fields != null && fields.length > H_INDEXED) {
+            numIndexed = fields[H_INDEXED];
+        }
+        hashFunction = HashFunction.MODULO;
+        if (fields != null && fields.length > H_HASH) {
+            hashFunction = HashFunction.fromCode(fields[H_HASH]);
+            if (hashFunction == null) {
+                throw new IOException("Index file uses an unknown hash function");
+            }
+        }
+    } // readHeader()
+
+    /* Writes this index's header, for a table with H value hVal, to ch */
+    private void writeHeader(FileChannel ch, int hVal) throws IOException {
+        int[] fields = new int[HEADER_FIELDS];
+        fields[H_ENTRIES] = numEntries;
+        fields[H_INDEXED] = numIndexed;
+        fields[H_HASH] = hashFunction.getCode();
+        writeHeader(ch, hVal, fields);
+    } // writeHeader()
+
+    /*---------------------------------------------------------------------
+    |  Method writeHeader(FileChannel ch, int hVal, int[] fields)
+    |
+    |  Purpose:  Writes the header fields and H value right after the last
+    |            bucket and cuts the file off there. Also used by builders
+    |            that write the buckets of an index file themselves.
+    |
+    |  Pre-condition:  ch is open for writing and holds the 2^(hVal + 1)
+    |                  buckets
+    |
+    |  Post-condition: The file ends with the H value
+    |
+    |  Parameters:
+    |           ch -- The index file (or a new .tmp file) to write to
+    |         hVal -- The H value of the table
+    |       fields -- The header fields, indexed by the H_ constants
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void writeHeader(FileChannel ch, int hVal, int[] fields)
+            throws IOException {
+        long bucketBytes = (1L << (hVal + 1)) * BUCKET_SIZE;
+        ByteBuffer buf = ByteBuffer.allocate(4 * (fields.length + 3));
+        for (int f : fields) {
+            buf.putInt(f);
+        }
+        buf.putInt(fields.length);
+        buf.putInt(MAGIC);
+        buf.putInt(hVal);
+        buf.flip();
+        writeFully(ch, buf, bucketBytes);
+        ch.truncate(bucketBytes + buf.capacity());
+    } // writeHeader()
+
+    /*---------------------------------------------------------------------
+    |  Method getHashCode(int k)
+    |
+    |  Purpose:  Computes the bucket a key belongs in for the current H
+    |            value: the key, mixed by the hash function, % 2^(H + 1)
+    |
+    |  Pre-condition:  The arg 'k' is the EIA ID number
+    |
+    |  Post-condition: The integer returned is a valid bucket that exists in
+    |                  the table
+    |
+    |  Parameters:
+    |            k -- The key which should be the EIA ID
+    |
+    |  Returns: An integer which is the bucket the entry will go into
+    *-------------------------------------------------------------------*/
+    public int getHashCode(int k) {
+        return hashFunction.bucket(k, current.get().numBuckets);
+    } // getHashCode()
+
+    /*---------------------------------------------------------------------
+    |  Method acquire()
+    |
+    |  Purpose:  Takes the published snapshot for a reader. The reader is
+    |            counted before it checks the snapshot is still the one
+    |            published, so a writer that retires it either sees the
+    |            reader and leaves the file open, or the reader sees the
+    |            newer snapshot and takes that one instead.
+    |
+    |  Pre-condition:  The index is open
+    |
+    |  Post-condition: The snapshot's file stays open until release()
+    |
+    |  Parameters: None
+    |
+    |  Returns: The snapshot to read
+    *-------------------------------------------------------------------*/
+    private Snapshot acquire() {
+        while (true) {
+            Snapshot s = current.get();
+            s.readers.incrementAndGet();
+            if (current.get() == s) {
+                return s;
+            }
+            release(s);
+        }
+    } // acquire()
+
+    /* Ends a reader's use of s, closing its file if it was the last
+       reader of a retired snapshot */
+    private static void release(Snapshot s) {
+        if (s.readers.decrementAndGet() == 0 && s.retired) {
+            s.closeChannel();
+        }
+    } // release()
+
+    /* Publishes next in place of the current snapshot. The old file is
+       closed now if nobody reads it, otherwise by its last reader */
+    private void install(Snapshot next) {
+        Snapshot old = current.getAndSet(next);
+        if (old.channel == next.channel) { // same table, only a new cache
+            return;
+        }
+        old.retired = true;
+        if (old.readers.get() == 0) {
+            old.closeChannel();
+        }
+    } // install()
+
+    /* A cache for the table in ch, or null if caching is off */
+    private BucketPageCache newCache(FileChannel ch) {
+        return cachePages > 0 ? new BucketPageCache(cachePages, BUCKET_SIZE,
+                (b, page) -> loadBucket(ch, b, page)) : null;
+    } // newCache()
+
+    /*---------------------------------------------------------------------
+    |  Method lookup(int key)
+    |
+    |  Purpose:  Reads the bucket the key hashes to and looks for the key,
+    |            stopping at the first EMPTY slot. The bucket is picked
+    |            and read in one snapshot, so a split at the same time
+    |            cannot hide the key.
+    |
+    |  Pre-condition:  key is not negative
+    |
+    |  Post-condition: The index is not changed
+    |
+    |  Parameters:
+    |          key -- The EIA ID to look for
+    |
+    |  Returns: The pointer into the .bin file or -1 if not found
+    *-------------------------------------------------------------------*/
+    public int lookup(int key) throws IOException {
+        long start = metrics == null ? 0 : System.nanoTime();
+        Snapshot s = acquire();
+        try {
+            int b = hashFunction.bucket(key, s.numBuckets);
+            ByteBuffer bucket = pinBucket(s, b);
+            try {
+                int slot = findSlot(bucket, key);
+                if (metrics != null) {
+                    metrics.recordLookup(System.nanoTime() - start,
+                            slot != -1, probeLength(bucket, slot));
+                }
+                return slot == -1 ? -1 : bucket.getInt(slot * SLOT_SIZE + 4);
+            } finally {
+                unpinBucket(s, b);
+            }
+        } finally {
+            release(s);
+        }
+    } // lookup()
+
+    /*---------------------------------------------------------------------
+    |  Method lookupMany(int[] keys, int[] pointers, int count)
+    |
+    |  Purpose:  Looks up many keys, reading each bucket once for every
+    |            run of keys in that bucket. Callers sort or group their
+    |            keys by getHashCode() first to get one read per bucket.
+    |            Every key is looked up in the same snapshot.
+    |
+    |  Pre-condition:  No key is negative, pointers has room for count
+    |
+    |  Post-condition: The index is not changed
+    |
+    |  Parameters:
+    |         keys -- The EIA IDs to look for
+    |     pointers -- Filled with the pointer of each key, -1 if not found
+    |        count -- Number of keys
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void lookupMany(int[] keys, int[] pointers, int count)
+            throws IOException {
+        Snapshot s = acquire();
+        try {
+            int i = 0;
+            while (i < count) {
+                int b = hashFunction.bucket(keys[i], s.numBuckets);
+                ByteBuffer bucket = pinBucket(s, b);
+                try {
+                    for (; i < count && hashFunction.bucket(keys[i],
+                            s.numBuckets) == b; i++) {
+                        int slot = findSlot(bucket, keys[i]);
+                        pointers[i] = slot == -1 ? -1
+                                : bucket.getInt(slot * SLOT_SIZE + 4);
+                        if (metrics != null) {
+                            metrics.recordProbe(slot != -1,
+                                    probeLength(bucket, slot));
+                        }
+                    }
+                } finally {
+                    unpinBucket(s, b);
+                }
+            }
+        } finally {
+            release(s);
+        }
+    } // lookupMany()
+
+    /*---------------------------------------------------------------------
+    |  Method insert(Entry se)
+    |
+    |  Purpose:  Logs the change and then puts the entry in the first
+    |            TOMBSTONE or EMPTY slot of its bucket. If the bucket is
+    |            full the table is doubled and the insert is tried again.
+    |
+    |  Pre-condition:  The key is not already in the index, the index is
+    |                  open for writing
+    |
+    |  Post-condition: The buckets will remain appropriate sizes, not over
+    |                  BLOCKING_FACTOR elements. The change is on disk after
+    |                  the next commit()
+    |
+    |  Parameters:
+    |           se -- The entry to be added to the table
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public synchronized void insert(Entry se) throws IOException {
+        checkWritable();
+        long start = metrics == null ? 0 : System.nanoTime();
+        applyInsert(se, true);
+        checkpointIfFull();
+        if (metrics != null) {
+            metrics.recordInsert(System.nanoTime() - start);
+        }
+    } // insert()
+
+    /*---------------------------------------------------------------------
+    |  Method delete(int key)
+    |
+    |  Purpose:  Logs the change and then replaces the key's slot with a
+    |            TOMBSTONE. If the load factor is now below CONTRACT_LOAD the
+    |            table is halved.
+    |
+    |  Pre-condition:  The index is open for writing
+    |
+    |  Post-condition: The key can no longer be found. The change is on
+    |                  disk after the next commit()
+    |
+    |  Parameters:
+    |          key -- The EIA ID to remove
+    |
+    |  Returns: True if the key was found and removed
+    *-------------------------------------------------------------------*/
+    public synchronized boolean delete(int key) throws IOException {
+        checkWritable();
+        if (!applyDelete(key, true)) {
+            return false;
+        }
+        checkpointIfFull();
+        if (metrics != null) {
+            metrics.recordDelete();
+        }
+        return true;
+    } // delete()
+
+    /*---------------------------------------------------------------------
+    |  Method update(int key, int pointer)
+    |
+    |  Purpose:  Changes the pointer stored for a key, used when a record
+    |            moves in the .bin file.
+    |
+    |  Pre-condition:  The index is open for writing
+    |
+    |  Post-condition: Lookups of key return the new pointer. The change is
+    |                  on disk after the next commit()
+    |
+    |  Parameters:
+    |          key -- The EIA ID to change
+    |      pointer -- The new location of the record
+    |
+    |  Returns: True if the key was found
+    *-------------------------------------------------------------------*/
+    public synchronized boolean update(int key, int pointer) throws IOException {
+        checkWritable();
+        if (!applyUpdate(key, pointer, true)) {
+            return false;
+        }
+        checkpointIfFull();
+        return true;
+    } // update()
+
+    /*---------------------------------------------------------------------
+    |  Method setNumIndexed(int records)
+    |
+    |  Purpose:  Records that the first 'records' records of the .bin file
+    |            are in the index. The count is logged like any other
+    |            change so it stays in step with the inserts after a crash.
+    |
+    |  Pre-condition:  The index is open for writing
+    |
+    |  Post-condition: getNumIndexed() returns records
+    |
+    |  Parameters:
+    |      records -- Number of .bin records now indexed
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public synchronized void setNumIndexed(int records) throws IOException {
+        checkWritable();
+        numIndexed = records;
+        changed = true;
+        log(WriteAheadLog.INDEXED, records, -1);
+        checkpointIfFull();
+    } // setNumIndexed()
+
+    /*---------------------------------------------------------------------
+    |  Method setGroupCommit(int records)
+    |
+    |  Purpose:  Sets how many changes share one fsync of the log. Changes
+    |            made since the last fsync can be lost in a crash.
+    |
+    |  Pre-condition:  The index is open for writing
+    |
+    |  Post-condition: The log uses the new group size
+    |
+    |  Parameters:
+    |      records -- Changes per fsync, 1 forces every change
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public synchronized void setGroupCommit(int records) throws IOException {
+        if (wal != null) {
+            wal.setGroupCommit(records);
+        }
+    } // setGroupCommit()
+
+    /*---------------------------------------------------------------------
+    |  Method setCache(int pages)
+    |
+    |  Purpose:  Keeps up to 'pages' buckets in memory so repeated lookups
+    |            of the same buckets do not read the file. Full table scans
+    |            (splits, contractions, counting keys) bypass the cache so
+    |            they do not push out the buckets that are used most.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: Lookups and slot changes go through the cache
+    |
+    |  Parameters:
+    |        pages -- Buckets to keep, 0 to turn the cache off
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public synchronized void setCache(int pages) {
+        cachePages = Math.max(0, pages);
+        Snapshot s = current.get();
+        install(new Snapshot(s.epoch, s.hVal, s.channel, newCache(s.channel)));
+    } // setCache()
+
+    /* Starts counting lookups, inserts and splits into metrics, null stops */
+    public void setMetrics(IndexMetrics metrics) {
+        this.metrics = metrics;
+        if (metrics != null) {
+            metrics.attach(this);
+        }
+    } // setMetrics()
+
+    /*---------------------------------------------------------------------
+    |  Method getOccupancy()
+    |
+    |  Purpose:  Reads every bucket (bypassing the cache) and counts how
+    |            many hold each number of live keys.
+    |
+    |  Pre-condition:  The index is open
+    |
+    |  Post-condition: The index is not changed
+    |
+    |  Parameters: None
+    |
+    |  Returns: Element n is the number of buckets with n keys, for n from
+    |           0 to BLOCKING_FACTOR
+    *-------------------------------------------------------------------*/
+    public int[] getOccupancy() throws IOException {
+        int[] occupancy = new int[BLOCKING_FACTOR + 1];
+        Snapshot s = acquire();
+        try {
+            for (int b = 0; b < s.numBuckets; b++) {
+                occupancy[countKeys(readBucket(s.channel, b))]++;
+            }
+        } finally {
+            release(s);
+        }
+        return occupancy;
+    } // getOccupancy()
+
+    /* Forces every change made so far into the log on disk */
+    public synchronized void commit() throws IOException {
+        if (wal != null) {
+            wal.commit();
+        }
+    } // commit()
+
+    /*---------------------------------------------------------------------
+    |  Method close()
+    |
+    |  Purpose:  A new index is forced to disk and renamed over the old
+    |            index file. An opened index is checkpointed so the log is
+    |            left empty. Then the file is closed; a snapshot that a
+    |            lookup is still reading is closed by that lookup.
+    |
+    |  Pre-condition:  The index is open
+    |
+    |  Post-condition: The file is closed
+    |
+    |  Parameters: None
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public synchronized void close() throws IOException {
+        Snapshot s = current.get();
+        if (building) {
+            writeHeader(s.channel, s.hVal);
+            s.channel.force(true);
+            s.channel.close();
+            publish(fileName + ".tmp", fileName);
+            // a log from the old index does not apply to the new one
+            new File(fileName + ".wal").delete();
+            return;
+        }
+        if (writable) {
+            checkpoint();
+            wal.close();
+        }
+        s.retired = true;
+        if (s.readers.get() == 0) {
+            s.closeChannel();
+        }
+    } // close()
+
+    /* Does the insert, logging it first if logIt is true */
+    private void applyInsert(Entry se, boolean logIt) throws IOException {
+        Snapshot s = current.get();
+        int b = hashFunction.bucket(se.getID(), s.numBuckets);
+        ByteBuffer bucket = pinBucket(s, b);
+        int free = -1;
+        try {
+            for (int i = 0; i < BLOCKING_FACTOR && free == -1; i++) {
+                if (bucket.getInt(i * SLOT_SIZE) < 0) { // EMPTY or TOMBSTONE
+                    free = i;
+                }
+            }
+            if (free != -1) {
+                if (logIt) {
+                    log(WriteAheadLog.INSERT, se.getID(), se.getPointer());
+                }
+                writeSlot(s, b, free, se.getID(), se.getPointer());
+            }
+        } finally {
+            unpinBucket(s, b);
+        }
+        if (free == -1) {
+            resize();
+            applyInsert(se, logIt);
+            return;
+        }
+        numEntries++;
+        changed = true;
+    } // applyInsert()
+
+    /* Does the delete, logging it first if logIt is true */
+    private boolean applyDelete(int key, boolean logIt) throws IOException {
+        Snapshot s = current.get();
+        int b = hashFunction.bucket(key, s.numBuckets);
+        ByteBuffer bucket = pinBucket(s, b);
+        try {
+            int slot = findSlot(bucket, key);
+            if (slot == -1) {
+                return false;
+            }
+            if (logIt) {
+                log(WriteAheadLog.DELETE, key, -1);
+            }
+            writeSlot(s, b, slot, TOMBSTONE, TOMBSTONE);
+        } finally {
+            unpinBucket(s, b);
+        }
+        numEntries--;
+        changed = true;
+
+        if (s.hVal > 0 && numEntries < contractBlockedAt
+                && numEntries < CONTRACT_LOAD * s.numBuckets * BLOCKING_FACTOR) {
+            contract();
+        }
+        return true;
+    } // applyDelete()
+
+    /* Does the pointer update, logging it first if logIt is true */
+    private boolean applyUpdate(int key, int pointer, boolean logIt)
+            throws IOException {
+        Snapshot s = current.get();
+        int b = hashFunction.bucket(key, s.numBuckets);
+        ByteBuffer bucket = pinBucket(s, b);
+        try {
+            int slot = findSlot(bucket, key);
+            if (slot == -1) {
+                return false;
+            }
+            if (logIt) {
+                log(WriteAheadLog.UPDATE, key, pointer);
+            }
+            writeSlot(s, b, slot, key, pointer);
+        } finally {
+            unpinBucket(s, b);
+        }
+        return true;
+    } // applyUpdate()
+
+    /*---------------------------------------------------------------------
+    |  Method log(int type, int key, int pointer)
+    |
+    |  Purpose:  Adds a change to the log before its slot is written to
+    |            the index file, so the log always holds every change the
+    |            file might show. The record may wait in the group commit
+    |            buffer until the next fsync of the log; the index file is
+    |            only forced to disk at a checkpoint, which also empties
+    |            the log.
+    |
+    |  Pre-condition:  The change has not been made to the index yet
+    |
+    |  Post-condition: The change is in the log
+    |
+    |  Parameters:
+    |         type -- WriteAheadLog.INSERT, DELETE or UPDATE
+    |          key -- The EIA ID
+    |      pointer -- The pointer into the .bin file
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private void log(int type, int key, int pointer) throws IOException {
+        if (wal == null) { // new index, nothing to recover into yet
+            return;
+        }
+        wal.log(type, key, pointer);
+    } // log()
+
+    /* Starts a checkpoint once the log has grown past CHECKPOINT_BYTES.
+       Called after a change is made, never between logging and making it */
+    private void checkpointIfFull() throws IOException {
+        if (wal != null && wal.getLength() > CHECKPOINT_BYTES) {
+            checkpoint();
+        }
+    } // checkpointIfFull()
+
+    /*---------------------------------------------------------------------
+    |  Method checkpoint()
+    |
+    |  Purpose:  Writes the header, forces the index file to disk and then
+    |            empties the log since every change in it is now on disk.
+    |
+    |  Pre-condition:  The index is open for writing
+    |
+    |  Post-condition: The log is empty
+    |
+    |  Parameters: None
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private void checkpoint() throws IOException {
+        Snapshot s = current.get();
+        if (changed) {
+            writeHeader(s.channel, s.hVal);
+            changed = false;
+        }
+        s.channel.force(true);
+        if (wal != null && !recovering) {
+            wal.truncate();
+        }
+    } // checkpoint()
+
+    /*---------------------------------------------------------------------
+    |  Method resize()
+    |
+    |  Purpose:  Doubles the number of buckets and increments the H value
+    |            by 1. A key in bucket b either stays in b or moves to
+    |            b + (old number of buckets), so each old bucket is split
+    |            into those two. Tombstones are dropped while splitting.
+    |            A new index is split in place, an existing one is split
+    |            into a .tmp file that then replaces the index file and is
+    |            published as a new snapshot. Lookups still reading the
+    |            old snapshot keep finding every key in the old file.
+    |
+    |  Pre-condition:  At least one bucket is full
+    |
+    |  Post-condition: Each bucket will contain no more than
+    |                  BLOCKING_FACTOR elements
+    |
+    |  Parameters: None
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private void resize() throws IOException {
+        long start = metrics == null ? 0 : System.nanoTime();
+        Snapshot s = current.get();
+        if (s.hVal >= MAX_H) {
+            throw new IOException("Index can not grow past H value " + MAX_H);
+        }
+        FileChannel dest = building ? s.channel : openShadow();
+        int newBuckets = s.numBuckets * 2;
+        for (int b = 0; b < s.numBuckets; b++) {
+            ByteBuffer bucket = readBucket(s.channel, b);
+            ByteBuffer low = emptyBucket();
+            ByteBuffer high = emptyBucket();
+            for (int i = 0; i < BLOCKING_FACTOR; i++) {
+                int key = bucket.getInt(i * SLOT_SIZE);
+                if (key >= 0) {
+                    ByteBuffer to = hashFunction.bucket(key, newBuckets) == b
+                            ? low : high;
+                    to.putInt(key);
+                    to.putInt(bucket.getInt(i * SLOT_SIZE + 4));
+                }
+            }
+            writeBucket(dest, b + s.numBuckets, high);
+            writeBucket(dest, b, low);
+        }
+        changed = true;
+        if (!building) {
+            finishShadow(dest, s.hVal + 1);
+        }
+        // every bucket number has a new meaning, so the cache starts over
+        install(new Snapshot(s.epoch + 1, s.hVal + 1, dest, newCache(dest)));
+        if (metrics != null) {
+            metrics.recordSplit(System.nanoTime() - start);
+        }
+    } // resize()
+
+    /*---------------------------------------------------------------------
+    |  Method contract()
+    |
+    |  Purpose:  Halves the number of buckets and decrements the H value by
+    |            1 by merging bucket b + half into bucket b. If any pair of
+    |            buckets has more than BLOCKING_FACTOR keys the table is
+    |            left as it is and no contraction is tried again until the
+    |            number of keys has halved.
+    |
+    |  Pre-condition:  H is more than 0
+    |
+    |  Post-condition: The table is half the size or unchanged
+    |
+    |  Parameters: None
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private void contract() throws IOException {
+        Snapshot s = current.get();
+        int half = s.numBuckets / 2;
+        // check every pair fits before changing anything
+        for (int b = 0; b < half; b++) {
+            if (countKeys(readBucket(s.channel, b))
+                    + countKeys(readBucket(s.channel, b + half))
+                    > BLOCKING_FACTOR) {
+                contractBlockedAt = numEntries / 2;
+                return;
+            }
+        }
+        FileChannel dest = building ? s.channel : openShadow();
+        for (int b = 0; b < half; b++) {
+            ByteBuffer merged = emptyBucket();
+            for (ByteBuffer bucket : new ByteBuffer[] {
+                    readBucket(s.channel, b),
+                    readBucket(s.channel, b + half) }) {
+                for (int i = 0; i < BLOCKING_FACTOR; i++) {
+                    int key = bucket.getInt(i * SLOT_SIZE);
+                    if (key >= 0) {
+                        merged.putInt(key);
+                        merged.putInt(bucket.getInt(i * SLOT_SIZE + 4));
+                    }
+                }
+            }
+            writeBucket(dest, b, merged);
+        }
+        contractBlockedAt = Integer.MAX_VALUE;
+        changed = true;
+        if (metrics != null) {
+            metrics.recordContraction();
+        }
+        if (building) {
+            writeHeader(dest, s.hVal - 1);
+        } else {
+            finishShadow(dest, s.hVal - 1);
+        }
+        install(new Snapshot(s.epoch + 1, s.hVal - 1, dest, newCache(dest)));
+    } // contract()
+
+    /* Opens an empty <name>.tmp for a split or contraction */
+    private FileChannel openShadow() throws IOException {
+        Path tmp = Paths.get(fileName + ".tmp");
+        return FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    } // openShadow()
+
+    /*---------------------------------------------------------------------
+    |  Method finishShadow(FileChannel shadow, int hVal)
+    |
+    |  Purpose:  Finishes a split or contraction written to <name>.tmp. The
+    |            header is added, the file is forced to disk and renamed
+    |            over the index file. shadow stays open and becomes the
+    |            file of the new snapshot, while the old file stays open
+    |            for the lookups still reading it. Since every earlier
+    |            change is now on disk in the new file the log is emptied.
+    |
+    |  Pre-condition:  shadow holds every bucket of the new table
+    |
+    |  Post-condition: The index file is the new table
+    |
+    |  Parameters:
+    |       shadow -- The .tmp file
+    |         hVal -- H value of the new table
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private void finishShadow(FileChannel shadow, int hVal)
+            throws IOException {
+        writeHeader(shadow, hVal);
+        shadow.force(true);
+        publish(fileName + ".tmp", fileName);
+        changed = false;
+        if (wal != null && !recovering) {
+            wal.truncate();
+        }
+    } // finishShadow()
+
+    /* Renames a finished file over the index file in one step */
+    public static void publish(String from, String to) throws IOException {
+        Path target = Paths.get(to);
+        Files.move(Paths.get(from), target, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        // force the rename itself to disk, not every platform allows this
+        Path dir = target.toAbsolutePath().getParent();
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        } catch (IOException e) {
+            // the rename is still atomic, only not yet durable
+        }
+    } // publish()
+
+    /* Returns the slot holding key, or -1. Stops at the first EMPTY slot */
+    private static int findSlot(ByteBuffer bucket, int key) {
+        for (int i = 0; i < BLOCKING_FACTOR; i++) {
+            int id = bucket.getInt(i * SLOT_SIZE);
+            if (id == key) {
+                return i;
+            }
+            if (id == EMPTY) {
+                return -1;
+            }
+        }
+        return -1;
+    } // findSlot()
+
+    /* Slots a lookup scanned: up to the key if found, otherwise up to the
+       first EMPTY slot or the whole bucket */
+    private static int probeLength(ByteBuffer bucket, int slot) {
+        if (slot != -1) {
+            return slot + 1;
+        }
+        int i = 0;
+        while (i < BLOCKING_FACTOR && bucket.getInt(i * SLOT_SIZE) != EMPTY) {
+            i++;
+        }
+        return Math.min(i + 1, BLOCKING_FACTOR);
+    } // probeLength()
+
+    /* Number of live keys in a bucket */
+    private static int countKeys(ByteBuffer bucket) {
+        int count = 0;
+        for (int i = 0; i < BLOCKING_FACTOR; i++) {
+            if (bucket.getInt(i * SLOT_SIZE) >= 0) {
+                count++;
+            }
+        }
+        return count;
+    } // countKeys()
+
+    /* Number of live keys in the whole table */
+    private int countEntries() throws IOException {
+        Snapshot s = current.get();
+        int count = 0;
+        for (int b = 0; b < s.numBuckets; b++) {
+            count += countKeys(readBucket(s.channel, b));
+        }
+        return count;
+    } // countEntries()
+
+    /* A bucket with every slot EMPTY, positioned at slot 0 */
+    private static ByteBuffer emptyBucket() {
+        ByteBuffer bucket = ByteBuffer.allocate(BUCKET_SIZE);
+        for (int i = 0; i < BLOCKING_FACTOR * 2; i++) {
+            bucket.putInt(EMPTY);
+        }
+        bucket.clear();
+        return bucket;
+    } // emptyBucket()
+
+    /* Reads bucket b of the table in ch in one read */
+    private static ByteBuffer readBucket(FileChannel ch, int b)
+            throws IOException {
+        ByteBuffer bucket = ByteBuffer.allocate(BUCKET_SIZE);
+        loadBucket(ch, b, bucket);
+        return bucket;
+    } // readBucket()
+
+    /* Reads bucket b of the table in ch into a buffer of BUCKET_SIZE
+       bytes */
+    private static void loadBucket(FileChannel ch, int b, ByteBuffer bucket)
+            throws IOException {
+        long pos = (long) b * BUCKET_SIZE;
+        bucket.clear();
+        while (bucket.hasRemaining()) {
+            if (ch.read(bucket, pos + bucket.position()) < 0) {
+                throw new IOException("Unexpected end of index file");
+            }
+        }
+        bucket.clear();
+    } // loadBucket()
+
+    /* Bucket b of snapshot s from its cache, or read from its file if
+       there is no cache. Every call is paired with unpinBucket(s, b) */
+    private static ByteBuffer pinBucket(Snapshot s, int b) throws IOException {
+        return s.cache == null ? readBucket(s.channel, b) : s.cache.pin(b);
+    } // pinBucket()
+
+    /* Lets the cache reuse the page of bucket b again */
+    private static void unpinBucket(Snapshot s, int b) {
+        if (s.cache != null) {
+            s.cache.unpin(b);
+        }
+    } // unpinBucket()
+
+    /* Writes a whole bucket to bucket b of ch */
+    private static void writeBucket(FileChannel ch, int b, ByteBuffer bucket)
+            throws IOException {
+        bucket.clear();
+        writeFully(ch, bucket, (long) b * BUCKET_SIZE);
+    } // writeBucket()
+
+    /* Writes one slot of the current table s, in the order that keeps a
+       half written slot (a reader in between, or the program stopping)
+       harmless. A live key is written after its pointer, so it never
+       shows next to an old pointer; for an update the key is unchanged.
+       A TOMBSTONE or EMPTY key is written before the pointer, so a live
+       key never shows next to the TOMBSTONE pointer */
+    private static void writeSlot(Snapshot s, int b, int slot, int key,
+            int pointer) throws IOException {
+        long pos = (long) b * BUCKET_SIZE + (long) slot * SLOT_SIZE;
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        if (key < 0) {
+            buf.putInt(key).flip();
+            writeFully(s.channel, buf, pos);
+            buf.clear();
+            buf.putInt(pointer).flip();
+            writeFully(s.channel, buf, pos + 4);
+        } else {
+            buf.putInt(pointer).flip();
+            writeFully(s.channel, buf, pos + 4);
+            buf.clear();
+            buf.putInt(key).flip();
+            writeFully(s.channel, buf, pos);
+        }
+        if (s.cache != null) {
+            s.cache.writeThrough(b, slot * SLOT_SIZE, key, pointer);
+        }
+    } // writeSlot()
+
+    /* Writes all of buf to ch at pos */
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long pos)
+            throws IOException {
+        while (buf.hasRemaining()) {
+            pos += ch.write(buf, pos);
+        }
+    } // writeFully()
+
+    /* Throws if the index was opened read only */
+    private void checkWritable() throws IOException {
+        if (!writable) {
+            throw new IOException("Index file was opened read only");
+        }
+    } // checkWritable()
+} // class LinearHashIndex
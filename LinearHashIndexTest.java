@@ -0,0 +1,213 @@
+/*
+ * LinearHashIndexTest.java -- Checks the splits and contractions of an
+ * open LinearHashIndex. Lookups run on other threads while inserts split
+ * the table again and again, and every one of them must find the keys
+ * that were there from the start with the right pointer and never find a
+ * key that was not inserted. A reader that opened the index file before
+ * the splits keeps reading the old table from its own file. Each split
+ * and contraction is written to <name>.tmp and renamed over the index, so
+ * no .tmp file may be left behind, and a .tmp left by a crash is removed
+ * when the index is opened for writing. Exits with 1 if anything is wrong.
+ *
+ * Usage: java LinearHashIndexTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LinearHashIndexTest {
+    /*+----------------------------------------------------------------------
+    ||  Class LinearHashIndexTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Grows and shrinks an index while other threads and
+    ||                  another open copy read it.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: FIRST_KEYS: keys in the index before the readers
+    ||                             start
+    ||                  ALL_KEYS: keys once the inserts are done
+    ||                  READERS: lookup threads
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static final int FIRST_KEYS = 2000;
+    private static final int ALL_KEYS = 20000;
+    private static final int READERS = 4;
+
+    private static int failures;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Builds the first keys, inserts the rest while the readers
+    |            run, deletes most of them again and reopens the file
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The temporary folder is removed
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws Exception {
+        Path dir = Files.createTempDirectory("linearhash");
+        Path idx = dir.resolve("t.idx");
+        Path tmp = dir.resolve("t.idx.tmp");
+        ExecutorService pool = Executors.newFixedThreadPool(READERS);
+        try {
+            LinearHashIndex index = LinearHashIndex.create(idx.toString(),
+                    HashFunction.MURMUR3);
+            for (int key = 0; key < FIRST_KEYS; key++) {
+                index.insert(new Entry(key, pointer(key)));
+            }
+            index.close();
+            expect(!Files.exists(tmp), "a new index leaves no .tmp file");
+
+            LinearHashIndex oldCopy = LinearHashIndex.open(idx.toString(),
+                    false);
+            index = LinearHashIndex.open(idx.toString(), true);
+            index.setCache(16);
+            long firstEpoch = index.getEpoch();
+            int firstH = index.getHVal();
+
+            AtomicBoolean inserting = new AtomicBoolean(true);
+            AtomicInteger lookups = new AtomicInteger();
+            AtomicInteger wrong = new AtomicInteger();
+            List<Future<?>> readers = new ArrayList<>();
+            LinearHashIndex writing = index;
+            for (int r = 0; r < READERS; r++) {
+                int seed = r;
+                readers.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    int[] keys = new int[8];
+                    int[] ptrs = new int[8];
+                    while (inserting.get()) {
+                        int key = random.nextInt(FIRST_KEYS);
+                        if (writing.lookup(key) != pointer(key)) {
+                            wrong.incrementAndGet();
+                        }
+                        if (writing.lookup(-key - 1000000) != -1
+                                || writing.lookup(key + 1000000) != -1) {
+                            wrong.incrementAndGet();
+                        }
+                        for (int i = 0; i < keys.length; i++) {
+                            keys[i] = random.nextInt(FIRST_KEYS);
+                        }
+                        writing.lookupMany(keys, ptrs, keys.length);
+                        for (int i = 0; i < keys.length; i++) {
+                            if (ptrs[i] != pointer(keys[i])) {
+                                wrong.incrementAndGet();
+                            }
+                        }
+                        lookups.addAndGet(3 + keys.length);
+                    }
+                    return null;
+                }));
+            }
+            for (int key = FIRST_KEYS; key < ALL_KEYS; key++) {
+                index.insert(new Entry(key, pointer(key)));
+            }
+            inserting.set(false);
+            for (Future<?> f : readers) {
+                f.get();
+            }
+            expect(index.getHVal() > firstH + 2, "the inserts split the"
+                    + " table several times");
+            expect(index.getEpoch() > firstEpoch + 2, "each split publishes"
+                    + " a new snapshot");
+            expect(lookups.get() > 0, "the readers looked keys up");
+            expect(wrong.get() == 0, wrong.get() + " of " + lookups.get()
+                    + " lookups during the splits were wrong");
+            expect(!Files.exists(tmp), "the splits leave no .tmp file");
+
+            int oldWrong = 0;
+            for (int key = 0; key < FIRST_KEYS; key++) {
+                if (oldCopy.lookup(key) != pointer(key)) {
+                    oldWrong++;
+                }
+            }
+            expect(oldWrong == 0, "an index opened before the splits still"
+                    + " reads its own table (" + oldWrong + " wrong)");
+            expect(oldCopy.getHVal() == firstH && oldCopy.lookup(ALL_KEYS
+                    - 1) == -1, "an index opened before the splits does not"
+                    + " see them");
+            oldCopy.close();
+
+            int splitH = index.getHVal();
+            for (int key = FIRST_KEYS; key < ALL_KEYS; key++) {
+                index.delete(key);
+            }
+            expect(index.getHVal() < splitH, "the deletes contract the"
+                    + " table");
+            expect(!Files.exists(tmp), "the contractions leave no .tmp file");
+            index.close();
+
+            Files.write(tmp, new byte[] {1, 2, 3});
+            index = LinearHashIndex.open(idx.toString(), true);
+            expect(!Files.exists(tmp), "opening for writing removes a .tmp"
+                    + " file left by a crash");
+            index.close();
+            index = LinearHashIndex.open(idx.toString(), false);
+            int missing = 0;
+            for (int key = 0; key < ALL_KEYS; key++) {
+                int want = key < FIRST_KEYS ? pointer(key) : -1;
+                if (index.lookup(key) != want) {
+                    missing++;
+                }
+            }
+            expect(missing == 0, missing + " keys are wrong after the index"
+                    + " is reopened");
+            expect(index.getNumEntries() == FIRST_KEYS, "the reopened index"
+                    + " counts the first keys");
+            index.close();
+        } finally {
+            pool.shutdownNow();
+            for (Path f : new Path[] {idx, tmp, dir.resolve("t.idx.wal")}) {
+                Files.deleteIfExists(f);
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "OK: lookups see whole tables"
+                + " while the index splits" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* The pointer stored for a key */
+    private static int pointer(int key) {
+        return key * 7 + 16;
+    } // pointer()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class LinearHashIndexTest
@@ -0,0 +1,412 @@
+/*
+ * LoadDriver.java -- Measures how an index holds up under a mix of reads,
+ * inserts and deletes from many threads, to size hardware before the
+ * data grows. It runs against a copy of the index (<idx file>.load,
+ * removed at the end), so the real index is never changed.
+ *
+ * A read looks the key up and reads its record from the .bin file, the
+ * same work as a Prog22 search, and checks the record holds the key. An
+ * insert adds a new EIA ID above every existing one, pointing at a random
+ * record. A delete removes an existing key picked uniformly. Reads pick
+ * their keys uniformly or Zipf distributed, where a few hot keys get most
+ * of the traffic; the hot keys are spread over the whole table.
+ *
+ * A warm-up runs first and is not counted, then the measured run prints
+ * the throughput, the latency percentiles of each kind of operation (see
+ * LatencyHistogram) and how the table grew: its keys, buckets, H value
+ * and how many times it was split or halved.
+ *
+ * Usage: java LoadDriver <idx file> <bin file> [-ops <n>] [-warmup <n>]
+ *                        [-threads <n>] [-mix <read>,<insert>,<delete>]
+ *                        [-keys uniform|zipf] [-exponent <s>]
+ *                        [-cache <pages>] [-seed <n>]
+ *   -mix gives percents, 90,5,5 by default.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+public class LoadDriver {
+    /*+----------------------------------------------------------------------
+    ||  Class LoadDriver
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Replays a read/insert/delete mix against a copy of
+    ||                  an index and reports throughput and latency.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: READ, INSERT, DELETE: the kinds of operation
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: LoadDriver(LinearHashIndex index, FileChannel bin,
+    ||                             int recordLength, int[] keys, int[] ptrs)
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: void setZipf(double exponent)
+    ||                  long run(long ops, int threads, int[] mix,
+    ||                           SplittableRandom random, boolean measure)
+    ||                  void report(long nanos, long ops)
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int READ = 0;
+    public static final int INSERT = 1;
+    public static final int DELETE = 2;
+    private static final String[] OP_NAMES = {"read", "insert", "delete"};
+
+    private final LinearHashIndex index;
+    private final FileChannel bin;
+    private final int recordLength;
+    private final int[] keys;               // Live keys of the .bin file
+    private final int[] ptrs;               // Their records
+    private final AtomicInteger nextKey;    // Last key inserted
+    private SyntheticData.Zipf zipf;        // Picks hot keys, null for uniform
+
+    // Counted during the measured run only
+    private final LatencyHistogram[] latency = {new LatencyHistogram(),
+            new LatencyHistogram(), new LatencyHistogram()};
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder wrong = new LongAdder();
+
+    /* Constructor */
+    public LoadDriver(LinearHashIndex index, FileChannel bin, int recordLength,
+            int[] keys, int[] ptrs) {
+        this.index = index;
+        this.bin = bin;
+        this.recordLength = recordLength;
+        this.keys = keys;
+        this.ptrs = ptrs;
+        int max = 0;
+        for (int k : keys) {
+            max = Math.max(max, k);
+        }
+        nextKey = new AtomicInteger(max);
+    } // LoadDriver()
+
+    /* Makes reads pick Zipf distributed keys */
+    public void setZipf(double exponent) {
+        zipf = new SyntheticData.Zipf(keys.length, exponent);
+    } // setZipf()
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Reads the keys of the .bin file, copies the index, runs
+    |            the warm-up and the measured run and prints the report
+    |
+    |  Pre-condition:  The index was built from the .bin file by Prog21
+    |
+    |  Post-condition: The copy of the index is removed
+    |
+    |  Parameters:
+    |         args -- The index file, the .bin file and the options
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        if (args.length < 2) {
+            System.out.println("Usage: java LoadDriver <idx file> <bin file>"
+                    + " [-ops <n>] [-warmup <n>] [-threads <n>]");
+            System.out.println("       [-mix <read>,<insert>,<delete>]"
+                    + " [-keys uniform|zipf] [-exponent <s>]"
+                    + " [-cache <pages>] [-seed <n>]");
+            System.exit(-1);
+        }
+        long ops = 1000000;
+        long warmup = 100000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int[] mix = {90, 5, 5};
+        boolean zipfKeys = true;
+        double exponent = SyntheticData.ZIPF_EXPONENT;
+        int cache = 0;
+        long seed = 2026;
+        try {
+            for (int i = 2; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "-ops": ops = Long.parseLong(value); break;
+                    case "-warmup": warmup = Long.parseLong(value); break;
+                    case "-threads": threads = Integer.parseInt(value); break;
+                    case "-exponent": exponent = Double.parseDouble(value); break;
+                    case "-cache": cache = Integer.parseInt(value); break;
+                    case "-seed": seed = Long.parseLong(value); break;
+                    case "-keys": zipfKeys = value.equals("zipf"); break;
+                    case "-mix":
+                        String[] p = value.split(",");
+                        if (p.length != 3) {
+                            throw new NumberFormatException();
+                        }
+                        for (int j = 0; j < 3; j++) {
+                            mix[j] = Integer.parseInt(p[j]);
+                        }
+                        break;
+                    default:
+                        System.out.println("Error: Unknown option " + args[i]);
+                        System.exit(-1);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Error: Please give the options as numbers and"
+                    + " -mix as three percents, e.g. 90,5,5");
+            System.exit(-1);
+        }
+        if (mix[READ] < 0 || mix[INSERT] < 0 || mix[DELETE] < 0
+                || mix[READ] + mix[INSERT] + mix[DELETE] != 100) {
+            System.out.println("Error: The -mix percents must add up to 100");
+            System.exit(-1);
+        }
+        threads = Math.max(1, threads);
+
+        String copyName = args[0] + ".load";
+        LinearHashIndex index = null;
+        try (FileChannel bin = FileChannel.open(Paths.get(args[1]),
+                StandardOpenOption.READ)) {
+            RecordSchema schema = RecordSchema.forBin(args[1]);
+            int[][] live = readKeys(args[1]);
+            if (live[0].length == 0) {
+                System.out.println("Error: " + args[1] + " has no records");
+                System.exit(-1);
+            }
+            Files.deleteIfExists(Paths.get(copyName + ".wal"));
+            Files.copy(Paths.get(args[0]), Paths.get(copyName),
+                    StandardCopyOption.REPLACE_EXISTING);
+            index = LinearHashIndex.open(copyName, true);
+            index.setCache(cache);
+
+            LoadDriver driver = new LoadDriver(index, bin,
+                    schema.getRecordLength(), live[0], live[1]);
+            if (driver.nextKey.get() > Integer.MAX_VALUE - warmup - ops) {
+                System.out.println("Error: The EIA IDs are too large to insert"
+                        + " that many new keys");
+                System.exit(-1);
+            }
+            if (zipfKeys) {
+                driver.setZipf(exponent);
+            }
+            System.out.println(live[0].length + " keys, " + threads
+                    + " threads, mix " + mix[READ] + "% read " + mix[INSERT]
+                    + "% insert " + mix[DELETE] + "% delete, "
+                    + (zipfKeys ? "zipf " + exponent : "uniform") + " keys");
+            driver.printTable("Before");
+
+            SplittableRandom random = new SplittableRandom(seed);
+            driver.run(warmup, threads, mix, random, false);
+            long epoch = index.getEpoch();
+            long nanos = driver.run(ops, threads, mix, random, true);
+            driver.report(nanos, ops);
+            driver.printTable("After ");
+            System.out.println("Splits and contractions during the run: "
+                    + (index.getEpoch() - epoch));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        } finally {
+            try {
+                if (index != null) {
+                    index.close();
+                }
+                Files.deleteIfExists(Paths.get(copyName));
+                Files.deleteIfExists(Paths.get(copyName + ".wal"));
+            } catch (IOException e) {
+                System.out.println("Error: Could not remove " + copyName);
+            }
+        }
+    } // main()
+
+    /* The EIA IDs and pointers of the live records of a .bin file */
+    private static int[][] readKeys(String binFileName) throws IOException {
+        int[] keys = new int[1024];
+        int[] ptrs = new int[1024];
+        int n = 0;
+        try (Stream<BinRecords.View> records = BinRecords.views(binFileName,
+                false)) {
+            for (BinRecords.View v : (Iterable<BinRecords.View>)
+                    records::iterator) {
+                if (n == keys.length) {
+                    keys = Arrays.copyOf(keys, 2 * n);
+                    ptrs = Arrays.copyOf(ptrs, 2 * n);
+                }
+                keys[n] = v.getEIAID();
+                ptrs[n++] = (int) v.getPointer();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new int[][] {Arrays.copyOf(keys, n), Arrays.copyOf(ptrs, n)};
+    } // readKeys()
+
+    /*---------------------------------------------------------------------
+    |  Method run(long ops, int threads, int[] mix, SplittableRandom random,
+    |             boolean measure)
+    |
+    |  Purpose:  Splits ops operations over the threads. Each thread draws
+    |            its operations and keys from its own split of random, so
+    |            a seed gives the same workload every time.
+    |
+    |  Pre-condition:  The mix adds up to 100
+    |
+    |  Post-condition: If measure is true every operation is counted in
+    |                  the latency histograms
+    |
+    |  Parameters:
+    |          ops -- Operations to run in all
+    |      threads -- Threads to run them on
+    |          mix -- Percent of reads, inserts and deletes
+    |       random -- Source of the threads' random numbers
+    |      measure -- Count this run
+    |
+    |  Returns: Nanoseconds from the first operation to the last
+    *-------------------------------------------------------------------*/
+    public long run(long ops, int threads, int[] mix, SplittableRandom random,
+            boolean measure) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long count = ops / threads + (t < ops % threads ? 1 : 0);
+            SplittableRandom own = random.split();
+            tasks.add(() -> {
+                work(count, mix, own, measure);
+                return null;
+            });
+        }
+        long start = System.nanoTime();
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The run was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException(cause.toString());
+        } finally {
+            pool.shutdown();
+        }
+        long nanos = System.nanoTime() - start;
+        index.commit();
+        return nanos;
+    } // run()
+
+    /* Runs count operations on this thread */
+    private void work(long count, int[] mix, SplittableRandom random,
+            boolean measure) {
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        try {
+            for (long i = 0; i < count; i++) {
+                int roll = random.nextInt(100);
+                int op = roll < mix[READ] ? READ
+                        : roll < mix[READ] + mix[INSERT] ? INSERT : DELETE;
+                long start = System.nanoTime();
+                if (op == READ) {
+                    int key = keys[pick(random)];
+                    int ptr = index.lookup(key);
+                    if (ptr >= 0) {
+                        readRecord(record, ptr);
+                        if (measure) {
+                            hits.increment();
+                            if (record.getInt(0) != key) {
+                                wrong.increment();
+                            }
+                        }
+                    } else if (measure) {
+                        misses.increment();
+                    }
+                } else if (op == INSERT) {
+                    index.insert(new Entry(nextKey.incrementAndGet(),
+                            ptrs[random.nextInt(ptrs.length)]));
+                } else {
+                    index.delete(keys[random.nextInt(keys.length)]);
+                }
+                if (measure) {
+                    latency[op].record(System.nanoTime() - start);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    } // work()
+
+    /* The number of a key of the .bin file, hot keys first if zipf */
+    private int pick(SplittableRandom random) {
+        if (zipf == null) {
+            return random.nextInt(keys.length);
+        }
+        int rank = (int) zipf.sample(random);
+        return Math.floorMod(HashFunction.MURMUR3.mix(rank), keys.length);
+    } // pick()
+
+    /* Reads the record at ptr into buf */
+    private void readRecord(ByteBuffer buf, int ptr) throws IOException {
+        buf.clear();
+        while (buf.hasRemaining()) {
+            if (bin.read(buf, (long) ptr + buf.position()) < 0) {
+                throw new EOFException("Record at " + ptr + " is past the"
+                        + " end of the .bin file");
+            }
+        }
+    } // readRecord()
+
+    /*---------------------------------------------------------------------
+    |  Method report(long nanos, long ops)
+    |
+    |  Purpose:  Prints the throughput of the measured run and the latency
+    |            of each kind of operation it ran
+    |
+    |  Pre-condition:  run() was called with measure true
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |        nanos -- Length of the run
+    |          ops -- Operations in the run
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void report(long nanos, long ops) {
+        System.out.printf("%d operations in %.3f s: %.0f ops/s%n", ops,
+                nanos / 1e9, ops / Math.max(1e-9, nanos / 1e9));
+        for (int op = READ; op <= DELETE; op++) {
+            if (latency[op].getCount() > 0) {
+                System.out.println(String.format("%-7s", OP_NAMES[op])
+                        + latency[op].summary());
+            }
+        }
+        if (latency[READ].getCount() > 0) {
+            System.out.println("reads: " + hits.sum() + " found, "
+                    + misses.sum() + " not found (deleted)"
+                    + (wrong.sum() > 0 ? ", " + wrong.sum()
+                    + " pointed at the wrong record" : ""));
+        }
+    } // report()
+
+    /* Prints the size of the table */
+    private void printTable(String when) {
+        System.out.println(when + ": " + index.getNumEntries() + " keys, "
+                + index.getNumBuckets() + " buckets, H = " + index.getHVal());
+    } // printTable()
+} // class LoadDriver
@@ -0,0 +1,391 @@
+/*
+ * LookupServer.java -- Keeps the index and the .bin file open (both mapped
+ * into memory) and answers lookups sent over a local socket, so a script
+ * does not have to start a new JVM for every batch of queries.
+ *
+ * Usage: java LookupServer <index file> <bin file> <port | socket path>
+ * A number is taken as a TCP port on 127.0.0.1, anything else as the path
+ * of a Unix domain socket.
+ *
+ * Each request is one line and each answer is one or more lines:
+ *   get <id>            OK <id> <name> <cap AC>  or  NOT_FOUND <id>
+ *   mget <id> <id> ...  one OK or NOT_FOUND line per ID, then END
+ *   range <low> <high>  an OK line for every record with low <= ID <=
+ *                       high in ID order, then END
+ *   quit                closes the connection
+ * Fields in a line are separated by tabs. A bad request gets ERROR and a
+ * message. Records deleted by UpdateRecords are never answered.
+ *
+ * The files are mapped once, when the server starts. Changes UpdateRecords
+ * makes in place are seen, but records added with Prog1A -append and an
+ * index built again are not, so restart the server after those.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LookupServer {
+    /*+----------------------------------------------------------------------
+    ||  Class LookupServer
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Answers get, mget and range requests from the mapped
+    ||                  index and .bin file, with one thread per connection.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: LookupServer(String idxFileName, String binFileName)
+    ||
+    ||   Class Methods: None
+    ||
+    ||   Inst. Methods: String get(int id)
+    ||                  void range(int low, int high, Writer out)
+    ||                  void serve(ServerSocketChannel server)
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private OffHeapLinearHashMap index; // The mapped index
+    private MappedByteBuffer bin;       // The mapped .bin file
+    private int numRecords;
+    private int recordLength;
+    private boolean sorted;             // Records are in ID order
+
+    // The fields an OK line holds, found through the .bin's schema
+    private RecordCodec.Accessor idField;
+    private RecordCodec.Accessor nameField;
+    private RecordCodec.Accessor capACField;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Opens the files and serves requests until the program is
+    |            stopped.
+    |
+    |  Pre-condition:  args holds the index file, the .bin file and a port
+    |                  number or socket path
+    |
+    |  Post-condition: None, the server runs until it is killed
+    |
+    |  Parameters:
+    |         args -- The command line arguments
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        if (args.length < 3) {
+            System.out.println("Usage: java LookupServer <index file> <bin file>"
+                    + " <port | socket path>");
+            System.exit(-1);
+        }
+
+        LookupServer server = null;
+        try {
+            server = new LookupServer(args[0], args[1]);
+        } catch (IOException e) {
+            System.out.println("Error: Could not open " + args[0] + " and "
+                    + args[1]);
+            System.exit(-1);
+        }
+
+        ServerSocketChannel listener = null;
+        try {
+            if (args[2].matches("\\d+")) {
+                listener = ServerSocketChannel.open();
+                listener.bind(new InetSocketAddress(
+                        InetAddress.getLoopbackAddress(),
+                        Integer.parseInt(args[2])));
+            } else {
+                Path path = Paths.get(args[2]);
+                Files.deleteIfExists(path); // left by an earlier run
+                listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+                listener.bind(UnixDomainSocketAddress.of(path));
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Error: Could not listen on " + args[2]);
+            System.exit(-1);
+        }
+
+        System.out.println("Serving " + server.numRecords + " records on "
+                + args[2]);
+        server.serve(listener);
+    } // main()
+
+    /*---------------------------------------------------------------------
+    |  Constructor LookupServer(String idxFileName, String binFileName)
+    |
+    |  Purpose:  Maps the index and the .bin file into memory, finds the
+    |            fields it prints through the .bin file's schema and checks
+    |            once whether the live records are in ID order. Files made
+    |            by Prog1A are, and deleted records are skipped, but
+    |            records added with -append can break the order, and then
+    |            range requests scan every record instead of searching.
+    |
+    |  Pre-condition:  The files were made by Prog1A and Prog21
+    |
+    |  Post-condition: The files are mapped. The mappings stay valid after
+    |                  the files are closed.
+    |
+    |  Parameters:
+    |  idxFileName -- Name of the index file
+    |  binFileName -- Name of the .bin file
+    *-------------------------------------------------------------------*/
+    public LookupServer(String idxFileName, String binFileName)
+            throws IOException {
+        index = OffHeapLinearHashMap.map(idxFileName);
+        try (FileChannel ch = FileChannel.open(Paths.get(binFileName),
+                StandardOpenOption.READ)) {
+            bin = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        numRecords = bin.getInt(0);
+        RecordCodec codec = new RecordCodec(RecordSchema.forBin(binFileName));
+        recordLength = codec.getSchema().getRecordLength();
+        try {
+            idField = codec.accessor(RecordSchema.ID, RecordSchema.Type.INT);
+            nameField = codec.accessor(RecordSchema.NAME,
+                    RecordSchema.Type.STRING);
+            capACField = codec.accessor(RecordSchema.CAPACITY_AC,
+                    RecordSchema.Type.DOUBLE);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        sorted = true;
+        int last = -1;
+        for (int i = 0; i < numRecords && sorted; i++) {
+            int id = idAt(i);
+            if (id < 0) { // deleted record
+                continue;
+            }
+            sorted = id > last;
+            last = id;
+        }
+    } // LookupServer()
+
+    /*---------------------------------------------------------------------
+    |  Method serve(ServerSocketChannel listener)
+    |
+    |  Purpose:  Accepts connections until the listener is closed and
+    |            hands each one to its own thread. Threads are reused once
+    |            their connection closes.
+    |
+    |  Pre-condition:  listener is bound
+    |
+    |  Post-condition: No new connections are taken; open ones finish
+    |
+    |  Parameters:
+    |     listener -- The bound server socket
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void serve(ServerSocketChannel listener) {
+        ExecutorService pool = Executors.newCachedThreadPool();
+        while (listener.isOpen()) {
+            try {
+                SocketChannel client = listener.accept();
+                pool.execute(() -> handle(client));
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                System.out.println("Error: Could not accept a connection");
+            }
+        }
+        pool.shutdown();
+    } // serve()
+
+    /*---------------------------------------------------------------------
+    |  Method handle(SocketChannel client)
+    |
+    |  Purpose:  Reads requests from one connection and writes the answers
+    |            until the client sends quit or closes the connection. The
+    |            answers are flushed after each request.
+    |
+    |  Pre-condition:  client is connected
+    |
+    |  Post-condition: client is closed
+    |
+    |  Parameters:
+    |       client -- The connection
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private void handle(SocketChannel client) {
+        try (client;
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        Channels.newInputStream(client),
+                        StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        Channels.newOutputStream(client),
+                        StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] words = line.trim().split("\\s+");
+                if (words[0].equals("quit")) {
+                    break;
+                }
+                try {
+                    answer(words, out);
+                } catch (NumberFormatException e) {
+                    out.write("ERROR\tIDs must be integers\n");
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client went away, nothing more to send
+        }
+    } // handle()
+
+    /* Writes the answer to one request. Every ID is parsed before anything
+       is written so a bad ID never leaves half an answer */
+    private void answer(String[] words, Writer out) throws IOException {
+        int[] ids = new int[words.length - 1];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = Integer.parseInt(words[i + 1]);
+        }
+        switch (words[0]) {
+            case "get":
+                if (ids.length != 1) {
+                    out.write("ERROR\tUsage: get <id>\n");
+                } else {
+                    out.write(get(ids[0]));
+                }
+                break;
+            case "mget":
+                for (int id : ids) {
+                    out.write(get(id));
+                }
+                out.write("END\n");
+                break;
+            case "range":
+                if (ids.length != 2) {
+                    out.write("ERROR\tUsage: range <low> <high>\n");
+                } else {
+                    range(ids[0], ids[1], out);
+                    out.write("END\n");
+                }
+                break;
+            default:
+                out.write("ERROR\tUnknown request " + words[0] + "\n");
+        }
+    } // answer()
+
+    /*---------------------------------------------------------------------
+    |  Method get(int id)
+    |
+    |  Purpose:  Looks an ID up in the mapped index and formats its record.
+    |            A record marked deleted is not found even if the index
+    |            still points at it.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |           id -- The EIA ID
+    |
+    |  Returns: The answer line, ending in a newline
+    *-------------------------------------------------------------------*/
+    public String get(int id) {
+        int ptr = id < 0 ? -1 : index.get(id);
+        if (ptr == -1 || idField.getInt(bin, ptr) < 0) {
+            return "NOT_FOUND\t" + id + "\n";
+        }
+        return format(ptr);
+    } // get()
+
+    /*---------------------------------------------------------------------
+    |  Method range(int low, int high, Writer out)
+    |
+    |  Purpose:  Writes every live record with low <= ID <= high. When
+    |            the records are in ID order the first one is found with a
+    |            binary search, otherwise every record is checked. Deleted
+    |            records are skipped either way.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |          low -- Smallest ID to write
+    |         high -- Largest ID to write
+    |          out -- Where the answer lines go
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void range(int low, int high, Writer out) throws IOException {
+        if (!sorted) {
+            for (int i = 0; i < numRecords; i++) {
+                int id = idAt(i);
+                if (id >= 0 && id >= low && id <= high) {
+                    out.write(format(BinScanner.HEADER_SIZE
+                            + i * recordLength));
+                }
+            }
+            return;
+        }
+        int first = 0;
+        int last = numRecords;
+        while (first < last) { // first live record with ID >= low
+            int mid = (first + last) >>> 1;
+            int live = nextLive(mid);
+            if (live < numRecords && idAt(live) < low) {
+                first = mid + 1;
+            } else {
+                last = mid;
+            }
+        }
+        for (int i = nextLive(first); i < numRecords && idAt(i) <= high;
+                i = nextLive(i + 1)) {
+            out.write(format(BinScanner.HEADER_SIZE + i * recordLength));
+        }
+    } // range()
+
+    /* EIA ID of record i */
+    private int idAt(int i) {
+        return idField.getInt(bin, BinScanner.HEADER_SIZE + i * recordLength);
+    } // idAt()
+
+    /* Number of the first live record at or after record i, numRecords if
+       there is none */
+    private int nextLive(int i) {
+        while (i < numRecords && idAt(i) < 0) {
+            i++;
+        }
+        return i;
+    } // nextLive()
+
+    /* The OK line of the record at ptr: ID, name and Solar Cap AC */
+    private String format(int ptr) {
+        String name = nameField.getString(bin, ptr);
+        double capAC = capACField.getDouble(bin, ptr);
+        String trimmed = name.replace('\0', ' ').trim();
+        return "OK\t" + idField.getInt(bin, ptr) + "\t" + trimmed + "\t"
+                + capAC + "\n";
+    } // format()
+} // class LookupServer
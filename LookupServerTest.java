@@ -0,0 +1,224 @@
+/*
+ * LookupServerTest.java -- Checks the LookupServer over a real connection
+ * on 127.0.0.1: get, mget, range and a bad request, on a .bin file whose
+ * records are in ID order and on one whose records are not. A record
+ * is deleted with UpdateRecords first, and no answer may show it, even a
+ * range whose low end is below the TOMBSTONE ID. Exits with 1 if anything
+ * is wrong.
+ *
+ * Usage: java LookupServerTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+public class LookupServerTest {
+    /*+----------------------------------------------------------------------
+    ||  Class LookupServerTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Serves two small .bin files on a local port and
+    ||                  checks the answers a client reads back.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static int failures;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Runs the requests against a file in ID order (range by
+    |            binary search) and one out of order (range by scan)
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The temporary folder is removed
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws IOException {
+        Path dir = Files.createTempDirectory("lookupserver");
+        PrintStream stdout = System.out;
+        InputStream stdin = System.in;
+        try {
+            serveAndAsk(dir, new int[] {7, 14, 21, 28, 35});
+            serveAndAsk(dir, new int[] {35, 14, 7, 28, 21});
+        } finally {
+            System.setOut(stdout);
+            System.setIn(stdin);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path f : files) {
+                    Files.delete(f);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "OK: LookupServer answers over"
+                + " TCP" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* Writes the records with these IDs, deletes 14, serves the files on
+       a free port and checks every kind of request */
+    private static void serveAndAsk(Path dir, int[] ids) throws IOException {
+        String binFileName = dir.resolve("t.bin").toString();
+        String idxFileName = dir.resolve("t.idx").toString();
+        RecordCodec codec = new RecordCodec(RecordSchema.solar(20, 10, 2));
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(binFileName))) {
+            out.writeInt(ids.length);
+            out.writeInt(20);
+            out.writeInt(10);
+            out.writeInt(2);
+            byte[] record = codec.newRecord();
+            for (int id : ids) {
+                SolarEntries s = new SolarEntries();
+                s.setEIAID(id);
+                s.setProjectName("Plant " + id);
+                s.setSolarCOD("1/1/2000");
+                s.setState("NM");
+                s.setSolarCapacityDC(id / 2.0);    // the MW-AC column
+                codec.encode(s, record);
+                out.write(record);
+            }
+        }
+        ParallelIndexBuilder.build(binFileName, idxFileName, 1,
+                HashFunction.MODULO);
+        run("delete 14\n-1\n", () -> UpdateRecords.main(new String[] {
+                idxFileName, binFileName}));
+        String order = ids[0] == 7 ? " (in ID order)" : " (out of order)";
+
+        LookupServer server = new LookupServer(idxFileName, binFileName);
+        ServerSocketChannel listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                0));
+        Thread serving = new Thread(() -> server.serve(listener));
+        serving.setDaemon(true);
+        serving.start();
+
+        try (Socket client = new Socket(InetAddress.getLoopbackAddress(),
+                listener.socket().getLocalPort())) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    client.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(client.getOutputStream(),
+                    StandardCharsets.UTF_8);
+
+            expect(ask(out, in, "get 21", false).equals(
+                    "OK\t21\tPlant 21\t10.5\n"), "get finds 21" + order);
+            expect(ask(out, in, "get 14", false).equals("NOT_FOUND\t14\n"),
+                    "get does not find the deleted 14" + order);
+            expect(ask(out, in, "get -2", false).equals("NOT_FOUND\t-2\n"),
+                    "get does not find the TOMBSTONE ID" + order);
+            expect(ask(out, in, "mget 7 14 99", true).equals(
+                    "OK\t7\tPlant 7\t3.5\nNOT_FOUND\t14\nNOT_FOUND\t99\nEND\n"),
+                    "mget answers each ID" + order);
+
+            String all = ask(out, in, "range -5 100", true);
+            expect(!all.contains("\t14\t") && !all.contains("-2"), "range"
+                    + " skips the deleted record" + order + " (got " + all
+                    + ")");
+            for (int id : new int[] {7, 21, 28, 35}) {
+                expect(all.contains("OK\t" + id + "\tPlant " + id + "\t"),
+                        "range finds " + id + order);
+            }
+            expect(all.split("\n").length == 5, "range finds four records"
+                    + order);
+            if (ids[0] == 7) {
+                expect(all.equals("OK\t7\tPlant 7\t3.5\n"
+                        + "OK\t21\tPlant 21\t10.5\nOK\t28\tPlant 28\t14.0\n"
+                        + "OK\t35\tPlant 35\t17.5\nEND\n"), "range is in ID"
+                        + " order");
+            }
+            expect(ask(out, in, "range 10 21", true).equals(
+                    "OK\t21\tPlant 21\t10.5\nEND\n"), "range starts past the"
+                    + " deleted record" + order);
+            expect(ask(out, in, "range 14 14", true).equals("END\n"),
+                    "range of only the deleted ID is empty" + order);
+            expect(ask(out, in, "range 36 40", true).equals("END\n"),
+                    "range past the last ID is empty" + order);
+            expect(ask(out, in, "get x", false).startsWith("ERROR\t"),
+                    "a bad ID gets ERROR" + order);
+            out.write("quit\n");
+            out.flush();
+            expect(in.readLine() == null, "quit closes the connection"
+                    + order);
+        } finally {
+            listener.close();
+        }
+        Files.delete(Paths.get(idxFileName + ".wal"));
+    } // serveAndAsk()
+
+    /* Sends one request and reads its answer: one line, or every line
+       up to and including END */
+    private static String ask(Writer out, BufferedReader in, String request,
+            boolean untilEnd) throws IOException {
+        out.write(request + "\n");
+        out.flush();
+        StringBuilder answer = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null) {
+            answer.append(line).append('\n');
+            if (!untilEnd || line.equals("END")) {
+                break;
+            }
+        }
+        return answer.toString();
+    } // ask()
+
+    /* A program run with its own input and output */
+    private interface Run {
+        void run() throws IOException;
+    }
+
+    /* Runs a program with input on System.in and returns what it printed */
+    private static String run(String input, Run program) throws IOException {
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        System.setOut(new PrintStream(printed, true));
+        try {
+            program.run();
+        } finally {
+            System.setOut(stdout);
+        }
+        return printed.toString();
+    } // run()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class LookupServerTest
@@ -0,0 +1,426 @@
+/*
+ * OffHeapLinearHashMap.java -- An in-memory map from EIA ID to an int
+ * value (the pointer into the .bin file) that keeps its slots outside the
+ * Java heap in a direct ByteBuffer. The buffer holds buckets laid out
+ * exactly like the buckets of lhl.idx: BLOCKING_FACTOR slots of key and
+ * value, EMPTY and TOMBSTONE keys, a HashFunction to pick the bucket.
+ * Because of that the map can be filled from an index file, or written to
+ * one, with a single bulk copy of the buckets.
+ *
+ * Compared to a HashMap<Integer, Entry> there are no objects per key, so
+ * the memory used is 8 bytes per slot and the garbage collector never has
+ * to look at the slots.
+ *
+ * map() instead wraps the buckets of an index file mapped into memory, so
+ * nothing is copied and the operating system pages buckets in as they are
+ * used. Such a map is read only.
+ *
+ * A direct ByteBuffer holds at most 2 GB, so the map holds at most 2^23
+ * buckets (about 167 million keys at the blocking factor of 20).
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+public class OffHeapLinearHashMap {
+    /*+----------------------------------------------------------------------
+    ||  Class OffHeapLinearHashMap
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: A linear hash table of int keys and int values stored
+    ||                  in off-heap memory using the lhl.idx bucket layout.
+    ||                  Not safe to change from more than one thread.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: MAX_H: the largest H value that fits in one buffer
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: OffHeapLinearHashMap()
+    ||                  OffHeapLinearHashMap(HashFunction hashFunction)
+    ||
+    ||   Class Methods: OffHeapLinearHashMap load(String idxFileName)
+    ||                  OffHeapLinearHashMap map(String idxFileName)
+    ||
+    ||   Inst. Methods: int getHVal()
+    ||                  int size()
+    ||                  HashFunction getHashFunction()
+    ||                  int[] getOccupancy()
+    ||                  int get(int key)
+    ||                  int probeLength(int key)
+    ||                  void put(int key, int value)
+    ||                  boolean remove(int key)
+    ||                  void dump(String idxFileName)
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int MAX_H = 22;
+
+    private static final int SLOTS = LinearHashIndex.BLOCKING_FACTOR;
+    private static final int SLOT_SIZE = LinearHashIndex.SLOT_SIZE;
+    private static final int BUCKET_SIZE = LinearHashIndex.BUCKET_SIZE;
+    private static final int EMPTY = LinearHashIndex.EMPTY;
+    private static final int TOMBSTONE = LinearHashIndex.TOMBSTONE;
+
+    private ByteBuffer slots;       // The buckets, off the heap
+    private int hVal;               // Current H value
+    private int numBuckets;         // 2^(H + 1)
+    private int size;               // Live keys
+    private int numIndexed = -1;    // Kept from a loaded index file
+    private HashFunction hashFunction; // Picks the bucket of a key
+
+    /* Getter methods */
+    public int getHVal() { return hVal; }
+    public int size() { return size; }
+    public HashFunction getHashFunction() { return hashFunction; }
+
+    /* Constructor: an empty map with H = 0, two buckets and the modulo hash */
+    public OffHeapLinearHashMap() {
+        this(HashFunction.MODULO);
+    } // OffHeapLinearHashMap()
+
+    /* Constructor: an empty map with H = 0 and two buckets */
+    public OffHeapLinearHashMap(HashFunction hashFunction) {
+        this.hashFunction = hashFunction;
+        hVal = 0;
+        numBuckets = 2;
+        slots = ByteBuffer.allocateDirect(numBuckets * BUCKET_SIZE);
+        fillEmpty(slots, 0, numBuckets);
+    } // OffHeapLinearHashMap()
+
+    /*---------------------------------------------------------------------
+    |  Method load(String idxFileName)
+    |
+    |  Purpose:  Makes a map holding the same keys as an index file. The
+    |            header is read through LinearHashIndex and then all the
+    |            buckets are copied into the buffer with one bulk read.
+    |
+    |  Pre-condition:  The file is an index made by Prog21 and its H value
+    |                  is not above MAX_H
+    |
+    |  Post-condition: The file is closed
+    |
+    |  Parameters:
+    |  idxFileName -- Name of the index file
+    |
+    |  Returns: The new map
+    *-------------------------------------------------------------------*/
+    public static OffHeapLinearHashMap load(String idxFileName)
+            throws IOException {
+        LinearHashIndex idx = LinearHashIndex.open(idxFileName, false);
+        int h = idx.getHVal();
+        int entries = idx.getNumEntries();
+        int indexed = idx.getNumIndexed();
+        HashFunction hash = idx.getHashFunction();
+        idx.close();
+        if (h > MAX_H) {
+            throw tooLarge(idxFileName, h);
+        }
+
+        OffHeapLinearHashMap map = new OffHeapLinearHashMap(hash);
+        map.hVal = h;
+        map.numBuckets = 1 << (h + 1);
+        map.size = entries;
+        map.numIndexed = indexed;
+        map.slots = ByteBuffer.allocateDirect(map.numBuckets * BUCKET_SIZE);
+        try (FileChannel ch = FileChannel.open(Paths.get(idxFileName),
+                StandardOpenOption.READ)) {
+            while (map.slots.hasRemaining()) {
+                if (ch.read(map.slots, map.slots.position()) < 0) {
+                    throw new EOFException("Index file is too short");
+                }
+            }
+        }
+        map.slots.clear();
+        return map;
+    } // load()
+
+    /*---------------------------------------------------------------------
+    |  Method map(String idxFileName)
+    |
+    |  Purpose:  Makes a read only map over the buckets of an index file
+    |            mapped into memory. The mapping stays valid after the file
+    |            is closed, and after Prog21 renames a new index over it,
+    |            but later changes made by LinearHashIndex may or may not
+    |            be seen.
+    |
+    |  Pre-condition:  The file is an index made by Prog21 and its H value
+    |                  is not above MAX_H
+    |
+    |  Post-condition: put() and remove() throw ReadOnlyBufferException
+    |
+    |  Parameters:
+    |  idxFileName -- Name of the index file
+    |
+    |  Returns: The new map
+    *-------------------------------------------------------------------*/
+    public static OffHeapLinearHashMap map(String idxFileName)
+            throws IOException {
+        LinearHashIndex idx = LinearHashIndex.open(idxFileName, false);
+        OffHeapLinearHashMap map = new OffHeapLinearHashMap(
+                idx.getHashFunction());
+        map.hVal = idx.getHVal();
+        map.numBuckets = idx.getNumBuckets();
+        map.size = idx.getNumEntries();
+        map.numIndexed = idx.getNumIndexed();
+        idx.close();
+        if (map.hVal > MAX_H) {
+            // one mapping can not be longer than Integer.MAX_VALUE bytes
+            throw tooLarge(idxFileName, map.hVal);
+        }
+        try (FileChannel ch = FileChannel.open(Paths.get(idxFileName),
+                StandardOpenOption.READ)) {
+            map.slots = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                    (long) map.numBuckets * BUCKET_SIZE);
+        }
+        return map;
+    } // map()
+
+    /* The error for an index whose buckets do not fit in one buffer */
+    private static IOException tooLarge(String idxFileName, int h) {
+        return new IOException("Index " + idxFileName + " has H value " + h
+                + ", above " + MAX_H + ", so its buckets do not fit in one"
+                + " buffer");
+    } // tooLarge()
+
+    /*---------------------------------------------------------------------
+    |  Method dump(String idxFileName)
+    |
+    |  Purpose:  Writes the map as an index file Prog22 can read. The
+    |            buckets go out with one bulk write to <idxFileName>.tmp,
+    |            the header is added and the file is renamed over
+    |            idxFileName.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: idxFileName holds the keys of the map
+    |
+    |  Parameters:
+    |  idxFileName -- Name of the index file
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void dump(String idxFileName) throws IOException {
+        String tmpName = idxFileName + ".tmp";
+        try (FileChannel ch = FileChannel.open(Paths.get(tmpName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer all = slots.duplicate();
+            all.clear();
+            long pos = 0;
+            while (all.hasRemaining()) {
+                pos += ch.write(all, pos);
+            }
+            int[] fields = new int[LinearHashIndex.HEADER_FIELDS];
+            fields[LinearHashIndex.H_ENTRIES] = size;
+            fields[LinearHashIndex.H_INDEXED] = numIndexed;
+            fields[LinearHashIndex.H_HASH] = hashFunction.getCode();
+            LinearHashIndex.writeHeader(ch, hVal, fields);
+            ch.force(true);
+        }
+        LinearHashIndex.publish(tmpName, idxFileName);
+        new File(idxFileName + ".wal").delete();
+    } // dump()
+
+    /*---------------------------------------------------------------------
+    |  Method get(int key)
+    |
+    |  Purpose:  Looks through the key's bucket, stopping at the first
+    |            EMPTY slot like LinearHashIndex.lookup().
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The map is not changed
+    |
+    |  Parameters:
+    |          key -- The EIA ID
+    |
+    |  Returns: The value stored for key, -1 if there is none or the key
+    |           is negative (negative keys are never stored)
+    *-------------------------------------------------------------------*/
+    public int get(int key) {
+        int slot = key < 0 ? -1 : findSlot(key);
+        return slot == -1 ? -1 : slots.getInt(slot + 4);
+    } // get()
+
+    /* Slots get(key) reads before it stops, counted as LinearHashIndex
+       counts them for IndexMetrics */
+    public int probeLength(int key) {
+        if (key < 0) {
+            return 0;
+        }
+        int base = hashFunction.bucket(key, numBuckets) * BUCKET_SIZE;
+        for (int i = 0; i < SLOTS; i++) {
+            int id = slots.getInt(base + i * SLOT_SIZE);
+            if (id == key || id == EMPTY) {
+                return i + 1;
+            }
+        }
+        return SLOTS;
+    } // probeLength()
+
+    /*---------------------------------------------------------------------
+    |  Method put(int key, int value)
+    |
+    |  Purpose:  Stores value for key. An existing key gets the new value,
+    |            otherwise the first TOMBSTONE or EMPTY slot of the bucket
+    |            is used and the table doubles when the bucket is full.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: get(key) returns value
+    |
+    |  Parameters:
+    |          key -- The EIA ID
+    |        value -- The value to store
+    |
+    |  Returns: None. Throws IllegalArgumentException if key is negative,
+    |           since EMPTY and TOMBSTONE are negative keys.
+    *-------------------------------------------------------------------*/
+    public void put(int key, int value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key " + key
+                    + " can not be stored");
+        }
+        int slot = findSlot(key);
+        if (slot != -1) {
+            slots.putInt(slot + 4, value);
+            return;
+        }
+        int base = hashFunction.bucket(key, numBuckets) * BUCKET_SIZE;
+        for (int i = 0; i < SLOTS; i++) {
+            int at = base + i * SLOT_SIZE;
+            if (slots.getInt(at) < 0) { // EMPTY or TOMBSTONE
+                slots.putInt(at + 4, value);
+                slots.putInt(at, key);
+                size++;
+                return;
+            }
+        }
+        resize();
+        put(key, value);
+    } // put()
+
+    /*---------------------------------------------------------------------
+    |  Method remove(int key)
+    |
+    |  Purpose:  Replaces the key's slot with a TOMBSTONE
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: get(key) returns -1
+    |
+    |  Parameters:
+    |          key -- The EIA ID
+    |
+    |  Returns: True if the key was in the map
+    *-------------------------------------------------------------------*/
+    public boolean remove(int key) {
+        int slot = key < 0 ? -1 : findSlot(key);
+        if (slot == -1) {
+            return false;
+        }
+        slots.putInt(slot, TOMBSTONE);
+        slots.putInt(slot + 4, TOMBSTONE);
+        size--;
+        return true;
+    } // remove()
+
+    /* Element n is the number of buckets holding n live keys */
+    public int[] getOccupancy() {
+        int[] occupancy = new int[SLOTS + 1];
+        for (int b = 0; b < numBuckets; b++) {
+            int live = 0;
+            for (int i = 0; i < SLOTS; i++) {
+                if (slots.getInt(b * BUCKET_SIZE + i * SLOT_SIZE) >= 0) {
+                    live++;
+                }
+            }
+            occupancy[live]++;
+        }
+        return occupancy;
+    } // getOccupancy()
+
+    /* Byte offset of the slot holding key, or -1 */
+    private int findSlot(int key) {
+        int base = hashFunction.bucket(key, numBuckets) * BUCKET_SIZE;
+        for (int i = 0; i < SLOTS; i++) {
+            int id = slots.getInt(base + i * SLOT_SIZE);
+            if (id == key) {
+                return base + i * SLOT_SIZE;
+            }
+            if (id == EMPTY) {
+                return -1;
+            }
+        }
+        return -1;
+    } // findSlot()
+
+    /*---------------------------------------------------------------------
+    |  Method resize()
+    |
+    |  Purpose:  Doubles the table into a new buffer. Bucket b splits into
+    |            b and b + (old number of buckets) as in LinearHashIndex,
+    |            dropping tombstones.
+    |
+    |  Pre-condition:  A bucket is full
+    |
+    |  Post-condition: The old buffer is left for the garbage collector
+    |
+    |  Parameters: None
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private void resize() {
+        if (hVal >= MAX_H) {
+            throw new IllegalStateException("Map is too large to hold in memory");
+        }
+        int oldBuckets = numBuckets;
+        ByteBuffer old = slots;
+        hVal++;
+        numBuckets *= 2;
+        slots = ByteBuffer.allocateDirect(numBuckets * BUCKET_SIZE);
+        fillEmpty(slots, 0, numBuckets);
+        for (int b = 0; b < oldBuckets; b++) {
+            int low = b * BUCKET_SIZE;
+            int high = (b + oldBuckets) * BUCKET_SIZE;
+            for (int i = 0; i < SLOTS; i++) {
+                int at = b * BUCKET_SIZE + i * SLOT_SIZE;
+                int key = old.getInt(at);
+                if (key >= 0) {
+                    int to;
+                    if (hashFunction.bucket(key, numBuckets) == b) {
+                        to = low;
+                        low += SLOT_SIZE;
+                    } else {
+                        to = high;
+                        high += SLOT_SIZE;
+                    }
+                    slots.putInt(to, key);
+                    slots.putInt(to + 4, old.getInt(at + 4));
+                }
+            }
+        }
+    } // resize()
+
+    /* Sets every slot of 'count' buckets from 'first' to EMPTY */
+    private static void fillEmpty(ByteBuffer buf, int first, int count) {
+        for (int at = first * BUCKET_SIZE; at < (first + count) * BUCKET_SIZE;
+                at += 4) {
+            buf.putInt(at, EMPTY);
+        }
+    } // fillEmpty()
+} // class OffHeapLinearHashMap
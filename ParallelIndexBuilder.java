@@ -0,0 +1,357 @@
+/*
+ * ParallelIndexBuilder.java -- Builds the same index file as Prog21 but
+ * uses every core. Prog21 inserts one key at a time and splits buckets as
+ * it goes. When every key is known up front this is not needed: the H
+ * value Prog21 ends with is the smallest H where no bucket has more than
+ * BLOCKING_FACTOR keys, so it can be found by counting. Once H is known
+ * the bucket of every key is fixed and the buckets can be filled by
+ * different threads at the same time.
+ *
+ * The build goes like this:
+ *  1. read every EIA ID and pointer from the .bin file (BinScanner)
+ *  2. find the final H by counting keys per bucket in parallel
+ *  3. split the buckets into one range per thread and move every key to
+ *     the part of an array that belongs to its range (a stable parallel
+ *     partition, so keys stay in record order)
+ *  4. each thread lays out the buckets of its range in memory and writes
+ *     them to its own part of the file with positional writes
+ *
+ * Since the keys keep their record order, the file is the same byte for
+ * byte as the one Prog21 writes for a .bin file with no deleted records.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class ParallelIndexBuilder {
+    /*+----------------------------------------------------------------------
+    ||  Class ParallelIndexBuilder
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Builds a complete index file from a .bin file with a
+    ||                  number of threads instead of inserting one key at a
+    ||                  time.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: WRITE_CHUNK: most bytes a thread writes at once
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None.
+    ||
+    ||   Class Methods: int build(String binFileName, String idxFileName,
+    ||                            int threads, HashFunction hash)
+    ||
+    ||   Inst. Methods: None.
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int WRITE_CHUNK = 1 << 20;
+
+    private ParallelIndexBuilder() { }
+
+    /*---------------------------------------------------------------------
+    |  Method build(String binFileName, String idxFileName, int threads,
+    |               HashFunction hash)
+    |
+    |  Purpose:  Builds the index for every record of the .bin file. The
+    |            file is written as <idxFileName>.tmp and renamed over
+    |            idxFileName at the end, like LinearHashIndex.create().
+    |
+    |  Pre-condition:  The .bin file was made by Prog1A and the EIA IDs in
+    |                  it are unique
+    |
+    |  Post-condition: idxFileName holds the new index
+    |
+    |  Parameters:
+    |  binFileName -- Name of the .bin file
+    |  idxFileName -- Name of the index file to write
+    |      threads -- Number of threads to use
+    |         hash -- How keys are given their buckets
+    |
+    |  Returns: The H value of the new index
+    *-------------------------------------------------------------------*/
+    public static int build(String binFileName, String idxFileName,
+            int threads, HashFunction hash) throws IOException {
+        // 1. read every key
+        BinScanner scanner = new BinScanner(binFileName);
+        int numRecords = scanner.getNumRecords();
+        int[] keys = new int[numRecords];
+        int[] pointers = new int[numRecords];
+        int[] ids = new int[scanner.getBatchSize()];
+        int[] ptrs = new int[scanner.getBatchSize()];
+        int n = 0;
+        scanner.start(0, true);
+        for (int count = scanner.next(ids, ptrs); count > 0;
+                count = scanner.next(ids, ptrs)) {
+            for (int i = 0; i < count; i++) {
+                if (ids[i] != LinearHashIndex.TOMBSTONE) {
+                    keys[n] = ids[i];
+                    pointers[n] = ptrs[i];
+                    n++;
+                }
+            }
+        }
+        scanner.close();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // 2. the smallest H where every bucket fits
+            int hVal = 0;
+            while ((1L << (hVal + 1)) * LinearHashIndex.BLOCKING_FACTOR < n) {
+                hVal++;
+            }
+            while (!fits(keys, n, 1 << (hVal + 1), hash, pool, threads)) {
+                if (hVal == LinearHashIndex.MAX_H) {
+                    throw new IOException("Too many keys share a bucket at"
+                            + " every H value");
+                }
+                hVal++;
+            }
+            int numBuckets = 1 << (hVal + 1);
+
+            // 3. and 4. partition and write
+            String tmpName = idxFileName + ".tmp";
+            try (FileChannel ch = FileChannel.open(Paths.get(tmpName),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeBuckets(ch, keys, pointers, n, numBuckets, hash, pool,
+                        threads);
+                int[] fields = new int[LinearHashIndex.HEADER_FIELDS];
+                fields[LinearHashIndex.H_ENTRIES] = n;
+                fields[LinearHashIndex.H_INDEXED] = numRecords;
+                fields[LinearHashIndex.H_HASH] = hash.getCode();
+                LinearHashIndex.writeHeader(ch, hVal, fields);
+                ch.force(true);
+            }
+            LinearHashIndex.publish(tmpName, idxFileName);
+            // a log from the old index does not apply to the new one
+            new File(idxFileName + ".wal").delete();
+            return hVal;
+        } finally {
+            pool.shutdown();
+        }
+    } // build()
+
+    /*---------------------------------------------------------------------
+    |  Method fits(int[] keys, int n, int numBuckets, HashFunction hash,
+    |             ...)
+    |
+    |  Purpose:  Counts the keys of each bucket with every thread counting
+    |            a slice of the keys, and checks no bucket has more than
+    |            BLOCKING_FACTOR keys.
+    |
+    |  Pre-condition:  numBuckets is a power of 2
+    |
+    |  Post-condition: keys is not changed
+    |
+    |  Parameters:
+    |         keys -- The EIA IDs
+    |            n -- Number of keys in use
+    |   numBuckets -- Number of buckets to try
+    |         hash -- How keys are given their buckets
+    |         pool -- Threads to use
+    |      threads -- Number of threads in pool
+    |
+    |  Returns: True if every bucket fits
+    *-------------------------------------------------------------------*/
+    private static boolean fits(int[] keys, int n, int numBuckets,
+            HashFunction hash, ExecutorService pool, int threads)
+            throws IOException {
+        AtomicIntegerArray counts = new AtomicIntegerArray(numBuckets);
+        int[] full = new int[threads];
+        runAll(pool, threads, t -> {
+            for (int i = slice(n, threads, t); i < slice(n, threads, t + 1); i++) {
+                int b = hash.bucket(keys[i], numBuckets);
+                if (counts.incrementAndGet(b) > LinearHashIndex.BLOCKING_FACTOR) {
+                    full[t]++;
+                }
+            }
+        });
+        for (int f : full) {
+            if (f > 0) {
+                return false;
+            }
+        }
+        return true;
+    } // fits()
+
+    /*---------------------------------------------------------------------
+    |  Method writeBuckets(...)
+    |
+    |  Purpose:  Gives thread t the buckets [t * B / T, (t + 1) * B / T).
+    |            Each thread counts how many of its slice of keys go to
+    |            each range so every key can be copied straight to its
+    |            place in the partitioned arrays, slices in order so the
+    |            keys keep their record order. Then each thread sorts its
+    |            range's keys by bucket (a counting sort) and writes the
+    |            buckets out WRITE_CHUNK bytes at a time.
+    |
+    |  Pre-condition:  No bucket has more than BLOCKING_FACTOR keys
+    |
+    |  Post-condition: Every bucket is written to ch
+    |
+    |  Parameters:
+    |           ch -- The new index file
+    |         keys -- The EIA IDs
+    |     pointers -- The pointer of each key
+    |            n -- Number of keys in use
+    |   numBuckets -- Number of buckets in the table
+    |         hash -- How keys are given their buckets
+    |         pool -- Threads to use
+    |      threads -- Number of threads in pool
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private static void writeBuckets(FileChannel ch, int[] keys,
+            int[] pointers, int n, int numBuckets, HashFunction hash,
+            ExecutorService pool, int threads) throws IOException {
+        // which range a bucket is in, and where each range starts
+        int[] rangeStart = new int[threads + 1];
+        for (int t = 0; t <= threads; t++) {
+            rangeStart[t] = (int) ((long) numBuckets * t / threads);
+        }
+
+        // counts[s][r] is how many keys of slice s go to range r
+        int[][] counts = new int[threads][threads];
+        runAll(pool, threads, s -> {
+            for (int i = slice(n, threads, s); i < slice(n, threads, s + 1); i++) {
+                counts[s][rangeOf(hash.bucket(keys[i], numBuckets),
+                        numBuckets, threads)]++;
+            }
+        });
+
+        // where slice s starts writing range r, and where range r starts
+        int[][] offsets = new int[threads][threads];
+        int[] partStart = new int[threads + 1];
+        int pos = 0;
+        for (int r = 0; r < threads; r++) {
+            partStart[r] = pos;
+            for (int s = 0; s < threads; s++) {
+                offsets[s][r] = pos;
+                pos += counts[s][r];
+            }
+        }
+        partStart[threads] = pos;
+
+        int[] partKeys = new int[n];
+        int[] partPointers = new int[n];
+        runAll(pool, threads, s -> {
+            int[] next = offsets[s];
+            for (int i = slice(n, threads, s); i < slice(n, threads, s + 1); i++) {
+                int r = rangeOf(hash.bucket(keys[i], numBuckets),
+                        numBuckets, threads);
+                partKeys[next[r]] = keys[i];
+                partPointers[next[r]] = pointers[i];
+                next[r]++;
+            }
+        });
+
+        runAll(pool, threads, r -> {
+            int first = rangeStart[r];
+            int buckets = rangeStart[r + 1] - first;
+            // fill[b] is how many keys are in bucket first + b so far
+            int[] fill = new int[buckets];
+            int bucketsPerChunk = Math.max(1,
+                    WRITE_CHUNK / LinearHashIndex.BUCKET_SIZE);
+
+            // group this range's keys by bucket, keeping their order
+            int[] start = new int[buckets + 1];
+            for (int i = partStart[r]; i < partStart[r + 1]; i++) {
+                start[hash.bucket(partKeys[i], numBuckets) - first + 1]++;
+            }
+            for (int b = 0; b < buckets; b++) {
+                start[b + 1] += start[b];
+            }
+            int[] sorted = new int[partStart[r + 1] - partStart[r]];
+            for (int i = partStart[r]; i < partStart[r + 1]; i++) {
+                int b = hash.bucket(partKeys[i], numBuckets) - first;
+                sorted[start[b] + fill[b]++] = i;
+            }
+
+            ByteBuffer chunk = ByteBuffer.allocate(
+                    bucketsPerChunk * LinearHashIndex.BUCKET_SIZE);
+            for (int c = 0; c < buckets; c += bucketsPerChunk) {
+                int inChunk = Math.min(bucketsPerChunk, buckets - c);
+                chunk.clear();
+                for (int b = c; b < c + inChunk; b++) {
+                    for (int j = 0; j < LinearHashIndex.BLOCKING_FACTOR; j++) {
+                        if (j < fill[b]) {
+                            int i = sorted[start[b] + j];
+                            chunk.putInt(partKeys[i]);
+                            chunk.putInt(partPointers[i]);
+                        } else {
+                            chunk.putInt(LinearHashIndex.EMPTY);
+                            chunk.putInt(LinearHashIndex.EMPTY);
+                        }
+                    }
+                }
+                chunk.flip();
+                long at = (long) (first + c) * LinearHashIndex.BUCKET_SIZE;
+                while (chunk.hasRemaining()) {
+                    at += ch.write(chunk, at);
+                }
+            }
+        });
+    } // writeBuckets()
+
+    /* The range r with r * B / T <= b < (r + 1) * B / T */
+    private static int rangeOf(int b, int numBuckets, int threads) {
+        int r = (int) ((long) b * threads / numBuckets);
+        while ((long) numBuckets * (r + 1) / threads <= b) {
+            r++;
+        }
+        return r;
+    } // rangeOf()
+
+    /* Start of slice t when n items are split into 'threads' slices */
+    private static int slice(int n, int threads, int t) {
+        return (int) ((long) n * t / threads);
+    } // slice()
+
+    /* A part of the build done by thread t */
+    private interface Task {
+        void run(int t) throws IOException;
+    }
+
+    /* Runs task for t = 0 .. threads - 1 on the pool and waits for all */
+    private static void runAll(ExecutorService pool, int threads, Task task)
+            throws IOException {
+        List<Future<Void>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            done.add(pool.submit(() -> {
+                task.run(id);
+                return null;
+            }));
+        }
+        try {
+            for (Future<Void> f : done) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Index build was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Index build failed", e.getCause());
+        }
+    } // runAll()
+} // class ParallelIndexBuilder
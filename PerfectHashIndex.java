@@ -0,0 +1,482 @@
+/*
+ * PerfectHashIndex.java -- A read only index for a .bin file that no
+ * longer changes, built with a minimal perfect hash so every EIA ID has a
+ * slot of its own. There are exactly as many slots as keys, no empty or
+ * deleted slots and no buckets to scan: a lookup reads one 8 byte slot and
+ * checks its key.
+ *
+ * The hash is CHD style (compress, hash and displace). The keys are first
+ * spread over groups of about LAMBDA keys each. The groups are then placed
+ * largest first: for a group, displacements d = 0, 1, 2, ... are tried
+ * until the keys' slots slot(k, d) are all free, and d is stored for the
+ * group. A group of one key is placed last, straight into one of the free
+ * slots that are left, and stores -(slot + 1) instead. If a group finds no
+ * displacement the build starts again with another seed.
+ *
+ * File layout:
+ *  numEntries slots of (int key, int pointer)
+ *  int displacement[number of groups]
+ *  int fields[P_FIELDS], int P_FIELDS, int MAGIC
+ * MAGIC is the last int of the file, where a LinearHashIndex keeps its H
+ * value, so readers can tell the two kinds of index apart from the bottom
+ * of the file. The displacements (about 4 / LAMBDA bytes per key) are read
+ * into memory when the index is opened.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+public class PerfectHashIndex {
+    /*+----------------------------------------------------------------------
+    ||  Class PerfectHashIndex
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Builds and reads a minimal perfect hash index over
+    ||                  the EIA IDs of a .bin file.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: MAGIC: last int of a perfect hash index ("LHP1")
+    ||                  LAMBDA: average number of keys in a group
+    ||                  MAX_DISPLACEMENT: displacements tried for a group
+    ||                                    before trying another seed
+    ||                  MAX_SEEDS: seeds tried before giving up
+    ||                  P_ENTRIES: header field holding the number of keys
+    ||                  P_GROUPS: header field holding the number of groups
+    ||                  P_SEED: header field holding the seed used
+    ||                  P_INDEXED: header field holding how many .bin
+    ||                             records were read
+    ||                  P_FIELDS: number of header fields
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None, use open() or build()
+    ||
+    ||   Class Methods: void build(String binFileName, String fileName)
+    ||                  void build(String fileName, int[] keys,
+    ||                             int[] pointers, int n, int numIndexed)
+    ||                  PerfectHashIndex open(String fileName)
+    ||                  boolean isPerfectHash(String fileName)
+    ||
+    ||   Inst. Methods: int lookup(int key)
+    ||                  int getNumEntries()
+    ||                  int getNumIndexed()
+    ||                  void close()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int MAGIC = 0x4C485031; // "LHP1"
+    public static final int LAMBDA = 4;
+    public static final int MAX_DISPLACEMENT = 1 << 22;
+    public static final int MAX_SEEDS = 64;
+    public static final int P_ENTRIES = 0;
+    public static final int P_GROUPS = 1;
+    public static final int P_SEED = 2;
+    public static final int P_INDEXED = 3;
+    public static final int P_FIELDS = 4;
+
+    private FileChannel channel;
+    private int numEntries;
+    private int numIndexed;
+    private int seed;
+    private int[] displacements;
+
+    /* Getter methods */
+    public int getNumEntries() { return numEntries; }
+    public int getNumIndexed() { return numIndexed; }
+
+    private PerfectHashIndex() {
+    }
+
+    /* The fmix64 finalizer of MurmurHash3 */
+    private static long mix(long z) {
+        z ^= z >>> 33;
+        z *= 0xff51afd7ed558ccdL;
+        z ^= z >>> 33;
+        z *= 0xc4ceb9fe1a85ec53L;
+        z ^= z >>> 33;
+        return z;
+    } // mix()
+
+    /* The group of key k out of 'groups' */
+    private static int group(int k, int seed, int groups) {
+        return (int) ((mix((k & 0xffffffffL) ^ ((long) seed << 32)) >>> 1)
+                % groups);
+    } // group()
+
+    /* The slot of key k, out of n, for displacement d */
+    private static int slot(int k, int seed, int d, int n) {
+        long z = ((long) d << 32 | (k & 0xffffffffL))
+                ^ (seed * 0x9e3779b97f4a7c15L);
+        return (int) ((mix(z) >>> 1) % n);
+    } // slot()
+
+    /*---------------------------------------------------------------------
+    |  Method build(String binFileName, String fileName)
+    |
+    |  Purpose:  Reads every EIA ID of the .bin file with BinScanner and
+    |            builds a perfect hash index over them. Deleted records
+    |            are left out.
+    |
+    |  Pre-condition:  No EIA ID is in the .bin file twice
+    |
+    |  Post-condition: fileName holds the new index
+    |
+    |  Parameters:
+    |  binFileName -- The .bin file to index
+    |     fileName -- The index file to write
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void build(String binFileName, String fileName)
+            throws IOException {
+        BinScanner scanner = new BinScanner(binFileName);
+        int numRecords = scanner.getNumRecords();
+        int[] keys = new int[numRecords];
+        int[] pointers = new int[numRecords];
+        int[] ids = new int[scanner.getBatchSize()];
+        int[] ptrs = new int[scanner.getBatchSize()];
+        int n = 0;
+        scanner.start(0, true);
+        int count;
+        while ((count = scanner.next(ids, ptrs)) > 0) {
+            for (int i = 0; i < count; i++) {
+                if (ids[i] >= 0) {
+                    keys[n] = ids[i];
+                    pointers[n++] = ptrs[i];
+                }
+            }
+        }
+        scanner.close();
+        build(fileName, keys, pointers, n, numRecords);
+    } // build()
+
+    /*---------------------------------------------------------------------
+    |  Method build(String fileName, int[] keys, int[] pointers, int n,
+    |               int numIndexed)
+    |
+    |  Purpose:  Finds a seed and a displacement for every group that put
+    |            each key in a slot of its own, then writes the slots,
+    |            displacements and header to <fileName>.tmp and renames it
+    |            over fileName.
+    |
+    |  Pre-condition:  The first n keys are unique and not negative
+    |
+    |  Post-condition: fileName holds the new index
+    |
+    |  Parameters:
+    |     fileName -- The index file to write
+    |         keys -- The EIA IDs
+    |     pointers -- The pointer of each key
+    |            n -- Number of keys
+    |   numIndexed -- Number of .bin records the keys came from
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void build(String fileName, int[] keys, int[] pointers,
+            int n, int numIndexed) throws IOException {
+        int[] sorted = Arrays.copyOf(keys, n);
+        Arrays.sort(sorted);
+        for (int i = 1; i < n; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                throw new IOException("EIA ID " + sorted[i]
+                        + " is in the .bin file more than once");
+            }
+        }
+        sorted = null;
+
+        int groups = Math.max(1, (n + LAMBDA - 1) / LAMBDA);
+        int[] displacements = new int[groups];
+        int[] slotOf = new int[n];      // Slot each key ended up in
+        int seed = 0;
+        while (!place(keys, n, seed, displacements, slotOf)) {
+            seed++;
+            if (seed == MAX_SEEDS) {
+                throw new IOException("No perfect hash found after "
+                        + MAX_SEEDS + " seeds");
+            }
+        }
+
+        int[] fields = new int[P_FIELDS];
+        fields[P_ENTRIES] = n;
+        fields[P_GROUPS] = groups;
+        fields[P_SEED] = seed;
+        fields[P_INDEXED] = numIndexed;
+
+        File tmp = new File(fileName + ".tmp");
+        tmp.delete();
+        try (FileChannel ch = FileChannel.open(tmp.toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            // the slots, in slot order, a block at a time
+            int[] keyAt = new int[n];
+            int[] ptrAt = new int[n];
+            for (int i = 0; i < n; i++) {
+                keyAt[slotOf[i]] = keys[i];
+                ptrAt[slotOf[i]] = pointers[i];
+            }
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+            long pos = 0;
+            for (int s = 0; s < n; s++) {
+                if (buf.remaining() < 8) {
+                    pos = flush(ch, buf, pos);
+                }
+                buf.putInt(keyAt[s]).putInt(ptrAt[s]);
+            }
+            for (int d : displacements) {
+                if (buf.remaining() < 4) {
+                    pos = flush(ch, buf, pos);
+                }
+                buf.putInt(d);
+            }
+            pos = flush(ch, buf, pos);
+            for (int f : fields) {
+                buf.putInt(f);
+            }
+            buf.putInt(P_FIELDS);
+            buf.putInt(MAGIC);
+            flush(ch, buf, pos);
+            ch.force(true);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        LinearHashIndex.publish(tmp.getPath(), fileName);
+        // a log from an old linear hash index does not apply to this one
+        new File(fileName + ".wal").delete();
+    } // build()
+
+    /*---------------------------------------------------------------------
+    |  Method place(int[] keys, int n, int seed, int[] displacements,
+    |               int[] slotOf)
+    |
+    |  Purpose:  Tries to place every key with one seed. The keys are
+    |            grouped with a counting sort, the groups of two or more
+    |            keys are placed largest first by trying displacements,
+    |            and then each group of one takes the next free slot.
+    |
+    |  Pre-condition:  The keys are unique
+    |
+    |  Post-condition: If it worked, displacements and slotOf are filled in
+    |
+    |  Parameters:
+    |         keys -- The EIA IDs
+    |            n -- Number of keys
+    |         seed -- The seed to try
+    | displacements -- Filled with the displacement of every group
+    |       slotOf -- Filled with the slot of every key
+    |
+    |  Returns: True if every group was placed
+    *-------------------------------------------------------------------*/
+    private static boolean place(int[] keys, int n, int seed,
+            int[] displacements, int[] slotOf) {
+        int groups = displacements.length;
+
+        // members[start[g] .. start[g + 1]) are the keys of group g
+        int[] start = new int[groups + 1];
+        for (int i = 0; i < n; i++) {
+            start[group(keys[i], seed, groups) + 1]++;
+        }
+        int maxSize = 0;
+        for (int g = 0; g < groups; g++) {
+            maxSize = Math.max(maxSize, start[g + 1]);
+            start[g + 1] += start[g];
+        }
+        int[] members = new int[n];
+        int[] next = Arrays.copyOf(start, groups);
+        for (int i = 0; i < n; i++) {
+            members[next[group(keys[i], seed, groups)]++] = i;
+        }
+
+        // groups by size, largest first
+        int[] bySize = new int[maxSize + 2];
+        for (int g = 0; g < groups; g++) {
+            bySize[maxSize - (start[g + 1] - start[g]) + 1]++;
+        }
+        for (int s = 0; s <= maxSize; s++) {
+            bySize[s + 1] += bySize[s];
+        }
+        int[] order = new int[groups];
+        for (int g = 0; g < groups; g++) {
+            order[bySize[maxSize - (start[g + 1] - start[g])]++] = g;
+        }
+
+        boolean[] taken = new boolean[n];
+        int[] tried = new int[maxSize];
+        int o = 0;
+        for (; o < groups; o++) {
+            int g = order[o];
+            int size = start[g + 1] - start[g];
+            if (size < 2) {
+                break;
+            }
+            int d = 0;
+            for (; d < MAX_DISPLACEMENT; d++) {
+                int placed = 0;
+                for (; placed < size; placed++) {
+                    int s = slot(keys[members[start[g] + placed]], seed, d, n);
+                    if (taken[s]) {
+                        break;
+                    }
+                    taken[s] = true;    // also catches two keys in one slot
+                    tried[placed] = s;
+                }
+                if (placed == size) {
+                    break;
+                }
+                for (int i = 0; i < placed; i++) {
+                    taken[tried[i]] = false;
+                }
+            }
+            if (d == MAX_DISPLACEMENT) {
+                return false;
+            }
+            displacements[g] = d;
+            for (int i = 0; i < size; i++) {
+                slotOf[members[start[g] + i]] = tried[i];
+            }
+        }
+
+        // groups of one go straight into the slots that are left
+        int free = 0;
+        for (; o < groups; o++) {
+            int g = order[o];
+            if (start[g + 1] == start[g]) {
+                displacements[g] = 0;   // no key, any slot fails the check
+                continue;
+            }
+            while (taken[free]) {
+                free++;
+            }
+            taken[free] = true;
+            displacements[g] = -(free + 1);
+            slotOf[members[start[g]]] = free;
+        }
+        return true;
+    } // place()
+
+    /* Writes out what is in buf at pos and empties it */
+    private static long flush(FileChannel ch, ByteBuffer buf, long pos)
+            throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            pos += ch.write(buf, pos);
+        }
+        buf.clear();
+        return pos;
+    } // flush()
+
+    /* True if the last int of the file is MAGIC */
+    public static boolean isPerfectHash(String fileName) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(4);
+            return ch.size() >= 4 && ch.read(last, ch.size() - 4) == 4
+                    && last.getInt(0) == MAGIC;
+        }
+    } // isPerfectHash()
+
+    /*---------------------------------------------------------------------
+    |  Method open(String fileName)
+    |
+    |  Purpose:  Opens a perfect hash index, reads its header and reads
+    |            the displacements into memory with one read
+    |
+    |  Pre-condition:  The file was written by build()
+    |
+    |  Post-condition: The file is open for lookups
+    |
+    |  Parameters:
+    |     fileName -- Name of the index file
+    |
+    |  Returns: The open index
+    *-------------------------------------------------------------------*/
+    public static PerfectHashIndex open(String fileName) throws IOException {
+        PerfectHashIndex idx = new PerfectHashIndex();
+        idx.channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ);
+        try {
+            long len = idx.channel.size();
+            ByteBuffer tail = ByteBuffer.allocate(4 * (P_FIELDS + 2));
+            if (len < tail.capacity()) {
+                throw new IOException(fileName + " is too short");
+            }
+            readFully(idx.channel, tail, len - tail.capacity());
+            if (tail.getInt(4 * (P_FIELDS + 1)) != MAGIC
+                    || tail.getInt(4 * P_FIELDS) != P_FIELDS) {
+                throw new IOException(fileName + " is not a perfect hash index");
+            }
+            idx.numEntries = tail.getInt(4 * P_ENTRIES);
+            int groups = tail.getInt(4 * P_GROUPS);
+            idx.seed = tail.getInt(4 * P_SEED);
+            idx.numIndexed = tail.getInt(4 * P_INDEXED);
+            if (idx.numEntries < 0 || groups < 1 || len != 8L * idx.numEntries
+                    + 4L * groups + tail.capacity()) {
+                throw new IOException(fileName + " size does not match its header");
+            }
+
+            ByteBuffer buf = ByteBuffer.allocate(4 * groups);
+            readFully(idx.channel, buf, 8L * idx.numEntries);
+            buf.flip();
+            idx.displacements = new int[groups];
+            buf.asIntBuffer().get(idx.displacements);
+        } catch (IOException e) {
+            idx.channel.close();
+            throw e;
+        }
+        return idx;
+    } // open()
+
+    /*---------------------------------------------------------------------
+    |  Method lookup(int key)
+    |
+    |  Purpose:  Works out the one slot key can be in and reads it
+    |
+    |  Pre-condition:  key is not negative
+    |
+    |  Post-condition: The index is not changed
+    |
+    |  Parameters:
+    |          key -- The EIA ID to look for
+    |
+    |  Returns: The pointer into the .bin file or -1 if not found
+    *-------------------------------------------------------------------*/
+    public int lookup(int key) throws IOException {
+        if (numEntries == 0) {
+            return -1;
+        }
+        int d = displacements[group(key, seed, displacements.length)];
+        int s = d < 0 ? -d - 1 : slot(key, seed, d, numEntries);
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        readFully(channel, buf, 8L * s);
+        return buf.getInt(0) == key ? buf.getInt(4) : -1;
+    } // lookup()
+
+    /* Reads until buf is full */
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos)
+            throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos + buf.position());
+            if (n < 0) {
+                throw new EOFException("Unexpected end of index file");
+            }
+        }
+    } // readFully()
+
+    /* Closes the file */
+    public void close() throws IOException {
+        channel.close();
+    } // close()
+} // class PerfectHashIndex
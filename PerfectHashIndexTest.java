@@ -0,0 +1,240 @@
+/*
+ * PerfectHashIndexTest.java -- Checks the perfect hash index round trip:
+ * every key built into the index is found with its pointer after the
+ * file is opened again, keys that were not built in are not found, the
+ * file is exactly one slot per key plus the displacements and header, and
+ * an index of no keys or one key still works. Then it builds one from a
+ * .bin file with a deleted record and checks that Prog22 finds the other
+ * records through it and not the deleted one. Exits with 1 if anything is
+ * wrong.
+ *
+ * Usage: java PerfectHashIndexTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class PerfectHashIndexTest {
+    /*+----------------------------------------------------------------------
+    ||  Class PerfectHashIndexTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Builds perfect hash indexes from keys and from a
+    ||                  .bin file and reads them back.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: KEYS: keys in the large index
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static final int KEYS = 20000;
+
+    private static int failures;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Runs the round trips of 20000, 1 and 0 keys, the refused
+    |            builds and the build from a .bin file
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The temporary folder is removed
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws IOException {
+        Path dir = Files.createTempDirectory("perfecthash");
+        PrintStream stdout = System.out;
+        InputStream stdin = System.in;
+        try {
+            String idxFileName = dir.resolve("p.idx").toString();
+            Random random = new Random(11);
+            Set<Integer> keySet = new HashSet<>();
+            keySet.add(0);
+            keySet.add(Integer.MAX_VALUE);
+            while (keySet.size() < KEYS) {
+                keySet.add(random.nextInt(Integer.MAX_VALUE));
+            }
+            roundTrip(idxFileName, keySet, random);
+            roundTrip(idxFileName, Collections.singleton(645), random);
+            roundTrip(idxFileName, Collections.emptySet(), random);
+
+            try {
+                PerfectHashIndex.build(idxFileName, new int[] {5, 9, 5},
+                        new int[] {1, 2, 3}, 3, 3);
+                expect(false, "a key given twice is refused");
+            } catch (IOException e) {
+                expect(e.getMessage().contains("more than once"), "the"
+                        + " error names the key given twice");
+            }
+            try {
+                LinearHashIndex.open(idxFileName, false).close();
+                expect(false, "LinearHashIndex refuses a perfect hash index");
+            } catch (IOException e) {
+                expect(e.getMessage().contains("perfect hash"), "the error"
+                        + " says it is a perfect hash index");
+            }
+
+            fromBin(dir);
+        } finally {
+            System.setOut(stdout);
+            System.setIn(stdin);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path f : files) {
+                    Files.delete(f);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "OK: perfect hash lookups read"
+                + " back" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* Builds an index of the keys, opens it and looks up every key and
+       as many keys that are not in it */
+    private static void roundTrip(String idxFileName, Set<Integer> keySet,
+            Random random) throws IOException {
+        int n = keySet.size();
+        int[] keys = new int[n];
+        int[] ptrs = new int[n];
+        int i = 0;
+        for (int key : keySet) {
+            keys[i] = key;
+            ptrs[i++] = pointer(key);
+        }
+        PerfectHashIndex.build(idxFileName, keys, ptrs, n, n + 3);
+        expect(PerfectHashIndex.isPerfectHash(idxFileName), "isPerfectHash()"
+                + " knows the file (" + n + " keys)");
+        expect(!Files.exists(Paths.get(idxFileName + ".tmp")), "the build"
+                + " leaves no .tmp file");
+        int groups = Math.max(1, (n + PerfectHashIndex.LAMBDA - 1)
+                / PerfectHashIndex.LAMBDA);
+        expect(new File(idxFileName).length() == 8L * n + 4L * groups
+                + 4 * (PerfectHashIndex.P_FIELDS + 2), "the file is one slot"
+                + " per key with no empty slots (" + n + " keys)");
+
+        PerfectHashIndex index = PerfectHashIndex.open(idxFileName);
+        try {
+            expect(index.getNumEntries() == n && index.getNumIndexed() == n
+                    + 3, "the header counts read back (" + n + " keys)");
+            int wrong = 0;
+            for (int key : keys) {
+                if (index.lookup(key) != pointer(key)) {
+                    wrong++;
+                }
+            }
+            expect(wrong == 0, wrong + " of " + n + " keys are not found"
+                    + " with their pointer");
+            int found = 0;
+            for (int tries = 0; tries < Math.max(n, 100); tries++) {
+                int key = random.nextInt(Integer.MAX_VALUE);
+                if (!keySet.contains(key) && index.lookup(key) != -1) {
+                    found++;
+                }
+            }
+            expect(found == 0, found + " keys that were not built in are"
+                    + " found (" + n + " keys)");
+        } finally {
+            index.close();
+        }
+    } // roundTrip()
+
+    /* Builds the index from a .bin file with record 3 deleted and reads
+       the records through Prog22 */
+    private static void fromBin(Path dir) throws IOException {
+        String binFileName = dir.resolve("t.bin").toString();
+        String idxFileName = dir.resolve("t.idx").toString();
+        RecordCodec codec = new RecordCodec(RecordSchema.solar(20, 10, 2));
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(binFileName))) {
+            out.writeInt(5);
+            out.writeInt(20);
+            out.writeInt(10);
+            out.writeInt(2);
+            byte[] record = codec.newRecord();
+            for (int i = 1; i <= 5; i++) {
+                SolarEntries s = new SolarEntries();
+                s.setEIAID(i == 3 ? LinearHashIndex.TOMBSTONE : i * 100);
+                s.setProjectName("Plant " + i);
+                s.setSolarCOD("1/1/2000");
+                s.setState("CO");
+                s.setSolarCapacityDC(i * 1.5);    // the MW-AC column
+                codec.encode(s, record);
+                out.write(record);
+            }
+        }
+        PerfectHashIndex.build(binFileName, idxFileName);
+        PerfectHashIndex index = PerfectHashIndex.open(idxFileName);
+        expect(index.getNumEntries() == 4 && index.getNumIndexed() == 5,
+                "the deleted record is left out of the index");
+        index.close();
+
+        String printed = run("100\n500\n300\n-2\n7\n-1\n", () -> Prog22.main(
+                new String[] {idxFileName, binFileName}));
+        expect(printed.contains("[100] [Plant 1") && printed.contains(
+                "] [1.5]"), "Prog22 finds 100 (got " + printed + ")");
+        expect(printed.contains("[500] [Plant 5") && printed.contains(
+                "] [7.5]"), "Prog22 finds 500");
+        expect(!printed.contains("Plant 3"), "Prog22 does not print the"
+                + " deleted record");
+        expect(printed.contains("The target value 7 was not found."),
+                "Prog22 does not find 7");
+    } // fromBin()
+
+    /* The pointer built in for a key */
+    private static int pointer(int key) {
+        return key ^ 0x5A5A5A5A;
+    } // pointer()
+
+    /* A program run with its own input and output */
+    private interface Run {
+        void run() throws IOException;
+    }
+
+    /* Runs a program with input on System.in and returns what it printed */
+    private static String run(String input, Run program) throws IOException {
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        System.setOut(new PrintStream(printed, true));
+        try {
+            program.run();
+        } finally {
+            System.setOut(stdout);
+        }
+        return printed.toString();
+    } // run()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class PerfectHashIndexTest
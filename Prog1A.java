@@ -46,6 +46,7 @@ import java.util.*;
 ||   Inst. Methods: solarEntries parseLine(String line)
 ||                  void writeToBin(String fileName, ArrayList<SolarEntries> se)
 ||                  ArrayList<SolarEntries> readBin(String fileName)
+||                  void appendToBin(String fileName, ArrayList<SolarEntries> se)
 ||
 ||
 ++-----------------------------------------------------------------------*/
@@ -61,7 +62,12 @@ public class Prog1A {
     |  Method main(String[] args)
     |
     |  Purpose:  Takes a csv file as an argument and turns it into a bin
-    |            file
+    |            file. If "-compact" is given after the file name, a
+    |            compact .cbin file (see CompactSolarFile) is written as
+    |            well. With "-append <csv name>" the rows of that csv file
+    |            are added to the end of the existing bin file instead,
+    |            and "-compact" after it writes the .cbin file again from
+    |            the whole appended bin file.
     |
     |  Pre-condition:  The file is valid
     |                  
@@ -70,16 +76,22 @@ public class Prog1A {
     |
     |  Parameters:
     |          args -- The command line argument, 0 should be the file name
+    |                  and 1 can be "-compact" or "-append" followed by
+    |                  the name of the csv file to add, and "-compact"
+    |                  can come after that
     |
     |  Returns: None
     *-------------------------------------------------------------------*/
     public static void main(String[] args) {
 
         String fileName = args[0];
+        boolean append = args.length > 2 && args[1].equals("-append");
+        boolean compact = Arrays.asList(args).subList(append ? 3 : 1,
+                args.length).contains("-compact");
 
         ArrayList<SolarEntries> solarEntries = new ArrayList<>();
 
-        File input = new File(fileName + ".csv");
+        File input = new File((append ? args[2] : fileName) + ".csv");
 
         BufferedReader br = null;
         try {
@@ -106,9 +118,35 @@ public class Prog1A {
             System.exit(-1);
         }
         Collections.sort(solarEntries);
+        if (append) {
+            appendToBin(fileName, solarEntries);
+            if (compact) {
+                try {
+                    CompactSolarFile.writeFromBin("./" + fileName + ".bin",
+                            "./" + fileName + ".cbin");
+                } catch (IOException e) {
+                    System.out.println("I/O Error: Could not write the .cbin"
+                            + " file: " + e.getMessage());
+                    System.exit(-1);
+                }
+                System.out.println("Successfuly wrote to cbin!");
+            }
+            return;
+        }
         writeToBin(fileName, solarEntries);
 
         System.out.println("Successfuly wrote to bin!");
+
+        if (compact) {
+            try {
+                CompactSolarFile.write("./" + fileName + ".cbin", solarEntries,
+                        projectNameLen, solarCODLen, stateLen);
+            } catch (IOException e) {
+                System.out.println("I/O Error: Could not write the .cbin file.");
+                System.exit(-1);
+            }
+            System.out.println("Successfuly wrote to cbin!");
+        }
     } // main()
 
     /*---------------------------------------------------------------------
@@ -212,7 +250,10 @@ public class Prog1A {
      |            will be stored as a 4 byte int, the strings will be stored
      |            as n bytes for each where n is the length of the longest
      |            entry for that field and the rest of the fields will be
-     |            stored as 8 byte doubles 
+     |            stored as 8 byte doubles. Each record is laid out by a
+     |            RecordCodec, and the schema is written next to the file
+     |            as <fileName>.bin.schema. Each Solar COD is turned into
+     |            an epoch day for the COD index, <fileName>.bin.cod.
      |
      |  Pre-condition:  The given fileName string is just the filename, with
      |                  no extension.  The file is in the current directory.
@@ -265,8 +306,26 @@ public class Prog1A {
             System.exit(-1);
         }
 
-        for (SolarEntries s : se) { // format each entry to be written to bin
-            s.dumpObject(binFile, projectNameLen, solarCODLen, stateLen);
+        RecordSchema schema = RecordSchema.solar(projectNameLen, solarCODLen,
+                stateLen);
+        RecordCodec codec = new RecordCodec(schema);
+        byte[] record = codec.newRecord();
+        int[] days = new int[se.size()];
+        int[] ptrs = new int[se.size()];
+        try {
+            int i = 0;
+            for (SolarEntries s : se) { // format each entry to be written to bin
+                codec.encode(s, record);
+                binFile.write(record);
+                days[i] = SolarEntries.codToEpochDay(s.getSolarCOD());
+                ptrs[i] = BinScanner.HEADER_SIZE
+                        + i * schema.getRecordLength();
+                i++;
+            }
+            schema.write(fileRef.getPath());
+        } catch (IOException e) {
+            System.out.println("I/O Error: Could not write to file");
+            System.exit(-1);
         }
 
         try { // close file
@@ -276,6 +335,82 @@ public class Prog1A {
             System.exit(-1);
         }
 
+        try { // the COD index keeps the time of the finished .bin file
+            CodIndex.write(fileRef.getPath() + CodIndex.SUFFIX, days, ptrs,
+                    se.size(), se.size(),
+                    BinScanner.modifiedTime(fileRef.getPath()));
+        } catch (IOException e) {
+            System.out.println("I/O Error: Could not write the COD index");
+            System.exit(-1);
+        }
+
     } // writeToBin
 
+    /*---------------------------------------------------------------------
+     |  Method appendToBin (fileName, se)
+     |
+     |  Purpose:  Adds the entries to the end of an existing binary file
+     |            and updates the number of records at the top of it. The
+     |            string lengths already in the file are used, so entries
+     |            with a longer string than the file allows are skipped.
+     |            Only the new entries are sorted by EIA ID, they come
+     |            after the ones already in the file. Prog21 -append can
+     |            then index just the new records. The records are laid
+     |            out by the file's schema (see RecordSchema.forBin()),
+     |            and the COD index is made again to hold the new ones.
+     |
+     |  Pre-condition:  The binary file was made by writeToBin()
+     |
+     |  Post-condition: The file holds its old records followed by the
+     |                  new ones and is closed.
+     |
+     |  Parameters:
+     |      fileName -- file name only of the binary file, no extension
+     |      se       -- The entries to add
+     |
+     |  Returns: None.
+     *-------------------------------------------------------------------*/
+    private static void appendToBin(String fileName,
+            ArrayList<SolarEntries> se) {
+        RandomAccessFile binFile = null;
+        int added = 0;
+        try {
+            RecordSchema schema = RecordSchema.forBin("./" + fileName + ".bin");
+            RecordCodec codec = new RecordCodec(schema);
+            byte[] record = codec.newRecord();
+            binFile = new RandomAccessFile("./" + fileName + ".bin", "rw");
+            binFile.seek(0);
+            int numRecords = binFile.readInt();
+            int nameLen = binFile.readInt();
+            int codLen = binFile.readInt();
+            int sLen = binFile.readInt();
+
+            binFile.seek(BinScanner.HEADER_SIZE + (long) numRecords
+                    * schema.getRecordLength());
+            for (SolarEntries s : se) {
+                if (s.getProjectName().length() > nameLen
+                        || s.getSolarCOD().length() > codLen
+                        || s.getState().length() > sLen) {
+                    System.out.println("Skipping " + s.getEIAID()
+                            + ": a field is too long for this bin file.");
+                    continue;
+                }
+                codec.encode(s, record);
+                binFile.write(record);
+                added++;
+            }
+
+            // only count the new records once they are all written
+            binFile.seek(0);
+            binFile.writeInt(numRecords + added);
+            binFile.close();
+            CodIndex.build("./" + fileName + ".bin",
+                    "./" + fileName + ".bin" + CodIndex.SUFFIX);
+        } catch (IOException e) {
+            System.out.println("I/O Error: Could not append to the bin file.");
+            System.exit(-1);
+        }
+        System.out.println("Successfuly added " + added + " records to bin!");
+    } // appendToBin
+
 } // class Prog1A
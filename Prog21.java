@@ -5,11 +5,15 @@
  * you probably want to read what comes next. Using this, creating an index
  * which uses buckets to represent blocks will achieve the same thing. Using
  * the EIA ID as a key, the block it should reside in will be calculated using
- * the formula: 
- * block = key % (2^(H + 1)) will point you to the start of the block.
+ * the formula:
+ * block = hash(key) % (2^(H + 1)) will point you to the start of the block,
+ * where hash is the key itself (modulo) or the key mixed by Murmur3.
  * Iterating through the block, it can be determined if the entry resides there
- * or not and if so, the pointer to where it is in the binary file can easily 
- * allow access to the entire entry within the file.
+ * or not and if so, the pointer to where it is in the binary file can easily
+ * allow access to the entire entry within the file. When a block is full the
+ * whole table doubles: H goes up by 1 and every block is read and its keys
+ * written again to b or b + 2^H, so every block of the table is rewritten
+ * (see LinearHashIndex.resize()).
  * 
  * Author: Adam Mekhail
  * First Version: 2022-09-12
@@ -18,6 +22,7 @@
  */
 
 import java.io.*;
+import java.util.Arrays;
 
 public class Prog21 {
     /*+----------------------------------------------------------------------
@@ -29,17 +34,17 @@ public class Prog21 {
     ||                  the index file created by this program and the location
     ||                  in bytes of the entry corresponding with the EIA ID as
     ||                  the value for quick look up. There is a blocking factor
-    ||                  of 20 for the table, so when a table becomes full, all
-    ||                  the data is redistributed using the same formula used to
-    ||                  insert the entries to the table. The formula being:
-    ||                  location = key % (2^(H + 1))
-    ||                  Each time the table expands, the H value (initially at 0)
-    ||                  increases by 1, and the number of buckets in the table gets
-    ||                  doubled. This is done so that when query for a specific key,
-    ||                  rather than pulling the entire table from memory, only the 
-    ||                  block is retrieved from memory and it can be quickly
-    ||                  if the key is in the table or not, and if so, the location
-    ||                  in the .bin file can easily be accessed.
+    ||                  of 20 for the table. The bucket of a key is
+    ||                  location = hash(key) % (2^(H + 1))
+    ||                  When any bucket is full the whole table doubles: the
+    ||                  H value (initially at 0) increases by 1 and every
+    ||                  bucket b is read and its keys are written again to b
+    ||                  or b + 2^H, so all of the buckets are rewritten, not
+    ||                  only the full one. This is done so that when a key is
+    ||                  looked up, rather than reading the entire table from
+    ||                  disk, only its block is read, and it can quickly be
+    ||                  found if the key is in the table or not, and if so,
+    ||                  the location in the .bin file can easily be accessed.
     ||
     ||   Inherits from: None.
     ||
@@ -47,9 +52,7 @@ public class Prog21 {
     ||
     |+-----------------------------------------------------------------------*
     ||
-    ||       Constants: BLOCKING_FACTOR: the number of elements in each bucket
-    ||                                   does not change at all during the 
-    ||                                   duration of the program
+    ||       Constants: None.
     || 
     |+-----------------------------------------------------------------------*
     ||
@@ -57,30 +60,22 @@ public class Prog21 {
     ||
     ||   Class Methods: None
     ||
-    ||   Inst. Methods: void createIndex(RandomAccessFile binFile)
-    ||                  void insert(Entry se)
-    ||                  void resize()
-    ||                  void initBuckets(int startLoc)
-    ||                  void reInsert(Entry se, int newLoc)
-    ||                  int getHashCode(int k)
+    ||   Inst. Methods: void createIndex(BinScanner binFile, int firstRecord)
+    ||
+    ||  The buckets themselves (insert, resize, getHashCode) are handled
+    ||  by LinearHashIndex.
     ||
     ++-----------------------------------------------------------------------*/
 
 
-    // Constant field for blocking factor. Does not change at all
-    private static final int BLOCKING_FACTOR = 20;
-    // Store the hVal and number of buckets for the table
-    // hVal increases by 1 each time the table needs to be expanded
-    // buckets are doubled each time the table needs to be expanded
-    private static int hVal;
-    private static int numBuckets;
-    // Stores the max length of each string field
-    private static int solarCODLen;
-    private static int projectNameLen;
-    private static int stateLen;
+    // Stores the total number of records in the .bin file
     private static int numRecords;
 
-    private static RandomAccessFile indexFile;
+    private static LinearHashIndex indexFile;
+    private static boolean append;  // only index records not indexed yet
+    private static boolean metrics; // print IndexMetrics after the build
+    private static boolean capacity; // also write the CapacityIndex lhl.cap
+    private static HashFunction hash = HashFunction.MODULO;
 
     /*---------------------------------------------------------------------
     |  Method main(String[] args)
@@ -88,7 +83,27 @@ public class Prog21 {
     |  Purpose:  Takes the .bin file as arg[0] and stores each entries EIA ID
     |            as the key and the location in the file as the value in the
     |            created index file for quick look up. Writes the index file
-    |            and saves it as lhl.idx in the current directory
+    |            and saves it as lhl.idx in the current directory. With
+    |            "-append" as arg[1] the existing lhl.idx is opened instead
+    |            and only the records added to the .bin file since it was
+    |            last indexed are inserted. With "-parallel" (optionally
+    |            followed by a number of threads) the index is built by
+    |            ParallelIndexBuilder using every core. "-metrics" anywhere
+    |            after the file name (one thread builds and -append
+    |            only) prints how many splits the build took,
+    |            how long they and the inserts took and how full the
+    |            buckets ended up. "-hash murmur3" builds a new index that
+    |            mixes the bits of each EIA ID before picking its bucket
+    |            (an appended index keeps the function it was built with).
+    |            "-perfect" builds a read only PerfectHashIndex instead,
+    |            for a .bin file that will not change again: one slot per
+    |            key, and Prog22 finds any key with one slot read.
+    |            "-capacity" anywhere after the file name also writes
+    |            lhl.cap, the CapacityIndex of the largest plants. Given a
+    |            .cbin file made by Prog1A -compact instead of a .bin file,
+    |            lhl.idx is written with the record numbers of the .cbin
+    |            file as its pointers (see CompactSolarFile), in full and
+    |            with one thread, so only "-hash" applies.
     |
     |  Pre-condition:  The file is valid
     |                  
@@ -97,57 +112,114 @@ public class Prog21 {
     |
     |  Parameters:
     |          args -- The command line argument, 0 should be the file name
+    |                  and 1 can be "-append", "-parallel [threads]" or
+    |                  "-perfect". "-hash <modulo|murmur3>", "-capacity"
+    |                  and "-metrics" can follow anywhere after the file
+    |                  name.
     |
     |  Returns: None
     *-------------------------------------------------------------------*/
     public static void main(String args[]) {
         String fileName = args[0];
+        append = args.length > 1 && args[1].equals("-append");
+        metrics = Arrays.asList(args).contains("-metrics");
+        capacity = Arrays.asList(args).contains("-capacity");
+        for (int i = 1; i < args.length - 1; i++) {
+            if (args[i].equals("-hash")) {
+                hash = HashFunction.fromName(args[i + 1]);
+                if (hash == null) {
+                    System.out.println("Please give -hash one of modulo or murmur3.");
+                    System.exit(-1);
+                }
+            }
+        }
 
-        RandomAccessFile binFile = null;
-        indexFile = null;
-        File fileRef = null;
-        // Delete file if already exists
-        try {
-            fileRef = new File("./lhl.idx");
-            if (fileRef.exists()) {
-                fileRef.delete();
+        if (CompactSolarFile.isCompact("./" + fileName)) {
+            if (append || capacity || (args.length > 1 && (args[1].equals(
+                    "-parallel") || args[1].equals("-perfect")))) {
+                System.out.println("Error: A .cbin file is indexed in full,"
+                        + " only -hash can be given with it.");
+                System.exit(-1);
             }
-        } catch (Exception e) {
-            System.out.println("Error: Something went wrong deleting the previous .idx file");
-            System.exit(-1);
+            try {
+                CompactSolarFile.buildIndex("./" + fileName, "./lhl.idx",
+                        hash);
+            } catch (IOException e) {
+                System.out.println("Error: Could not build the index: " + e.getMessage());
+                System.exit(-1);
+            }
+            System.out.println("Successfuly wrote lhl.idx");
+            return;
         }
 
-        // create the file
-        try {
-            indexFile = new RandomAccessFile(fileRef, "rw");
-        } catch (IOException e) {
-            System.out.println("Error: Could not create the .idx file.");
-            System.exit(-1);
+        if (args.length > 1 && args[1].equals("-perfect")) {
+            try {
+                PerfectHashIndex.build("./" + fileName, "./lhl.idx");
+            } catch (IOException e) {
+                System.out.println("Error: Could not build the index: " + e.getMessage());
+                System.exit(-1);
+            }
+            System.out.println("Successfuly wrote lhl.idx");
+            writeCapacityIndex(fileName);
+            return;
         }
 
+        if (args.length > 1 && args[1].equals("-parallel")) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            try {
+                if (args.length > 2 && !args[2].startsWith("-")) {
+                    threads = Integer.parseInt(args[2]);
+                }
+                ParallelIndexBuilder.build("./" + fileName, "./lhl.idx",
+                        Math.max(1, threads), hash);
+            } catch (NumberFormatException e) {
+                System.out.println("Please enter the number of threads as an integer.");
+                System.exit(-1);
+            } catch (IOException e) {
+                System.out.println("Error: Could not build the index: " + e.getMessage());
+                System.exit(-1);
+            }
+            System.out.println("Successfuly wrote lhl.idx");
+            writeCapacityIndex(fileName);
+            return;
+        }
+
+        BinScanner binFile = null;
+        indexFile = null;
+
         try {
-            binFile = new RandomAccessFile("./" + fileName, "r");
+            if (append) {
+                indexFile = LinearHashIndex.open("./lhl.idx", true);
+            } else {
+                // create the new index, it only replaces lhl.idx once closed
+                indexFile = LinearHashIndex.create("./lhl.idx", hash);
+            }
         } catch (IOException e) {
-            System.out.println("Error: Could not open file.");
+            System.out.println("Error: Could not " + (append ? "open" : "create")
+                    + " the .idx file.");
             System.exit(-1);
         }
 
-        // get length of all strings and total number of records in the file
+        // opening the scanner reads the length of all strings and total
+        // number of records in the file
         try {
-            binFile.seek(0);
-            numRecords = binFile.readInt();
-            projectNameLen = binFile.readInt();
-            solarCODLen = binFile.readInt();
-            stateLen = binFile.readInt();
+            binFile = new BinScanner("./" + fileName);
         } catch (IOException e) {
-            System.out.println("Error: Could not read .bin file");
+            System.out.println("Error: Could not open file.");
             System.exit(-1);
         }
+        numRecords = binFile.getNumRecords();
 
-        hVal = 0; // initial value is 0
-        numBuckets = 2; // initial num buckets is 2
-        initBuckets(0);
-        createIndex(binFile);
+        int firstRecord = 0;
+        if (append) {
+            firstRecord = indexFile.getNumIndexed();
+            if (firstRecord < 0 || firstRecord > numRecords) {
+                System.out.println("Error: lhl.idx does not match the .bin file,"
+                        + " build it again without -append.");
+                System.exit(-1);
+            }
+        }
+        createIndex(binFile, firstRecord);
 
         // close the file
         try {
@@ -157,17 +229,45 @@ public class Prog21 {
             System.exit(-1);
         }
 
-        System.out.println("Successfuly wrote lhl.idx");
+        if (append) {
+            System.out.println("Successfuly added " + (numRecords - firstRecord)
+                    + " records to lhl.idx");
+        } else {
+            System.out.println("Successfuly wrote lhl.idx");
+        }
+        writeCapacityIndex(fileName);
     } // main()
 
+    /* Writes lhl.cap from the .bin file if "-capacity" was given. It is
+       built again in full, also after -append */
+    private static void writeCapacityIndex(String fileName) {
+        if (!capacity) {
+            return;
+        }
+        try {
+            CapacityIndex.build("./" + fileName, "./lhl.cap");
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error: Could not build lhl.cap: " + e.getMessage());
+            System.exit(-1);
+        }
+        System.out.println("Successfuly wrote lhl.cap");
+    } // writeCapacityIndex()
+
     /*---------------------------------------------------------------------
-    |  Method createIndex(RandomAccessFile binFile)
+    |  Method createIndex(BinScanner binFile, int firstRecord)
     |
     |  Purpose:  Reads the bin file and creates an entry object for each
-    |            entry. Stores the EIA ID as the key and the pointer to 
+    |            entry. The file is read a large block at a time on a
+    |            separate thread while the entries of the block before
+    |            are inserted. Stores the EIA ID as the key and the pointer to 
     |            the location in the file as the value. Using the 
     |            getHashCode() function, it finds the block the entry should
     |            go in and uses the insert() function to insert the key.
+    |            Records deleted from the .bin file (EIA ID is
+    |            LinearHashIndex.TOMBSTONE) are skipped. When appending, a
+    |            key that is already in the index (from an append that did
+    |            not finish, or a plant added again) gets its pointer
+    |            moved to the newer record instead of a second slot.
     |
     |  Pre-condition:  The file is valid
     |                  
@@ -175,238 +275,57 @@ public class Prog21 {
     |  Post-condition: The bin file remains open, index file is closed
     |
     |  Parameters:
-    |       binFile -- The binary file stream
+    |       binFile -- The binary file scanner
+    |   firstRecord -- The first record to index
     |
     |  Returns: None
     *-------------------------------------------------------------------*/
-    private static void createIndex(RandomAccessFile binFile) {
-        int startLocation;
+    private static void createIndex(BinScanner binFile, int firstRecord) {
+        int[] ids = new int[binFile.getBatchSize()];
+        int[] pointers = new int[binFile.getBatchSize()];
 
         try {
-            for (int i = 0; i < numRecords; i++) {
-                // get pointer for entry i in the file
-                startLocation = (4 * 4)
-                        + i * (SolarEntries.getSolarRecordLength(
-                                projectNameLen, solarCODLen, stateLen));
-
-                // go to location and save EIA id and location
-                binFile.seek(startLocation);
-                int id = binFile.readInt();
-                int pointer = startLocation;
-
-                // create entry
-                Entry se = new Entry(id, pointer);
-                insert(se);
-
+            indexFile.setGroupCommit(1024);
+            if (metrics) {
+                indexFile.setMetrics(new IndexMetrics());
             }
-            // write h val to bottom of file:
-            indexFile.seek(indexFile.length());
-            indexFile.writeInt(hVal);
-        } catch (IOException e) {
-            System.out.println("Error: Could not read .bin file");
-            System.exit(-1);
-        }
+            binFile.start(firstRecord, true);
+            int count = binFile.next(ids, pointers);
+            while (count > 0) {
+                for (int i = 0; i < count; i++) {
+                    int id = ids[i];
+                    int pointer = pointers[i];
+                    if (id == LinearHashIndex.TOMBSTONE) {
+                        continue;
+                    }
 
-        // close the idx file
-        try {
-            indexFile.close();
-        } catch (IOException e) {
-            System.out.println("Error: Could not close the .idx file.");
-            System.exit(-1);
-        }
-    } // createIndex()
-
-     /*---------------------------------------------------------------------
-    |  Method getHashCode(int k)
-    |
-    |  Purpose:  Computes the hash code for a provided key to determine which
-    |            block the entry will go in. This is determined by the H value
-    |            because as the table expands, the h value will increase 
-    |            meaning that the bucket a entry would go into at H = 0
-    |            might not be the same at H = 1
-    |
-    |  Pre-condition:  The arg 'k' is the EIA ID number
-    |                  
-    |
-    |  Post-condition: The integer returned is a valid bucket that exists in
-    |                  the table
-    |
-    |  Parameters:
-    |            k -- The key which should be the EIA ID
-    |
-    |  Returns: An integer which is the bucket the entry will go into
-    *-------------------------------------------------------------------*/
-    private static int getHashCode(int k) {
-        return k % (int) Math.pow(2, hVal + 1);
-    } // getHashCode()
-
-    /*---------------------------------------------------------------------
-    |  Method insert(Entry se)
-    |
-    |  Purpose:  Inserts an entry by getting the key from the entry and passing
-    |            it as the parameter for insert(). It will return the bucket.
-    |            Multiplying this by the blocking factor will get the starting
-    |            index for the bucket. If the bucket is full, the table will be
-    |            resized and it will attempt to try adding the entry again.
-    |
-    |  Pre-condition:  The entry has a valid EIA ID
-    |                  
-    |
-    |  Post-condition: The buckets will remain appropriate sizes, not over
-    |                  20 elements
-    |
-    |  Parameters:
-    |           se -- The solar entry to be added to the table
-    |
-    |  Returns: None
-    *-------------------------------------------------------------------*/
-    private static void insert(Entry se) {
-        // getHashcode returns the bucket
-        // multiplying with blocking factor gets to start of bucket
-        // have to multiply by size of key and value (4 bytes each)
-        int loc = getHashCode(se.getID()) * (BLOCKING_FACTOR * (4 + 4));
-        try {
-            indexFile.seek(loc);
-            int i = 0;
-            boolean isFound = false;
-            while (i < BLOCKING_FACTOR && !isFound) {
-                int currentLoc = (int) indexFile.getFilePointer();
-                Entry temp = new Entry(indexFile.readInt(), indexFile.readInt());
-                if (temp.getID() == -1) {
-                    indexFile.seek(currentLoc);
-                    indexFile.writeInt(se.getID());
-                    indexFile.writeInt(se.getPointer());
-                    isFound = true;
+                    // create entry
+                    Entry se = new Entry(id, pointer);
+                    int oldPointer = append ? indexFile.lookup(id) : -1;
+                    if (oldPointer == -1) {
+                        indexFile.insert(se);
+                    } else if (oldPointer != pointer) {
+                        indexFile.update(id, pointer);
+                    }
                 }
-                i++;
+                count = binFile.next(ids, pointers);
             }
-            if (!isFound) {
-                resize();
-                insert(se);
+            indexFile.setNumIndexed(numRecords);
+            if (metrics) {
+                System.out.print(indexFile.getMetrics().dump());
             }
         } catch (IOException e) {
-            System.out.println("Error: Could write to .idx file");
+            System.out.println("Error: Could not build the index: " + e.getMessage());
             System.exit(-1);
         }
-    } // insert()
 
-    /*---------------------------------------------------------------------
-    |  Method resize()
-    |
-    |  Purpose:  Resizes the table by doubling the number of buckets and
-    |            incrementing the H value by 1.
-    |
-    |  Pre-condition:  At least one bucket is full
-    |                  
-    |
-    |  Post-condition: Each bucket will contain no more than 20 elements
-    |
-    |  Parameters: None
-    |
-    |  Returns: None
-    *-------------------------------------------------------------------*/
-    private static void resize() {
-        hVal++; // increase hVal by 1
-        numBuckets *= 2; // double number of buckets
+        // close the idx file, this writes the h val to the bottom of the file
         try {
-            int currentEnd = (int) indexFile.length();
-            indexFile.seek(currentEnd);
-            initBuckets(currentEnd); // append new buckets to end of file
-            indexFile.seek(0);
-            long curLoc = 0;
-            while (curLoc < currentEnd) { // reinsert all elements
-                indexFile.seek(curLoc);
-                Entry se = new Entry(indexFile.readInt(), indexFile.readInt());
-                if (se.getID() != -1) {
-                    reInsert(se, currentEnd);
-                }
-                curLoc += (4 + 4);
-            }
-            // move all reinserted elements up in the index file
-            curLoc = 0;
-            while (currentEnd < indexFile.length()) {
-                indexFile.seek(currentEnd);
-                Entry se = new Entry(indexFile.readInt(), indexFile.readInt());
-                indexFile.seek(curLoc);
-                indexFile.writeInt(se.getID());
-                indexFile.writeInt(se.getPointer());
-                curLoc += (4 + 4);
-                currentEnd += (4 + 4);
-            }
-            // truncate the file to remove old buckets
-            indexFile.setLength(numBuckets * BLOCKING_FACTOR * (4 + 4));
-        } catch (IOException e) {
-            System.out.println("Error: Could not resize index file");
-            System.exit(-1);
-        }
-    } // resize()
-
-    /*---------------------------------------------------------------------
-    |  Method initBuckets()
-    |
-    |  Purpose:  Takes a location in the file and creates n empty buckets
-    |            depending on what the number of buckets currently is
-    |
-    |  Pre-condition:  Location is not in the middle of data, only top of
-    |                  file for starting or end of file
-    |
-    |  Post-condition: Each bucket will be empty
-    |
-    |  Parameters: 
-    |      startLoc -- The starting location for the new buckets
-    |
-    |  Returns: None
-    *-------------------------------------------------------------------*/
-    private static void initBuckets(int startLoc) {
-        try {
-            indexFile.seek(startLoc);
-            for (int i = 0; i < numBuckets * BLOCKING_FACTOR; i++) {
-                indexFile.writeInt(-1);
-                indexFile.writeInt(-1);
-            }
+            indexFile.close();
         } catch (IOException e) {
-            System.out.println("Error increasing number of buckets");
+            System.out.println("Error: Could not close the .idx file.");
             System.exit(-1);
         }
-    } // initBuckets
-
-    /*---------------------------------------------------------------------
-    |  Method reInsert()
-    |
-    |  Purpose:  Re-inserts an element by taking an offset as the parameter
-    |            to place into the appropriate bucket
-    |
-    |  Pre-condition:  Index file must be resized before calling this method
-    |
-    |  Post-condition: All elements will be reinserted based on new h values
-    |
-    |  Parameters: 
-    |           se -- The element to be inserted
-    |       newLoc -- The starting location for the new buckets
-    |
-    |  Returns: None
-    *-------------------------------------------------------------------*/
-    private static void reInsert(Entry se, int newLoc) {
-        int loc = getHashCode(se.getID()) * (BLOCKING_FACTOR * (4 + 4)) + newLoc;
+    } // createIndex()
 
-        try {
-            indexFile.seek(loc);
-            int i = 0;
-            boolean isFound = false;
-            while (i < BLOCKING_FACTOR && !isFound) {
-                int currentLoc = (int) indexFile.getFilePointer();
-                Entry temp = new Entry(indexFile.readInt(), indexFile.readInt());
-                if (temp.getID() == -1) {
-                    indexFile.seek(currentLoc);
-                    indexFile.writeInt(se.getID());
-                    indexFile.writeInt(se.getPointer());
-                    isFound = true;
-                }
-                i++;
-            }
-        } catch (IOException e) {
-            System.out.println("Error: Problem moving entries in index file.");
-            System.exit(-1);
-        }
-    }
-} // class Prog21
+ } // class Prog21
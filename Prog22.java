@@ -12,7 +12,10 @@
  */
 
 import java.io.*;
+import java.nio.file.NoSuchFileException;
 import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import javax.management.JMException;
 
 class Prog22 {
     /*+----------------------------------------------------------------------
@@ -33,7 +36,8 @@ class Prog22 {
     ||
     |+-----------------------------------------------------------------------*
     ||
-    ||       Constants: None.
+    ||       Constants: BATCH_CHUNK: IDs passed between batch stages at once
+    ||                  BATCH_QUEUE: chunks waiting between two stages
     || 
     |+-----------------------------------------------------------------------*
     ||
@@ -43,19 +47,68 @@ class Prog22 {
     ||
     ||   Inst. Methods: RandomAccessFile openFile(String name)
     ||                  void closeFile(RandomAccessFile filePtr, String name)
-    ||                  void printRecord(RandomAccessFile binFile, int ptr)
-    ||                  int seekRecord(RandomAccessFile idxFile, int id)
-    ||                  int getHashCode(int k)
+    ||                  byte[] readRecord(RandomAccessFile binFile, int ptr)
+    ||                  void printRecord(byte[] record)
+    ||                  byte[] findRecord(RandomAccessFile binFile,
+    ||                                    LinearHashIndex idxFile, int id)
+    ||                  int seekRecord(LinearHashIndex idxFile, int id)
+    ||                  void runInteractive(RandomAccessFile binFile,
+    ||                                      LinearHashIndex indexFile)
+    ||                  void runBatch(String source, RandomAccessFile binFile,
+    ||                                LinearHashIndex indexFile)
+    ||                  String formatRecord(byte[] record)
+    ||                  byte[] coverRecord(int id)
     ||
     ++-----------------------------------------------------------------------*/
 
 
+    private static final int BATCH_CHUNK = 4096;
+    private static final int BATCH_QUEUE = 4;
+
     private static int solarCODLen;
     private static int projectNameLen;
     private static int stateLen;
     private static int numRecords;
+    private static int recordLength;
+
+    // The fields formatRecord() prints, found through the .bin's schema
+    private static RecordCodec.Accessor idField;
+    private static RecordCodec.Accessor nameField;
+    private static RecordCodec.Accessor capACField;
+
+    // Where errors are printed: standard error in "-batch" mode, so only
+    // the results go to standard output
+    private static PrintStream errors = System.out;
+
+    // The whole index held in memory when "-memory" is given
+    private static OffHeapLinearHashMap memIndex;
+
+    // Recently printed records when "-records" is given
+    private static RecordCache recordCache;
+
+    // Answers lookups without the .bin file when "-covering" is given
+    private static CoveringIndex coverIndex;
 
-    private static int hVal;
+    // Used instead of the linear hash index when Prog21 -perfect built it
+    private static PerfectHashIndex perfectIndex;
+
+    // Read instead of the .bin file when a .cbin file is given, with the
+    // codec that lays its records out as the .bin file would
+    private static CompactSolarFile compactFile;
+    private static RecordCodec compactCodec;
+
+    /* A run of input IDs moving through the batch pipeline */
+    private static class Chunk {
+        int count;                          // IDs in the chunk, 0 ends a run
+        int[] ids = new int[BATCH_CHUNK];
+        int[] ptrs = new int[BATCH_CHUNK];  // From the index, -1 if none
+        byte[][] records = new byte[BATCH_CHUNK][];
+    }
+
+    /* The work one stage of the batch pipeline does on a chunk */
+    private interface ChunkStep {
+        void apply(Chunk chunk) throws IOException;
+    }
 
     /*---------------------------------------------------------------------
     |  Method main(String args[]) 
@@ -64,7 +117,27 @@ class Prog22 {
     |            order and prompts the user to enter EIA ID's to be searched.
     |            if found, it will display the EIA ID, project name, and solar
     |            Cap AC to the screen, if not it will let the user know the
-    |            records aren't found
+    |            records aren't found. With "-memory" after the file
+    |            names the whole index is loaded into memory first. With
+    |            "-cache <pages>" up to that many buckets are kept in a
+    |            page cache and its hit rate is shown at the end. With
+    |            "-records <count>" up to that many records are kept in
+    |            memory so repeated IDs skip the index and the .bin file.
+    |            With "-batch <file>" the IDs are read from the file ("-"
+    |            for standard input) with no prompts and only the results
+    |            are written out; errors and lines that are not IDs go to
+    |            standard error. With "-metrics <seconds>" lookups are
+    |            counted and timed, the numbers are shown through JMX and
+    |            printed every that many seconds (0 for only at the end),
+    |            also when they are answered from the -memory copy.
+    |            With "-covering <file>" IDs are looked up in a covering
+    |            index built by CoveringIndex, whose slots hold the name
+    |            and Solar Cap AC, so the .bin file is never read.
+    |            An index built with Prog21 -perfect is found from its
+    |            header and every lookup reads one slot of it; -memory,
+    |            -cache and -metrics only apply to a linear hash index.
+    |            Given a .cbin file and an index Prog21 built from it,
+    |            each record is read by decompressing its one block.
     |
     |  Pre-condition:  File names are valid
     |                  
@@ -79,57 +152,193 @@ class Prog22 {
     public static void main(String args[]) {
         String idxFileName = args[0];
         String binFileName = args[1];
+        boolean inMemory = false;
+        int cachePages = 0;
+        int cacheRecords = 0;
+        String batchSource = null;
+        int metricsSeconds = -1;
+        String coverFileName = null;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("-memory")) {
+                inMemory = true;
+            } else if (args[i].equals("-cache") && i + 1 < args.length) {
+                try {
+                    cachePages = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    errors.println("Error: -cache needs a number of pages");
+                    System.exit(-1);
+                }
+            } else if (args[i].equals("-records") && i + 1 < args.length) {
+                try {
+                    cacheRecords = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    errors.println("Error: -records needs a number of records");
+                    System.exit(-1);
+                }
+            } else if (args[i].equals("-batch") && i + 1 < args.length) {
+                batchSource = args[++i];
+                errors = System.err;
+            } else if (args[i].equals("-covering") && i + 1 < args.length) {
+                coverFileName = args[++i];
+            } else if (args[i].equals("-metrics") && i + 1 < args.length) {
+                try {
+                    metricsSeconds = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    errors.println("Error: -metrics needs a number of seconds");
+                    System.exit(-1);
+                }
+            }
+        }
 
         // open the files
         RandomAccessFile binFile = openFile(binFileName);
-        RandomAccessFile indexFile = openFile(idxFileName);
+        LinearHashIndex indexFile = null;
 
-        // read the Hval from bottom of index file
+        // open the index, this reads the Hval from bottom of index file
         try {
-            indexFile.seek(indexFile.length() - 4);
-            hVal = indexFile.readInt();
+            if (PerfectHashIndex.isPerfectHash(idxFileName)) {
+                perfectIndex = PerfectHashIndex.open(idxFileName);
+            } else {
+                indexFile = LinearHashIndex.open(idxFileName, false);
+                indexFile.setCache(cachePages);
+                if (metricsSeconds >= 0) {
+                    indexFile.setMetrics(new IndexMetrics());
+                }
+                if (inMemory) {
+                    memIndex = OffHeapLinearHashMap.load(idxFileName);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            errors.println("Error: Could not open file: " + idxFileName);
+            System.exit(-1);
         } catch (IOException e) {
-            System.out.println("Error: Could not read the H value from .idx file");
+            errors.println("Error: Could not open " + idxFileName + ": "
+                    + e.getMessage());
             System.exit(-1);
         }
 
         try {
-            binFile.seek(0);
-            numRecords = binFile.readInt();
-            projectNameLen = binFile.readInt();
-            solarCODLen = binFile.readInt();
-            stateLen = binFile.readInt();
+            RecordCodec codec;
+            compactFile = CompactSolarFile.isCompact(binFileName)
+                    ? new CompactSolarFile(binFileName) : null;
+            if (compactFile != null) {
+                numRecords = compactFile.getNumRecords();
+                codec = new RecordCodec(compactFile.getSchema());
+                compactCodec = codec;
+            } else {
+                binFile.seek(0);
+                numRecords = binFile.readInt();
+                projectNameLen = binFile.readInt();
+                solarCODLen = binFile.readInt();
+                stateLen = binFile.readInt();
+                codec = new RecordCodec(RecordSchema.forBin(binFileName));
+            }
+            recordLength = codec.getSchema().getRecordLength();
+            idField = codec.accessor(RecordSchema.ID, RecordSchema.Type.INT);
+            nameField = codec.accessor(RecordSchema.NAME,
+                    RecordSchema.Type.STRING);
+            capACField = codec.accessor(RecordSchema.CAPACITY_AC,
+                    RecordSchema.Type.DOUBLE);
         } catch (IOException e) {
-            System.out.println("Error: Could not read .bin file");
+            errors.println("Error: Could not read .bin file");
+            System.exit(-1);
+        } catch (IllegalArgumentException e) {
+            errors.println("Error: " + e.getMessage());
             System.exit(-1);
         }
 
-        Scanner scanner = new Scanner(System.in);
-        System.out.println(numRecords + " records found.");
-        System.out.println("Enter the EIA ID to search. To end the search, type:'-1': ");
-        String line = scanner.next();
-        while (!line.equals("-1")) {
+        if (cacheRecords > 0) {
+            recordCache = new RecordCache(cacheRecords);
+        }
+
+        if (coverFileName != null && compactFile != null) {
+            errors.println("Error: -covering needs the .bin file, not a"
+                    + " .cbin file");
+            System.exit(-1);
+        }
+        if (coverFileName != null) {
             try {
-                int id = Integer.parseInt(line);
-                int ptr = seekRecord(indexFile, id);
-                if (ptr == -1) {
-                    System.out.println("The target value " + id + " was not found.");
-                } else {
-                    printRecord(binFile, ptr);
-                }
+                coverIndex = CoveringIndex.open(coverFileName, binFileName);
+            } catch (IOException e) {
+                errors.println("Error: Could not open " + coverFileName
+                        + ": " + e.getMessage());
+                System.exit(-1);
+            }
+            if (!coverIndex.covers(CoveringIndex.Column.NAME)
+                    || !coverIndex.covers(CoveringIndex.Column.CAPACITY_AC)) {
+                errors.println("Error: " + coverFileName + " needs the"
+                        + " name and capacity_ac columns");
+                System.exit(-1);
+            }
+            int numEntries = indexFile == null ? perfectIndex.getNumEntries()
+                    : indexFile.getNumEntries();
+            if (coverIndex.getNumEntries() != numEntries) {
+                errors.println("Error: " + coverFileName + " does not"
+                        + " match the index, build it again with CoveringIndex");
+                System.exit(-1);
+            }
+        }
 
-            } catch (NumberFormatException e) {
-                System.out.println("Please enter the integer represting the EIA ID number.");
+        IndexMetrics metrics = indexFile == null ? null : indexFile.getMetrics();
+        if (metrics != null) {
+            try {
+                metrics.register("Prog22");
+            } catch (JMException e) {
+                System.err.println("Could not show the metrics through JMX: "
+                        + e.getMessage());
+            }
+            if (metricsSeconds > 0) {
+                metrics.startDump(metricsSeconds, System.err);
             }
-            // prompt user again
-            System.out.println("Enter the EIA ID to search. To end the search, type:'-1': ");
-            line = scanner.next();
         }
-        scanner.close();
+
+        if (batchSource != null) {
+            runBatch(batchSource, binFile, indexFile);
+        } else {
+            runInteractive(binFile, indexFile);
+        }
+
+        // cache statistics stay out of the results in batch mode
+        PrintStream stats = batchSource == null ? System.out : System.err;
+        if (indexFile != null && indexFile.getCache() != null) {
+            stats.println(indexFile.getCache().getStats());
+        }
+        if (recordCache != null) {
+            stats.println(recordCache.getStats());
+        }
+        if (metrics != null) {
+            metrics.stopDump();
+            stats.print(metrics.dump());
+        }
 
         // close the files
         closeFile(binFile, binFileName);
-        closeFile(indexFile, idxFileName);
+        if (compactFile != null) {
+            try {
+                compactFile.close();
+            } catch (IOException e) {
+                errors.println("Error: Could not close the file " + binFileName);
+                System.exit(-1);
+            }
+        }
+        if (coverIndex != null) {
+            try {
+                coverIndex.close();
+            } catch (IOException e) {
+                errors.println("Error: Could not close the file " + coverFileName);
+                System.exit(-1);
+            }
+        }
+        try {
+            if (indexFile != null) {
+                indexFile.close();
+            } else {
+                perfectIndex.close();
+            }
+        } catch (IOException e) {
+            errors.println("Error: Could not close the file " + idxFileName);
+            System.exit(-1);
+        }
     } // main()
 
      /*---------------------------------------------------------------------
@@ -153,7 +362,7 @@ class Prog22 {
         try {
             raf = new RandomAccessFile(name, "r");
         } catch (IOException e) {
-            System.out.println("Error: Could not open file: " + name);
+            errors.println("Error: Could not open file: " + name);
             System.exit(-1);
         }
 
@@ -182,13 +391,13 @@ class Prog22 {
         try {
             filePtr.close();
         } catch (IOException e) {
-            System.out.println("Error: Could not close the file " + name);
+            errors.println("Error: Could not close the file " + name);
             System.exit(-1);
         }
     } // closeFile()
 
     /*---------------------------------------------------------------------
-    |  Method seekRecord(RandomAccessFile idxFile, int id)
+    |  Method seekRecord(LinearHashIndex idxFile, int id)
     |
     |  Purpose:  Searches the index file for a record with the proved ID as
     |            the argument. If the record is found, the pointer to where
@@ -202,95 +411,388 @@ class Prog22 {
     |                  returned and both files will remain open
     |
     |  Parameters:
-    |       idFile -- The indexFile file stream
+    |       idFile -- The open index
     |           id -- The key which should be the EIA ID
     |           
     |  Returns: The pointer to the location of the entry or -1 if not found
     *-------------------------------------------------------------------*/
-    private static int seekRecord(RandomAccessFile idxFile, int id) {
-        int loc = getHashCode(id) * 20 * 8;
-        boolean isFound = false;
+    private static int seekRecord(LinearHashIndex idxFile, int id) {
+        if (id < 0) { // negative keys are never stored
+            return -1;
+        }
+        if (memIndex != null) {
+            IndexMetrics metrics = idxFile.getMetrics();
+            if (metrics == null) {
+                return memIndex.get(id);
+            }
+            long start = System.nanoTime();
+            int ptr = memIndex.get(id);
+            metrics.recordLookup(System.nanoTime() - start, ptr != -1,
+                    memIndex.probeLength(id));
+            return ptr;
+        }
         try {
-            idxFile.seek(loc);
-            for (int i = 0; i < 20 && isFound == false; i++) {
-                int eiaID = idxFile.readInt();
-                int ptr = idxFile.readInt();
-                loc = (int) idxFile.getFilePointer();
-                if (eiaID == id) {
-                    return ptr;
-                }
+            if (perfectIndex != null) {
+                return perfectIndex.lookup(id);
             }
-
+            return idxFile.lookup(id);
         } catch (IOException e) {
-            System.out.println("Error: Could not read .idx file");
+            errors.println("Error: Could not read .idx file");
             System.exit(-1);
         }
         return -1;
     } // seekRecord()
 
     /*---------------------------------------------------------------------
-    |  Method getHashCode(int k)
+    |  Method runInteractive(RandomAccessFile binFile,
+    |                        LinearHashIndex indexFile)
     |
-    |  Purpose:  Computes the hash code for a provided key to determine which
-    |            block the entry resides in. This is determined by the H value
-    |            because as the table expands, the h value will increase 
-    |            meaning that the bucket a entry would go into at H = 0
-    |            might not be the same at H = 1
+    |  Purpose:  Prompts the user for EIA IDs one at a time and prints each
+    |            record found, until the user types -1.
     |
-    |  Pre-condition:  The arg 'k' is the EIA ID number
-    |                  
+    |  Pre-condition:  Both files are open
     |
-    |  Post-condition: The integer returned is a valid bucket that exists in
-    |                  the table
+    |  Post-condition: Both files remain open
     |
     |  Parameters:
-    |            k -- The key which should be the EIA ID
+    |       binFile -- The binary file stream
+    |     indexFile -- The open index
     |
-    |  Returns: An integer which is the bucket the entry will be in
+    |  Returns: None
     *-------------------------------------------------------------------*/
-    private static int getHashCode(int k) {
-        return k % (int) Math.pow(2, hVal + 1);
-    } // getHashCode()
+    private static void runInteractive(RandomAccessFile binFile,
+            LinearHashIndex indexFile) {
+        Scanner scanner = new Scanner(System.in);
+        System.out.println(numRecords + " records found.");
+        System.out.println("Enter the EIA ID to search. To end the search, type:'-1': ");
+        String line = scanner.next();
+        while (!line.equals("-1")) {
+            try {
+                int id = Integer.parseInt(line);
+                byte[] record = findRecord(binFile, indexFile, id);
+                if (record == null) {
+                    System.out.println("The target value " + id + " was not found.");
+                } else {
+                    printRecord(record);
+                }
+
+            } catch (NumberFormatException e) {
+                System.out.println("Please enter the integer represting the EIA ID number.");
+            }
+            // prompt user again
+            System.out.println("Enter the EIA ID to search. To end the search, type:'-1': ");
+            line = scanner.next();
+        }
+        scanner.close();
+    } // runInteractive()
 
     /*---------------------------------------------------------------------
-    |  Method printRecord(RandomAccessFile binFile, int ptr)
+    |  Method runBatch(String source, RandomAccessFile binFile,
+    |                  LinearHashIndex indexFile)
     |
-    |  Purpose:  Goes to the location in the .bin file for the entry
-    |            which is passed as an argument and prints out the
-    |            EIA ID number, the name, and Solar Cap AC
+    |  Purpose:  Looks up every ID in source, one per line, without any
+    |            prompts. The work is split into four stages, each on its
+    |            own thread: this thread parses the lines into chunks of
+    |            BATCH_CHUNK IDs, then the index is probed, the records are
+    |            fetched from the .bin file and the results are formatted
+    |            into one buffered output stream. At most BATCH_QUEUE
+    |            chunks wait between two stages, so memory stays bounded
+    |            however many IDs there are, and results come out in the
+    |            order of the input. A line holding -1 ends the input
+    |            early, as in the interactive mode. A line that is not an
+    |            integer is reported on standard error and skipped.
     |
-    |  Pre-condition:  The file is open and ptr is valid 
-    |                  
-    |  Post-condition: The file remains open
+    |  Pre-condition:  Both files are open
+    |
+    |  Post-condition: Every result has been written out
     |
     |  Parameters:
+    |        source -- File of IDs, "-" for standard input
     |       binFile -- The binary file stream
-    |           ptr -- The location in file
+    |     indexFile -- The open index
     |
     |  Returns: None
     *-------------------------------------------------------------------*/
-    private static void printRecord(RandomAccessFile binFile, int ptr) {
-        int solarCapACPointer = (ptr + 4 + projectNameLen +
-                solarCODLen + stateLen) + (8 * 3);
-        int id;
-        String name;
-        byte[] nameBytes = new byte[projectNameLen];
-        double capAC;
+    private static void runBatch(String source, RandomAccessFile binFile,
+            LinearHashIndex indexFile) {
+        ArrayBlockingQueue<Chunk> toProbe = new ArrayBlockingQueue<>(BATCH_QUEUE);
+        ArrayBlockingQueue<Chunk> toFetch = new ArrayBlockingQueue<>(BATCH_QUEUE);
+        ArrayBlockingQueue<Chunk> toFormat = new ArrayBlockingQueue<>(BATCH_QUEUE);
+        OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), 1 << 16);
 
-        try {
-            binFile.seek(ptr);
-            id = binFile.readInt();
-            binFile.readFully(nameBytes);
-            name = new String(nameBytes);
+        startStage("probe", toProbe, toFetch, c -> probeChunk(c, indexFile));
+        startStage("fetch", toFetch, toFormat, c -> fetchChunk(c, binFile));
+        Thread writer = startStage("format", toFormat, null,
+                c -> formatChunk(c, out));
 
-            binFile.seek(solarCapACPointer);
-            capAC = binFile.readDouble();
+        try (BufferedReader in = new BufferedReader(source.equals("-")
+                ? new InputStreamReader(System.in) : new FileReader(source),
+                1 << 16)) {
+            Chunk chunk = new Chunk();
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.equals("-1")) {
+                    break;
+                }
+                try {
+                    chunk.ids[chunk.count] = Integer.parseInt(line);
+                } catch (NumberFormatException e) {
+                    errors.println("Error: " + line + " is not an EIA ID"
+                            + " number, skipped");
+                    continue;
+                }
+                chunk.count++;
+                if (chunk.count == BATCH_CHUNK) {
+                    toProbe.put(chunk);
+                    chunk = new Chunk();
+                }
+            }
+            if (chunk.count > 0) {
+                toProbe.put(chunk);
+            }
+            toProbe.put(new Chunk()); // an empty chunk stops every stage
+            writer.join();
+            out.flush();
+        } catch (IOException e) {
+            errors.println("Error: Could not read the IDs from " + source);
+            System.exit(-1);
+        } catch (InterruptedException e) {
+            errors.println("Error: Batch query was interrupted");
+            System.exit(-1);
+        }
+    } // runBatch()
 
-            System.out.println("[" + id + "] [" + name + "] [" + capAC + "]");
+    /*---------------------------------------------------------------------
+    |  Method startStage(String name, ArrayBlockingQueue<Chunk> in,
+    |                    ArrayBlockingQueue<Chunk> out, ChunkStep step)
+    |
+    |  Purpose:  Starts a thread that takes chunks from in, does step on
+    |            each and passes it on to out, until the empty chunk that
+    |            ends the run has been passed on.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The thread is running
+    |
+    |  Parameters:
+    |          name -- Name of the stage, for the thread name
+    |            in -- Chunks to work on
+    |           out -- Where finished chunks go, null for the last stage
+    |          step -- The work to do on a chunk
+    |
+    |  Returns: The stage's thread
+    *-------------------------------------------------------------------*/
+    private static Thread startStage(String name, ArrayBlockingQueue<Chunk> in,
+            ArrayBlockingQueue<Chunk> out, ChunkStep step) {
+        Thread t = new Thread(() -> {
+            try {
+                Chunk chunk;
+                do {
+                    chunk = in.take();
+                    if (chunk.count > 0) {
+                        step.apply(chunk);
+                    }
+                    if (out != null) {
+                        out.put(chunk);
+                    }
+                } while (chunk.count > 0);
+            } catch (IOException e) {
+                System.err.println("Error: Batch " + name + " failed: "
+                        + e.getMessage());
+                System.exit(-1);
+            } catch (InterruptedException e) {
+                // only happens when the program is stopping
+            }
+        }, "batch-" + name);
+        t.start();
+        return t;
+    } // startStage()
+
+    /* Probe stage: takes records from the record cache or the covering
+       index, or finds their pointers in the index */
+    private static void probeChunk(Chunk chunk, LinearHashIndex idxFile) {
+        for (int i = 0; i < chunk.count; i++) {
+            chunk.ptrs[i] = -1;
+            int id = chunk.ids[i];
+            if (recordCache != null) {
+                chunk.records[i] = recordCache.get(id);
+            }
+            if (chunk.records[i] == null && coverIndex != null) {
+                chunk.records[i] = coverRecord(id);
+            } else if (chunk.records[i] == null) {
+                chunk.ptrs[i] = seekRecord(idxFile, id);
+            }
+        }
+    } // probeChunk()
+
+    /* Fetch stage: reads the records the probe stage found pointers for */
+    private static void fetchChunk(Chunk chunk, RandomAccessFile binFile) {
+        for (int i = 0; i < chunk.count; i++) {
+            if (chunk.ptrs[i] != -1) {
+                chunk.records[i] = readRecord(binFile, chunk.ptrs[i]);
+                if (idField.getInt(chunk.records[i]) < 0) { // deleted record
+                    chunk.records[i] = null;
+                } else if (recordCache != null) {
+                    recordCache.put(chunk.ids[i], chunk.records[i]);
+                }
+            }
+        }
+    } // fetchChunk()
+
+    /* Format stage: writes one line per ID, in input order */
+    private static void formatChunk(Chunk chunk, OutputStream out)
+            throws IOException {
+        StringBuilder sb = new StringBuilder(chunk.count * 64);
+        for (int i = 0; i < chunk.count; i++) {
+            if (chunk.records[i] == null) {
+                sb.append("The target value ").append(chunk.ids[i])
+                        .append(" was not found.");
+            } else {
+                sb.append(formatRecord(chunk.records[i]));
+            }
+            sb.append(System.lineSeparator());
+        }
+        out.write(sb.toString().getBytes());
+    } // formatChunk()
+
+    /*---------------------------------------------------------------------
+    |  Method findRecord(RandomAccessFile binFile, LinearHashIndex idxFile,
+    |                    int id)
+    |
+    |  Purpose:  Returns the record of an EIA ID, from the record cache if
+    |            it is there, from the covering index if there is one,
+    |            otherwise by looking it up in the index and reading it
+    |            from the .bin file (and then caching it). A record that
+    |            UpdateRecords marked deleted in the .bin file is not found
+    |            even if the index still points at it.
+    |
+    |  Pre-condition:  Both files are open
+    |
+    |  Post-condition: Both files remain open
+    |
+    |  Parameters:
+    |       binFile -- The binary file stream
+    |       idxFile -- The open index
+    |            id -- The EIA ID
+    |
+    |  Returns: The bytes of the record, or null if not found
+    *-------------------------------------------------------------------*/
+    private static byte[] findRecord(RandomAccessFile binFile,
+            LinearHashIndex idxFile, int id) {
+        byte[] record = recordCache == null ? null : recordCache.get(id);
+        if (record != null) {
+            return record;
+        }
+        if (coverIndex != null) {
+            return coverRecord(id);
+        }
+        int ptr = seekRecord(idxFile, id);
+        if (ptr == -1) {
+            return null;
+        }
+        record = readRecord(binFile, ptr);
+        if (idField.getInt(record) < 0) { // deleted record
+            return null;
+        }
+        if (recordCache != null) {
+            recordCache.put(id, record);
+        }
+        return record;
+    } // findRecord()
 
+    /*---------------------------------------------------------------------
+    |  Method readRecord(RandomAccessFile binFile, int ptr)
+    |
+    |  Purpose:  Reads the whole record at ptr in the .bin file with one
+    |            seek and one read. For a .cbin file ptr is the record
+    |            number, and its block is read and decompressed instead.
+    |
+    |  Pre-condition:  The file is open and ptr is valid
+    |
+    |  Post-condition: The file remains open
+    |
+    |  Parameters:
+    |       binFile -- The binary file stream
+    |           ptr -- The location in file
+    |
+    |  Returns: The recordLength bytes of the record
+    *-------------------------------------------------------------------*/
+    private static byte[] readRecord(RandomAccessFile binFile, int ptr) {
+        byte[] record = new byte[recordLength];
+        try {
+            if (compactFile != null) {
+                compactCodec.encode(compactFile.fetchRecord(ptr), record);
+                return record;
+            }
+            binFile.seek(ptr);
+            binFile.readFully(record);
         } catch (IOException e) {
-            System.out.println("I/O Error: Could not read from file");
+            errors.println("I/O Error: Could not read from file");
             System.exit(-1);
         }
+        return record;
+    } // readRecord()
+
+    /*---------------------------------------------------------------------
+    |  Method printRecord(byte[] record)
+    |
+    |  Purpose:  Prints out the EIA ID number, the name, and Solar Cap AC
+    |            of a record read from the .bin file
+    |
+    |  Pre-condition:  record holds a whole record
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |        record -- The bytes of the record
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private static void printRecord(byte[] record) {
+        System.out.println(formatRecord(record));
     } // printRecord()
+
+    /*---------------------------------------------------------------------
+    |  Method coverRecord(int id)
+    |
+    |  Purpose:  Looks id up in the covering index. Only the EIA ID, name
+    |            and Solar Cap AC of the record returned are filled in,
+    |            which is all formatRecord() reads.
+    |
+    |  Pre-condition:  The covering index is open
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |           id -- The EIA ID
+    |
+    |  Returns: The record, or null if not found
+    *-------------------------------------------------------------------*/
+    private static byte[] coverRecord(int id) {
+        if (id < 0) { // negative keys are never stored
+            return null;
+        }
+        byte[] record = new byte[recordLength];
+        try {
+            return coverIndex.lookup(id, record) == -1 ? null : record;
+        } catch (IOException e) {
+            errors.println("Error: Could not read the covering index");
+            System.exit(-1);
+        }
+        return null;
+    } // coverRecord()
+
+    /* The EIA ID, name and Solar Cap AC of a record as one line */
+    private static String formatRecord(byte[] record) {
+        int id = idField.getInt(record);
+        String name = nameField.getString(record);
+        double capAC = capACField.getDouble(record);
+
+        return "[" + id + "] [" + name + "] [" + capAC + "]";
+    } // formatRecord()
 } // Class Prog22
\ No newline at end of file
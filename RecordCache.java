@@ -0,0 +1,137 @@
+/*
+ * RecordCache.java -- Keeps the raw bytes of the most recently used .bin
+ * records, keyed by EIA ID. A lookup of a cached ID needs neither the
+ * index nor the .bin file. When the cache is full the record used least
+ * recently is dropped. Every record of a .bin file has the same length,
+ * so the memory used is at most capacity * record length bytes.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class RecordCache {
+    /*+----------------------------------------------------------------------
+    ||  Class RecordCache
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: A least recently used cache from EIA ID to the bytes
+    ||                  of its record, with hit, miss and eviction counts.
+    ||                  Safe to use from many threads.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: RecordCache(int capacity)
+    ||
+    ||   Class Methods: None
+    ||
+    ||   Inst. Methods: byte[] get(int id)
+    ||                  void put(int id, byte[] record)
+    ||                  void invalidate(int id)
+    ||                  int size()
+    ||                  long getHits()
+    ||                  long getMisses()
+    ||                  long getEvictions()
+    ||                  String getStats()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private int capacity;                       // Most records held
+    private LinkedHashMap<Integer, byte[]> records; // In order of use
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /* Getter methods */
+    public synchronized int size() { return records.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    /*---------------------------------------------------------------------
+    |  Constructor RecordCache(int capacity)
+    |
+    |  Purpose:  Makes an empty cache that holds at most capacity records.
+    |            The map is kept in access order so the first entry is
+    |            always the least recently used one.
+    |
+    |  Pre-condition:  capacity > 0
+    |
+    |  Post-condition: The cache is empty
+    |
+    |  Parameters:
+    |     capacity -- Most records held at once
+    *-------------------------------------------------------------------*/
+    public RecordCache(int capacity) {
+        this.capacity = capacity;
+        records = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> e) {
+                if (size() > RecordCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    } // RecordCache()
+
+    /*---------------------------------------------------------------------
+    |  Method get(int id)
+    |
+    |  Purpose:  Returns the cached record of an EIA ID and marks it as the
+    |            most recently used.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The hit or miss is counted
+    |
+    |  Parameters:
+    |           id -- The EIA ID
+    |
+    |  Returns: The record's bytes, or null if it is not cached. The array
+    |           is shared with the cache and must not be changed.
+    *-------------------------------------------------------------------*/
+    public synchronized byte[] get(int id) {
+        byte[] record = records.get(id);
+        if (record == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return record;
+    } // get()
+
+    /* Caches the bytes of a record, dropping the least recently used one
+       if the cache is full */
+    public synchronized void put(int id, byte[] record) {
+        records.put(id, record);
+    } // put()
+
+    /* Drops a record, used when it is changed or deleted in the .bin file */
+    public synchronized void invalidate(int id) {
+        records.remove(id);
+    } // invalidate()
+
+    /* Hits, misses and evictions as one line */
+    public synchronized String getStats() {
+        long total = hits + misses;
+        return "Record cache: " + hits + " hits, " + misses + " misses, "
+                + evictions + " evictions, hit rate "
+                + (total == 0 ? 0 : (100 * hits / total)) + "%";
+    } // getStats()
+} // class RecordCache
@@ -0,0 +1,287 @@
+/*
+ * RecordCodec.java -- Reads and writes the fields of records laid out by
+ * a RecordSchema. An Accessor is looked up once by field name and then
+ * reads its field at a fixed offset, from a byte[] record through a
+ * VarHandle view or from a ByteBuffer holding many records, so getting a
+ * number out of a record makes no objects.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+public class RecordCodec {
+    /*+----------------------------------------------------------------------
+    ||  Class RecordCodec
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Hands out typed accessors for the fields of a
+    ||                  RecordSchema and fills records from SolarEntries.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: RecordCodec(RecordSchema schema)
+    ||
+    ||   Class Methods: None
+    ||
+    ||   Inst. Methods: RecordSchema getSchema()
+    ||                  Accessor accessor(String name, RecordSchema.Type type)
+    ||                  Accessor optional(String name, RecordSchema.Type type)
+    ||                  byte[] newRecord()
+    ||                  void encode(SolarEntries s, byte[] record)
+    ||                  SolarEntries decode(ByteBuffer buf, int at)
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    // Big endian, like RandomAccessFile and ByteBuffer write them
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(
+            int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(
+            long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle DOUBLE = MethodHandles.byteArrayViewVarHandle(
+            double[].class, ByteOrder.BIG_ENDIAN);
+
+    /* Reads and writes one field. Each method is for one type: the
+       codec only hands out an accessor whose type matches its field */
+    public static final class Accessor {
+        private final int offset;
+        private final int width;
+
+        private Accessor(RecordSchema.Field field) {
+            offset = field.getOffset();
+            width = field.getWidth();
+        }
+
+        public int getOffset() { return offset; }
+        public int getWidth() { return width; }
+
+        public int getInt(byte[] record) {
+            return (int) INT.get(record, offset);
+        }
+
+        public long getLong(byte[] record) {
+            return (long) LONG.get(record, offset);
+        }
+
+        public double getDouble(byte[] record) {
+            return (double) DOUBLE.get(record, offset);
+        }
+
+        /* The string with its padding, as Prog22 has always printed it */
+        public String getString(byte[] record) {
+            return new String(record, offset, width);
+        }
+
+        /* The same, for the record starting at buf[at] */
+        public String getString(ByteBuffer buf, int at) {
+            byte[] b = new byte[width];
+            buf.get(at + offset, b);
+            return new String(b);
+        }
+
+        public int getInt(ByteBuffer buf, int at) {
+            return buf.getInt(at + offset);
+        }
+
+        public long getLong(ByteBuffer buf, int at) {
+            return buf.getLong(at + offset);
+        }
+
+        public double getDouble(ByteBuffer buf, int at) {
+            return buf.getDouble(at + offset);
+        }
+
+        public void putInt(byte[] record, int value) {
+            INT.set(record, offset, value);
+        }
+
+        public void putLong(byte[] record, long value) {
+            LONG.set(record, offset, value);
+        }
+
+        public void putDouble(byte[] record, double value) {
+            DOUBLE.set(record, offset, value);
+        }
+
+        /* One byte per char, cut to the width and padded with nulls */
+        public void putString(byte[] record, String value) {
+            int len = Math.min(value.length(), width);
+            for (int i = 0; i < width; i++) {
+                record[offset + i] = i < len ? (byte) value.charAt(i) : 0;
+            }
+        }
+    } // class Accessor
+
+    private final RecordSchema schema;
+
+    // The Solar fields encode() fills, null where the schema has none
+    private final Accessor id, name, cod, state;
+    private final Accessor latitude, longitude, avgGHI;
+    private final Accessor capacityAC, capacityDC;
+
+    /* Getter method */
+    public RecordSchema getSchema() { return schema; }
+
+    /* Constructor */
+    public RecordCodec(RecordSchema schema) {
+        this.schema = schema;
+        id = accessor(RecordSchema.ID, RecordSchema.Type.INT);
+        name = optional(RecordSchema.NAME, RecordSchema.Type.STRING);
+        cod = optional(RecordSchema.COD, RecordSchema.Type.STRING);
+        state = optional(RecordSchema.STATE, RecordSchema.Type.STRING);
+        latitude = optional(RecordSchema.LATITUDE, RecordSchema.Type.DOUBLE);
+        longitude = optional(RecordSchema.LONGITUDE, RecordSchema.Type.DOUBLE);
+        avgGHI = optional(RecordSchema.AVG_GHI, RecordSchema.Type.DOUBLE);
+        capacityAC = optional(RecordSchema.CAPACITY_AC,
+                RecordSchema.Type.DOUBLE);
+        capacityDC = optional(RecordSchema.CAPACITY_DC,
+                RecordSchema.Type.DOUBLE);
+    } // RecordCodec()
+
+    /*---------------------------------------------------------------------
+    |  Method accessor(String name, RecordSchema.Type type)
+    |
+    |  Purpose:  Finds the field called name and checks its type
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |         name -- The field's name in the schema
+    |         type -- The type the caller will read it as
+    |
+    |  Returns: The field's accessor. Throws IllegalArgumentException if
+    |           the records have no such field or it has another type.
+    *-------------------------------------------------------------------*/
+    public Accessor accessor(String name, RecordSchema.Type type) {
+        Accessor a = optional(name, type);
+        if (a == null) {
+            throw new IllegalArgumentException("The records have no "
+                    + type.name().toLowerCase() + " field " + name);
+        }
+        return a;
+    } // accessor()
+
+    /* The same as accessor(), but null if there is no such field */
+    public Accessor optional(String name, RecordSchema.Type type) {
+        RecordSchema.Field f = schema.field(name);
+        return f == null || f.getType() != type ? null : new Accessor(f);
+    } // optional()
+
+    /* An empty record; every field is 0 or nulls */
+    public byte[] newRecord() {
+        return new byte[schema.getRecordLength()];
+    } // newRecord()
+
+    /*---------------------------------------------------------------------
+    |  Method encode(SolarEntries s, byte[] record)
+    |
+    |  Purpose:  Writes the fields of a SolarEntries into a record. Fields
+    |            of the schema that SolarEntries does not have are set to
+    |            0, and Solar fields the schema does not have are left out.
+    |            The capacities go where SolarEntries.dumpObject() has
+    |            always put them (see RecordSchema.solar()).
+    |
+    |  Pre-condition:  record is getRecordLength() bytes long
+    |
+    |  Post-condition: record holds the entry
+    |
+    |  Parameters:
+    |            s -- The entry
+    |       record -- The record to fill
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void encode(SolarEntries s, byte[] record) {
+        Arrays.fill(record, (byte) 0);
+        id.putInt(record, s.getEIAID());
+        if (name != null) {
+            name.putString(record, s.getProjectName());
+        }
+        if (cod != null) {
+            cod.putString(record, s.getSolarCOD());
+        }
+        if (state != null) {
+            state.putString(record, s.getState());
+        }
+        if (latitude != null) {
+            latitude.putDouble(record, s.getLatitude());
+        }
+        if (longitude != null) {
+            longitude.putDouble(record, s.getLongitude());
+        }
+        if (avgGHI != null) {
+            avgGHI.putDouble(record, s.getAvgGHI());
+        }
+        if (capacityAC != null) {
+            capacityAC.putDouble(record, s.getSolarCapacityDC());
+        }
+        if (capacityDC != null) {
+            capacityDC.putDouble(record, s.getSolarCapacityAC());
+        }
+    } // encode()
+
+    /*---------------------------------------------------------------------
+    |  Method decode(ByteBuffer buf, int at)
+    |
+    |  Purpose:  Makes a SolarEntries from the record at buf[at], the
+    |            same as SolarEntries.fetchObject() reads it: strings keep
+    |            their padding and fields the schema does not have are 0
+    |
+    |  Pre-condition:  buf holds a whole record at 'at'
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |          buf -- Buffer holding the record
+    |           at -- Where the record starts
+    |
+    |  Returns: The entry
+    *-------------------------------------------------------------------*/
+    public SolarEntries decode(ByteBuffer buf, int at) {
+        SolarEntries s = new SolarEntries();
+        s.setEIAID(id.getInt(buf, at));
+        if (name != null) {
+            s.setProjectName(name.getString(buf, at));
+        }
+        if (cod != null) {
+            s.setSolarCOD(cod.getString(buf, at));
+        }
+        if (state != null) {
+            s.setState(state.getString(buf, at));
+        }
+        if (latitude != null) {
+            s.setLatitude(latitude.getDouble(buf, at));
+        }
+        if (longitude != null) {
+            s.setLongitude(longitude.getDouble(buf, at));
+        }
+        if (avgGHI != null) {
+            s.setAvgGHI(avgGHI.getDouble(buf, at));
+        }
+        if (capacityAC != null) {
+            s.setSolarCapacityDC(capacityAC.getDouble(buf, at));
+        }
+        if (capacityDC != null) {
+            s.setSolarCapacityAC(capacityDC.getDouble(buf, at));
+        }
+        return s;
+    } // decode()
+} // class RecordCodec
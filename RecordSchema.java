@@ -0,0 +1,312 @@
+/*
+ * RecordSchema.java -- The layout of the records in a .bin file: the name,
+ * type and width of each field in order, with the offset of every field
+ * worked out once. Readers find a field by name through a RecordCodec
+ * instead of adding up the widths of the fields before it, so a column
+ * added to the schema does not move the fields they read.
+ *
+ * The schema of <file>.bin is kept next to it in <file>.bin.schema, a text
+ * file Prog1A writes:
+ *   LinearHashing schema 1
+ *   <field name> int|long|double|string <width>    (one line per field)
+ * A .bin file without one (made before schemas) has the nine Solar fields
+ * of SolarEntries, with the string widths from the top of the .bin file.
+ * The first field is always the int EIA ID, which the indexes read and
+ * which is negative for a deleted record.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+public class RecordSchema {
+    /*+----------------------------------------------------------------------
+    ||  Class RecordSchema
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Holds the fields of a record and their offsets, and
+    ||                  reads and writes the .schema file.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: SCHEMA_MAGIC: first line of a .schema file
+    ||                  SUFFIX: added to the .bin file name
+    ||                  The names of the Solar fields (ID, NAME, ...)
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: RecordSchema(List<Field> fields)
+    ||
+    ||   Class Methods: RecordSchema solar(int nameLen, int codLen,
+    ||                                     int stateLen)
+    ||                  RecordSchema forBin(String binFileName)
+    ||                  RecordSchema parse(List<String> lines)
+    ||
+    ||   Inst. Methods: int getRecordLength()
+    ||                  int getNumFields()
+    ||                  Field getField(int i)
+    ||                  Field field(String name)
+    ||                  int stringWidth(String name)
+    ||                  void write(String binFileName)
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final String SCHEMA_MAGIC = "LinearHashing schema 1";
+    public static final String SUFFIX = ".schema";
+
+    public static final String ID = "eia_id";
+    public static final String NAME = "project_name";
+    public static final String COD = "solar_cod";
+    public static final String STATE = "state";
+    public static final String LATITUDE = "latitude";
+    public static final String LONGITUDE = "longitude";
+    public static final String AVG_GHI = "avg_ghi";
+    public static final String CAPACITY_AC = "capacity_ac";
+    public static final String CAPACITY_DC = "capacity_dc";
+
+    /* The field types and the width of the fixed ones */
+    public enum Type {
+        INT(4), LONG(8), DOUBLE(8), STRING(0);
+
+        private final int width;
+
+        Type(int width) {
+            this.width = width;
+        }
+    } // enum Type
+
+    /* One field: its name, type, width and offset in the record */
+    public static final class Field {
+        private final String name;
+        private final Type type;
+        private final int width;
+        private final int offset;
+
+        /* A field to give the constructor of RecordSchema. width is only
+           used for strings */
+        public Field(String name, Type type, int width) {
+            this(name, type, type == Type.STRING ? width : type.width, -1);
+        }
+
+        private Field(String name, Type type, int width, int offset) {
+            this.name = name;
+            this.type = type;
+            this.width = width;
+            this.offset = offset;
+        }
+
+        public String getName() { return name; }
+        public Type getType() { return type; }
+        public int getWidth() { return width; }
+        public int getOffset() { return offset; }
+    } // class Field
+
+    private final Field[] fields;
+    private final Map<String, Field> byName = new HashMap<>();
+    private final int recordLength;
+
+    /* Getter methods */
+    public int getRecordLength() { return recordLength; }
+    public int getNumFields() { return fields.length; }
+    public Field getField(int i) { return fields[i]; }
+
+    /* Constructor: lays copies of the fields out one after the other */
+    public RecordSchema(List<Field> fieldList) {
+        if (fieldList.isEmpty() || fieldList.get(0).type != Type.INT) {
+            throw new IllegalArgumentException("The first field must be the"
+                    + " int EIA ID");
+        }
+        fields = new Field[fieldList.size()];
+        int offset = 0;
+        for (int i = 0; i < fields.length; i++) {
+            Field f = fieldList.get(i);
+            if (f.width < 1) {
+                throw new IllegalArgumentException("Field " + f.name
+                        + " has no width");
+            }
+            fields[i] = new Field(f.name, f.type, f.width, offset);
+            if (byName.put(f.name, fields[i]) != null) {
+                throw new IllegalArgumentException("Field " + f.name
+                        + " appears twice");
+            }
+            offset += f.width;
+        }
+        recordLength = offset;
+    } // RecordSchema()
+
+    /* The field called name, or null if the records have none */
+    public Field field(String name) {
+        return byName.get(name);
+    } // field()
+
+    /* The width of the string field called name, 0 if there is none */
+    public int stringWidth(String name) {
+        Field f = byName.get(name);
+        return f == null || f.type != Type.STRING ? 0 : f.width;
+    } // stringWidth()
+
+    /*---------------------------------------------------------------------
+    |  Method solar(int nameLen, int codLen, int stateLen)
+    |
+    |  Purpose:  The layout SolarEntries.dumpObject() has always written.
+    |            Prog1A fills solarCapacityDC from the CSV's MW-AC column
+    |            and solarCapacityAC from MW-DC, so the field written first
+    |            holds the AC capacity and is named capacity_ac here.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |      nameLen -- Padded length of the project names
+    |       codLen -- Padded length of the Solar CODs
+    |     stateLen -- Padded length of the states
+    |
+    |  Returns: The schema
+    *-------------------------------------------------------------------*/
+    public static RecordSchema solar(int nameLen, int codLen, int stateLen) {
+        return new RecordSchema(Arrays.asList(
+                new Field(ID, Type.INT, 4),
+                new Field(NAME, Type.STRING, nameLen),
+                new Field(COD, Type.STRING, codLen),
+                new Field(STATE, Type.STRING, stateLen),
+                new Field(LATITUDE, Type.DOUBLE, 8),
+                new Field(LONGITUDE, Type.DOUBLE, 8),
+                new Field(AVG_GHI, Type.DOUBLE, 8),
+                new Field(CAPACITY_AC, Type.DOUBLE, 8),
+                new Field(CAPACITY_DC, Type.DOUBLE, 8)));
+    } // solar()
+
+    /*---------------------------------------------------------------------
+    |  Method forBin(String binFileName)
+    |
+    |  Purpose:  Reads the schema of a .bin file from its .schema file, or
+    |            makes the Solar schema from the header of the .bin file if
+    |            there is no .schema file. The string fields the header
+    |            gives a width for must have that width in the schema too.
+    |
+    |  Pre-condition:  The .bin file was made by Prog1A
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |  binFileName -- Name of the .bin file
+    |
+    |  Returns: The schema
+    *-------------------------------------------------------------------*/
+    public static RecordSchema forBin(String binFileName) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BinScanner.HEADER_SIZE);
+        try (FileChannel ch = FileChannel.open(Paths.get(binFileName),
+                StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (ch.read(header, header.position()) < 0) {
+                    throw new EOFException(binFileName + " has no header");
+                }
+            }
+        }
+        int nameLen = header.getInt(4);
+        int codLen = header.getInt(8);
+        int stateLen = header.getInt(12);
+
+        Path schemaFile = Paths.get(binFileName + SUFFIX);
+        if (!Files.exists(schemaFile)) {
+            return solar(nameLen, codLen, stateLen);
+        }
+        RecordSchema schema;
+        try {
+            schema = parse(Files.readAllLines(schemaFile));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(schemaFile + ": " + e.getMessage());
+        }
+        if (schema.stringWidth(NAME) != nameLen
+                || schema.stringWidth(COD) != codLen
+                || schema.stringWidth(STATE) != stateLen) {
+            throw new IOException(schemaFile + " does not match the header"
+                    + " of " + binFileName);
+        }
+        return schema;
+    } // forBin()
+
+    /* Makes a schema from the lines of a .schema file */
+    public static RecordSchema parse(List<String> lines) {
+        if (lines.isEmpty() || !lines.get(0).trim().equals(SCHEMA_MAGIC)) {
+            throw new IllegalArgumentException("not a schema file");
+        }
+        List<Field> list = new ArrayList<>();
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] f = line.split("\\s+");
+            Type type;
+            try {
+                type = Type.valueOf(f[1].toUpperCase());
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("line " + (i + 1)
+                        + " has no known type");
+            }
+            int width = type.width;
+            if (type == Type.STRING) {
+                try {
+                    width = Integer.parseInt(f[2]);
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IllegalArgumentException("line " + (i + 1)
+                            + " needs the width of the string");
+                }
+            }
+            list.add(new Field(f[0], type, width));
+        }
+        return new RecordSchema(list);
+    } // parse()
+
+    /*---------------------------------------------------------------------
+    |  Method write(String binFileName)
+    |
+    |  Purpose:  Writes the schema as the .schema file of a .bin file,
+    |            through a .tmp file renamed into place
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: forBin(binFileName) reads this schema
+    |
+    |  Parameters:
+    |  binFileName -- Name of the .bin file
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void write(String binFileName) throws IOException {
+        StringBuilder sb = new StringBuilder(SCHEMA_MAGIC).append('\n');
+        for (Field f : fields) {
+            sb.append(f.name).append(' ')
+                    .append(f.type.name().toLowerCase());
+            if (f.type == Type.STRING) {
+                sb.append(' ').append(f.width);
+            }
+            sb.append('\n');
+        }
+        String tmpName = binFileName + SUFFIX + ".tmp";
+        try (FileChannel ch = FileChannel.open(Paths.get(tmpName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer text = ByteBuffer.wrap(sb.toString().getBytes());
+            while (text.hasRemaining()) {
+                ch.write(text);
+            }
+            ch.force(true);
+        }
+        LinearHashIndex.publish(tmpName, binFileName + SUFFIX);
+    } // write()
+} // class RecordSchema
@@ -0,0 +1,209 @@
+/*
+ * RecordSchemaTest.java -- Checks that the readers find the fields of a
+ * record through the .bin file's schema rather than adding up the Solar
+ * widths by hand. It writes a .bin file whose schema has two columns the
+ * Solar layout does not (a string after the EIA ID and a double after the
+ * state), so every field after them moves, and checks that Prog22, the
+ * LookupServer, the covering index and the keyed name index still print
+ * the right name and Solar Cap AC. Exits with 1 if anything is wrong.
+ *
+ * Usage: java RecordSchemaTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class RecordSchemaTest {
+    /*+----------------------------------------------------------------------
+    ||  Class RecordSchemaTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Reads a .bin file with extra schema columns through
+    ||                  every reader that prints a record.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static int failures;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Writes three records with the extra columns, indexes them
+    |            and reads each one back through every reader
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The temporary folder is removed
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws IOException {
+        Path dir = Files.createTempDirectory("recordschema");
+        String binFileName = dir.resolve("t.bin").toString();
+        String idxFileName = dir.resolve("t.idx").toString();
+        String covFileName = dir.resolve("t.cov").toString();
+        String keyFileName = dir.resolve("t.kidx").toString();
+        PrintStream stdout = System.out;
+        InputStream stdin = System.in;
+        try {
+            RecordSchema schema = RecordSchema.parse(Arrays.asList(
+                    RecordSchema.SCHEMA_MAGIC,
+                    RecordSchema.ID + " int",
+                    "region string 6",
+                    RecordSchema.NAME + " string 20",
+                    RecordSchema.COD + " string 10",
+                    RecordSchema.STATE + " string 2",
+                    "tilt double",
+                    RecordSchema.LATITUDE + " double",
+                    RecordSchema.LONGITUDE + " double",
+                    RecordSchema.AVG_GHI + " double",
+                    RecordSchema.CAPACITY_AC + " double",
+                    RecordSchema.CAPACITY_DC + " double"));
+            RecordCodec codec = new RecordCodec(schema);
+            RecordCodec.Accessor region = codec.accessor("region",
+                    RecordSchema.Type.STRING);
+            RecordCodec.Accessor tilt = codec.accessor("tilt",
+                    RecordSchema.Type.DOUBLE);
+            try (DataOutputStream out = new DataOutputStream(
+                    new FileOutputStream(binFileName))) {
+                out.writeInt(3);
+                out.writeInt(20);
+                out.writeInt(10);
+                out.writeInt(2);
+                byte[] record = codec.newRecord();
+                for (int id = 1; id <= 3; id++) {
+                    SolarEntries s = new SolarEntries();
+                    s.setEIAID(id * 7);
+                    s.setProjectName("Plant " + id);
+                    s.setSolarCOD("1/1/2000");
+                    s.setState("AZ");
+                    s.setSolarCapacityDC(10.5 * id);    // the MW-AC column
+                    s.setSolarCapacityAC(99.0);         // the MW-DC column
+                    codec.encode(s, record);
+                    region.putString(record, "WEST");
+                    tilt.putDouble(record, -1.0);
+                    out.write(record);
+                }
+            }
+            schema.write(binFileName);
+            ParallelIndexBuilder.build(binFileName, idxFileName, 1,
+                    HashFunction.MODULO);
+
+            String printed = run("14\n-1\n", () -> Prog22.main(
+                    new String[] {idxFileName, binFileName}));
+            expect(printed.contains("[14] [Plant 2") && printed.contains(
+                    "] [21.0]"), "Prog22 prints record 14 (got " + printed
+                    + ")");
+
+            LookupServer server = new LookupServer(idxFileName, binFileName);
+            expect(server.get(21).equals("OK\t21\tPlant 3\t31.5\n"),
+                    "LookupServer prints record 21 (got " + server.get(21)
+                    + ")");
+            StringWriter range = new StringWriter();
+            server.range(0, 100, range);
+            expect(range.toString().equals("OK\t7\tPlant 1\t10.5\n"
+                    + "OK\t14\tPlant 2\t21.0\nOK\t21\tPlant 3\t31.5\n"),
+                    "LookupServer range finds every record");
+
+            CoveringIndex.build(idxFileName, binFileName, covFileName,
+                    CoveringIndex.parseColumns("name,capacity_ac,state"));
+            CoveringIndex cover = CoveringIndex.open(covFileName,
+                    binFileName);
+            byte[] record = codec.newRecord();
+            int ptr = cover.lookup(7, record);
+            cover.close();
+            expect(ptr == BinScanner.HEADER_SIZE, "the covering index points"
+                    + " at the first record");
+            expect(codec.accessor(RecordSchema.ID, RecordSchema.Type.INT)
+                    .getInt(record) == 7, "the covering index fills the ID");
+            expect(codec.accessor(RecordSchema.NAME, RecordSchema.Type.STRING)
+                    .getString(record).trim().equals("Plant 1"), "the"
+                    + " covering index fills the name");
+            expect(codec.accessor(RecordSchema.STATE,
+                    RecordSchema.Type.STRING).getString(record).equals("AZ"),
+                    "the covering index fills the state");
+            expect(codec.accessor(RecordSchema.CAPACITY_AC,
+                    RecordSchema.Type.DOUBLE).getDouble(record) == 10.5,
+                    "the covering index fills the Solar Cap AC");
+            printed = run("14\n-1\n", () -> Prog22.main(new String[] {
+                    idxFileName, binFileName, "-covering", covFileName}));
+            expect(printed.contains("[14] [Plant 2") && printed.contains(
+                    "] [21.0]"), "Prog22 -covering prints record 14");
+
+            run("", () -> KeyedHashIndex.main(new String[] {"build",
+                    binFileName, keyFileName}));
+            printed = run("Plant 3\nPlant 9\n", () -> KeyedHashIndex.main(
+                    new String[] {"get", keyFileName, binFileName}));
+            expect(printed.contains("[21] [Plant 3") && printed.contains(
+                    "] [31.5]"), "KeyedHashIndex finds Plant 3 (got "
+                    + printed + ")");
+            expect(printed.contains("The project Plant 9 was not found."),
+                    "KeyedHashIndex does not find Plant 9");
+        } finally {
+            System.setOut(stdout);
+            System.setIn(stdin);
+            for (String f : new String[] {binFileName, idxFileName,
+                    covFileName, keyFileName, idxFileName + ".wal",
+                    binFileName + RecordSchema.SUFFIX}) {
+                Files.deleteIfExists(Paths.get(f));
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "OK: fields found through the"
+                + " schema" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* A program run with its own input and output */
+    private interface Run {
+        void run() throws IOException;
+    }
+
+    /* Runs a program with input on System.in and returns what it printed */
+    private static String run(String input, Run program) throws IOException {
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        System.setOut(new PrintStream(printed, true));
+        try {
+            program.run();
+        } finally {
+            System.setOut(stdout);
+        }
+        return printed.toString();
+    } // run()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class RecordSchemaTest
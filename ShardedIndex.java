@@ -0,0 +1,770 @@
+/*
+ * ShardedIndex.java -- Splits a .bin file into several shards, each a .bin
+ * file of its own with its own index file, and routes lookups and scans to
+ * them. Every shard is an ordinary pair that Prog22 or IndexVerifier can
+ * open, and each index splits on its own schedule, so the writes of a
+ * split are spread over the shards and the shards can sit on different
+ * disks.
+ *
+ * Usage: java ShardedIndex build <bin file> <manifest> <shards> [-hash f]
+ *        java ShardedIndex get <manifest> [file of IDs, - for stdin]
+ *        java ShardedIndex scan <manifest>
+ *
+ * The shard of a key is picked by the high bits of the key mixed with the
+ * Murmur3 finalizer (see shardOf()), while a bucket inside a shard is
+ * picked by the low bits, so the keys of one shard still spread over all
+ * of its buckets.
+ *
+ * The manifest is a text file:
+ *   LinearHashing shards 1
+ *   shards <count>
+ *   <shard number> <index file> <bin file>     (one line per shard)
+ * A relative file name is taken from the manifest's directory, so moving a
+ * shard to another disk only means giving its full path here.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.DoubleAdder;
+
+public class ShardedIndex {
+    /*+----------------------------------------------------------------------
+    ||  Class ShardedIndex
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Builds a sharded layout from one .bin file and
+    ||                  answers lookups and scans over all its shards, one
+    ||                  thread per shard.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: MANIFEST_MAGIC: first line of a manifest
+    ||                  READ_SIZE: about how many bytes of records are read
+    ||                             at once
+    ||                  WRITE_SIZE: bytes buffered for each shard's .bin
+    ||                              file while building
+    ||                  BATCH: IDs looked up at once by "get"
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None, use open() or build()
+    ||
+    ||   Class Methods: void main(String args[])
+    ||                  void build(String binFileName, String manifestName,
+    ||                             int numShards, HashFunction hash)
+    ||                  ShardedIndex open(String manifestName)
+    ||                  int shardOf(int key, int numShards)
+    ||
+    ||   Inst. Methods: byte[] lookup(int key)
+    ||                  byte[][] lookupMany(int[] keys, int count)
+    ||                  long scan(RecordVisitor visitor)
+    ||                  int getNumShards()
+    ||                  void close()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final String MANIFEST_MAGIC = "LinearHashing shards 1";
+    public static final int READ_SIZE = 4 << 20;
+    public static final int WRITE_SIZE = 1 << 16;
+    public static final int BATCH = 4096;
+
+    /* Gets every live record of a scan. Called by one thread per shard,
+       so it has to be thread safe. record holds exactly one record */
+    public interface RecordVisitor {
+        void visit(int shard, ByteBuffer record);
+    }
+
+    /* One open shard */
+    private static class Shard {
+        LinearHashIndex index;
+        FileChannel bin;
+        int numRecords;
+    }
+
+    private Shard[] shards;
+    private int projectNameLen;
+    private int solarCODLen;
+    private int stateLen;
+    private int recordLength;
+    private RecordCodec.Accessor nameField;     // Printed by "get"
+    private RecordCodec.Accessor capACField;    // Printed and summed
+    private ExecutorService pool;       // One thread per shard
+
+    /* Getter method */
+    public int getNumShards() { return shards.length; }
+
+    private ShardedIndex() {
+    }
+
+    /*---------------------------------------------------------------------
+    |  Method shardOf(int key, int numShards)
+    |
+    |  Purpose:  Picks the shard of a key from the high bits of the key
+    |            mixed by the Murmur3 finalizer: the mixed value, which is
+    |            below 2^31, times numShards, divided by 2^31. This works
+    |            for any number of shards, not only powers of 2.
+    |
+    |  Pre-condition:  numShards is at least 1
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |          key -- The EIA ID
+    |    numShards -- Number of shards
+    |
+    |  Returns: A shard number from 0 to numShards - 1
+    *-------------------------------------------------------------------*/
+    public static int shardOf(int key, int numShards) {
+        return (int) (((long) HashFunction.MURMUR3.mix(key) * numShards)
+                >>> 31);
+    } // shardOf()
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Runs the build, get or scan command
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |         args -- The command and its arguments
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        if (args.length < 2 || (args[0].equals("build") && args.length < 4)) {
+            System.out.println("Usage: java ShardedIndex build <bin file>"
+                    + " <manifest> <shards> [-hash modulo|murmur3]");
+            System.out.println("       java ShardedIndex get <manifest>"
+                    + " [file of IDs, - for stdin]");
+            System.out.println("       java ShardedIndex scan <manifest>");
+            System.exit(-1);
+        }
+
+        if (args[0].equals("build")) {
+            int numShards = 0;
+            HashFunction hash = HashFunction.MODULO;
+            try {
+                numShards = Integer.parseInt(args[3]);
+            } catch (NumberFormatException e) {
+                numShards = 0;
+            }
+            if (numShards < 1) {
+                System.out.println("Please give the number of shards as a"
+                        + " positive integer.");
+                System.exit(-1);
+            }
+            if (args.length > 5 && args[4].equals("-hash")) {
+                hash = HashFunction.fromName(args[5]);
+                if (hash == null) {
+                    System.out.println("Please give -hash one of modulo or murmur3.");
+                    System.exit(-1);
+                }
+            }
+            try {
+                build(args[1], args[2], numShards, hash);
+            } catch (IOException e) {
+                System.out.println("Error: Could not build the shards: "
+                        + e.getMessage());
+                System.exit(-1);
+            }
+            System.out.println("Successfuly wrote " + args[2] + " and "
+                    + numShards + " shards");
+            return;
+        }
+
+        ShardedIndex sharded = null;
+        try {
+            sharded = open(args[1]);
+        } catch (IOException e) {
+            System.out.println("Error: Could not open " + args[1] + ": "
+                    + e.getMessage());
+            System.exit(-1);
+        }
+        try {
+            if (args[0].equals("get")) {
+                runGet(sharded, args.length > 2 ? args[2] : "-");
+            } else if (args[0].equals("scan")) {
+                runScan(sharded);
+            } else {
+                System.out.println("Unknown command " + args[0]);
+            }
+            sharded.close();
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        }
+    } // main()
+
+    /* Looks up the IDs in source, BATCH at a time, and prints a line for
+       each in the order given, like Prog22 -batch */
+    private static void runGet(ShardedIndex sharded, String source)
+            throws IOException {
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), 1 << 16));
+        int[] ids = new int[BATCH];
+        boolean[] valid = new boolean[BATCH];
+        int count = 0;
+        try (BufferedReader in = new BufferedReader(source.equals("-")
+                ? new InputStreamReader(System.in) : new FileReader(source))) {
+            String line;
+            boolean more = true;
+            while (more) {
+                line = in.readLine();
+                more = line != null;
+                if (more) {
+                    line = line.trim();
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        ids[count] = Integer.parseInt(line);
+                        valid[count] = true;
+                    } catch (NumberFormatException e) {
+                        valid[count] = false;
+                    }
+                    count++;
+                }
+                if (count == BATCH || (!more && count > 0)) {
+                    byte[][] records = sharded.lookupMany(ids, count);
+                    for (int i = 0; i < count; i++) {
+                        if (!valid[i]) {
+                            out.println("Please enter the integer represting the EIA ID number.");
+                        } else if (records[i] == null) {
+                            out.println("The target value " + ids[i]
+                                    + " was not found.");
+                        } else {
+                            out.println(sharded.formatRecord(records[i]));
+                        }
+                    }
+                    count = 0;
+                }
+            }
+        }
+        out.flush();
+    } // runGet()
+
+    /* Scans every shard at once and prints how many records each holds
+       and their total Solar Cap AC */
+    private static void runScan(ShardedIndex sharded) throws IOException {
+        long[] perShard = new long[sharded.getNumShards()];
+        DoubleAdder capacity = new DoubleAdder();
+        RecordCodec.Accessor capAC = sharded.capACField;
+        long start = System.nanoTime();
+        long total = sharded.scan((shard, record) -> {
+            perShard[shard]++;      // only this shard's thread adds here
+            capacity.add(capAC.getDouble(record, record.position()));
+        });
+        long millis = (System.nanoTime() - start) / 1000000;
+        for (int s = 0; s < perShard.length; s++) {
+            System.out.println("shard " + s + ": " + perShard[s] + " records");
+        }
+        System.out.printf("%d records, total Solar Cap AC %.1f MW, %d ms%n",
+                total, capacity.sum(), millis);
+    } // runScan()
+
+    /*---------------------------------------------------------------------
+    |  Method build(String binFileName, String manifestName, int numShards,
+    |               HashFunction hash)
+    |
+    |  Purpose:  Reads the .bin file READ_SIZE bytes at a time and copies
+    |            every live record to the .bin file of its shard, then
+    |            builds the index of every shard at the same time with
+    |            ParallelIndexBuilder and writes the manifest. The shard
+    |            files are named <manifest without extension>.<n>.bin and
+    |            .idx, next to the manifest. Every file is written to a
+    |            .tmp first and renamed when finished.
+    |
+    |  Pre-condition:  The .bin file was made by Prog1A and its EIA IDs
+    |                  are unique
+    |
+    |  Post-condition: The manifest and every shard are written
+    |
+    |  Parameters:
+    |  binFileName -- The .bin file to split
+    | manifestName -- The manifest to write
+    |    numShards -- Number of shards
+    |         hash -- Hash function of the shard indexes
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void build(String binFileName, String manifestName,
+            int numShards, HashFunction hash) throws IOException {
+        BinScanner scanner = new BinScanner(binFileName);
+        int numRecords = scanner.getNumRecords();
+        int recordLength = scanner.getRecordLength();
+        RecordSchema schema = scanner.getSchema();
+        ByteBuffer header = ByteBuffer.allocate(BinScanner.HEADER_SIZE);
+        header.putInt(0).putInt(scanner.getProjectNameLen())
+                .putInt(scanner.getSolarCODLen()).putInt(scanner.getStateLen());
+        scanner.close();
+
+        String base = manifestName.endsWith(".manifest")
+                ? manifestName.substring(0, manifestName.length() - 9)
+                : manifestName;
+        String[] binNames = new String[numShards];
+        String[] idxNames = new String[numShards];
+        for (int s = 0; s < numShards; s++) {
+            binNames[s] = base + "." + s + ".bin";
+            idxNames[s] = base + "." + s + ".idx";
+        }
+
+        // copy each record to its shard
+        FileChannel[] outs = new FileChannel[numShards];
+        ByteBuffer[] bufs = new ByteBuffer[numShards];
+        long[] written = new long[numShards];
+        int[] counts = new int[numShards];
+        try (FileChannel in = FileChannel.open(Paths.get(binFileName),
+                StandardOpenOption.READ)) {
+            for (int s = 0; s < numShards; s++) {
+                outs[s] = FileChannel.open(Paths.get(binNames[s] + ".tmp"),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                bufs[s] = ByteBuffer.allocate(Math.max(WRITE_SIZE,
+                        recordLength));
+                written[s] = BinScanner.HEADER_SIZE;
+            }
+            int perRead = Math.max(1, READ_SIZE / recordLength);
+            ByteBuffer block = ByteBuffer.allocate(perRead * recordLength);
+            for (int r = 0; r < numRecords; r += perRead) {
+                int count = Math.min(perRead, numRecords - r);
+                block.clear();
+                block.limit(count * recordLength);
+                long pos = BinScanner.HEADER_SIZE + (long) r * recordLength;
+                while (block.hasRemaining()) {
+                    int n = in.read(block, pos);
+                    if (n < 0) {
+                        throw new EOFException("The .bin file is shorter than"
+                                + " its record count");
+                    }
+                    pos += n;
+                }
+                for (int i = 0; i < count; i++) {
+                    int id = block.getInt(i * recordLength);
+                    if (id < 0) { // deleted record
+                        continue;
+                    }
+                    int s = shardOf(id, numShards);
+                    if (bufs[s].remaining() < recordLength) {
+                        written[s] = flush(outs[s], bufs[s], written[s]);
+                    }
+                    block.limit(i * recordLength + recordLength);
+                    block.position(i * recordLength);
+                    bufs[s].put(block);
+                    block.limit(count * recordLength);
+                    counts[s]++;
+                }
+            }
+            for (int s = 0; s < numShards; s++) {
+                flush(outs[s], bufs[s], written[s]);
+                header.putInt(0, counts[s]);
+                header.clear();
+                while (header.hasRemaining()) {
+                    outs[s].write(header, header.position());
+                }
+                outs[s].force(true);
+            }
+        } finally {
+            for (FileChannel ch : outs) {
+                if (ch != null) {
+                    ch.close();
+                }
+            }
+        }
+        for (int s = 0; s < numShards; s++) {
+            LinearHashIndex.publish(binNames[s] + ".tmp", binNames[s]);
+            schema.write(binNames[s]);
+        }
+
+        // index every shard at once, sharing the cores between them
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threadsEach = Math.max(1, cores / numShards);
+        ExecutorService builders = Executors.newFixedThreadPool(
+                Math.min(numShards, cores));
+        try {
+            List<Future<Integer>> done = new ArrayList<>();
+            for (int s = 0; s < numShards; s++) {
+                String bin = binNames[s];
+                String idx = idxNames[s];
+                done.add(builders.submit(() -> ParallelIndexBuilder.build(bin,
+                        idx, threadsEach, hash)));
+            }
+            for (Future<Integer> f : done) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted building the shards");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException(e.getCause());
+        } finally {
+            builders.shutdown();
+        }
+
+        // the manifest names the files relative to its own directory
+        StringBuilder sb = new StringBuilder();
+        sb.append(MANIFEST_MAGIC).append('\n');
+        sb.append("shards ").append(numShards).append('\n');
+        for (int s = 0; s < numShards; s++) {
+            sb.append(s).append(' ')
+                    .append(Paths.get(idxNames[s]).getFileName()).append(' ')
+                    .append(Paths.get(binNames[s]).getFileName()).append('\n');
+        }
+        Path tmp = Paths.get(manifestName + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer text = ByteBuffer.wrap(sb.toString().getBytes());
+            while (text.hasRemaining()) {
+                ch.write(text);
+            }
+            ch.force(true);
+        }
+        LinearHashIndex.publish(tmp.toString(), manifestName);
+    } // build()
+
+    /* Writes out what is in buf at pos and empties it */
+    private static long flush(FileChannel ch, ByteBuffer buf, long pos)
+            throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            pos += ch.write(buf, pos);
+        }
+        buf.clear();
+        return pos;
+    } // flush()
+
+    /*---------------------------------------------------------------------
+    |  Method open(String manifestName)
+    |
+    |  Purpose:  Reads the manifest and opens the index (read only) and
+    |            .bin file of every shard. All the shards must have records
+    |            of the same layout.
+    |
+    |  Pre-condition:  The manifest was written by build() or by hand in
+    |                  the same format
+    |
+    |  Post-condition: Every shard is open
+    |
+    |  Parameters:
+    |  manifestName -- Name of the manifest
+    |
+    |  Returns: The open sharded index
+    *-------------------------------------------------------------------*/
+    public static ShardedIndex open(String manifestName) throws IOException {
+        Path manifest = Paths.get(manifestName);
+        Path dir = manifest.toAbsolutePath().getParent();
+        List<String> lines = Files.readAllLines(manifest);
+        if (lines.size() < 2 || !lines.get(0).trim().equals(MANIFEST_MAGIC)) {
+            throw new IOException(manifestName + " is not a shard manifest");
+        }
+        String[] first = lines.get(1).trim().split("\\s+");
+        int numShards;
+        try {
+            numShards = Integer.parseInt(first[1]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException(manifestName + " has no shard count");
+        }
+        if (numShards < 1 || lines.size() < 2 + numShards) {
+            throw new IOException(manifestName + " does not list every shard");
+        }
+
+        ShardedIndex sharded = new ShardedIndex();
+        sharded.shards = new Shard[numShards];
+        try {
+            for (int i = 0; i < numShards; i++) {
+                String[] f = lines.get(2 + i).trim().split("\\s+");
+                int s = f.length == 3 ? Integer.parseInt(f[0]) : -1;
+                if (s < 0 || s >= numShards || sharded.shards[s] != null) {
+                    throw new IOException(manifestName + " line "
+                            + (3 + i) + " is not a shard");
+                }
+                Shard shard = new Shard();
+                sharded.shards[s] = shard;
+                shard.index = LinearHashIndex.open(dir.resolve(f[1]).toString(),
+                        false);
+                shard.bin = FileChannel.open(dir.resolve(f[2]),
+                        StandardOpenOption.READ);
+                ByteBuffer header = ByteBuffer.allocate(BinScanner.HEADER_SIZE);
+                while (header.hasRemaining()) {
+                    if (shard.bin.read(header, header.position()) < 0) {
+                        throw new IOException(f[2] + " has no header");
+                    }
+                }
+                shard.numRecords = header.getInt(0);
+                RecordSchema schema = RecordSchema.forBin(
+                        dir.resolve(f[2]).toString());
+                int length = schema.getRecordLength();
+                if (i == 0) {
+                    RecordCodec codec = new RecordCodec(schema);
+                    sharded.recordLength = length;
+                    sharded.nameField = codec.accessor(RecordSchema.NAME,
+                            RecordSchema.Type.STRING);
+                    sharded.capACField = codec.accessor(
+                            RecordSchema.CAPACITY_AC, RecordSchema.Type.DOUBLE);
+                    sharded.projectNameLen = header.getInt(4);
+                    sharded.solarCODLen = header.getInt(8);
+                    sharded.stateLen = header.getInt(12);
+                } else if (header.getInt(4) != sharded.projectNameLen
+                        || header.getInt(8) != sharded.solarCODLen
+                        || header.getInt(12) != sharded.stateLen
+                        || length != sharded.recordLength) {
+                    throw new IOException(f[2] + " has records of another"
+                            + " layout than the other shards");
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            sharded.close();
+            throw e instanceof IOException ? (IOException) e
+                    : e instanceof NumberFormatException
+                    ? new IOException(manifestName + " has a bad shard line")
+                    : new IOException(e.getMessage());
+        }
+        sharded.pool = Executors.newFixedThreadPool(numShards, r -> {
+            Thread t = new Thread(r, "shard");
+            t.setDaemon(true);
+            return t;
+        });
+        return sharded;
+    } // open()
+
+    /*---------------------------------------------------------------------
+    |  Method lookup(int key)
+    |
+    |  Purpose:  Finds the record of one EIA ID in its shard
+    |
+    |  Pre-condition:  The shards are open
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |          key -- The EIA ID
+    |
+    |  Returns: The bytes of the record, or null if not found
+    *-------------------------------------------------------------------*/
+    public byte[] lookup(int key) throws IOException {
+        if (key < 0) { // negative keys are never stored
+            return null;
+        }
+        Shard shard = shards[shardOf(key, shards.length)];
+        int ptr = shard.index.lookup(key);
+        return ptr == -1 ? null : readRecord(shard, ptr);
+    } // lookup()
+
+    /*---------------------------------------------------------------------
+    |  Method lookupMany(int[] keys, int count)
+    |
+    |  Purpose:  Sends each key to its shard and looks up the keys of
+    |            every shard at the same time, one task per shard. A task
+    |            sorts its keys by bucket so each bucket is read once, then
+    |            reads the records in file order.
+    |
+    |  Pre-condition:  The shards are open
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |         keys -- The EIA IDs
+    |        count -- Number of keys
+    |
+    |  Returns: The record of each key, null where it was not found
+    *-------------------------------------------------------------------*/
+    public byte[][] lookupMany(int[] keys, int count) throws IOException {
+        byte[][] records = new byte[count][];
+        // which of the keys go to each shard
+        int[][] mine = new int[shards.length][];
+        int[] sizes = new int[shards.length];
+        for (int i = 0; i < count; i++) {
+            if (keys[i] >= 0) {
+                sizes[shardOf(keys[i], shards.length)]++;
+            }
+        }
+        for (int s = 0; s < shards.length; s++) {
+            mine[s] = new int[sizes[s]];
+            sizes[s] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            if (keys[i] >= 0) {
+                int s = shardOf(keys[i], shards.length);
+                mine[s][sizes[s]++] = i;
+            }
+        }
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int s = 0; s < shards.length; s++) {
+            if (mine[s].length > 0) {
+                Shard shard = shards[s];
+                int[] which = mine[s];
+                tasks.add(pool.submit(() -> {
+                    lookupShard(shard, keys, which, records);
+                    return null;
+                }));
+            }
+        }
+        try {
+            for (Future<?> f : tasks) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted looking up keys");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException(e.getCause());
+        }
+        return records;
+    } // lookupMany()
+
+    /* The work of one shard for lookupMany(): looks up keys[which[i]] and
+       puts each record found in records[which[i]] */
+    private void lookupShard(Shard shard, int[] keys, int[] which,
+            byte[][] records) throws IOException {
+        int n = which.length;
+        long[] order = new long[n];     // bucket in the high half, i low
+        for (int i = 0; i < n; i++) {
+            order[i] = (long) shard.index.getHashCode(keys[which[i]]) << 32 | i;
+        }
+        Arrays.sort(order);
+        int[] sortedKeys = new int[n];
+        int[] pointers = new int[n];
+        for (int i = 0; i < n; i++) {
+            sortedKeys[i] = keys[which[(int) order[i]]];
+        }
+        shard.index.lookupMany(sortedKeys, pointers, n);
+
+        // read the records in file order
+        for (int i = 0; i < n; i++) {
+            order[i] = (long) pointers[i] << 32 | (order[i] & 0xffffffffL);
+        }
+        Arrays.sort(order);
+        for (long o : order) {
+            int ptr = (int) (o >> 32);
+            if (ptr != -1) {
+                records[which[(int) o]] = readRecord(shard, ptr);
+            }
+        }
+    } // lookupShard()
+
+    /* Reads the whole record at ptr in a shard's .bin file */
+    private byte[] readRecord(Shard shard, int ptr) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(recordLength);
+        while (buf.hasRemaining()) {
+            if (shard.bin.read(buf, (long) ptr + buf.position()) < 0) {
+                throw new EOFException("Record at " + ptr
+                        + " is past the end of its shard");
+            }
+        }
+        return buf.array();
+    } // readRecord()
+
+    /*---------------------------------------------------------------------
+    |  Method scan(RecordVisitor visitor)
+    |
+    |  Purpose:  Reads every shard's .bin file from start to end, all the
+    |            shards at the same time and READ_SIZE bytes at a time,
+    |            and gives every live record to the visitor.
+    |
+    |  Pre-condition:  The shards are open
+    |
+    |  Post-condition: None
+    |
+    |  Parameters:
+    |      visitor -- Gets each record, from one thread per shard
+    |
+    |  Returns: The number of records visited
+    *-------------------------------------------------------------------*/
+    public long scan(RecordVisitor visitor) throws IOException {
+        List<Future<Long>> tasks = new ArrayList<>();
+        for (int s = 0; s < shards.length; s++) {
+            int shardNo = s;
+            tasks.add(pool.submit(() -> scanShard(shardNo, visitor)));
+        }
+        long total = 0;
+        try {
+            for (Future<Long> f : tasks) {
+                total += f.get();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted scanning the shards");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException
+                    ? (IOException) e.getCause()
+                    : new IOException(e.getCause());
+        }
+        return total;
+    } // scan()
+
+    /* The work of one shard for scan() */
+    private long scanShard(int s, RecordVisitor visitor) throws IOException {
+        Shard shard = shards[s];
+        int perRead = Math.max(1, READ_SIZE / recordLength);
+        ByteBuffer block = ByteBuffer.allocateDirect(perRead * recordLength);
+        long visited = 0;
+        for (int r = 0; r < shard.numRecords; r += perRead) {
+            int count = Math.min(perRead, shard.numRecords - r);
+            block.clear();
+            block.limit(count * recordLength);
+            long pos = BinScanner.HEADER_SIZE + (long) r * recordLength;
+            while (block.hasRemaining()) {
+                int n = shard.bin.read(block, pos);
+                if (n < 0) {
+                    throw new EOFException("Shard " + s + " is shorter than"
+                            + " its record count");
+                }
+                pos += n;
+            }
+            for (int i = 0; i < count; i++) {
+                if (block.getInt(i * recordLength) >= 0) {
+                    block.limit(i * recordLength + recordLength);
+                    block.position(i * recordLength);
+                    visitor.visit(s, block.slice());
+                    block.limit(count * recordLength);
+                    visited++;
+                }
+            }
+        }
+        return visited;
+    } // scanShard()
+
+    /* The EIA ID, name and Solar Cap AC of a record as one line, the same
+       as Prog22 prints */
+    private String formatRecord(byte[] record) {
+        return "[" + ByteBuffer.wrap(record).getInt(0) + "] ["
+                + nameField.getString(record) + "] ["
+                + capACField.getDouble(record) + "]";
+    } // formatRecord()
+
+    /* Stops the shard threads and closes every shard */
+    public void close() throws IOException {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        for (Shard shard : shards) {
+            if (shard == null) {
+                continue;
+            }
+            if (shard.index != null) {
+                shard.index.close();
+            }
+            if (shard.bin != null) {
+                shard.bin.close();
+            }
+        }
+    } // close()
+} // class ShardedIndex
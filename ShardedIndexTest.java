@@ -0,0 +1,231 @@
+/*
+ * ShardedIndexTest.java -- Checks that ShardedIndex sends every record to
+ * the shard shardOf() picks for its EIA ID and finds it there again: each
+ * shard's .bin file holds only its own IDs, every live record is in one
+ * shard, lookup() and lookupMany() return the record of each ID and null
+ * for missing, negative and deleted IDs, and scan() visits every live
+ * record once from the shard it is in. Exits with 1 if anything is wrong.
+ *
+ * Usage: java ShardedIndexTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ShardedIndexTest {
+    /*+----------------------------------------------------------------------
+    ||  Class ShardedIndexTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Splits a .bin file into shards and reads every
+    ||                  record back through the manifest.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: RECORDS: records in the .bin file
+    ||                  SHARDS: shards it is split into, not a power of 2
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static final int RECORDS = 5000;
+    private static final int SHARDS = 3;
+
+    private static int failures;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Writes the .bin file, splits it and checks the shards,
+    |            the lookups and the scan
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The temporary folder is removed
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws IOException {
+        Path dir = Files.createTempDirectory("sharded");
+        String binFileName = dir.resolve("t.bin").toString();
+        String manifestName = dir.resolve("t.manifest").toString();
+        try {
+            expect(ShardedIndex.shardOf(12345, 1) == 0, "one shard gets"
+                    + " every key");
+            int[] perShard = new int[5];
+            for (int key = 0; key < 50000; key++) {
+                perShard[ShardedIndex.shardOf(key, 5)]++;
+            }
+            for (int s = 0; s < 5; s++) {
+                expect(perShard[s] > 50000 / 5 * 0.9, "shardOf() spreads"
+                        + " keys over 5 shards (shard " + s + " has "
+                        + perShard[s] + ")");
+            }
+
+            // IDs in steps of 7, every 50th record deleted
+            RecordCodec codec = new RecordCodec(RecordSchema.solar(20, 10,
+                    2));
+            Map<Integer, Integer> live = new HashMap<>();   // ID to record
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(
+                    binFileName)))) {
+                out.writeInt(RECORDS);
+                out.writeInt(20);
+                out.writeInt(10);
+                out.writeInt(2);
+                byte[] record = codec.newRecord();
+                for (int i = 0; i < RECORDS; i++) {
+                    boolean deleted = i % 50 == 0;
+                    SolarEntries s = new SolarEntries();
+                    s.setEIAID(deleted ? LinearHashIndex.TOMBSTONE : id(i));
+                    s.setProjectName("Plant " + i);
+                    s.setSolarCOD("1/1/2000");
+                    s.setState("WA");
+                    s.setSolarCapacityDC(i);    // the MW-AC column
+                    codec.encode(s, record);
+                    out.write(record);
+                    if (!deleted) {
+                        live.put(id(i), i);
+                    }
+                }
+            }
+            ShardedIndex.build(binFileName, manifestName, SHARDS,
+                    HashFunction.MODULO);
+
+            List<String> lines = Files.readAllLines(Paths.get(manifestName));
+            expect(lines.size() == 2 + SHARDS && lines.get(0).equals(
+                    ShardedIndex.MANIFEST_MAGIC), "the manifest lists every"
+                    + " shard");
+            int total = 0;
+            for (int s = 0; s < SHARDS; s++) {
+                String[] f = lines.get(2 + s).split(" ");
+                String shardBin = dir.resolve(f[2]).toString();
+                BinScanner scanner = new BinScanner(shardBin);
+                int[] ids = new int[scanner.getBatchSize()];
+                int[] ptrs = new int[scanner.getBatchSize()];
+                int misplaced = 0;
+                int count;
+                scanner.start(0, false);
+                while ((count = scanner.next(ids, ptrs)) > 0) {
+                    for (int i = 0; i < count; i++) {
+                        if (!live.containsKey(ids[i]) || ShardedIndex.shardOf(
+                                ids[i], SHARDS) != Integer.parseInt(f[0])) {
+                            misplaced++;
+                        }
+                        total++;
+                    }
+                }
+                scanner.close();
+                expect(misplaced == 0, misplaced + " records of shard " + s
+                        + " do not belong there");
+                LinearHashIndex shardIndex = LinearHashIndex.open(
+                        dir.resolve(f[1]).toString(), false);
+                expect(shardIndex.getHashFunction() == HashFunction.MODULO,
+                        "the shard index uses the hash it was given");
+                shardIndex.close();
+            }
+            expect(total == live.size(), "the shards hold every live record"
+                    + " once (" + total + " of " + live.size() + ")");
+
+            ShardedIndex sharded = ShardedIndex.open(manifestName);
+            try {
+                RecordCodec.Accessor name = codec.accessor(RecordSchema.NAME,
+                        RecordSchema.Type.STRING);
+                expect(sharded.getNumShards() == SHARDS, "open() reads every"
+                        + " shard");
+                int wrong = 0;
+                for (Map.Entry<Integer, Integer> e : live.entrySet()) {
+                    byte[] record = sharded.lookup(e.getKey());
+                    if (record == null || !name.getString(record).trim()
+                            .equals("Plant " + e.getValue())) {
+                        wrong++;
+                    }
+                }
+                expect(wrong == 0, wrong + " IDs are not found in their"
+                        + " shard");
+                expect(sharded.lookup(id(0)) == null && sharded.lookup(
+                        id(RECORDS)) == null && sharded.lookup(-7) == null
+                        && sharded.lookup(LinearHashIndex.TOMBSTONE) == null,
+                        "deleted, missing and negative IDs are not found");
+
+                int[] keys = new int[ShardedIndex.BATCH + 10];
+                Random random = new Random(3);
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = i % 97 == 0 ? -i : id(random.nextInt(RECORDS
+                            + 100));
+                }
+                byte[][] many = sharded.lookupMany(keys, keys.length);
+                int differ = 0;
+                for (int i = 0; i < keys.length; i++) {
+                    byte[] one = sharded.lookup(keys[i]);
+                    if (one == null ? many[i] != null
+                            : !Arrays.equals(one, many[i])) {
+                        differ++;
+                    }
+                }
+                expect(differ == 0, "lookupMany() answers " + differ
+                        + " IDs unlike lookup()");
+
+                Map<Integer, Integer> visited = new ConcurrentHashMap<>();
+                long scanned = sharded.scan((shard, record) -> {
+                    int id = record.getInt(record.position());
+                    if (visited.put(id, shard) != null
+                            || ShardedIndex.shardOf(id, SHARDS) != shard) {
+                        visited.put(Integer.MIN_VALUE, shard); // fails below
+                    }
+                });
+                expect(scanned == live.size() && visited.size()
+                        == live.size() && visited.keySet().equals(
+                        live.keySet()), "scan() visits every live record"
+                        + " once, from its own shard");
+            } finally {
+                sharded.close();
+            }
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path f : files) {
+                    Files.delete(f);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "OK: every ID is routed to its"
+                + " shard" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* The EIA ID of record i */
+    private static int id(int i) {
+        return 1000 + 7 * i;
+    } // id()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class ShardedIndexTest
@@ -47,7 +47,7 @@ import java.io.*;
 ||
 |+-----------------------------------------------------------------------*
 ||
-||       Constants: None.
+||       Constants: NO_DATE: codToEpochDay() of a missing or bad COD
 || 
 |+-----------------------------------------------------------------------*
 ||
@@ -83,9 +83,12 @@ import java.io.*;
 ||                                     int stateLen)
 ||                    int getSolarRecordLength(int nameLen, int codLen, 
 ||                                             int stateLen)
+||                    int codToEpochDay(String cod)
 ||                    int compareTo(SolarEntries o)
 ++-----------------------------------------------------------------------*/
 public class SolarEntries implements Comparable<SolarEntries> {
+
+    public static final int NO_DATE = Integer.MIN_VALUE;
     
     // Fields for DataRecord class. Contains 9 fields for each solar plant
     private    int EIAID;           // The EIAID
@@ -273,6 +276,38 @@ public class SolarEntries implements Comparable<SolarEntries> {
         return (8 * 5) + (nameLen + codLen + stateLen) + 4;
     } // getSolarRecordLength
 
+    /*---------------------------------------------------------------------
+        |  Method codToEpochDay(String cod)
+        |
+        |  Purpose: Turns a Solar COD written as M/D/YYYY (as in the CSV
+        |           file, maybe padded with nulls) into the number of days
+        |           since 1/1/1970, so dates can be compared and sorted
+        |           as ints.
+        |
+        |  Pre-condition: None
+        |
+        |  Post-condition: None
+        |
+        |  Parameters:
+        |         cod -- The Solar COD
+        |
+        |  Returns:  The epoch day, or NO_DATE if cod is empty or not a
+        |            real date
+        *-------------------------------------------------------------------*/
+    public static int codToEpochDay(String cod) {
+        String[] parts = cod.trim().split("/"); // trim() drops the nulls too
+        if (parts.length != 3) {
+            return NO_DATE;
+        }
+        try {
+            return (int) java.time.LocalDate.of(Integer.parseInt(parts[2]),
+                    Integer.parseInt(parts[0]), Integer.parseInt(parts[1]))
+                    .toEpochDay();
+        } catch (java.time.DateTimeException | NumberFormatException e) {
+            return NO_DATE;
+        }
+    } // codToEpochDay
+
     /*---------------------------------------------------------------------
         |  Method compareTo(SolarEntries o) 
         |
@@ -0,0 +1,421 @@
+/*
+ * SyntheticData.java -- Makes Solar plant data sets of any size, so the
+ * index can be tried on far more records than the ~980 of the real CSV.
+ * Each row has the fields of SolarEntries with made up but plausible
+ * values (a name, a COD between 2000 and 2025, a state, a location, GHI
+ * and capacities). The EIA IDs come from one of three key sets:
+ *   sequential -- 1, 2, 3, ...
+ *   clustered  -- blocks of HashCompare.CLUSTER IDs, one block every
+ *                 HashCompare.CLUSTER_GAP, like IDs handed out in batches
+ *   zipf       -- the gap between one ID and the next is Zipf distributed,
+ *                 mostly small with a few long jumps
+ * The IDs always go up, like a file Prog1A has sorted.
+ *
+ * By default the rows are written as a .bin file with its .schema and
+ * .cod files, the same as Prog1A makes, ready for Prog21. The index holds
+ * int pointers, so a .bin file must stay under 2 GB (about 24 million of
+ * these rows). "-csv" writes a CSV in the layout of the real one instead,
+ * with no limit but the int EIA IDs, for Prog1A or other tools.
+ *
+ * Usage: java SyntheticData <name> <rows> [sequential|clustered|zipf]
+ *                           [-csv] [-seed <n>]
+ *
+ * Zipf is also the hot key distribution of LoadDriver.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.util.SplittableRandom;
+
+public class SyntheticData {
+    /*+----------------------------------------------------------------------
+    ||  Class SyntheticData
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Writes synthetic .bin or CSV files of Solar plants.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: NAME_LEN, COD_LEN, STATE_LEN: string widths of
+    ||                  the .bin file
+    ||                  ZIPF_EXPONENT: skew of the zipf key set
+    ||                  MAX_GAP: longest gap between two zipf IDs
+    ||                  STATES: the states rows are spread over
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||                  void writeBin(String binFileName, long rows,
+    ||                                String keys, long seed)
+    ||                  void writeCsv(String csvFileName, long rows,
+    ||                                String keys, long seed)
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int NAME_LEN = 32;
+    public static final int COD_LEN = 10;
+    public static final int STATE_LEN = 2;
+    public static final double ZIPF_EXPONENT = 0.99;
+    public static final int MAX_GAP = 1 << 16;
+
+    public static final String[] STATES = {"AZ", "CA", "CO", "FL", "GA",
+            "MA", "MN", "NC", "NJ", "NM", "NV", "NY", "OR", "SC", "TX", "UT",
+            "VA"};
+
+    /*+----------------------------------------------------------------------
+    ||  Class Zipf
+    ||
+    ||         Purpose: Draws ranks 1 to n, rank k with a chance in
+    ||                  proportion to 1 / k^exponent, in constant time for
+    ||                  any n by rejection inversion (Hormann and
+    ||                  Derflinger). Immutable, so threads can share one,
+    ||                  each with its own random numbers.
+    ||
+    ++-----------------------------------------------------------------------*/
+    public static final class Zipf {
+        private final long n;
+        private final double exponent;
+        private final double hIntegralX1;
+        private final double hIntegralN;
+        private final double s;
+
+        public Zipf(long n, double exponent) {
+            if (n < 1 || exponent <= 0) {
+                throw new IllegalArgumentException("Zipf needs n >= 1 and an"
+                        + " exponent above 0");
+            }
+            this.n = n;
+            this.exponent = exponent;
+            hIntegralX1 = hIntegral(1.5) - 1;
+            hIntegralN = hIntegral(n + 0.5);
+            s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+        }
+
+        /* A rank from 1 to n, 1 the most likely */
+        public long sample(SplittableRandom random) {
+            while (true) {
+                double u = hIntegralN + random.nextDouble()
+                        * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                long k = Math.max(1, Math.min(n, (long) (x + 0.5)));
+                if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                    return k;
+                }
+            }
+        }
+
+        private double h(double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return helper2((1 - exponent) * logX) * logX;
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = Math.max(-1, x * (1 - exponent));
+            return Math.exp(helper1(t) * x);
+        }
+
+        /* log1p(x) / x, kept accurate near 0 */
+        private static double helper1(double x) {
+            return Math.abs(x) > 1e-8 ? Math.log1p(x) / x
+                    : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+        }
+
+        /* expm1(x) / x, kept accurate near 0 */
+        private static double helper2(double x) {
+            return Math.abs(x) > 1e-8 ? Math.expm1(x) / x
+                    : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+        }
+    } // class Zipf
+
+    /* Hands out the IDs of one key set in order */
+    private static final class Keys {
+        private final String kind;
+        private final SplittableRandom random;
+        private final Zipf gaps;
+        private long i;             // IDs handed out so far
+        private long last;          // Last zipf ID
+
+        Keys(String kind, long rows, SplittableRandom random) {
+            this.kind = kind;
+            this.random = random;
+            long max;
+            if (kind.equals("sequential")) {
+                max = rows;
+                gaps = null;
+            } else if (kind.equals("clustered")) {
+                max = (rows - 1) / HashCompare.CLUSTER * HashCompare.CLUSTER_GAP
+                        + HashCompare.CLUSTER;
+                gaps = null;
+            } else if (kind.equals("zipf")) {
+                long gap = Math.max(1, Math.min(MAX_GAP,
+                        Integer.MAX_VALUE / Math.max(1, rows)));
+                max = rows * gap;
+                gaps = new Zipf(gap, ZIPF_EXPONENT);
+            } else {
+                throw new IllegalArgumentException("Unknown key set " + kind
+                        + ", use sequential, clustered or zipf");
+            }
+            if (max > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(rows + " " + kind
+                        + " IDs do not fit in an int EIA ID");
+            }
+        }
+
+        int next() {
+            long id;
+            if (gaps != null) {
+                id = last += gaps.sample(random);
+            } else if (kind.equals("sequential")) {
+                id = i + 1;
+            } else {
+                id = i / HashCompare.CLUSTER * HashCompare.CLUSTER_GAP
+                        + i % HashCompare.CLUSTER + 1;
+            }
+            i++;
+            return (int) id;
+        }
+    } // class Keys
+
+    /* The made up fields of one row */
+    private static final class Row {
+        int id;
+        String name;
+        String cod;
+        String state;
+        double latitude;
+        double longitude;
+        double avgGHI;
+        double capacityAC;
+        double capacityDC;
+
+        /* Fills the row for an ID from the random numbers */
+        void fill(int id, SplittableRandom random) {
+            this.id = id;
+            name = "Synthetic Plant " + id;
+            cod = (1 + random.nextInt(12)) + "/" + (1 + random.nextInt(28))
+                    + "/" + (2000 + random.nextInt(26));
+            state = STATES[random.nextInt(STATES.length)];
+            latitude = round(25 + random.nextDouble() * 24);
+            longitude = round(-124 + random.nextDouble() * 57);
+            avgGHI = round(3.5 + random.nextDouble() * 3);
+            // mostly a few MW, now and then a few hundred
+            double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble()))
+                    * Math.cos(2 * Math.PI * random.nextDouble());
+            capacityAC = Math.min(1000, round(Math.exp(1.5 + 1.3 * gaussian)));
+            capacityDC = round(capacityAC * (1.2 + random.nextDouble() * 0.2));
+        }
+
+        /* Two decimals, like the real data */
+        private static double round(double v) {
+            return Math.round(v * 100) / 100.0;
+        }
+    } // class Row
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Reads the arguments and writes <name>.bin (or <name>.csv
+    |            with -csv)
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The file is written in the current directory
+    |
+    |  Parameters:
+    |         args -- The name, number of rows, key set and flags
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        if (args.length < 2) {
+            System.out.println("Usage: java SyntheticData <name> <rows>"
+                    + " [sequential|clustered|zipf] [-csv] [-seed <n>]");
+            System.exit(-1);
+        }
+        String keys = "sequential";
+        boolean csv = false;
+        long seed = 2026;
+        long rows = 0;
+        try {
+            rows = Long.parseLong(args[1]);
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].equals("-csv")) {
+                    csv = true;
+                } else if (args[i].equals("-seed") && i + 1 < args.length) {
+                    seed = Long.parseLong(args[++i]);
+                } else {
+                    keys = args[i];
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Please give the rows and seed as integers.");
+            System.exit(-1);
+        }
+        if (rows < 1) {
+            System.out.println("Please give at least one row.");
+            System.exit(-1);
+        }
+
+        String fileName = "./" + args[0] + (csv ? ".csv" : ".bin");
+        long start = System.nanoTime();
+        try {
+            if (csv) {
+                writeCsv(fileName, rows, keys, seed);
+            } else {
+                writeBin(fileName, rows, keys, seed);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.exit(-1);
+        }
+        System.out.println("Successfuly wrote " + rows + " " + keys
+                + " rows to " + fileName + " in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    } // main()
+
+    /*---------------------------------------------------------------------
+    |  Method writeBin(String binFileName, long rows, String keys, long seed)
+    |
+    |  Purpose:  Writes the rows as a .bin file laid out by
+    |            RecordSchema.solar(NAME_LEN, COD_LEN, STATE_LEN), through
+    |            a .tmp file renamed into place, then writes its .schema
+    |            and .cod files like Prog1A does
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The .bin, .schema and .cod files are written
+    |
+    |  Parameters:
+    |  binFileName -- The .bin file to write
+    |         rows -- Number of rows
+    |         keys -- sequential, clustered or zipf
+    |         seed -- Seed of the random numbers, the same seed gives the
+    |                 same file
+    |
+    |  Returns: None. Throws IllegalArgumentException if the file would be
+    |           too long for int pointers or the IDs too large for ints.
+    *-------------------------------------------------------------------*/
+    public static void writeBin(String binFileName, long rows, String keys,
+            long seed) throws IOException {
+        RecordSchema schema = RecordSchema.solar(NAME_LEN, COD_LEN, STATE_LEN);
+        long maxRows = (Integer.MAX_VALUE - BinScanner.HEADER_SIZE)
+                / schema.getRecordLength();
+        if (rows > maxRows) {
+            throw new IllegalArgumentException("A .bin file can hold at most "
+                    + maxRows + " of these rows (int pointers), use -csv for"
+                    + " more");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        Keys ids = new Keys(keys, rows, random.split());
+        RecordCodec codec = new RecordCodec(schema);
+        RecordCodec.Accessor id = codec.accessor(RecordSchema.ID,
+                RecordSchema.Type.INT);
+        RecordCodec.Accessor name = codec.accessor(RecordSchema.NAME,
+                RecordSchema.Type.STRING);
+        RecordCodec.Accessor cod = codec.accessor(RecordSchema.COD,
+                RecordSchema.Type.STRING);
+        RecordCodec.Accessor state = codec.accessor(RecordSchema.STATE,
+                RecordSchema.Type.STRING);
+        RecordCodec.Accessor latitude = codec.accessor(RecordSchema.LATITUDE,
+                RecordSchema.Type.DOUBLE);
+        RecordCodec.Accessor longitude = codec.accessor(RecordSchema.LONGITUDE,
+                RecordSchema.Type.DOUBLE);
+        RecordCodec.Accessor avgGHI = codec.accessor(RecordSchema.AVG_GHI,
+                RecordSchema.Type.DOUBLE);
+        RecordCodec.Accessor capAC = codec.accessor(RecordSchema.CAPACITY_AC,
+                RecordSchema.Type.DOUBLE);
+        RecordCodec.Accessor capDC = codec.accessor(RecordSchema.CAPACITY_DC,
+                RecordSchema.Type.DOUBLE);
+
+        String tmpName = binFileName + ".tmp";
+        byte[] record = codec.newRecord();
+        Row row = new Row();
+        try (FileOutputStream file = new FileOutputStream(tmpName);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(file, 1 << 20))) {
+            out.writeInt((int) rows);
+            out.writeInt(NAME_LEN);
+            out.writeInt(COD_LEN);
+            out.writeInt(STATE_LEN);
+            for (long i = 0; i < rows; i++) {
+                row.fill(ids.next(), random);
+                id.putInt(record, row.id);
+                name.putString(record, row.name);
+                cod.putString(record, row.cod);
+                state.putString(record, row.state);
+                latitude.putDouble(record, row.latitude);
+                longitude.putDouble(record, row.longitude);
+                avgGHI.putDouble(record, row.avgGHI);
+                capAC.putDouble(record, row.capacityAC);
+                capDC.putDouble(record, row.capacityDC);
+                out.write(record);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        LinearHashIndex.publish(tmpName, binFileName);
+        schema.write(binFileName);
+        CodIndex.build(binFileName, binFileName + CodIndex.SUFFIX);
+    } // writeBin()
+
+    /*---------------------------------------------------------------------
+    |  Method writeCsv(String csvFileName, long rows, String keys, long seed)
+    |
+    |  Purpose:  Writes the rows as a CSV with the header and columns of
+    |            2021-utility-scale-solar-plants.csv. The same seed gives
+    |            the same rows as writeBin().
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The CSV file is written
+    |
+    |  Parameters:
+    |  csvFileName -- The CSV file to write
+    |         rows -- Number of rows
+    |         keys -- sequential, clustered or zipf
+    |         seed -- Seed of the random numbers
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void writeCsv(String csvFileName, long rows, String keys,
+            long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        Keys ids = new Keys(keys, rows, random.split());
+        String tmpName = csvFileName + ".tmp";
+        Row row = new Row();
+        StringBuilder line = new StringBuilder();
+        try (Writer out = new BufferedWriter(new FileWriter(tmpName), 1 << 20)) {
+            out.write("EIA ID,Project Name,Solar COD,State,Latitude,Longitude,"
+                    + "Avg GHI,Solar Capacity MW-DC,Solar Capacity MW-AC\n");
+            for (long i = 0; i < rows; i++) {
+                row.fill(ids.next(), random);
+                line.setLength(0);
+                line.append(row.id).append(',').append(row.name).append(',')
+                        .append(row.cod).append(',').append(row.state)
+                        .append(',').append(row.latitude).append(',')
+                        .append(row.longitude).append(',').append(row.avgGHI)
+                        .append(',').append(row.capacityDC).append(',')
+                        .append(row.capacityAC).append('\n');
+                out.append(line);
+            }
+        }
+        LinearHashIndex.publish(tmpName, csvFileName);
+    } // writeCsv()
+} // class SyntheticData
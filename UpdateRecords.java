@@ -0,0 +1,255 @@
+/*
+ * UpdateRecords.java -- Changes the .bin file and the index file made by
+ * Prog21 without rebuilding the index. Commands are read one per line:
+ *
+ *  delete <EIA ID>                 removes the plant
+ *  update <EIA ID> <field> <value> changes one field of the plant
+ *  -1                              ends the program
+ *
+ * The fields that can be updated are name, cod, state, lat, lon, ghi,
+ * capdc and capac. The EIA ID itself can not be changed since the .bin
+ * file is sorted by it.
+ *
+ * A deleted record stays in the .bin file with its EIA ID replaced by
+ * LinearHashIndex.TOMBSTONE so record positions do not move, and its
+ * index slot is replaced by a tombstone too. Every index change is in the
+ * index's write-ahead log on disk before the next command is read.
+ *
+ * The COD index (<bin file>.cod) is refused once the .bin file changes, so
+ * if there is one it is built again when the program ends after any
+ * change.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.util.Map;
+import java.util.Scanner;
+
+public class UpdateRecords {
+    /*+----------------------------------------------------------------------
+    ||  Class UpdateRecords
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: To delete and update solar entries in place, keeping
+    ||                  the .bin file and the index file in step with each
+    ||                  other.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: STRING_FIELDS, DOUBLE_FIELDS: the field names of
+    ||                  the update command and their schema fields
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: Default Constructor
+    ||
+    ||   Class Methods: None
+    ||
+    ||   Inst. Methods: void deleteRecord(int id)
+    ||                  void updateRecord(int id, String field, String value)
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    // The command's field names and the schema fields they change
+    private static final Map<String, String> STRING_FIELDS = Map.of(
+            "name", RecordSchema.NAME, "cod", RecordSchema.COD,
+            "state", RecordSchema.STATE);
+    private static final Map<String, String> DOUBLE_FIELDS = Map.of(
+            "lat", RecordSchema.LATITUDE, "lon", RecordSchema.LONGITUDE,
+            "ghi", RecordSchema.AVG_GHI, "capac", RecordSchema.CAPACITY_AC,
+            "capdc", RecordSchema.CAPACITY_DC);
+
+    private static RecordCodec codec;
+    private static RandomAccessFile binFile;
+    private static LinearHashIndex indexFile;
+    private static boolean changed;     // The .bin file has been written
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Takes the index file and the binary file as arguments in
+    |            this order and reads delete and update commands until -1
+    |            is entered.
+    |
+    |  Pre-condition:  File names are valid and the index was built from
+    |                  the binary file
+    |
+    |  Post-condition: Both files are closed
+    |
+    |  Parameters:
+    |         args -- The command line arguments which contain the file
+    |                 names
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) {
+        String idxFileName = args[0];
+        String binFileName = args[1];
+
+        changed = false;
+        try {
+            binFile = new RandomAccessFile(binFileName, "rw");
+            indexFile = LinearHashIndex.open(idxFileName, true);
+            codec = new RecordCodec(RecordSchema.forBin(binFileName));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error: Could not open the files: " + e.getMessage());
+            System.exit(-1);
+        }
+
+        Scanner scanner = new Scanner(System.in);
+        System.out.println("Enter 'delete <id>' or 'update <id> <field> <value>'."
+                + " To end, type:'-1': ");
+        while (scanner.hasNextLine()) {
+            String[] words = scanner.nextLine().trim().split("\\s+", 4);
+            if (words[0].equals("-1")) {
+                break;
+            }
+            try {
+                if (words[0].equals("delete") && words.length == 2) {
+                    deleteRecord(Integer.parseInt(words[1]));
+                } else if (words[0].equals("update") && words.length == 4) {
+                    updateRecord(Integer.parseInt(words[1]), words[2], words[3]);
+                } else if (!words[0].isEmpty()) {
+                    System.out.println("Unknown command.");
+                }
+                indexFile.commit(); // the change is on disk once reported
+            } catch (NumberFormatException e) {
+                System.out.println("Please enter the integer represting the EIA ID number.");
+            } catch (IOException e) {
+                System.out.println("I/O Error: " + e.getMessage());
+                System.exit(-1);
+            }
+        }
+        scanner.close();
+
+        try {
+            indexFile.close();
+            binFile.close();
+        } catch (IOException e) {
+            System.out.println("Error: Could not close the files.");
+            System.exit(-1);
+        }
+
+        File codFile = new File(binFileName + CodIndex.SUFFIX);
+        if (changed && codFile.exists()) {
+            try {
+                CodIndex.build(binFileName, codFile.getPath());
+            } catch (IOException e) {
+                System.out.println("Error: Could not build " + codFile
+                        + " again: " + e.getMessage());
+                System.exit(-1);
+            }
+        }
+    } // main()
+
+    /*---------------------------------------------------------------------
+    |  Method deleteRecord(int id)
+    |
+    |  Purpose:  Marks the record in the .bin file as deleted and then
+    |            removes the key from the index. Prog22 treats a record
+    |            whose EIA ID is TOMBSTONE as not found, and the index
+    |            builders skip it, so if the program stops between the two
+    |            writes the key that is still in the index finds nothing
+    |            and the record does not come back when the index is built
+    |            again.
+    |
+    |  Pre-condition:  Both files are open for writing
+    |
+    |  Post-condition: The record can not be found anymore
+    |
+    |  Parameters:
+    |           id -- The EIA ID to delete
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private static void deleteRecord(int id) throws IOException {
+        int ptr = id < 0 ? -1 : indexFile.lookup(id);
+        if (ptr == -1) {
+            System.out.println("The target value " + id + " was not found.");
+            return;
+        }
+        binFile.seek(ptr);
+        binFile.writeInt(LinearHashIndex.TOMBSTONE);
+        changed = true;
+        indexFile.delete(id);
+        System.out.println("Deleted " + id + ".");
+    } // deleteRecord()
+
+    /*---------------------------------------------------------------------
+    |  Method updateRecord(int id, String field, String value)
+    |
+    |  Purpose:  Reads the record, changes one field and writes the record
+    |            back to the same place. The field is found by its name in
+    |            the file's schema (capac is RecordSchema.CAPACITY_AC, the
+    |            Solar Cap AC Prog22 prints). Strings longer than the
+    |            padded length for that field are refused.
+    |
+    |  Pre-condition:  Both files are open for writing
+    |
+    |  Post-condition: The record holds the new value
+    |
+    |  Parameters:
+    |           id -- The EIA ID to update
+    |        field -- Name of the field to change
+    |        value -- The new value
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    private static void updateRecord(int id, String field, String value)
+            throws IOException {
+        int ptr = id < 0 ? -1 : indexFile.lookup(id);
+        if (ptr == -1) {
+            System.out.println("The target value " + id + " was not found.");
+            return;
+        }
+        RecordSchema.Type type = RecordSchema.Type.DOUBLE;
+        String name = DOUBLE_FIELDS.get(field);
+        if (name == null) {
+            type = RecordSchema.Type.STRING;
+            name = STRING_FIELDS.get(field);
+        }
+        RecordCodec.Accessor accessor = name == null ? null
+                : codec.optional(name, type);
+        if (accessor == null) {
+            System.out.println("Unknown field " + field + ".");
+            return;
+        }
+
+        byte[] record = codec.newRecord();
+        binFile.seek(ptr);
+        binFile.readFully(record);
+        try {
+            if (type == RecordSchema.Type.STRING) {
+                checkLength(value, accessor.getWidth());
+                accessor.putString(record, value);
+            } else {
+                accessor.putDouble(record, Double.parseDouble(value));
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Bad value for " + field + ": " + e.getMessage());
+            return;
+        }
+
+        binFile.seek(ptr);
+        binFile.write(record);
+        changed = true;
+        System.out.println("Updated " + id + ".");
+    } // updateRecord()
+
+    /* Refuses strings that would not fit in the padded field */
+    private static void checkLength(String value, int len) {
+        if (value.length() > len) {
+            throw new IllegalArgumentException("longer than " + len
+                    + " characters");
+        }
+    } // checkLength()
+} // class UpdateRecords
@@ -0,0 +1,201 @@
+/*
+ * UpdateRecordsTest.java -- Checks that every field UpdateRecords can
+ * change lands in the column that is read back by name through the
+ * file's schema, and that Prog22 prints the new Solar Cap AC. It makes a
+ * small .bin file and index in a temporary folder, runs UpdateRecords and
+ * Prog22 on them with their input and output redirected, and exits with 1
+ * if anything is wrong.
+ *
+ * Usage: java UpdateRecordsTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class UpdateRecordsTest {
+    /*+----------------------------------------------------------------------
+    ||  Class UpdateRecordsTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Updates each field of a record with UpdateRecords
+    ||                  and reads it back the way Prog22 does. Also checks
+    ||                  that a record marked deleted in the .bin file is not
+    ||                  printed while the index still has its key.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static int failures;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Writes two records, updates every field of the first and
+    |            checks each new value and that the second record and the
+    |            other columns did not change
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The temporary folder is removed
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws IOException {
+        Path dir = Files.createTempDirectory("updaterecords");
+        String binFileName = dir.resolve("t.bin").toString();
+        String idxFileName = dir.resolve("t.idx").toString();
+        PrintStream stdout = System.out;
+        InputStream stdin = System.in;
+        try {
+            RecordSchema schema = RecordSchema.solar(20, 10, 2);
+            RecordCodec codec = new RecordCodec(schema);
+            try (DataOutputStream out = new DataOutputStream(
+                    new FileOutputStream(binFileName))) {
+                out.writeInt(2);
+                out.writeInt(20);
+                out.writeInt(10);
+                out.writeInt(2);
+                byte[] record = codec.newRecord();
+                for (int id = 1; id <= 2; id++) {
+                    SolarEntries s = new SolarEntries();
+                    s.setEIAID(id);
+                    s.setProjectName("Plant " + id);
+                    s.setSolarCOD("1/1/2000");
+                    s.setState("CA");
+                    s.setSolarCapacityDC(34.2);     // the MW-AC column
+                    s.setSolarCapacityAC(40.0);     // the MW-DC column
+                    codec.encode(s, record);
+                    out.write(record);
+                }
+            }
+            ParallelIndexBuilder.build(binFileName, idxFileName, 1,
+                    HashFunction.MODULO);
+
+            run("update 1 capac 99.5\nupdate 1 capdc 77.7\n"
+                    + "update 1 name Renamed\nupdate 1 cod 2/3/2021\n"
+                    + "update 1 state NV\nupdate 1 lat 1.5\n"
+                    + "update 1 lon -2.5\nupdate 1 ghi 3.5\n-1\n",
+                    () -> UpdateRecords.main(new String[] {idxFileName,
+                            binFileName}));
+
+            byte[][] records = new byte[2][schema.getRecordLength()];
+            try (RandomAccessFile bin = new RandomAccessFile(binFileName,
+                    "r")) {
+                for (int i = 0; i < 2; i++) {
+                    bin.seek(BinScanner.HEADER_SIZE
+                            + (long) i * schema.getRecordLength());
+                    bin.readFully(records[i]);
+                }
+            }
+            check(records[0], codec, RecordSchema.CAPACITY_AC, 99.5);
+            check(records[0], codec, RecordSchema.CAPACITY_DC, 77.7);
+            check(records[0], codec, RecordSchema.NAME, "Renamed");
+            check(records[0], codec, RecordSchema.COD, "2/3/2021");
+            check(records[0], codec, RecordSchema.STATE, "NV");
+            check(records[0], codec, RecordSchema.LATITUDE, 1.5);
+            check(records[0], codec, RecordSchema.LONGITUDE, -2.5);
+            check(records[0], codec, RecordSchema.AVG_GHI, 3.5);
+            check(records[1], codec, RecordSchema.CAPACITY_AC, 34.2);
+            check(records[1], codec, RecordSchema.CAPACITY_DC, 40.0);
+            check(records[1], codec, RecordSchema.NAME, "Plant 2");
+
+            String printed = run("1\n2\n-1\n", () -> Prog22.main(
+                    new String[] {idxFileName, binFileName}));
+            expect(printed.contains("[1] [Renamed") && printed.contains(
+                    "] [99.5]"), "Prog22 prints the new Solar Cap AC of 1");
+            expect(printed.contains("[2] [Plant 2") && printed.contains(
+                    "] [34.2]"), "Prog22 prints the old Solar Cap AC of 2");
+
+            // a delete that stopped after marking the .bin file, so the
+            // index still has the key
+            try (RandomAccessFile bin = new RandomAccessFile(binFileName,
+                    "rw")) {
+                bin.seek(BinScanner.HEADER_SIZE + schema.getRecordLength());
+                bin.writeInt(LinearHashIndex.TOMBSTONE);
+            }
+            printed = run("2\n-1\n", () -> Prog22.main(
+                    new String[] {idxFileName, binFileName}));
+            expect(printed.contains("The target value 2 was not found."),
+                    "Prog22 does not print a record marked deleted");
+        } finally {
+            System.setOut(stdout);
+            System.setIn(stdin);
+            for (String f : new String[] {binFileName, idxFileName,
+                    idxFileName + ".wal"}) {
+                Files.deleteIfExists(Paths.get(f));
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "OK: every field updated"
+                : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* A program run with its own input and output */
+    private interface Run {
+        void run() throws IOException;
+    }
+
+    /* Runs a program with input on System.in and returns what it printed */
+    private static String run(String input, Run program) throws IOException {
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setIn(new ByteArrayInputStream(input.getBytes()));
+        System.setOut(new PrintStream(printed, true));
+        try {
+            program.run();
+        } finally {
+            System.setOut(stdout);
+        }
+        return printed.toString();
+    } // run()
+
+    /* Checks a double field of a record */
+    private static void check(byte[] record, RecordCodec codec, String field,
+            double want) {
+        double got = codec.accessor(field, RecordSchema.Type.DOUBLE)
+                .getDouble(record);
+        expect(got == want, field + " is " + want + " (got " + got + ")");
+    } // check()
+
+    /* Checks a string field of a record, without its padding */
+    private static void check(byte[] record, RecordCodec codec, String field,
+            String want) {
+        String got = codec.accessor(field, RecordSchema.Type.STRING)
+                .getString(record).trim();
+        expect(got.equals(want), field + " is " + want + " (got " + got + ")");
+    } // check()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class UpdateRecordsTest
@@ -0,0 +1,243 @@
+/*
+ * WriteAheadLog.java -- A log of the changes made to an index file so the
+ * changes are not lost if the program stops before the index file is
+ * written to disk. Every change (insert, delete, pointer update) is added
+ * to the log, at least to its group commit buffer, before its slot is
+ * written to the index. The log is only written and forced to disk (fsync)
+ * once GROUP_COMMIT changes have built up or commit() is called, so many
+ * changes share one fsync.
+ *
+ * Each log record is 16 bytes:
+ *  int type, int key, int pointer, int checksum
+ * The checksum is a CRC32 of the first 12 bytes so a record that was only
+ * half written when the program stopped is found and ignored.
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+public class WriteAheadLog {
+    /*+----------------------------------------------------------------------
+    ||  Class WriteAheadLog
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Keeps the log file for one index file. Changes are
+    ||                  buffered in memory and written with one write and
+    ||                  one fsync per group. The records in the file can be
+    ||                  read back to redo them after a crash, and the file
+    ||                  is emptied once the index file itself is on disk.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: INSERT, DELETE, UPDATE, INDEXED: record types
+    ||                  RECORD_SIZE: bytes in a log record
+    ||                  GROUP_COMMIT: default records per fsync
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: WriteAheadLog(String fileName)
+    ||
+    ||   Class Methods: None
+    ||
+    ||   Inst. Methods: void setGroupCommit(int records)
+    ||                  void log(int type, int key, int pointer)
+    ||                  void commit()
+    ||                  ArrayList<int[]> readRecords()
+    ||                  long getLength()
+    ||                  void truncate()
+    ||                  void close()
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    public static final int INSERT = 1;
+    public static final int DELETE = 2;
+    public static final int UPDATE = 3;
+    public static final int INDEXED = 4;    // key holds the record count
+    public static final int RECORD_SIZE = 16;
+    public static final int GROUP_COMMIT = 64;
+
+    private RandomAccessFile file;  // The log file
+    private FileChannel channel;    // Channel of file
+    private ByteBuffer pending;     // Records not written yet
+    private int groupSize;          // Records per fsync
+    private long length;            // Bytes of the log on disk
+    private CRC32 crc = new CRC32();
+
+    /* Getter methods */
+    public long getLength() { return length; }
+
+    /*---------------------------------------------------------------------
+    |  Constructor WriteAheadLog(String fileName)
+    |
+    |  Purpose:  Opens the log file, creating it if needed. Records already
+    |            in the file are kept until truncate() is called.
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The log is open
+    |
+    |  Parameters:
+    |     fileName -- Name of the log file
+    *-------------------------------------------------------------------*/
+    public WriteAheadLog(String fileName) throws IOException {
+        file = new RandomAccessFile(fileName, "rw");
+        channel = file.getChannel();
+        length = file.length();
+        setGroupCommit(GROUP_COMMIT);
+    } // WriteAheadLog()
+
+    /*---------------------------------------------------------------------
+    |  Method setGroupCommit(int records)
+    |
+    |  Purpose:  Sets how many records are buffered before they are
+    |            written and forced to disk. 1 forces every change.
+    |
+    |  Pre-condition:  records > 0
+    |
+    |  Post-condition: Buffered records are committed first
+    |
+    |  Parameters:
+    |      records -- Records per fsync
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void setGroupCommit(int records) throws IOException {
+        if (pending != null) {
+            commit();
+        }
+        groupSize = Math.max(1, records);
+        pending = ByteBuffer.allocate(groupSize * RECORD_SIZE);
+    } // setGroupCommit()
+
+    /*---------------------------------------------------------------------
+    |  Method log(int type, int key, int pointer)
+    |
+    |  Purpose:  Adds a record to the current group. When the group is
+    |            full it is committed.
+    |
+    |  Pre-condition:  The log is open
+    |
+    |  Post-condition: The record will be on disk after the next commit
+    |
+    |  Parameters:
+    |         type -- INSERT, DELETE, UPDATE or INDEXED
+    |          key -- The EIA ID (the record count for INDEXED)
+    |      pointer -- The pointer into the .bin file (unused for DELETE)
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void log(int type, int key, int pointer) throws IOException {
+        pending.putInt(type);
+        pending.putInt(key);
+        pending.putInt(pointer);
+        crc.reset();
+        crc.update(pending.array(), pending.position() - 12, 12);
+        pending.putInt((int) crc.getValue());
+        if (!pending.hasRemaining()) {
+            commit();
+        }
+    } // log()
+
+    /*---------------------------------------------------------------------
+    |  Method commit()
+    |
+    |  Purpose:  Writes the buffered records to the end of the log with a
+    |            single write and forces them to disk.
+    |
+    |  Pre-condition:  The log is open
+    |
+    |  Post-condition: Every record logged so far is on disk
+    |
+    |  Parameters: None
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void commit() throws IOException {
+        if (pending.position() == 0) {
+            return;
+        }
+        pending.flip();
+        while (pending.hasRemaining()) {
+            length += channel.write(pending, length);
+        }
+        channel.force(false);
+        pending.clear();
+    } // commit()
+
+    /*---------------------------------------------------------------------
+    |  Method readRecords()
+    |
+    |  Purpose:  Reads every whole record from the log file in order. The
+    |            reading stops at the first record with a bad checksum
+    |            since nothing after a torn write can be trusted.
+    |
+    |  Pre-condition:  The log is open
+    |
+    |  Post-condition: The log is not changed
+    |
+    |  Parameters: None
+    |
+    |  Returns: A list of {type, key, pointer}
+    *-------------------------------------------------------------------*/
+    public ArrayList<int[]> readRecords() throws IOException {
+        ArrayList<int[]> records = new ArrayList<>();
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(length,
+                Integer.MAX_VALUE - RECORD_SIZE));
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, buf.position()) < 0) {
+                break;
+            }
+        }
+        byte[] bytes = buf.array();
+        for (int pos = 0; pos + RECORD_SIZE <= buf.position(); pos += RECORD_SIZE) {
+            crc.reset();
+            crc.update(bytes, pos, 12);
+            if (buf.getInt(pos + 12) != (int) crc.getValue()) {
+                break;
+            }
+            records.add(new int[] { buf.getInt(pos), buf.getInt(pos + 4),
+                    buf.getInt(pos + 8) });
+        }
+        return records;
+    } // readRecords()
+
+    /*---------------------------------------------------------------------
+    |  Method truncate()
+    |
+    |  Purpose:  Empties the log. Only called once the index file holds
+    |            every change in the log and has been forced to disk.
+    |
+    |  Pre-condition:  The log is open
+    |
+    |  Post-condition: The log file is empty
+    |
+    |  Parameters: None
+    |
+    |  Returns: None
+    *-------------------------------------------------------------------*/
+    public void truncate() throws IOException {
+        pending.clear();
+        channel.truncate(0);
+        channel.force(true);
+        length = 0;
+    } // truncate()
+
+    /* Commits anything buffered and closes the log file */
+    public void close() throws IOException {
+        commit();
+        file.close();
+    } // close()
+} // class WriteAheadLog
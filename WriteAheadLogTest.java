@@ -0,0 +1,176 @@
+/*
+ * WriteAheadLogTest.java -- Checks that the changes in a WriteAheadLog are
+ * redone when an index is opened after a crash. It makes changes to an
+ * index, keeps the index file from before them and the log from after
+ * them, and reopens the pair the way a crash would leave it: with the
+ * whole log, with the last record torn (the log cut off halfway through
+ * it), with a damaged record in the middle, and with an index file that
+ * already has every change. Each time the lookups must show exactly the
+ * changes whose records were whole. Exits with 1 if anything is wrong.
+ *
+ * Usage: java WriteAheadLogTest
+ *
+ * Author: Adam Mekhail
+ * First Version: 2026-10-19
+ *
+ *
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class WriteAheadLogTest {
+    /*+----------------------------------------------------------------------
+    ||  Class WriteAheadLogTest
+    ||
+    ||         Author:  Adam Mekhail
+    ||
+    ||         Purpose: Replays a log onto the index file it was written for
+    ||                  after cutting or damaging it as a crash could.
+    ||
+    ||   Inherits from: None.
+    ||
+    ||      Interfaces: None.
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||       Constants: KEYS: keys in the index before the changes
+    ||
+    |+-----------------------------------------------------------------------*
+    ||
+    ||    Constructors: None
+    ||
+    ||   Class Methods: void main(String args[])
+    ||
+    ||   Inst. Methods: None
+    ||
+    ++-----------------------------------------------------------------------*/
+
+    private static final int KEYS = 100;
+
+    private static int failures;
+
+    /*---------------------------------------------------------------------
+    |  Method main(String args[])
+    |
+    |  Purpose:  Builds the index, makes the changes and replays the log
+    |            in each of the ways a crash could leave it
+    |
+    |  Pre-condition:  None
+    |
+    |  Post-condition: The temporary folder is removed
+    |
+    |  Parameters:
+    |         args -- Not used
+    |
+    |  Returns: None, exits with 1 if a check fails
+    *-------------------------------------------------------------------*/
+    public static void main(String args[]) throws IOException {
+        Path dir = Files.createTempDirectory("writeaheadlog");
+        Path idx = dir.resolve("t.idx");
+        Path wal = dir.resolve("t.idx.wal");
+        try {
+            LinearHashIndex index = LinearHashIndex.create(idx.toString());
+            for (int key = 1; key <= KEYS; key++) {
+                index.insert(new Entry(key, key * 10));
+            }
+            index.close();
+            byte[] before = Files.readAllBytes(idx);
+
+            // each change with the keys it leaves, in log order
+            List<Map<Integer, Integer>> after = new ArrayList<>();
+            Map<Integer, Integer> keys = new HashMap<>();
+            for (int key = 1; key <= KEYS; key++) {
+                keys.put(key, key * 10);
+            }
+            after.add(new HashMap<>(keys));
+            index = LinearHashIndex.open(idx.toString(), true);
+            index.setGroupCommit(1);
+            for (int key = KEYS + 1; key <= KEYS + 3; key++) {
+                index.insert(new Entry(key, key * 10));
+                keys.put(key, key * 10);
+                after.add(new HashMap<>(keys));
+            }
+            index.delete(3);
+            keys.remove(3);
+            after.add(new HashMap<>(keys));
+            index.update(10, 999);
+            keys.put(10, 999);
+            after.add(new HashMap<>(keys));
+            index.delete(KEYS + 1);
+            keys.remove(KEYS + 1);
+            after.add(new HashMap<>(keys));
+            index.update(20, 888);
+            keys.put(20, 888);
+            after.add(new HashMap<>(keys));
+            byte[] log = Files.readAllBytes(wal);
+            index.close();
+            byte[] changed = Files.readAllBytes(idx);
+            int records = after.size() - 1;
+            expect(log.length == records * WriteAheadLog.RECORD_SIZE,
+                    "each change is one log record on disk");
+            expect(Files.size(wal) == 0, "close() empties the log");
+
+            replay(idx, wal, before, log, after.get(records),
+                    "the whole log");
+            replay(idx, wal, before, Arrays.copyOf(log, log.length
+                    - WriteAheadLog.RECORD_SIZE / 2), after.get(records - 1),
+                    "a log whose last record is torn");
+            replay(idx, wal, before, Arrays.copyOf(log, log.length - 1),
+                    after.get(records - 1), "a log cut one byte short");
+            byte[] damaged = log.clone();
+            damaged[3 * WriteAheadLog.RECORD_SIZE + 5] ^= 1;
+            replay(idx, wal, before, damaged, after.get(3), "a log with a"
+                    + " damaged fourth record");
+            replay(idx, wal, changed, log, after.get(records), "an index"
+                    + " that already has every change");
+            replay(idx, wal, before, new byte[0], after.get(0), "an empty"
+                    + " log");
+        } finally {
+            for (Path f : new Path[] {idx, wal, dir.resolve("t.idx.tmp")}) {
+                Files.deleteIfExists(f);
+            }
+            Files.deleteIfExists(dir);
+        }
+        System.out.println(failures == 0 ? "OK: the log is redone after a"
+                + " crash" : failures + " checks failed");
+        System.exit(failures == 0 ? 0 : 1);
+    } // main()
+
+    /* Puts back the index file and log a crash left, opens the index for
+       writing so the log is redone, and checks it holds exactly keys */
+    private static void replay(Path idx, Path wal, byte[] index, byte[] log,
+            Map<Integer, Integer> keys, String what) throws IOException {
+        Files.write(idx, index);
+        Files.write(wal, log);
+        LinearHashIndex.open(idx.toString(), true).close();
+        expect(Files.size(wal) == 0, "the log is emptied after " + what);
+
+        LinearHashIndex reopened = LinearHashIndex.open(idx.toString(),
+                false);
+        try {
+            int wrong = 0;
+            for (int key = 1; key <= KEYS + 5; key++) {
+                int want = keys.getOrDefault(key, -1);
+                if (reopened.lookup(key) != want) {
+                    wrong++;
+                }
+            }
+            expect(wrong == 0, wrong + " keys are wrong after " + what);
+            expect(reopened.getNumEntries() == keys.size(), "the key count"
+                    + " is right after " + what + " (got "
+                    + reopened.getNumEntries() + ")");
+        } finally {
+            reopened.close();
+        }
+    } // replay()
+
+    /* Counts and prints a failed check */
+    private static void expect(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + what);
+        }
+    } // expect()
+} // class WriteAheadLogTest